@@ -0,0 +1,279 @@
+package acs.cache;
+
+import acs.domain.AccessDecision;
+import acs.domain.LogEntry;
+import acs.service.ClockService;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.WeekFields;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 访问次数计数器：按 员工 × 资源 × 日/周 统计允许（ALLOW）的访问次数。
+ *
+ * 设计原则：
+ * - 以周为加载单位：某一周第一次被访问时从日志缓存的ALLOW倒排列表加载该周计数，之后只读内存
+ *   （日志缓存在启动时由 access_logs 加载，且先于异步数据库写入更新，因此不查询数据库）
+ * - 启动时预加载当前周；模拟时间跳到其他周时按需加载
+ * - 超过保留周数时在插入新周之前淘汰离当前周最远的已加载周，正在加载（随后被预占/计数）的周不会被淘汰，
+ *   即使它比保留窗口内的所有周都早
+ * - 每次ALLOW由 increment() 递增；受限资源用 tryAcquire()/release() 预占名额
+ *   （按 员工×资源 的周计数器加锁，日/周上限在同一临界区内检查并递增）
+ * - 资源ID为null的键表示员工在所有资源上的合计
+ * - 日/周按资源所在站点的本地日期分桶；日志时间使用服务器时区，加载时逐条换算为站点本地时间
+ */
+@Component
+public class AccessCounterStore {
+
+    // 内存中最多保留的周数（加载新的一周前淘汰离当前周最远的）
+    private static final int MAX_WEEKS = 8;
+    // 周内的日索引0-6，7表示整周合计
+    private static final int WEEK_TOTAL = 7;
+
+    // 站点与服务器时区的偏移差不超过这个天数，加载一周时多取前后的日志再按站点日期筛选
+    private static final int ZONE_MARGIN_DAYS = 2;
+
+    private final LocalCacheManager cacheManager;
+    private final ClockService clockService;
+    private final SiteZoneRegistry siteZones;
+
+    private final Map<LocalDate, Map<CounterKey, AtomicLong>> weeks = new ConcurrentHashMap<>();
+
+    public AccessCounterStore(LocalCacheManager cacheManager, ClockService clockService, SiteZoneRegistry siteZones) {
+        this.cacheManager = cacheManager;
+        this.clockService = clockService;
+        this.siteZones = siteZones;
+    }
+
+    @PostConstruct
+    public void init() {
+        rebuild();
+    }
+
+    /**
+     * 丢弃所有计数并重新加载当前周。
+     */
+    public synchronized void rebuild() {
+        weeks.clear();
+        weekCounters(weekStart(clockService.localNow().toLocalDate()));
+    }
+
+    /**
+     * 记录一次允许的访问。
+     */
+    public void increment(String employeeId, String resourceId, LocalDateTime timestamp) {
+        if (employeeId == null || timestamp == null) {
+            return;
+        }
+        LocalDate date = timestamp.toLocalDate();
+        LocalDate weekStart = weekStart(date);
+        Map<CounterKey, AtomicLong> counters = weeks.get(weekStart);
+        if (counters == null) {
+            synchronized (this) {
+                counters = weeks.get(weekStart);
+                if (counters == null) {
+                    // 该周尚未加载：调用方的日志已写入日志缓存，加载时会统计到这条记录，无需再递增
+                    loadWeek(weekStart);
+                    return;
+                }
+            }
+        }
+        int day = (int) ChronoUnit.DAYS.between(weekStart, date);
+        add(counters, employeeId, null, day);
+        if (resourceId != null) {
+            add(counters, employeeId, resourceId, day);
+        }
+    }
+
+    /**
+     * 原子地预占一次访问名额：资源的当日/本周计数均未达到上限时同时递增，否则不做任何修改。
+     * 上限小于等于0表示不限制。成功预占后如最终未放行，需调用 release() 归还。
+     */
+    public boolean tryAcquire(String employeeId, String resourceId, LocalDateTime timestamp,
+                              int dailyLimit, int weeklyLimit) {
+        if (employeeId == null || resourceId == null || timestamp == null) {
+            return true;
+        }
+        LocalDate date = timestamp.toLocalDate();
+        LocalDate weekStart = weekStart(date);
+        Map<CounterKey, AtomicLong> counters = weekCounters(weekStart);
+        int day = (int) ChronoUnit.DAYS.between(weekStart, date);
+
+        AtomicLong daily = counter(counters, employeeId, resourceId, day);
+        AtomicLong weekly = counter(counters, employeeId, resourceId, WEEK_TOTAL);
+        // 周计数器是 员工×资源×周 唯一的对象：同一键的预占串行化，两个上限都满足才一起递增，
+        // 不会出现先递增日计数、周检查失败再回滚期间误拒其他请求的情况
+        synchronized (weekly) {
+            if (reached(daily, dailyLimit) || reached(weekly, weeklyLimit)) {
+                return false;
+            }
+            daily.incrementAndGet();
+            weekly.incrementAndGet();
+        }
+        counter(counters, employeeId, null, day).incrementAndGet();
+        counter(counters, employeeId, null, WEEK_TOTAL).incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 归还 tryAcquire() 预占的名额。
+     */
+    public void release(String employeeId, String resourceId, LocalDateTime timestamp) {
+        if (employeeId == null || resourceId == null || timestamp == null) {
+            return;
+        }
+        LocalDate date = timestamp.toLocalDate();
+        LocalDate weekStart = weekStart(date);
+        Map<CounterKey, AtomicLong> counters = weeks.get(weekStart);
+        if (counters == null) {
+            // 该周已被淘汰，下次加载时以数据库为准
+            return;
+        }
+        int day = (int) ChronoUnit.DAYS.between(weekStart, date);
+        counter(counters, employeeId, resourceId, day).decrementAndGet();
+        counter(counters, employeeId, resourceId, WEEK_TOTAL).decrementAndGet();
+        counter(counters, employeeId, null, day).decrementAndGet();
+        counter(counters, employeeId, null, WEEK_TOTAL).decrementAndGet();
+    }
+
+    /**
+     * 员工在指定日期的访问次数；resourceId为null时统计所有资源。
+     */
+    public int getDailyCount(String employeeId, String resourceId, LocalDate date) {
+        LocalDate weekStart = weekStart(date);
+        return get(weekStart, employeeId, resourceId, (int) ChronoUnit.DAYS.between(weekStart, date));
+    }
+
+    /**
+     * 员工在指定日期所在周的访问次数；resourceId为null时统计所有资源。
+     */
+    public int getWeeklyCount(String employeeId, String resourceId, LocalDate date) {
+        return get(weekStart(date), employeeId, resourceId, WEEK_TOTAL);
+    }
+
+    public int getLoadedWeekCount() {
+        return weeks.size();
+    }
+
+    public int getCounterCount() {
+        int total = 0;
+        for (Map<CounterKey, AtomicLong> counters : weeks.values()) {
+            total += counters.size();
+        }
+        return total;
+    }
+
+    // 与原先基于日志统计的周起始计算保持一致
+    static LocalDate weekStart(LocalDate date) {
+        return date.with(WeekFields.of(Locale.getDefault()).dayOfWeek(), 1);
+    }
+
+    private int get(LocalDate weekStart, String employeeId, String resourceId, int day) {
+        if (employeeId == null) {
+            return 0;
+        }
+        AtomicLong value = weekCounters(weekStart).get(new CounterKey(employeeId, resourceId, day));
+        return value == null ? 0 : value.intValue();
+    }
+
+    private Map<CounterKey, AtomicLong> weekCounters(LocalDate weekStart) {
+        Map<CounterKey, AtomicLong> counters = weeks.get(weekStart);
+        if (counters != null) {
+            return counters;
+        }
+        return loadWeek(weekStart);
+    }
+
+    private synchronized Map<CounterKey, AtomicLong> loadWeek(LocalDate weekStart) {
+        Map<CounterKey, AtomicLong> counters = weeks.get(weekStart);
+        if (counters != null) {
+            return counters;
+        }
+        counters = new ConcurrentHashMap<>();
+        LocalDateTime start = weekStart.atStartOfDay().minusDays(ZONE_MARGIN_DAYS);
+        LocalDateTime end = weekStart.atStartOfDay().plusDays(7 + ZONE_MARGIN_DAYS).minusNanos(1);
+        for (LogEntry log : cacheManager.getLogsByDecision(AccessDecision.ALLOW, start, end)) {
+            if (log.getEmployee() == null || log.getEmployee().getEmployeeId() == null) {
+                continue;
+            }
+            String building = log.getResource() != null ? log.getResource().getBuilding() : null;
+            LocalDate siteDate = siteZones.logTimeToSiteTime(building, log.getTimestamp()).toLocalDate();
+            int day = (int) ChronoUnit.DAYS.between(weekStart, siteDate);
+            if (day < 0 || day >= 7) {
+                continue;
+            }
+            String employeeId = log.getEmployee().getEmployeeId();
+            add(counters, employeeId, null, day);
+            if (log.getResource() != null && log.getResource().getResourceId() != null) {
+                add(counters, employeeId, log.getResource().getResourceId(), day);
+            }
+        }
+        // 先淘汰再插入：返回给调用方的这一周一直保留在 weeks 中，后续预占落在同一个计数表上
+        evictFarthestWeeks();
+        weeks.put(weekStart, counters);
+        return counters;
+    }
+
+    // 为即将加载的一周腾出位置：淘汰离当前周最远的已加载周
+    private void evictFarthestWeeks() {
+        LocalDate currentWeek = weekStart(clockService.localNow().toLocalDate());
+        while (weeks.size() >= MAX_WEEKS) {
+            LocalDate farthest = weeks.keySet().stream()
+                    .max(Comparator.comparingLong(week -> Math.abs(ChronoUnit.DAYS.between(currentWeek, week))))
+                    .orElse(null);
+            if (farthest == null) {
+                return;
+            }
+            weeks.remove(farthest);
+        }
+    }
+
+    private static AtomicLong counter(Map<CounterKey, AtomicLong> counters, String employeeId, String resourceId, int day) {
+        return counters.computeIfAbsent(new CounterKey(employeeId, resourceId, day), key -> new AtomicLong());
+    }
+
+    private static boolean reached(AtomicLong counter, int limit) {
+        return limit > 0 && counter.get() >= limit;
+    }
+
+    private static void add(Map<CounterKey, AtomicLong> counters, String employeeId, String resourceId, int day) {
+        counter(counters, employeeId, resourceId, day).incrementAndGet();
+        counter(counters, employeeId, resourceId, WEEK_TOTAL).incrementAndGet();
+    }
+
+    private static final class CounterKey {
+        private final String employeeId;
+        private final String resourceId;
+        private final int day;
+
+        CounterKey(String employeeId, String resourceId, int day) {
+            this.employeeId = employeeId;
+            this.resourceId = resourceId;
+            this.day = day;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CounterKey)) return false;
+            CounterKey other = (CounterKey) o;
+            return day == other.day
+                    && employeeId.equals(other.employeeId)
+                    && Objects.equals(resourceId, other.resourceId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * employeeId.hashCode() + Objects.hashCode(resourceId)) + day;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package acs.cache;
+
+import acs.domain.Badge;
+import acs.domain.BadgeUpdateWindow;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 徽章代码索引：代码 → 徽章ID，用于读卡器按读取到的代码识别徽章。
+ *
+ * 设计原则：
+ * - 当前代码一次哈希查找即可解析到徽章，不查询数据库
+ * - 徽章写入缓存时与上次登记的代码比较；代码已轮换时旧代码立即失效，移入宽限表
+ * - 宽限表保留旧代码到旧代码的更新截止日期，只用于识别"已被替换的代码"并给出明确的拒绝原因，不会放行
+ * - 宽限期过后由调度检查清理，旧代码之后视为未知代码
+ * - 每次刷卡都会解析代码：代码表使用 ConcurrentHashMap，resolve 不加锁，读卡器之间互不阻塞；
+ *   写操作（登记、删除、重建、清理）之间仍串行，重建时整体替换代码表，解析不会看到清空后的中间状态
+ */
+public class BadgeCodeIndex {
+
+    /**
+     * 代码解析结果的状态。
+     */
+    public enum CodeStatus {
+        // 徽章的当前代码
+        CURRENT,
+        // 已被轮换替换的旧代码（宽限期内）
+        SUPERSEDED,
+        // 未知代码
+        UNKNOWN
+    }
+
+    /**
+     * 代码解析结果；UNKNOWN 时 badgeId 为null。
+     */
+    public static final class Resolution {
+        private static final Resolution UNKNOWN = new Resolution(CodeStatus.UNKNOWN, null);
+
+        private final CodeStatus status;
+        private final String badgeId;
+
+        private Resolution(CodeStatus status, String badgeId) {
+            this.status = status;
+            this.badgeId = badgeId;
+        }
+
+        public CodeStatus getStatus() {
+            return status;
+        }
+
+        public String getBadgeId() {
+            return badgeId;
+        }
+    }
+
+    // 读卡器无锁读取的两张代码表；registrationByBadge 只在写操作（持有监视器）中访问
+    private volatile Map<String, String> badgeIdByCode = new ConcurrentHashMap<>();
+    private final Map<String, Superseded> supersededByCode = new ConcurrentHashMap<>();
+    private final Map<String, Registration> registrationByBadge = new HashMap<>();
+
+    /**
+     * 登记徽章的当前代码；代码与上次登记的不同时，上次的代码移入宽限表。
+     */
+    public synchronized void update(Badge badge) {
+        register(badgeIdByCode, badge);
+    }
+
+    private void register(Map<String, String> codes, Badge badge) {
+        if (badge == null || badge.getBadgeId() == null) {
+            return;
+        }
+        String code = badge.getBadgeCode();
+        Registration previous = registrationByBadge.get(badge.getBadgeId());
+        if (previous != null && !previous.code.equals(code)) {
+            retire(codes, badge.getBadgeId(), previous);
+        }
+        if (code == null) {
+            registrationByBadge.remove(badge.getBadgeId());
+            return;
+        }
+        codes.put(code, badge.getBadgeId());
+        supersededByCode.remove(code);
+        registrationByBadge.put(badge.getBadgeId(), new Registration(code, BadgeUpdateWindow.of(badge).getUpdateDueDate()));
+    }
+
+    /**
+     * 删除徽章：当前代码和宽限表中的旧代码一并失效。
+     */
+    public synchronized void remove(String badgeId) {
+        Registration previous = registrationByBadge.remove(badgeId);
+        if (previous != null) {
+            badgeIdByCode.remove(previous.code, badgeId);
+        }
+        supersededByCode.values().removeIf(superseded -> superseded.badgeId.equals(badgeId));
+    }
+
+    /**
+     * 从完整的徽章集合重建当前代码（宽限表保留）。
+     */
+    public synchronized void reset(Collection<Badge> badges) {
+        Map<String, String> codes = new ConcurrentHashMap<>();
+        registrationByBadge.clear();
+        badges.forEach(badge -> register(codes, badge));
+        badgeIdByCode = codes;
+    }
+
+    /**
+     * 解析读卡器读到的代码；不加锁，可由多个读卡器线程并发调用。
+     */
+    public Resolution resolve(String code) {
+        if (code == null) {
+            return Resolution.UNKNOWN;
+        }
+        String badgeId = badgeIdByCode.get(code);
+        if (badgeId != null) {
+            return new Resolution(CodeStatus.CURRENT, badgeId);
+        }
+        Superseded superseded = supersededByCode.get(code);
+        return superseded != null ? new Resolution(CodeStatus.SUPERSEDED, superseded.badgeId) : Resolution.UNKNOWN;
+    }
+
+    /**
+     * 清理宽限期已过的旧代码，返回清理的数量。
+     */
+    public synchronized int removeExpiredGrace(LocalDate today) {
+        int removed = 0;
+        Iterator<Superseded> iterator = supersededByCode.values().iterator();
+        while (iterator.hasNext()) {
+            if (today.isAfter(iterator.next().graceUntil)) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        return badgeIdByCode.size();
+    }
+
+    public int supersededSize() {
+        return supersededByCode.size();
+    }
+
+    // 先登记到宽限表再从当前代码表移除，并发解析看到的是 CURRENT 或 SUPERSEDED，不会是 UNKNOWN
+    private void retire(Map<String, String> codes, String badgeId, Registration previous) {
+        if (previous.graceUntil != null) {
+            supersededByCode.put(previous.code, new Superseded(badgeId, previous.graceUntil));
+        }
+        codes.remove(previous.code, badgeId);
+    }
+
+    private static final class Registration {
+        private final String code;
+        // 代码的更新截止日期，轮换后旧代码保留到该日期
+        private final LocalDate graceUntil;
+
+        private Registration(String code, LocalDate graceUntil) {
+            this.code = code;
+            this.graceUntil = graceUntil;
+        }
+    }
+
+    private static final class Superseded {
+        private final String badgeId;
+        private final LocalDate graceUntil;
+
+        private Superseded(String badgeId, LocalDate graceUntil) {
+            this.badgeId = badgeId;
+            this.graceUntil = graceUntil;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package acs.cache;
+
+import acs.domain.Badge;
+import acs.domain.BadgeStatus;
+import acs.domain.BadgeUpdateWindow;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 徽章到期索引：按日期排序的优先队列，键为每个徽章下一次状态变化的日期。
+ *
+ * 设计原则：
+ * - 状态变化日期包括：开始提醒日（代码过期前若干天）、需要更新日（过期后一天）和逾期日（更新截止后一天）
+ * - 徽章写入缓存时重新计算并入队，调度只取出已到期的徽章，不再全量扫描
+ * - 旧的队列项不主动删除：出队时与徽章当前登记的日期不一致即视为过期项丢弃
+ * - 只登记晚于最近一次出队日期的变化日期；已处理过的变化不会再次入队
+ */
+public class BadgeExpiryIndex {
+
+    // 代码过期前开始提醒的天数
+    public static final int DAYS_BEFORE_EXPIRY_TO_NOTIFY = 30;
+
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    private final Map<String, LocalDate> scheduled = new HashMap<>();
+    // 最近一次出队的日期；此前的变化日期已处理
+    private LocalDate processedThrough = LocalDate.MIN;
+
+    /**
+     * 根据徽章当前字段重新登记下一次状态变化日期（没有后续变化时移除登记）。
+     */
+    public synchronized void schedule(Badge badge) {
+        if (badge == null || badge.getBadgeId() == null) {
+            return;
+        }
+        LocalDate next = nextTransition(badge, processedThrough);
+        if (next == null) {
+            scheduled.remove(badge.getBadgeId());
+            return;
+        }
+        LocalDate previous = scheduled.put(badge.getBadgeId(), next);
+        if (!next.equals(previous)) {
+            queue.add(new Entry(next, badge.getBadgeId()));
+        }
+    }
+
+    public synchronized void remove(String badgeId) {
+        scheduled.remove(badgeId);
+    }
+
+    /**
+     * 从完整的徽章集合重建索引，保留已处理日期。
+     */
+    public synchronized void reset(Collection<Badge> badges) {
+        queue.clear();
+        scheduled.clear();
+        badges.forEach(this::schedule);
+    }
+
+    /**
+     * 取出状态变化日期不晚于 today 的徽章ID；取出后不再登记，处理方写回徽章时会重新登记下一次变化。
+     */
+    public synchronized List<String> pollDue(LocalDate today) {
+        List<String> due = new ArrayList<>();
+        while (!queue.isEmpty() && !queue.peek().date.isAfter(today)) {
+            Entry entry = queue.poll();
+            if (entry.date.equals(scheduled.get(entry.badgeId))) {
+                scheduled.remove(entry.badgeId);
+                due.add(entry.badgeId);
+            }
+        }
+        processedThrough = today;
+        return due;
+    }
+
+    /**
+     * 下一个到期日期，没有登记时返回null。
+     */
+    public synchronized LocalDate nextDueDate() {
+        while (!queue.isEmpty()) {
+            Entry head = queue.peek();
+            if (head.date.equals(scheduled.get(head.badgeId))) {
+                return head.date;
+            }
+            queue.poll();
+        }
+        return null;
+    }
+
+    public synchronized int size() {
+        return scheduled.size();
+    }
+
+    // 晚于 after 的最早状态变化日期
+    static LocalDate nextTransition(Badge badge, LocalDate after) {
+        if (badge.getStatus() != BadgeStatus.ACTIVE || badge.getCodeExpirationDate() == null) {
+            return null;
+        }
+        LocalDate next = BadgeUpdateWindow.of(badge).validUntil(after);
+        LocalDate notifyFrom = badge.getCodeExpirationDate().minusDays(DAYS_BEFORE_EXPIRY_TO_NOTIFY);
+        if (notifyFrom.isAfter(after) && (next == null || notifyFrom.isBefore(next))) {
+            next = notifyFrom;
+        }
+        return next;
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final LocalDate date;
+        private final String badgeId;
+
+        private Entry(LocalDate date, String badgeId) {
+            this.date = date;
+            this.badgeId = badgeId;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byDate = date.compareTo(other.date);
+            return byDate != 0 ? byDate : badgeId.compareTo(other.badgeId);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package acs.cache;
+
+import acs.domain.Badge;
+import acs.domain.Employee;
+import acs.domain.Group;
+import acs.domain.Profile;
+import acs.repository.ProfileRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 有效配置文件解析器：计算员工/徽章当前生效的配置文件列表（按优先级排序）。
+ *
+ * 设计原则：
+ * - 启动时一次性加载所有激活的配置文件及其组/员工/徽章关联（4条查询）
+ * - 每个员工的解析结果缓存在内存中，访问决策不再访问数据库
+ * - 配置文件或关联变化时调用 refresh()；员工组成员变化时调用 invalidateEmployee()
+ * - 缓存结果记录全局代数和员工版本号，失效前开始的解析即使写回也不会再被使用
+ * - 返回的列表不可修改，调用方可直接取 get(0) 作为最高优先级配置文件
+ * - 关联变化或缓存失效后通知变更监听器（例如重建策略快照）
+ */
+@Component
+public class EffectiveProfileResolver {
+
+    // priorityLevel越小优先级越高，未设置的排在最后
+    private static final Comparator<Profile> PRIORITY_ORDER = Comparator.comparing(
+            Profile::getPriorityLevel, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final ProfileRepository profileRepository;
+
+    private volatile Assignments assignments = Assignments.EMPTY;
+    private final AtomicLong generation = new AtomicLong(0);
+    private final Map<String, Resolved> resolvedByEmployee = new ConcurrentHashMap<>();
+    // 每个员工被单独失效的次数；只在 invalidateEmployee 时增加，条目数不超过员工数
+    private final Map<String, Long> employeeVersions = new ConcurrentHashMap<>();
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+
+    public EffectiveProfileResolver(ProfileRepository profileRepository) {
+        this.profileRepository = profileRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        refresh();
+    }
+
+    /**
+     * 解析员工（及其使用的徽章）当前生效的配置文件，按优先级升序排列。
+     */
+    public List<Profile> resolve(Employee employee, Badge badge) {
+        if (employee == null || employee.getEmployeeId() == null) {
+            return compute(employee, badge);
+        }
+        String badgeId = badge != null ? badge.getBadgeId() : null;
+        // 先读版本再计算：计算期间发生的失效会让写回的结果版本过旧，下次访问时重新解析
+        long currentGeneration = generation.get();
+        long employeeVersion = employeeVersions.getOrDefault(employee.getEmployeeId(), 0L);
+        Resolved cached = resolvedByEmployee.get(employee.getEmployeeId());
+        if (cached != null && cached.generation == currentGeneration && cached.employeeVersion == employeeVersion
+                && Objects.equals(cached.badgeId, badgeId)) {
+            return cached.profiles;
+        }
+        List<Profile> profiles = compute(employee, badge);
+        resolvedByEmployee.put(employee.getEmployeeId(),
+                new Resolved(badgeId, currentGeneration, employeeVersion, profiles));
+        return profiles;
+    }
+
+    /**
+     * 返回最高优先级的配置文件，没有生效配置文件时返回null。
+     */
+    public Profile resolveHighestPriority(Employee employee, Badge badge) {
+        List<Profile> profiles = resolve(employee, badge);
+        return profiles.isEmpty() ? null : profiles.get(0);
+    }
+
+    /**
+     * 重新加载配置文件及其关联（配置文件、组关联、员工/徽章关联变化后调用）。
+     */
+    public synchronized void refresh() {
+        Map<String, Profile> profilesById = new HashMap<>();
+        for (Profile profile : profileRepository.findAllActiveWithTimeFilters()) {
+            profilesById.put(profile.getProfileId(), profile);
+        }
+        assignments = new Assignments(
+                profilesById,
+                groupBy(profileRepository.findActiveGroupAssignments(), profilesById),
+                groupBy(profileRepository.findActiveEmployeeAssignments(), profilesById),
+                groupBy(profileRepository.findActiveBadgeAssignments(), profilesById));
+        generation.incrementAndGet();
+        resolvedByEmployee.clear();
+        fireChanged();
+    }
+
+    /**
+     * 员工的组成员关系或徽章变化后调用，下次访问时重新解析。
+     */
+    public void invalidateEmployee(String employeeId) {
+        if (employeeId != null) {
+            employeeVersions.merge(employeeId, 1L, Long::sum);
+            resolvedByEmployee.remove(employeeId);
+            fireChanged();
+        }
+    }
+
+    /**
+     * 组变化后调用：不重新加载关联，只让所有已解析结果失效。
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        resolvedByEmployee.clear();
+        fireChanged();
+    }
+
+    /**
+     * 注册变更监听器，在 refresh / invalidate 之后同步调用（监听器应尽快返回）。
+     */
+    public void addChangeListener(Runnable listener) {
+        if (listener != null) {
+            changeListeners.add(listener);
+        }
+    }
+
+    private void fireChanged() {
+        for (Runnable listener : changeListeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                System.err.println("Profile change listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public int getProfileCount() {
+        return assignments.profilesById.size();
+    }
+
+    public int getResolvedCount() {
+        return resolvedByEmployee.size();
+    }
+
+    private List<Profile> compute(Employee employee, Badge badge) {
+        Assignments current = assignments;
+        Map<String, Profile> collected = new LinkedHashMap<>();
+        if (employee != null && employee.getGroups() != null) {
+            for (Group group : employee.getGroups()) {
+                if (group != null) {
+                    addAll(collected, current.byGroup.get(group.getGroupId()));
+                }
+            }
+        }
+        if (employee != null) {
+            addAll(collected, current.byEmployee.get(employee.getEmployeeId()));
+        }
+        if (badge != null) {
+            addAll(collected, current.byBadge.get(badge.getBadgeId()));
+        }
+        if (collected.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Profile> profiles = new ArrayList<>(collected.values());
+        profiles.sort(PRIORITY_ORDER);
+        return Collections.unmodifiableList(profiles);
+    }
+
+    private static void addAll(Map<String, Profile> collected, List<Profile> profiles) {
+        if (profiles == null) {
+            return;
+        }
+        for (Profile profile : profiles) {
+            collected.putIfAbsent(profile.getProfileId(), profile);
+        }
+    }
+
+    private static Map<String, List<Profile>> groupBy(List<Object[]> rows, Map<String, Profile> profilesById) {
+        Map<String, List<Profile>> result = new HashMap<>();
+        for (Object[] row : rows) {
+            Profile profile = profilesById.get((String) row[0]);
+            if (profile != null && row[1] != null) {
+                result.computeIfAbsent((String) row[1], key -> new ArrayList<>()).add(profile);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 不可变的关联快照，整体替换以保证读取一致性。
+     */
+    private static final class Assignments {
+        static final Assignments EMPTY = new Assignments(Map.of(), Map.of(), Map.of(), Map.of());
+
+        final Map<String, Profile> profilesById;
+        final Map<String, List<Profile>> byGroup;
+        final Map<String, List<Profile>> byEmployee;
+        final Map<String, List<Profile>> byBadge;
+
+        Assignments(Map<String, Profile> profilesById,
+                    Map<String, List<Profile>> byGroup,
+                    Map<String, List<Profile>> byEmployee,
+                    Map<String, List<Profile>> byBadge) {
+            this.profilesById = profilesById;
+            this.byGroup = byGroup;
+            this.byEmployee = byEmployee;
+            this.byBadge = byBadge;
+        }
+    }
+
+    private static final class Resolved {
+        final String badgeId;
+        final long generation;
+        final long employeeVersion;
+        final List<Profile> profiles;
+
+        Resolved(String badgeId, long generation, long employeeVersion, List<Profile> profiles) {
+            this.badgeId = badgeId;
+            this.generation = generation;
+            this.employeeVersion = employeeVersion;
+            this.profiles = profiles;
+        }
+    }
+}
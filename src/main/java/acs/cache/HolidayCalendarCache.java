@@ -0,0 +1,97 @@
+package acs.cache;
+
+import acs.domain.Holiday;
+import acs.domain.HolidayCalendar;
+import acs.repository.HolidayRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 命名节假日日历的注册表，供时间规则编译时按名称查找。
+ *
+ * 设计原则：
+ * - 启动时从 holidays 表一次性加载，日历名称不区分大小写
+ * - 每个名称只有一个 HolidayCalendar 实例；refresh 只替换其日期数据，已编译的规则无需重新编译
+ * - 规则引用尚未定义的日历时先注册一个空日历，之后加载的日期对其立即生效
+ */
+@Component
+public class HolidayCalendarCache {
+
+    private final HolidayRepository holidayRepository;
+
+    private final Map<String, HolidayCalendar> calendars = new ConcurrentHashMap<>();
+
+    public HolidayCalendarCache(HolidayRepository holidayRepository) {
+        this.holidayRepository = holidayRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            System.err.println("Failed to load holiday calendars: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 从数据库重新加载全部日历；数据库中已不存在的日历清空为无日期。
+     */
+    public synchronized void refresh() {
+        Map<String, List<LocalDate>> datesByCalendar = new HashMap<>();
+        for (Holiday holiday : holidayRepository.findAll()) {
+            if (holiday.getCalendarName() == null || holiday.getHolidayDate() == null) {
+                continue;
+            }
+            datesByCalendar.computeIfAbsent(normalize(holiday.getCalendarName()), k -> new ArrayList<>())
+                    .add(holiday.getHolidayDate());
+        }
+        for (Map.Entry<String, HolidayCalendar> entry : calendars.entrySet()) {
+            if (!datesByCalendar.containsKey(entry.getKey())) {
+                entry.getValue().reload(null);
+            }
+        }
+        datesByCalendar.forEach((name, dates) -> getCalendar(name).reload(dates));
+    }
+
+    /**
+     * 只在内存中替换某个日历的日期（不写数据库）。
+     */
+    public void put(String calendarName, Collection<LocalDate> dates) {
+        getCalendar(calendarName).reload(dates);
+    }
+
+    /**
+     * 按名称获取日历，不存在时注册一个空日历。
+     */
+    public HolidayCalendar getCalendar(String calendarName) {
+        if (calendarName == null || calendarName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Holiday calendar name is empty");
+        }
+        return calendars.computeIfAbsent(normalize(calendarName), HolidayCalendar::new);
+    }
+
+    public boolean isHoliday(String calendarName, LocalDate date) {
+        HolidayCalendar calendar = calendars.get(normalize(calendarName));
+        return calendar != null && calendar.isHoliday(date);
+    }
+
+    public Set<String> getCalendarNames() {
+        return new TreeSet<>(calendars.keySet());
+    }
+
+    private static String normalize(String calendarName) {
+        return calendarName == null ? "" : calendarName.trim().toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,79 @@
+package acs.cache;
+
+import acs.domain.AccessDecision;
+import acs.domain.LogEntry;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 最近放行时间索引：(员工, 资源) → 最近一次 ALLOW 的访问时间，用于资源依赖（先决访问）检查。
+ *
+ * 设计原则：
+ * - 与日志缓存同步维护：每条放行日志进入缓存时更新，检查只需一次查表和一次时间比较
+ * - 只保留最近一次放行时间（取较晚者），与日志写入的先后顺序无关
+ * - 日志被修改或删除时由 LocalCacheManager 从日志缓存整体重建；过期日志清理时同步裁剪
+ */
+public class LastAccessIndex {
+
+    private volatile Map<String, Map<String, LocalDateTime>> lastAllowByEmployee = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一条日志；只有关联了员工和资源的放行日志会更新索引。
+     */
+    public void record(LogEntry log) {
+        record(lastAllowByEmployee, log);
+    }
+
+    /**
+     * 从完整的日志集合重建索引。
+     */
+    public void reset(Collection<LogEntry> logs) {
+        Map<String, Map<String, LocalDateTime>> rebuilt = new ConcurrentHashMap<>();
+        for (LogEntry log : logs) {
+            record(rebuilt, log);
+        }
+        lastAllowByEmployee = rebuilt;
+    }
+
+    /**
+     * 员工最近一次被允许访问该资源的时间，没有记录时返回null。
+     */
+    public LocalDateTime lastAllowed(String employeeId, String resourceId) {
+        if (employeeId == null || resourceId == null) {
+            return null;
+        }
+        Map<String, LocalDateTime> byResource = lastAllowByEmployee.get(employeeId);
+        return byResource != null ? byResource.get(resourceId) : null;
+    }
+
+    /**
+     * 删除早于截止时间的记录（对应的日志已从缓存中清理）。
+     */
+    public void removeBefore(LocalDateTime cutoff) {
+        Map<String, Map<String, LocalDateTime>> current = lastAllowByEmployee;
+        current.values().forEach(byResource -> byResource.values().removeIf(time -> time.isBefore(cutoff)));
+        current.values().removeIf(Map::isEmpty);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<String, LocalDateTime> byResource : lastAllowByEmployee.values()) {
+            size += byResource.size();
+        }
+        return size;
+    }
+
+    private static void record(Map<String, Map<String, LocalDateTime>> index, LogEntry log) {
+        if (log == null || log.getDecision() != AccessDecision.ALLOW || log.getTimestamp() == null
+                || log.getEmployee() == null || log.getEmployee().getEmployeeId() == null
+                || log.getResource() == null || log.getResource().getResourceId() == null) {
+            return;
+        }
+        index.computeIfAbsent(log.getEmployee().getEmployeeId(), id -> new ConcurrentHashMap<>())
+                .merge(log.getResource().getResourceId(), log.getTimestamp(),
+                        (current, time) -> time.isAfter(current) ? time : current);
+    }
+}
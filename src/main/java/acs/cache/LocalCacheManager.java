@@ -1,5 +1,6 @@
 package acs.cache;
 
+import acs.domain.AccessDecision;
 import acs.domain.Badge;
 import acs.domain.Employee;
 import acs.domain.Group;
@@ -14,16 +15,18 @@ import jakarta.annotation.PostConstruct;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Collections;
 import java.util.stream.Collectors;
 
 @Component
@@ -34,7 +37,13 @@ public class LocalCacheManager {
     private final Map<String, Employee> employeeCache = new ConcurrentHashMap<>();
     private final Map<String, Group> groupCache = new ConcurrentHashMap<>();
     private final Map<String, Resource> resourceCache = new ConcurrentHashMap<>();
-    private final List<LogEntry> logCache = new CopyOnWriteArrayList<>();  // 日志缓存（有序列表）
+    private final SegmentedLogStore logCache = new SegmentedLogStore();  // 日志缓存（按时间有序的分段存储）
+    private final PermissionIndex permissionIndex = new PermissionIndex();  // 员工→资源权限位图
+    private final LastAccessIndex lastAccessIndex = new LastAccessIndex();  // (员工, 资源)→最近放行时间
+    private final BadgeExpiryIndex badgeExpiryIndex = new BadgeExpiryIndex();  // 徽章下一次更新状态变化日期
+    private final BadgeCodeIndex badgeCodeIndex = new BadgeCodeIndex();  // 徽章代码→徽章ID（含已轮换旧代码的宽限表）
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();  // 实体缓存变更监听器（不含日志）
+    private final ThreadLocal<ChangeBatch> changeBatch = ThreadLocal.withInitial(ChangeBatch::new);  // 当前线程的批量变更
 
     // 缓存性能统计
     private final AtomicLong badgeCacheHits = new AtomicLong(0);
@@ -53,17 +62,21 @@ public class LocalCacheManager {
     private final ResourceRepository resourceRepository;
     // 注入日志Repository
     private final AccessLogRepository accessLogRepository;
+    // 有效配置文件解析器（随员工/组变化失效）
+    private final EffectiveProfileResolver profileResolver;
 
     public LocalCacheManager(BadgeRepository badgeRepository,
                             EmployeeRepository employeeRepository,
                             GroupRepository groupRepository,
                             ResourceRepository resourceRepository,
-                            AccessLogRepository accessLogRepository) {
+                            AccessLogRepository accessLogRepository,
+                            EffectiveProfileResolver profileResolver) {
         this.badgeRepository = badgeRepository;
         this.employeeRepository = employeeRepository;
         this.groupRepository = groupRepository;
         this.resourceRepository = resourceRepository;
         this.accessLogRepository = accessLogRepository; // 初始化日志Repository
+        this.profileResolver = profileResolver;
     }
 
     // 初始化缓存，应用启动时执行
@@ -73,6 +86,7 @@ public class LocalCacheManager {
         loadEmployees();
         loadGroups();
         loadResources();
+        rebuildPermissionIndex();
         loadLogs(); 
         // 日志输出
         System.out.println("Cache initialized - badges: " + badgeCache.size()
@@ -86,6 +100,8 @@ public class LocalCacheManager {
     private void loadBadges() {
         badgeCache.clear();
         badgeRepository.findAll().forEach(badge -> badgeCache.put(badge.getBadgeId(), badge));
+        badgeExpiryIndex.reset(badgeCache.values());
+        badgeCodeIndex.reset(badgeCache.values());
     }
 
     // 从数据库加载所有员工到缓存（包含组和资源关联）
@@ -106,15 +122,20 @@ public class LocalCacheManager {
         resourceRepository.findAll().forEach(resource -> resourceCache.put(resource.getResourceId(), resource));
     }
 
+    // 根据已加载的员工和组重建权限位图
+    private void rebuildPermissionIndex() {
+        permissionIndex.rebuild(employeeCache.values(), groupCache.values());
+    }
+
     // 从数据库加载所有日志到本地缓存
     private void loadLogs() {
-        logCache.clear();
         // 从数据库查询所有日志，按创建时间排序后存入缓存
         List<LogEntry> allLogs = accessLogRepository.findAll();
         List<LogEntry> sortedLogs = allLogs.stream()
                 .sorted(Comparator.comparing(LogEntry::getTimestamp))  // 按时间升序（从早到晚）
                 .collect(Collectors.toList());
-        logCache.addAll(sortedLogs);
+        logCache.reset(sortedLogs);
+        lastAccessIndex.reset(sortedLogs);
     }
 
     // 缓存操作方法
@@ -128,6 +149,22 @@ public class LocalCacheManager {
         return badge;
     }
 
+    // 按读卡器读取到的代码解析徽章（一次哈希查找）；已轮换的旧代码解析为 SUPERSEDED，不对应任何徽章
+    public BadgeCodeIndex.Resolution resolveBadgeCode(String badgeCode) {
+        return badgeCodeIndex.resolve(badgeCode);
+    }
+
+    // 当前代码对应的徽章，旧代码或未知代码返回null
+    public Badge getBadgeByCode(String badgeCode) {
+        BadgeCodeIndex.Resolution resolution = badgeCodeIndex.resolve(badgeCode);
+        return resolution.getStatus() == BadgeCodeIndex.CodeStatus.CURRENT ? getBadge(resolution.getBadgeId()) : null;
+    }
+
+    // 清理宽限期已过的旧徽章代码
+    public int removeExpiredBadgeCodeGrace(LocalDate today) {
+        return badgeCodeIndex.removeExpiredGrace(today);
+    }
+
     public Employee getEmployee(String employeeId) {
         Employee employee = employeeCache.get(employeeId);
         if (employee != null) {
@@ -158,9 +195,47 @@ public class LocalCacheManager {
         return resource;
     }
 
-    // 获取有序日志列表（返回不可修改集合，防止外部篡改顺序）
+    // 判断员工所属组是否授权访问该资源（权限位图查询，不遍历组和资源集合）
+    public boolean hasPermission(String employeeId, String resourceId) {
+        return permissionIndex.hasPermission(employeeId, resourceId);
+    }
+
+    // 获取有序日志列表（返回不可修改的快照，防止外部篡改顺序）
     public List<LogEntry> getLogs() {
-        return Collections.unmodifiableList(logCache);
+        return logCache.snapshot();
+    }
+
+    // 按徽章/员工/资源/决策查询时间在[start, end]内的日志（倒排列表 + 二分查找，start/end为null表示不限制）
+    public List<LogEntry> getLogsByBadge(String badgeId, LocalDateTime start, LocalDateTime end) {
+        return logCache.findByBadge(badgeId, start, end);
+    }
+
+    public List<LogEntry> getLogsByEmployee(String employeeId, LocalDateTime start, LocalDateTime end) {
+        return logCache.findByEmployee(employeeId, start, end);
+    }
+
+    // 员工在[start, end]内是否被允许访问过该资源（先决访问检查）：通常只需查最近放行时间
+    public boolean hasAllowedAccess(String employeeId, String resourceId, LocalDateTime start, LocalDateTime end) {
+        LocalDateTime last = lastAccessIndex.lastAllowed(employeeId, resourceId);
+        if (last == null) {
+            return false;
+        }
+        if (!last.isAfter(end)) {
+            return !last.isBefore(start);
+        }
+        // 最近一次放行晚于查询上界（按较早的时间回放或补录的请求）：退回按时间范围查询日志
+        return logCache.findByEmployee(employeeId, start, end).stream()
+                .anyMatch(log -> log.getDecision() == AccessDecision.ALLOW
+                        && log.getResource() != null
+                        && resourceId.equals(log.getResource().getResourceId()));
+    }
+
+    public List<LogEntry> getLogsByResource(String resourceId, LocalDateTime start, LocalDateTime end) {
+        return logCache.findByResource(resourceId, start, end);
+    }
+
+    public List<LogEntry> getLogsByDecision(AccessDecision decision, LocalDateTime start, LocalDateTime end) {
+        return logCache.findByDecision(decision, start, end);
     }
 
     // 更新缓存中的徽章
@@ -168,6 +243,22 @@ public class LocalCacheManager {
     public void updateBadge(Badge badge) {
         badgeRepository.save(badge);
         badgeCache.put(badge.getBadgeId(), badge);
+        badgeExpiryIndex.schedule(badge);
+        badgeCodeIndex.update(badge);
+        fireChanged();
+    }
+
+    // 把调用方已批量写入数据库的徽章放入缓存（不再逐个保存），全部放入后只通知一次变更
+    public void applyPersistedBadges(Collection<Badge> badges) {
+        if (badges.isEmpty()) {
+            return;
+        }
+        for (Badge badge : badges) {
+            badgeCache.put(badge.getBadgeId(), badge);
+            badgeExpiryIndex.schedule(badge);
+            badgeCodeIndex.update(badge);
+        }
+        fireChanged();
     }
 
     // 更新缓存中的员工
@@ -190,6 +281,9 @@ public class LocalCacheManager {
         }
         employeeRepository.save(employee);
         employeeCache.put(employee.getEmployeeId(), employee);
+        permissionIndex.updateEmployee(employee);
+        profileResolver.invalidateEmployee(employee.getEmployeeId());
+        fireChanged();
     }
 
     // 更新缓存中的组
@@ -197,6 +291,9 @@ public class LocalCacheManager {
     public void updateGroup(Group group) {
         groupRepository.save(group);
         groupCache.put(group.getGroupId(), group);
+        permissionIndex.updateGroup(group);
+        profileResolver.invalidateAll();
+        fireChanged();
     }
 
     // 更新缓存中的资源
@@ -204,18 +301,37 @@ public class LocalCacheManager {
     public void updateResource(Resource resource) {
         resourceRepository.save(resource);
         resourceCache.put(resource.getResourceId(), resource);
+        fireChanged();
+    }
+
+    // 只追加到日志缓存，不写数据库（数据库由异步日志写入器批量写入）
+    public void appendLog(LogEntry log) {
+        logCache.append(log);
+        lastAccessIndex.record(log);
+    }
+
+    // 批量追加到日志缓存（批量访问决策使用），不写数据库
+    public void appendLogs(List<LogEntry> logs) {
+        logCache.appendAll(logs);
+        logs.forEach(lastAccessIndex::record);
+    }
+
+    // 异步日志写入器回填数据库ID后调用，登记这些ID以便按ID删除或替换
+    public void onLogsPersisted(List<LogEntry> logs) {
+        logCache.trackIds(logs);
     }
 
-    // 更新日志缓存（新增或修改日志后重新排序）
+    // 更新日志缓存（新增日志按时间有序追加，修改已有日志时替换旧记录）
     @Transactional
     public void updateLog(LogEntry log) {
         // 先同步到数据库
         accessLogRepository.save(log);
-        // 更新缓存：先移除旧记录（若存在）
-        logCache.removeIf(existingLog -> existingLog.getId().equals(log.getId()));
-        // 添加新记录并重新排序
-        logCache.add(log);
-        logCache.sort(Comparator.comparing(LogEntry::getTimestamp));  // 保持有序
+        if (logCache.append(log)) {
+            // 修改已有日志可能撤销一次放行，从缓存重建最近放行时间
+            lastAccessIndex.reset(logCache.snapshot());
+        } else {
+            lastAccessIndex.record(log);
+        }
     }
 
     // 从缓存中删除徽章
@@ -223,6 +339,9 @@ public class LocalCacheManager {
     public void removeBadge(String badgeId) {
         badgeRepository.deleteById(badgeId);
         badgeCache.remove(badgeId);
+        badgeExpiryIndex.remove(badgeId);
+        badgeCodeIndex.remove(badgeId);
+        fireChanged();
     }
 
     // 从缓存中删除员工
@@ -230,6 +349,9 @@ public class LocalCacheManager {
     public void removeEmployee(String employeeId) {
         employeeRepository.deleteById(employeeId);
         employeeCache.remove(employeeId);
+        permissionIndex.removeEmployee(employeeId);
+        profileResolver.invalidateEmployee(employeeId);
+        fireChanged();
     }
 
     // 从缓存中删除组
@@ -237,6 +359,9 @@ public class LocalCacheManager {
     public void removeGroup(String groupId) {
         groupRepository.deleteById(groupId);
         groupCache.remove(groupId);
+        permissionIndex.removeGroup(groupId);
+        profileResolver.refresh();
+        fireChanged();
     }
 
     // 从缓存中删除资源
@@ -244,39 +369,36 @@ public class LocalCacheManager {
     public void removeResource(String resourceId) {
         resourceRepository.deleteById(resourceId);
         resourceCache.remove(resourceId);
+        permissionIndex.removeResource(resourceId);
+        fireChanged();
     }
 
     // 从缓存中删除日志
     @Transactional
     public void removeLog(Long logId) {
         accessLogRepository.deleteById(logId);
-        logCache.removeIf(log -> log.getId().equals(logId));
+        if (logCache.remove(logId)) {
+            lastAccessIndex.reset(logCache.snapshot());
+        }
     }
 
     @Transactional 
     // 清理缓存中过期的日志（7天前）
     public int clearExpiredLogs(LocalDateTime sevenDaysAgo) {
-        // 收集需要删除的日志ID
-        List<Long> idsToDelete = new ArrayList<>();
-        for (LogEntry log : logCache) {
-            if (log.getTimestamp().isBefore(sevenDaysAgo)) {
-                idsToDelete.add(log.getId());
-            }
-        }
+        // 日志按时间有序，二分查找过期日志条数
+        int expiredCount = logCache.countBefore(sevenDaysAgo);
         
         // 如果没有任何日志需要删除，直接返回0
-        if (idsToDelete.isEmpty()) {
+        if (expiredCount == 0) {
             return 0;
         }
         
         // 先删除数据库中的过期日志
         accessLogRepository.deleteByTimestampBefore(sevenDaysAgo);
         
-        // 从缓存中移除已删除的日志
-        logCache.removeIf(log -> idsToDelete.contains(log.getId()));
-        
-        // 返回实际从缓存中删除的数量
-        return idsToDelete.size();
+        // 截掉缓存中的过期前缀，返回实际从缓存中删除的数量
+        lastAccessIndex.removeBefore(sevenDaysAgo);
+        return logCache.removeBefore(sevenDaysAgo);
     }
 
     // 强制刷新所有缓存（从数据库重新加载）
@@ -285,7 +407,90 @@ public class LocalCacheManager {
         loadEmployees();
         loadGroups();
         loadResources();
-        loadLogs();
+        rebuildPermissionIndex();
+        profileResolver.refresh();
+        fireChanged();
+        // 日志缓存不重新加载：访问日志先进入缓存再异步写库，重新加载会丢失尚未落库的日志
+    }
+
+    // 全部徽章（只读视图，用于构建策略快照）
+    public Collection<Badge> getAllBadges() {
+        return Collections.unmodifiableCollection(badgeCache.values());
+    }
+
+    // 全部员工（只读视图）
+    public Collection<Employee> getAllEmployees() {
+        return Collections.unmodifiableCollection(employeeCache.values());
+    }
+
+    // 全部组（只读视图）
+    public Collection<Group> getAllGroups() {
+        return Collections.unmodifiableCollection(groupCache.values());
+    }
+
+    // 全部资源（只读视图）
+    public Collection<Resource> getAllResources() {
+        return Collections.unmodifiableCollection(resourceCache.values());
+    }
+
+    // 取出更新状态在 today 或之前发生变化的徽章（用于调度检查），并按 today 之后的下一次变化重新登记
+    public List<Badge> pollBadgesDueForUpdateCheck(LocalDate today) {
+        List<Badge> due = new ArrayList<>();
+        for (String badgeId : badgeExpiryIndex.pollDue(today)) {
+            Badge badge = badgeCache.get(badgeId);
+            if (badge != null) {
+                badgeExpiryIndex.schedule(badge);
+                due.add(badge);
+            }
+        }
+        return due;
+    }
+
+    // 下一次徽章更新状态变化的日期，没有时返回null
+    public LocalDate nextBadgeUpdateCheckDate() {
+        return badgeExpiryIndex.nextDueDate();
+    }
+
+    // 把权限索引导出到策略快照构建器
+    public void exportPermissions(PolicySnapshot.Builder builder) {
+        permissionIndex.exportTo(builder);
+    }
+
+    // 注册实体缓存变更监听器：徽章/员工/组/资源更新、删除或全量刷新后同步调用（批量变更中只在结束时调用一次）
+    public void addChangeListener(Runnable listener) {
+        if (listener != null) {
+            changeListeners.add(listener);
+        }
+    }
+
+    // 批量变更：changes 中的多次更新/删除只在最外层批量结束时通知一次监听器（可以嵌套）
+    public void batchChanges(Runnable changes) {
+        ChangeBatch batch = changeBatch.get();
+        batch.depth++;
+        try {
+            changes.run();
+        } finally {
+            batch.depth--;
+            if (batch.depth == 0 && batch.changed) {
+                batch.changed = false;
+                fireChanged();
+            }
+        }
+    }
+
+    private void fireChanged() {
+        ChangeBatch batch = changeBatch.get();
+        if (batch.depth > 0) {
+            batch.changed = true;
+            return;
+        }
+        for (Runnable listener : changeListeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                System.err.println("Cache change listener failed: " + e.getMessage());
+            }
+        }
     }
 
     // 获取缓存性能统计信息
@@ -319,7 +524,19 @@ public class LocalCacheManager {
         stats.put("groupCacheSize", groupCache.size());
         stats.put("resourceCacheSize", resourceCache.size());
         stats.put("logCacheSize", logCache.size());
+        stats.put("lastAccessEntries", lastAccessIndex.size());
+        stats.put("badgeExpiryEntries", badgeExpiryIndex.size());
+        stats.put("badgeCodeEntries", badgeCodeIndex.size());
+        stats.put("supersededBadgeCodes", badgeCodeIndex.supersededSize());
+        stats.put("permissionIndexEmployees", permissionIndex.getEmployeeCount());
+        stats.put("permissionIndexResources", permissionIndex.getResourceCount());
+        stats.put("resolvedProfileEntries", profileResolver.getResolvedCount());
         
         return stats;
     }
+
+    private static final class ChangeBatch {
+        private int depth;
+        private boolean changed;
+    }
 }
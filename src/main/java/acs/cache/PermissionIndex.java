@@ -0,0 +1,206 @@
+package acs.cache;
+
+import acs.domain.Employee;
+import acs.domain.Group;
+import acs.domain.Resource;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 编译后的权限索引：员工 → 可访问资源的位图。
+ *
+ * 设计原则：
+ * - 每个资源分配一个稠密整数ID（只增不减，删除的资源ID不复用）
+ * - 每个组持有一个资源位图，每个员工的位图 = 其所属组位图的并集
+ * - 位图发布后不再修改（写入时复制），读取方无需加锁
+ * - 组或成员关系变化时只重算受影响的员工
+ */
+public class PermissionIndex {
+
+    private final Map<String, Integer> resourceIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextResourceId = new AtomicInteger(0);
+
+    private final Map<String, BitSet> groupBits = new ConcurrentHashMap<>();
+    private final Map<String, BitSet> employeeBits = new ConcurrentHashMap<>();
+
+    // 成员关系（写路径使用，受this监视器保护）
+    private final Map<String, Set<String>> groupMembers = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> employeeGroups = new ConcurrentHashMap<>();
+
+    /**
+     * 判断员工是否有权访问资源（单次位测试）。
+     */
+    public boolean hasPermission(String employeeId, String resourceId) {
+        if (employeeId == null || resourceId == null) {
+            return false;
+        }
+        Integer index = resourceIds.get(resourceId);
+        if (index == null) {
+            return false;
+        }
+        BitSet bits = employeeBits.get(employeeId);
+        return bits != null && bits.get(index);
+    }
+
+    /**
+     * 从完整的员工和组集合重建索引。
+     */
+    public synchronized void rebuild(Collection<Employee> employees, Collection<Group> groups) {
+        groupBits.clear();
+        employeeBits.clear();
+        groupMembers.clear();
+        employeeGroups.clear();
+        for (Group group : groups) {
+            groupBits.put(group.getGroupId(), compileGroup(group));
+        }
+        for (Employee employee : employees) {
+            indexEmployee(employee);
+        }
+    }
+
+    /**
+     * 组的资源授权变化后调用，重算该组及其成员的位图。
+     */
+    public synchronized void updateGroup(Group group) {
+        if (group == null || group.getGroupId() == null) {
+            return;
+        }
+        groupBits.put(group.getGroupId(), compileGroup(group));
+        recomputeMembers(group.getGroupId());
+    }
+
+    /**
+     * 员工的组成员关系变化后调用，只重算该员工的位图。
+     */
+    public synchronized void updateEmployee(Employee employee) {
+        if (employee == null || employee.getEmployeeId() == null) {
+            return;
+        }
+        indexEmployee(employee);
+    }
+
+    public synchronized void removeGroup(String groupId) {
+        groupBits.remove(groupId);
+        recomputeMembers(groupId);
+        Set<String> members = groupMembers.remove(groupId);
+        if (members != null) {
+            for (String employeeId : members) {
+                Set<String> groups = employeeGroups.get(employeeId);
+                if (groups != null) {
+                    groups.remove(groupId);
+                }
+            }
+        }
+    }
+
+    public synchronized void removeEmployee(String employeeId) {
+        employeeBits.remove(employeeId);
+        Set<String> groups = employeeGroups.remove(employeeId);
+        if (groups != null) {
+            for (String groupId : groups) {
+                Set<String> members = groupMembers.get(groupId);
+                if (members != null) {
+                    members.remove(employeeId);
+                }
+            }
+        }
+    }
+
+    /**
+     * 资源被删除时无需清理位图：ID不复用，hasPermission查不到资源即返回false。
+     */
+    public void removeResource(String resourceId) {
+        resourceIds.remove(resourceId);
+    }
+
+    /**
+     * 在一致的时刻把当前索引导出到策略快照构建器。
+     * 位图发布后不再修改，直接共享；组成员关系会被构建器复制。
+     */
+    public synchronized void exportTo(PolicySnapshot.Builder builder) {
+        builder.permissions(new HashMap<>(resourceIds), new HashMap<>(employeeBits), employeeGroups);
+    }
+
+    public int getResourceCount() {
+        return resourceIds.size();
+    }
+
+    public int getEmployeeCount() {
+        return employeeBits.size();
+    }
+
+    private void indexEmployee(Employee employee) {
+        String employeeId = employee.getEmployeeId();
+        Set<String> newGroups = new HashSet<>();
+        if (employee.getGroups() != null) {
+            for (Group group : employee.getGroups()) {
+                if (group != null && group.getGroupId() != null) {
+                    newGroups.add(group.getGroupId());
+                    // 组尚未被索引时（例如只随员工加载），用员工携带的组对象编译
+                    groupBits.computeIfAbsent(group.getGroupId(), id -> compileGroup(group));
+                }
+            }
+        }
+
+        Set<String> oldGroups = employeeGroups.getOrDefault(employeeId, Collections.emptySet());
+        for (String groupId : oldGroups) {
+            if (!newGroups.contains(groupId)) {
+                Set<String> members = groupMembers.get(groupId);
+                if (members != null) {
+                    members.remove(employeeId);
+                }
+            }
+        }
+        for (String groupId : newGroups) {
+            groupMembers.computeIfAbsent(groupId, id -> ConcurrentHashMap.newKeySet()).add(employeeId);
+        }
+        employeeGroups.put(employeeId, newGroups);
+        employeeBits.put(employeeId, unionOf(newGroups));
+    }
+
+    private void recomputeMembers(String groupId) {
+        Set<String> members = groupMembers.get(groupId);
+        if (members == null) {
+            return;
+        }
+        for (String employeeId : members) {
+            Set<String> groups = employeeGroups.getOrDefault(employeeId, Collections.emptySet());
+            employeeBits.put(employeeId, unionOf(groups));
+        }
+    }
+
+    private BitSet unionOf(Set<String> groupIds) {
+        BitSet bits = new BitSet(nextResourceId.get());
+        for (String groupId : groupIds) {
+            BitSet group = groupBits.get(groupId);
+            if (group != null) {
+                bits.or(group);
+            }
+        }
+        return bits;
+    }
+
+    private BitSet compileGroup(Group group) {
+        BitSet bits = new BitSet(nextResourceId.get());
+        if (group.getResources() != null) {
+            for (Resource resource : group.getResources()) {
+                if (resource != null && resource.getResourceId() != null) {
+                    bits.set(resourceIndex(resource.getResourceId()));
+                }
+            }
+        }
+        return bits;
+    }
+
+    private int resourceIndex(String resourceId) {
+        return resourceIds.computeIfAbsent(resourceId, id -> nextResourceId.getAndIncrement());
+    }
+}
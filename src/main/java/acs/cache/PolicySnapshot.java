@@ -0,0 +1,540 @@
+package acs.cache;
+
+import acs.domain.Badge;
+import acs.domain.BadgeStatus;
+import acs.domain.BadgeUpdateStatus;
+import acs.domain.BadgeUpdateWindow;
+import acs.domain.Employee;
+import acs.domain.Group;
+import acs.domain.Profile;
+import acs.domain.ProfileSchedule;
+import acs.domain.Resource;
+import acs.domain.ResourceState;
+import acs.domain.TimeFilter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 访问决策使用的不可变策略快照：徽章、员工、资源、权限、配置文件、访问限制和资源依赖。
+ *
+ * 设计原则：
+ * - 构建时把实体中决策需要的字段复制为紧凑的值对象，之后不再读取可变的 JPA 实体
+ * - 快照一经构建不再修改，由 PolicySnapshotHolder 通过一个 volatile 引用整体发布
+ * - 一次决策只读取同一个快照（同一个 epoch），不会看到管理操作进行到一半的状态
+ * - 值对象保留原实体引用（getEntity），只用于写访问日志时关联外键
+ * - 配置文件只保留编译后的时间表（ProfileSchedule），决策不再读取配置文件实体上的时间过滤器
+ */
+public final class PolicySnapshot {
+
+    public static final PolicySnapshot EMPTY = builder(0).build();
+
+    private final long epoch;
+    private final Map<String, BadgePolicy> badges;
+    private final Map<String, EmployeePolicy> employees;
+    private final Map<String, ResourcePolicy> resources;
+    private final Map<String, Integer> resourceIndex;
+    private final Map<String, BitSet> permissions;
+    private final Map<String, List<ProfilePolicy>> profilesByBadge;
+    private final Map<String, List<DependencyPolicy>> dependencies;
+
+    private PolicySnapshot(Builder builder, Map<String, BadgePolicy> badges, Map<String, EmployeePolicy> employees,
+                           Map<String, ResourcePolicy> resources, Map<String, List<ProfilePolicy>> profilesByBadge) {
+        this.epoch = builder.epoch;
+        this.badges = Collections.unmodifiableMap(badges);
+        this.employees = Collections.unmodifiableMap(employees);
+        this.resources = Collections.unmodifiableMap(resources);
+        this.resourceIndex = Collections.unmodifiableMap(new HashMap<>(builder.resourceIndex));
+        this.permissions = Collections.unmodifiableMap(new HashMap<>(builder.permissions));
+        this.profilesByBadge = Collections.unmodifiableMap(profilesByBadge);
+        Map<String, List<DependencyPolicy>> deps = new HashMap<>();
+        builder.dependencies.forEach((resourceId, list) -> deps.put(resourceId, List.copyOf(list)));
+        this.dependencies = Collections.unmodifiableMap(deps);
+    }
+
+    public static Builder builder(long epoch) {
+        return new Builder(epoch);
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public BadgePolicy badge(String badgeId) {
+        return badgeId == null ? null : badges.get(badgeId);
+    }
+
+    public EmployeePolicy employee(String employeeId) {
+        return employeeId == null ? null : employees.get(employeeId);
+    }
+
+    public ResourcePolicy resource(String resourceId) {
+        return resourceId == null ? null : resources.get(resourceId);
+    }
+
+    /**
+     * 员工是否有权访问资源（单次位测试）。
+     */
+    public boolean hasPermission(String employeeId, String resourceId) {
+        if (employeeId == null || resourceId == null) {
+            return false;
+        }
+        Integer index = resourceIndex.get(resourceId);
+        BitSet bits = permissions.get(employeeId);
+        return index != null && bits != null && bits.get(index);
+    }
+
+    /**
+     * 使用该徽章时生效的配置文件，按优先级升序排列；没有时返回空列表。
+     */
+    public List<ProfilePolicy> profilesForBadge(String badgeId) {
+        List<ProfilePolicy> profiles = badgeId == null ? null : profilesByBadge.get(badgeId);
+        return profiles != null ? profiles : Collections.emptyList();
+    }
+
+    /**
+     * 访问该资源前必须先访问的资源；没有依赖时返回空列表。
+     */
+    public List<DependencyPolicy> dependenciesOf(String resourceId) {
+        List<DependencyPolicy> list = resourceId == null ? null : dependencies.get(resourceId);
+        return list != null ? list : Collections.emptyList();
+    }
+
+    public int getBadgeCount() {
+        return badges.size();
+    }
+
+    public int getEmployeeCount() {
+        return employees.size();
+    }
+
+    public int getResourceCount() {
+        return resources.size();
+    }
+
+    public static final class BadgePolicy {
+        private final String badgeId;
+        private final BadgeStatus status;
+        private final String employeeId;
+        private final LocalDate codeExpirationDate;
+        private final LocalDate updateDueDate;
+        private final boolean needsUpdate;
+        private final BadgeUpdateWindow updateWindow;
+        private final Badge entity;
+
+        BadgePolicy(Badge badge) {
+            this.badgeId = badge.getBadgeId();
+            this.status = badge.getStatus();
+            this.employeeId = badge.getEmployee() != null ? badge.getEmployee().getEmployeeId() : null;
+            this.codeExpirationDate = badge.getCodeExpirationDate();
+            this.updateDueDate = badge.getUpdateDueDate();
+            this.needsUpdate = badge.isNeedsUpdate();
+            this.updateWindow = BadgeUpdateWindow.of(badge);
+            this.entity = badge;
+        }
+
+        public String getBadgeId() {
+            return badgeId;
+        }
+
+        public BadgeStatus getStatus() {
+            return status;
+        }
+
+        public String getEmployeeId() {
+            return employeeId;
+        }
+
+        public LocalDate getCodeExpirationDate() {
+            return codeExpirationDate;
+        }
+
+        public LocalDate getUpdateDueDate() {
+            return updateDueDate;
+        }
+
+        public boolean isNeedsUpdate() {
+            return needsUpdate;
+        }
+
+        /**
+         * 徽章代码在指定日期的更新状态，由构建快照时预计算的边界日期得出。
+         */
+        public BadgeUpdateStatus updateStatusOn(LocalDate date) {
+            return updateWindow.statusOn(date);
+        }
+
+        public BadgeUpdateWindow getUpdateWindow() {
+            return updateWindow;
+        }
+
+        public Badge getEntity() {
+            return entity;
+        }
+    }
+
+    public static final class EmployeePolicy {
+        private final String employeeId;
+        private final Set<String> groupIds;
+        private final Employee entity;
+
+        EmployeePolicy(Employee employee, Set<String> groupIds) {
+            this.employeeId = employee.getEmployeeId();
+            this.groupIds = Set.copyOf(groupIds);
+            this.entity = employee;
+        }
+
+        public String getEmployeeId() {
+            return employeeId;
+        }
+
+        public Set<String> getGroupIds() {
+            return groupIds;
+        }
+
+        public Employee getEntity() {
+            return entity;
+        }
+    }
+
+    public static final class ResourcePolicy {
+        private final String resourceId;
+        private final ResourceState state;
+        private final boolean controlled;
+        private final String building;
+        private final Resource entity;
+
+        ResourcePolicy(Resource resource) {
+            this.resourceId = resource.getResourceId();
+            this.state = resource.getResourceState();
+            this.controlled = Boolean.TRUE.equals(resource.getIsControlled());
+            this.building = resource.getBuilding();
+            this.entity = resource;
+        }
+
+        public String getResourceId() {
+            return resourceId;
+        }
+
+        public ResourceState getState() {
+            return state;
+        }
+
+        public boolean isControlled() {
+            return controlled;
+        }
+
+        public String getBuilding() {
+            return building;
+        }
+
+        public Resource getEntity() {
+            return entity;
+        }
+    }
+
+    public static final class ProfilePolicy {
+        // 没有合并任何过滤器的时间表，任何时间都不允许
+        private static final ProfileSchedule NEVER = new ProfileSchedule(null, List.of(), List.of());
+
+        private final String profileId;
+        private final Integer priorityLevel;
+        private final boolean timeRestricted;
+        private final ProfileSchedule schedule;
+        private final Map<String, LimitPolicy> limitsByResource;
+
+        ProfilePolicy(Profile profile, ProfileSchedule schedule, Map<String, LimitPolicy> limitsByResource) {
+            Set<TimeFilter> timeFilters = profile.getTimeFilters();
+            this.profileId = profile.getProfileId();
+            this.priorityLevel = profile.getPriorityLevel();
+            this.timeRestricted = timeFilters != null && !timeFilters.isEmpty();
+            // 有时间过滤器却没有提供时间表时按不允许处理，而不是放开时间限制
+            this.schedule = schedule != null ? schedule : NEVER;
+            this.limitsByResource = limitsByResource != null ? Map.copyOf(limitsByResource) : Map.of();
+        }
+
+        public String getProfileId() {
+            return profileId;
+        }
+
+        public Integer getPriorityLevel() {
+            return priorityLevel;
+        }
+
+        /**
+         * 构建快照时配置文件是否带有时间过滤器；没有时间过滤器表示时间不受限制。
+         */
+        public boolean isTimeRestricted() {
+            return timeRestricted;
+        }
+
+        /**
+         * 按构建快照时编译的时间表判断该时间是否允许访问。
+         */
+        public boolean allowsAt(LocalDateTime dateTime) {
+            return !timeRestricted || schedule.allows(dateTime);
+        }
+
+        /**
+         * 该配置文件对资源的访问次数限制；没有限制时返回 LimitPolicy.NONE。
+         */
+        public LimitPolicy limitFor(String resourceId) {
+            LimitPolicy limit = resourceId == null ? null : limitsByResource.get(resourceId);
+            return limit != null ? limit : LimitPolicy.NONE;
+        }
+    }
+
+    /**
+     * 访问次数限制，0表示不限制；同一资源有多条限制时取最严格的。
+     */
+    public static final class LimitPolicy {
+        public static final LimitPolicy NONE = new LimitPolicy(0, 0);
+
+        private final int dailyLimit;
+        private final int weeklyLimit;
+
+        public LimitPolicy(int dailyLimit, int weeklyLimit) {
+            this.dailyLimit = Math.max(dailyLimit, 0);
+            this.weeklyLimit = Math.max(weeklyLimit, 0);
+        }
+
+        public int getDailyLimit() {
+            return dailyLimit;
+        }
+
+        public int getWeeklyLimit() {
+            return weeklyLimit;
+        }
+
+        /**
+         * 与另一条限制合并，日/周上限各取更严格的（0表示不限制）。
+         */
+        public LimitPolicy tighten(LimitPolicy other) {
+            return new LimitPolicy(tighter(dailyLimit, other.dailyLimit), tighter(weeklyLimit, other.weeklyLimit));
+        }
+
+        private static int tighter(int current, int limit) {
+            if (limit <= 0) {
+                return current;
+            }
+            return current <= 0 ? limit : Math.min(current, limit);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof LimitPolicy)) {
+                return false;
+            }
+            LimitPolicy other = (LimitPolicy) o;
+            return dailyLimit == other.dailyLimit && weeklyLimit == other.weeklyLimit;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * dailyLimit + weeklyLimit;
+        }
+    }
+
+    public static final class DependencyPolicy {
+        private final String requiredResourceId;
+        private final Integer timeWindowMinutes;
+
+        public DependencyPolicy(String requiredResourceId, Integer timeWindowMinutes) {
+            this.requiredResourceId = requiredResourceId;
+            this.timeWindowMinutes = timeWindowMinutes;
+        }
+
+        public String getRequiredResourceId() {
+            return requiredResourceId;
+        }
+
+        /**
+         * 时间窗口（分钟），null表示不限制时间。
+         */
+        public Integer getTimeWindowMinutes() {
+            return timeWindowMinutes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DependencyPolicy)) {
+                return false;
+            }
+            DependencyPolicy other = (DependencyPolicy) o;
+            return Objects.equals(requiredResourceId, other.requiredResourceId)
+                    && Objects.equals(timeWindowMinutes, other.timeWindowMinutes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(requiredResourceId, timeWindowMinutes);
+        }
+    }
+
+    /**
+     * 快照构建器，只在构建线程中使用（非线程安全）。
+     */
+    public static final class Builder {
+        private final long epoch;
+        private final Map<String, Badge> badgeEntities = new HashMap<>();
+        private final Map<String, Employee> employeeEntities = new HashMap<>();
+        private final Map<String, Set<String>> groupsByEmployee = new HashMap<>();
+        private final Map<String, Resource> resourceEntities = new HashMap<>();
+        private final Map<String, Integer> resourceIndex = new HashMap<>();
+        private final Map<String, BitSet> permissions = new HashMap<>();
+        private final Map<String, List<Profile>> profilesByBadge = new HashMap<>();
+        private final Map<String, ProfileSchedule> schedules = new HashMap<>();
+        private final Map<String, Map<String, LimitPolicy>> limitsByProfile = new HashMap<>();
+        private final Map<String, List<DependencyPolicy>> dependencies = new HashMap<>();
+
+        private Builder(long epoch) {
+            this.epoch = epoch;
+        }
+
+        public Builder badge(Badge badge) {
+            if (badge != null && badge.getBadgeId() != null) {
+                badgeEntities.put(badge.getBadgeId(), badge);
+            }
+            return this;
+        }
+
+        /**
+         * 添加员工；组成员关系未通过 permissions() 提供时，取员工实体上的组。
+         */
+        public Builder employee(Employee employee) {
+            if (employee != null && employee.getEmployeeId() != null) {
+                employeeEntities.put(employee.getEmployeeId(), employee);
+            }
+            return this;
+        }
+
+        public Builder resource(Resource resource) {
+            if (resource != null && resource.getResourceId() != null) {
+                resourceEntities.put(resource.getResourceId(), resource);
+            }
+            return this;
+        }
+
+        /**
+         * 整体导入权限索引（资源ID → 位序号，员工ID → 资源位图，员工ID → 组ID集合）。
+         * 位图在导入后不得再被修改。
+         */
+        public Builder permissions(Map<String, Integer> resourceIds, Map<String, BitSet> employeeBits,
+                                   Map<String, Set<String>> employeeGroups) {
+            resourceIndex.putAll(resourceIds);
+            permissions.putAll(employeeBits);
+            employeeGroups.forEach((employeeId, groups) -> groupsByEmployee.put(employeeId, new HashSet<>(groups)));
+            return this;
+        }
+
+        /**
+         * 授予单条权限。
+         */
+        public Builder permission(String employeeId, String resourceId) {
+            int index = resourceIndex.computeIfAbsent(resourceId, id -> resourceIndex.size());
+            BitSet bits = permissions.get(employeeId);
+            bits = bits != null ? (BitSet) bits.clone() : new BitSet();
+            bits.set(index);
+            permissions.put(employeeId, bits);
+            return this;
+        }
+
+        /**
+         * 设置使用该徽章时生效的配置文件（调用方负责按优先级排序）。
+         */
+        public Builder profiles(String badgeId, List<Profile> profiles) {
+            if (badgeId != null && profiles != null && !profiles.isEmpty()) {
+                profilesByBadge.put(badgeId, new ArrayList<>(profiles));
+            }
+            return this;
+        }
+
+        /**
+         * 设置配置文件编译后的时间表；带时间过滤器的配置文件没有时间表时，任何时间都不允许访问。
+         */
+        public Builder schedule(String profileId, ProfileSchedule schedule) {
+            if (profileId != null && schedule != null) {
+                schedules.put(profileId, schedule);
+            }
+            return this;
+        }
+
+        public Builder limit(String profileId, String resourceId, Integer dailyLimit, Integer weeklyLimit) {
+            if (profileId == null || resourceId == null) {
+                return this;
+            }
+            LimitPolicy limit = new LimitPolicy(dailyLimit != null ? dailyLimit : 0, weeklyLimit != null ? weeklyLimit : 0);
+            limitsByProfile.computeIfAbsent(profileId, id -> new HashMap<>())
+                    .merge(resourceId, limit, LimitPolicy::tighten);
+            return this;
+        }
+
+        public Builder dependency(String resourceId, String requiredResourceId, Integer timeWindowMinutes) {
+            if (resourceId != null && requiredResourceId != null) {
+                dependencies.computeIfAbsent(resourceId, id -> new ArrayList<>())
+                        .add(new DependencyPolicy(requiredResourceId, timeWindowMinutes));
+            }
+            return this;
+        }
+
+        /**
+         * 在此刻复制各实体的字段，生成快照；之后实体的修改不会影响该快照。
+         */
+        public PolicySnapshot build() {
+            Map<String, BadgePolicy> badges = new HashMap<>();
+            badgeEntities.forEach((badgeId, badge) -> badges.put(badgeId, new BadgePolicy(badge)));
+            Map<String, ResourcePolicy> resources = new HashMap<>();
+            resourceEntities.forEach((resourceId, resource) -> resources.put(resourceId, new ResourcePolicy(resource)));
+            Map<String, EmployeePolicy> employees = new HashMap<>();
+            employeeEntities.forEach((employeeId, employee) -> employees.put(employeeId,
+                    new EmployeePolicy(employee, groupsByEmployee.getOrDefault(employeeId, groupIdsOf(employee)))));
+
+            // 同一配置文件在所有徽章间共用一个值对象
+            Map<String, ProfilePolicy> profilePolicies = new HashMap<>();
+            Map<String, List<ProfilePolicy>> resolved = new HashMap<>();
+            profilesByBadge.forEach((badgeId, profiles) -> {
+                Map<String, ProfilePolicy> ordered = new LinkedHashMap<>();
+                for (Profile profile : profiles) {
+                    if (profile == null || profile.getProfileId() == null) {
+                        continue;
+                    }
+                    ordered.putIfAbsent(profile.getProfileId(), profilePolicies.computeIfAbsent(profile.getProfileId(),
+                            id -> new ProfilePolicy(profile, schedules.get(id), limitsByProfile.get(id))));
+                }
+                resolved.put(badgeId, List.copyOf(ordered.values()));
+            });
+            return new PolicySnapshot(this, badges, employees, resources, resolved);
+        }
+
+        private static Set<String> groupIdsOf(Employee employee) {
+            Collection<Group> groups = employee.getGroups();
+            if (groups == null || groups.isEmpty()) {
+                return Collections.emptySet();
+            }
+            Set<String> ids = new HashSet<>();
+            for (Group group : groups) {
+                if (group != null && group.getGroupId() != null) {
+                    ids.add(group.getGroupId());
+                }
+            }
+            return ids;
+        }
+    }
+}
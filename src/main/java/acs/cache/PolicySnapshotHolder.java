@@ -0,0 +1,290 @@
+package acs.cache;
+
+import acs.cache.PolicySnapshot.DependencyPolicy;
+import acs.cache.PolicySnapshot.LimitPolicy;
+import acs.domain.Badge;
+import acs.domain.Employee;
+import acs.domain.Profile;
+import acs.domain.ProfileResourceLimit;
+import acs.domain.ProfileSchedule;
+import acs.domain.Resource;
+import acs.domain.ResourceDependency;
+import acs.repository.ProfileResourceLimitRepository;
+import acs.repository.ResourceDependencyRepository;
+import acs.service.TimeFilterService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 发布当前生效的策略快照（PolicySnapshot）。
+ *
+ * 设计原则：
+ * - 访问决策只调用 current()，读取一个 volatile 引用，不加锁、不访问数据库
+ * - 快照在后台线程中重建，排队期间到达的多次变化合并为一次重建
+ * - 实体缓存变化（徽章挂失/禁用、资源锁定、权限变更等）的调用方等待包含该变化的快照发布（序号栅栏），
+ *   LocalCacheManager 的更新方法返回时决策已读取到新状态；同时修改多个实体的操作用 batchChanges 只发布一次
+ * - 后台重建超时或失败时，等待的调用方在自己的线程中重建，不会无限等待
+ * - 配置文件关联变化后只请求后台重建，不等待
+ * - 新快照构建完成后整体替换旧快照（epoch 递增），正在进行的决策继续使用旧快照
+ * - 访问限制和资源依赖缓存在内存中，重建时不查询数据库；通过 refreshLimits() / refreshDependencies()
+ *   重新加载，并定期与数据库比对（直接在数据库中修改的依赖关系也会生效），内容变化时才重建
+ */
+@Component
+public class PolicySnapshotHolder {
+
+    // 等待后台重建发布的最长时间，超过后在调用线程中重建
+    private static final long PUBLISH_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final Comparator<DependencyPolicy> DEPENDENCY_ORDER = Comparator
+            .comparing(DependencyPolicy::getRequiredResourceId)
+            .thenComparing(DependencyPolicy::getTimeWindowMinutes, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final LocalCacheManager cacheManager;
+    private final EffectiveProfileResolver profileResolver;
+    private final ProfileResourceLimitRepository profileResourceLimitRepository;
+    private final ResourceDependencyRepository resourceDependencyRepository;
+    private final TimeFilterService timeFilterService;
+
+    private volatile PolicySnapshot current = PolicySnapshot.EMPTY;
+    private final AtomicLong epoch = new AtomicLong(0);
+    private final AtomicBoolean rebuildPending = new AtomicBoolean(false);
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "policy-snapshot-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 变化通知的序号；rebuildNow 开始时读取，已发布的快照包含该序号及之前的全部变化
+    private final AtomicLong changeSequence = new AtomicLong(0);
+    private final Object publishLock = new Object();
+    private long publishedSequence;  // 由 publishLock 保护
+
+    // 配置文件ID → 资源ID → 合并后的最严格限制；资源ID → 依赖列表
+    private volatile Map<String, Map<String, LimitPolicy>> limits = Collections.emptyMap();
+    private volatile Map<String, List<DependencyPolicy>> dependencies = Collections.emptyMap();
+
+    public PolicySnapshotHolder(LocalCacheManager cacheManager,
+                                EffectiveProfileResolver profileResolver,
+                                ProfileResourceLimitRepository profileResourceLimitRepository,
+                                ResourceDependencyRepository resourceDependencyRepository,
+                                TimeFilterService timeFilterService) {
+        this.cacheManager = cacheManager;
+        this.profileResolver = profileResolver;
+        this.profileResourceLimitRepository = profileResourceLimitRepository;
+        this.resourceDependencyRepository = resourceDependencyRepository;
+        this.timeFilterService = timeFilterService;
+    }
+
+    @PostConstruct
+    public void init() {
+        loadLimits();
+        loadDependencies();
+        rebuildNow();
+        cacheManager.addChangeListener(this::rebuildAndWait);
+        profileResolver.addChangeListener(this::requestRebuild);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * 当前生效的快照；一次决策应只调用一次并始终使用返回的同一个快照。
+     */
+    public PolicySnapshot current() {
+        return current;
+    }
+
+    /**
+     * 请求在后台重建快照；已有重建排队时直接返回（排队的那次会读取到本次变化）。
+     */
+    public void requestRebuild() {
+        if (!rebuildPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            rebuildExecutor.execute(() -> {
+                rebuildPending.set(false);
+                try {
+                    rebuildNow();
+                } catch (RuntimeException e) {
+                    System.err.println("Failed to rebuild policy snapshot: " + e.getMessage());
+                }
+            });
+        } catch (RuntimeException e) {
+            // 执行器已关闭（应用停止中）
+            rebuildPending.set(false);
+        }
+    }
+
+    /**
+     * 请求后台重建并等待发布：返回时已发布的快照一定包含调用前的全部变化。
+     * 多个调用方同时等待时由同一次重建满足。
+     */
+    public void rebuildAndWait() {
+        long sequence = changeSequence.incrementAndGet();
+        if (rebuildExecutor.isShutdown()) {
+            // 应用停止中：没有后台线程可以等待
+            rebuildNow();
+            return;
+        }
+        requestRebuild();
+        if (!awaitPublished(sequence)) {
+            // 后台重建失败、超时或执行器已关闭：在调用线程中重建（会读取到本次变化）
+            rebuildNow();
+        }
+    }
+
+    private boolean awaitPublished(long sequence) {
+        long deadline = System.nanoTime() + PUBLISH_TIMEOUT_NANOS;
+        synchronized (publishLock) {
+            while (publishedSequence < sequence) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(publishLock, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 从数据库重新加载访问限制；内容变化时重建快照并等待发布。
+     */
+    public void refreshLimits() {
+        if (loadLimits()) {
+            rebuildAndWait();
+        }
+    }
+
+    /**
+     * 从数据库重新加载资源依赖；内容变化时重建快照并等待发布。
+     */
+    public void refreshDependencies() {
+        if (loadDependencies()) {
+            rebuildAndWait();
+        }
+    }
+
+    /**
+     * 定期与数据库比对访问限制和资源依赖，覆盖不经过本应用的修改。
+     */
+    @Scheduled(fixedDelayString = "${acs.policy.table-refresh-ms:60000}",
+            initialDelayString = "${acs.policy.table-refresh-ms:60000}")
+    public void reloadPolicyTables() {
+        try {
+            boolean changed = loadLimits();
+            changed |= loadDependencies();
+            if (changed) {
+                rebuildAndWait();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Failed to reload access limits and resource dependencies: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 在调用线程中立即重建并发布快照。
+     */
+    public synchronized PolicySnapshot rebuildNow() {
+        // 先读序号再读缓存：序号不大于它的变化都已写入缓存
+        long sequence = changeSequence.get();
+        PolicySnapshot.Builder builder = PolicySnapshot.builder(epoch.incrementAndGet());
+        cacheManager.exportPermissions(builder);
+        for (Resource resource : cacheManager.getAllResources()) {
+            builder.resource(resource);
+        }
+        for (Employee employee : cacheManager.getAllEmployees()) {
+            builder.employee(employee);
+        }
+        // 配置文件列表来自解析器的按员工缓存；同一配置文件的时间表只取一次
+        Map<String, ProfileSchedule> schedules = new HashMap<>();
+        for (Badge badge : cacheManager.getAllBadges()) {
+            builder.badge(badge);
+            Employee employee = badge.getEmployee() != null
+                    ? cacheManager.getEmployee(badge.getEmployee().getEmployeeId())
+                    : null;
+            if (employee == null) {
+                continue;
+            }
+            List<Profile> profiles = profileResolver.resolve(employee, badge);
+            builder.profiles(badge.getBadgeId(), profiles);
+            for (Profile profile : profiles) {
+                if (profile != null && profile.getProfileId() != null && !schedules.containsKey(profile.getProfileId())) {
+                    ProfileSchedule schedule = timeFilterService.scheduleFor(profile);
+                    schedules.put(profile.getProfileId(), schedule);
+                    builder.schedule(profile.getProfileId(), schedule);
+                }
+            }
+        }
+        limits.forEach((profileId, byResource) -> byResource.forEach((resourceId, limit) ->
+                builder.limit(profileId, resourceId, limit.getDailyLimit(), limit.getWeeklyLimit())));
+        dependencies.forEach((resourceId, list) -> list.forEach(dependency ->
+                builder.dependency(resourceId, dependency.getRequiredResourceId(), dependency.getTimeWindowMinutes())));
+        PolicySnapshot snapshot = builder.build();
+        current = snapshot;
+        synchronized (publishLock) {
+            publishedSequence = Math.max(publishedSequence, sequence);
+            publishLock.notifyAll();
+        }
+        return snapshot;
+    }
+
+    // 重新加载激活的访问限制（同一配置文件和资源取最严格的），返回内容是否变化
+    private synchronized boolean loadLimits() {
+        Map<String, Map<String, LimitPolicy>> loaded = new HashMap<>();
+        for (ProfileResourceLimit limit : profileResourceLimitRepository.findAll()) {
+            if (!Boolean.TRUE.equals(limit.getIsActive()) || limit.getProfile() == null || limit.getResource() == null) {
+                continue;
+            }
+            LimitPolicy policy = new LimitPolicy(limit.getDailyLimit() != null ? limit.getDailyLimit() : 0,
+                    limit.getWeeklyLimit() != null ? limit.getWeeklyLimit() : 0);
+            loaded.computeIfAbsent(limit.getProfile().getProfileId(), id -> new HashMap<>())
+                    .merge(limit.getResource().getResourceId(), policy, LimitPolicy::tighten);
+        }
+        if (loaded.equals(limits)) {
+            return false;
+        }
+        limits = loaded;
+        return true;
+    }
+
+    // 重新加载资源依赖（每个资源的依赖按前置资源排序，与查询返回的顺序无关），返回内容是否变化
+    private synchronized boolean loadDependencies() {
+        Map<String, List<DependencyPolicy>> loaded = new HashMap<>();
+        for (ResourceDependency dependency : resourceDependencyRepository.findAll()) {
+            if (dependency.getResource() == null || dependency.getRequiredResource() == null) {
+                continue;
+            }
+            loaded.computeIfAbsent(dependency.getResource().getResourceId(), id -> new ArrayList<>())
+                    .add(new DependencyPolicy(dependency.getRequiredResource().getResourceId(),
+                            dependency.getTimeWindowMinutes()));
+        }
+        loaded.values().forEach(list -> list.sort(DEPENDENCY_ORDER));
+        if (loaded.equals(dependencies)) {
+            return false;
+        }
+        dependencies = loaded;
+        return true;
+    }
+}
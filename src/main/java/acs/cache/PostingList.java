@@ -0,0 +1,171 @@
+package acs.cache;
+
+import acs.domain.LogEntry;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 某个徽章/员工/资源/决策对应的日志倒排列表，按时间有序。
+ *
+ * 写操作由所属的 SegmentedLogStore 串行执行；读取方只读取volatile快照。
+ * 日志按固定大小的块（CHUNK_SIZE）存放，除最后一块外都是满的：
+ * 按时间顺序追加时直接写入快照范围之外的空位；迟到的日志只复制插入位置所在的块及其后的块，
+ * 代价与迟到的距离成正比，重排缓冲区范围内的少量乱序只复制尾块。
+ */
+final class PostingList {
+
+    static final int CHUNK_SHIFT = 8;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    // 最后一块的初始容量，按需倍增到CHUNK_SIZE，避免条目很少的键占用整块
+    private static final int INITIAL_CAPACITY = 8;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    void add(LogEntry log) {
+        Snapshot current = snapshot;
+        int end = current.offset + current.size;
+        if (current.size == 0 || !log.getTimestamp().isBefore(current.get(current.size - 1).getTimestamp())) {
+            appendInOrder(current, log, end);
+            return;
+        }
+        // 迟到的日志：从插入位置起逐块后移一位，块满时把最后一条带入下一块
+        int position = upperBound(current, log.getTimestamp());
+        LogEntry[][] chunks = current.chunks.clone();
+        LogEntry carry = log;
+        int slot = position & CHUNK_MASK;
+        for (int c = position >> CHUNK_SHIFT; carry != null; c++, slot = 0) {
+            if (c == chunks.length) {
+                chunks = Arrays.copyOf(chunks, c + 1);
+                chunks[c] = new LogEntry[INITIAL_CAPACITY];
+            }
+            int used = Math.min(CHUNK_SIZE, end - (c << CHUNK_SHIFT));
+            LogEntry[] chunk = Arrays.copyOf(chunks[c], Math.min(CHUNK_SIZE, Math.max(used + 1, chunks[c].length)));
+            LogEntry next = used == CHUNK_SIZE ? chunk[CHUNK_SIZE - 1] : null;
+            int moveEnd = used == CHUNK_SIZE ? CHUNK_SIZE - 1 : used;
+            System.arraycopy(chunk, slot, chunk, slot + 1, moveEnd - slot);
+            chunk[slot] = carry;
+            chunks[c] = chunk;
+            carry = next;
+        }
+        snapshot = new Snapshot(chunks, current.offset, current.size + 1);
+    }
+
+    /**
+     * 删除时间早于cutoff的日志，返回剩余条数。
+     */
+    int removeBefore(LocalDateTime cutoff) {
+        Snapshot current = snapshot;
+        int removed = lowerBound(current, cutoff) - current.offset;
+        if (removed == 0) {
+            return current.size;
+        }
+        if (removed == current.size) {
+            snapshot = Snapshot.EMPTY;
+            return 0;
+        }
+        // 整块丢弃已删除的前缀，释放对旧日志的引用
+        int start = current.offset + removed;
+        LogEntry[][] chunks = Arrays.copyOfRange(current.chunks, start >> CHUNK_SHIFT, current.chunks.length);
+        snapshot = new Snapshot(chunks, start & CHUNK_MASK, current.size - removed);
+        return current.size - removed;
+    }
+
+    /**
+     * 时间在[from, to]内的日志（两端为null表示不限制），返回新列表。
+     */
+    List<LogEntry> range(LocalDateTime from, LocalDateTime to) {
+        Snapshot current = snapshot;
+        int start = from == null ? current.offset : lowerBound(current, from);
+        int end = to == null ? current.offset + current.size : upperBound(current, to);
+        if (start >= end) {
+            return new ArrayList<>();
+        }
+        List<LogEntry> result = new ArrayList<>(end - start);
+        for (int position = start; position < end; position++) {
+            result.add(current.at(position));
+        }
+        return result;
+    }
+
+    int size() {
+        return snapshot.size;
+    }
+
+    private void appendInOrder(Snapshot current, LogEntry log, int end) {
+        int chunkIndex = end >> CHUNK_SHIFT;
+        int slot = end & CHUNK_MASK;
+        LogEntry[][] chunks = current.chunks;
+        if (chunkIndex == chunks.length) {
+            // 最后一块已满：开启新块
+            chunks = Arrays.copyOf(chunks, chunks.length + 1);
+            chunks[chunkIndex] = new LogEntry[INITIAL_CAPACITY];
+        } else if (slot == chunks[chunkIndex].length) {
+            // 最后一块未到CHUNK_SIZE但容量已满：倍增（复制不超过一块）
+            chunks = chunks.clone();
+            chunks[chunkIndex] = Arrays.copyOf(chunks[chunkIndex], Math.min(CHUNK_SIZE, slot * 2));
+        }
+        // 写入快照范围之外的空位，旧快照的读取方不会访问到
+        chunks[chunkIndex][slot] = log;
+        snapshot = new Snapshot(chunks, current.offset, current.size + 1);
+    }
+
+    // 第一条时间不早于timestamp的位置（含offset）
+    private static int lowerBound(Snapshot current, LocalDateTime timestamp) {
+        int low = current.offset;
+        int high = current.offset + current.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (current.at(mid).getTimestamp().isBefore(timestamp)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // 第一条时间晚于timestamp的位置（含offset，相同时间的日志保持到达顺序）
+    private static int upperBound(Snapshot current, LocalDateTime timestamp) {
+        int low = current.offset;
+        int high = current.offset + current.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (current.at(mid).getTimestamp().isAfter(timestamp)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 不可变快照：chunks[0]从offset开始，共size条。
+     */
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new LogEntry[0][], 0, 0);
+
+        final LogEntry[][] chunks;
+        final int offset;
+        final int size;
+
+        Snapshot(LogEntry[][] chunks, int offset, int size) {
+            this.chunks = chunks;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        // 按包含offset的位置取值
+        LogEntry at(int position) {
+            return chunks[position >> CHUNK_SHIFT][position & CHUNK_MASK];
+        }
+
+        LogEntry get(int index) {
+            return at(index + offset);
+        }
+    }
+}
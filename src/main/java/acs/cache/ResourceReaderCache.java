@@ -0,0 +1,131 @@
+package acs.cache;
+
+import acs.domain.BadgeReader;
+import acs.repository.BadgeReaderRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 资源ID到读卡器ID的映射缓存，供CSV日志写入和导出共用。
+ *
+ * 设计原则：
+ * - 启动时一次性加载全部读卡器，之后按资源ID查找不再访问数据库
+ * - 映射以不可变Map整体发布（volatile），读取无锁
+ * - 同一资源有多个读卡器时固定取ID最小的一个，refresh 和 put 使用同一规则，结果与到达顺序无关
+ * - 读卡器变化时调用 put / refresh 更新；绑定关系未变（如状态心跳）时 put 直接返回，不复制映射
+ */
+@Component
+public class ResourceReaderCache {
+
+    private final BadgeReaderRepository badgeReaderRepository;
+
+    // 读卡器ID → 资源ID，只在持有监视器时读写
+    private final Map<String, String> resourceByReader = new HashMap<>();
+    private volatile Map<String, String> readerByResource = Collections.emptyMap();
+
+    public ResourceReaderCache(BadgeReaderRepository badgeReaderRepository) {
+        this.badgeReaderRepository = badgeReaderRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        refresh();
+    }
+
+    /**
+     * 从数据库重新加载全部映射。
+     */
+    public synchronized void refresh() {
+        resourceByReader.clear();
+        Map<String, String> mapping = new HashMap<>();
+        for (BadgeReader reader : badgeReaderRepository.findAll()) {
+            if (reader.getResourceId() != null && reader.getReaderId() != null) {
+                resourceByReader.put(reader.getReaderId(), reader.getResourceId());
+                mapping.merge(reader.getResourceId(), reader.getReaderId(), ResourceReaderCache::lower);
+            }
+        }
+        readerByResource = Collections.unmodifiableMap(mapping);
+    }
+
+    /**
+     * 读卡器新增或修改后更新映射（该读卡器原来绑定的资源一并重新计算）。
+     */
+    public synchronized void put(BadgeReader reader) {
+        if (reader == null || reader.getReaderId() == null) {
+            return;
+        }
+        String readerId = reader.getReaderId();
+        String resourceId = reader.getResourceId();
+        if (Objects.equals(resourceByReader.get(readerId), resourceId)
+                && (resourceId != null || !resourceByReader.containsKey(readerId))) {
+            return;
+        }
+        String previousResource = resourceId != null
+                ? resourceByReader.put(readerId, resourceId)
+                : resourceByReader.remove(readerId);
+        publish(previousResource, resourceId);
+    }
+
+    /**
+     * 读卡器删除后移除映射。
+     */
+    public synchronized void remove(String readerId) {
+        if (readerId == null || !resourceByReader.containsKey(readerId)) {
+            return;
+        }
+        publish(resourceByReader.remove(readerId), null);
+    }
+
+    /**
+     * 根据资源ID查找读卡器ID，找不到时返回空字符串。
+     */
+    public String getReaderId(String resourceId) {
+        if (resourceId == null || resourceId.isEmpty()) {
+            return "";
+        }
+        return readerByResource.getOrDefault(resourceId, "");
+    }
+
+    public int size() {
+        return readerByResource.size();
+    }
+
+    // 重新计算受影响资源的读卡器；结果不变时不发布新映射
+    private void publish(String... resourceIds) {
+        Map<String, String> mapping = null;
+        for (String resourceId : resourceIds) {
+            if (resourceId == null) {
+                continue;
+            }
+            String chosen = null;
+            for (Map.Entry<String, String> entry : resourceByReader.entrySet()) {
+                if (resourceId.equals(entry.getValue())) {
+                    chosen = chosen == null ? entry.getKey() : lower(chosen, entry.getKey());
+                }
+            }
+            if (Objects.equals(chosen, readerByResource.get(resourceId))) {
+                continue;
+            }
+            if (mapping == null) {
+                mapping = new HashMap<>(readerByResource);
+            }
+            if (chosen != null) {
+                mapping.put(resourceId, chosen);
+            } else {
+                mapping.remove(resourceId);
+            }
+        }
+        if (mapping != null) {
+            readerByResource = Collections.unmodifiableMap(mapping);
+        }
+    }
+
+    private static String lower(String a, String b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
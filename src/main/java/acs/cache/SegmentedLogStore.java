@@ -0,0 +1,397 @@
+package acs.cache;
+
+import acs.domain.AccessDecision;
+import acs.domain.LogEntry;
+
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按时间有序、只追加的分段日志存储，替代 CopyOnWriteArrayList + 每次插入后整体排序。
+ *
+ * 设计原则：
+ * - 日志按固定大小的段（SEGMENT_SIZE）存放，只有最后一段（尾段）可写
+ * - 按时间顺序到达的日志直接写入尾段空位，O(1)
+ * - 稍晚到达的日志（时间不早于尾段第一条）在尾段副本内有序插入，尾段即重排缓冲区
+ * - 更早的乱序日志、更新已有日志、删除单条日志时整体重建（极少发生）
+ * - 同时维护按徽章/员工/资源/决策划分的倒排列表（PostingList），按时间范围查询时二分定位
+ * - 写操作串行（this监视器）；读取方只读取volatile快照，无需加锁
+ */
+public class SegmentedLogStore {
+
+    static final int SEGMENT_SHIFT = 10;
+    static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private volatile View view = View.EMPTY;
+    private volatile LogIndexes indexes = new LogIndexes();
+    // 已存入的最大日志ID：数据库自增ID，更大的ID一定是新日志
+    private long maxId = Long.MIN_VALUE;
+
+    /**
+     * 返回当前日志的只读快照（按时间升序）。
+     */
+    public List<LogEntry> snapshot() {
+        return new SnapshotList(view);
+    }
+
+    public int size() {
+        return view.size;
+    }
+
+    /**
+     * 用已排序的日志替换全部内容。
+     */
+    public synchronized void reset(Collection<LogEntry> sortedLogs) {
+        maxId = Long.MIN_VALUE;
+        for (LogEntry log : sortedLogs) {
+            trackId(log);
+        }
+        List<LogEntry> logs = new ArrayList<>(sortedLogs);
+        indexes = LogIndexes.of(logs);
+        view = build(logs);
+    }
+
+    /**
+     * 按顺序追加一批日志，整批只获取一次锁。
+     */
+    public synchronized void appendAll(Collection<LogEntry> logs) {
+        for (LogEntry log : logs) {
+            append(log);
+        }
+    }
+
+    /**
+     * 追加日志；ID已存在时替换旧记录。
+     * @return 是否替换了ID相同的旧记录
+     */
+    public synchronized boolean append(LogEntry log) {
+        if (log.getId() != null && log.getId() <= maxId) {
+            // 可能是对已有日志的更新：移除旧记录后重建
+            View current = view;
+            List<LogEntry> logs = copyWithout(current, log.getId());
+            boolean replaced = logs.size() < current.size;
+            insertSorted(logs, log);
+            indexes = LogIndexes.of(logs);
+            view = build(logs);
+            return replaced;
+        }
+        trackId(log);
+        indexes.add(log);
+
+        View current = view;
+        if (current.size == 0) {
+            view = build(new ArrayList<>(List.of(log)));
+            return false;
+        }
+        LogEntry last = current.get(current.size - 1);
+        if (!log.getTimestamp().isBefore(last.getTimestamp())) {
+            appendInOrder(current, log);
+            return false;
+        }
+
+        int tailIndex = current.segments.length - 1;
+        int tailStart = tailIndex == 0 ? current.offset : 0;
+        LogEntry[] tail = current.segments[tailIndex];
+        if (!log.getTimestamp().isBefore(tail[tailStart].getTimestamp())) {
+            insertIntoTail(current, log, tailIndex, tailStart);
+            return false;
+        }
+
+        // 比尾段更早的乱序日志：整体重建
+        List<LogEntry> logs = copyWithout(current, null);
+        insertSorted(logs, log);
+        view = build(logs);
+        return false;
+    }
+
+    /**
+     * 登记异步写库后回填的数据库ID，之后按ID删除或替换时能定位到这些日志。
+     */
+    public synchronized void trackIds(Collection<LogEntry> logs) {
+        for (LogEntry log : logs) {
+            trackId(log);
+        }
+    }
+
+    /**
+     * 按ID删除日志，返回是否存在。
+     */
+    public synchronized boolean remove(Long id) {
+        View current = view;
+        List<LogEntry> logs = copyWithout(current, id);
+        if (logs.size() == current.size) {
+            return false;
+        }
+        indexes = LogIndexes.of(logs);
+        view = build(logs);
+        return true;
+    }
+
+    /**
+     * 时间早于cutoff的日志条数（二分查找）。
+     */
+    public int countBefore(LocalDateTime cutoff) {
+        return lowerBound(view, cutoff);
+    }
+
+    /**
+     * 截掉时间早于cutoff的日志前缀，返回删除的条数。
+     */
+    public synchronized int removeBefore(LocalDateTime cutoff) {
+        View current = view;
+        int removed = lowerBound(current, cutoff);
+        if (removed == 0) {
+            return 0;
+        }
+        if (removed == current.size) {
+            indexes = new LogIndexes();
+            view = View.EMPTY;
+            return removed;
+        }
+        indexes.removeBefore(cutoff);
+        int start = current.offset + removed;
+        int droppedSegments = start >> SEGMENT_SHIFT;
+        LogEntry[][] segments = Arrays.copyOfRange(current.segments, droppedSegments, current.segments.length);
+        view = new View(segments, start & SEGMENT_MASK, current.size - removed);
+        return removed;
+    }
+
+    /**
+     * 按徽章查询时间在[from, to]内的日志（from/to为null表示不限制）。
+     */
+    public List<LogEntry> findByBadge(String badgeId, LocalDateTime from, LocalDateTime to) {
+        return find(indexes.byBadge, badgeId, from, to);
+    }
+
+    public List<LogEntry> findByEmployee(String employeeId, LocalDateTime from, LocalDateTime to) {
+        return find(indexes.byEmployee, employeeId, from, to);
+    }
+
+    public List<LogEntry> findByResource(String resourceId, LocalDateTime from, LocalDateTime to) {
+        return find(indexes.byResource, resourceId, from, to);
+    }
+
+    public List<LogEntry> findByDecision(AccessDecision decision, LocalDateTime from, LocalDateTime to) {
+        return find(indexes.byDecision, decision, from, to);
+    }
+
+    private static <K> List<LogEntry> find(Map<K, PostingList> index, K key, LocalDateTime from, LocalDateTime to) {
+        if (key == null) {
+            return new ArrayList<>();
+        }
+        PostingList postings = index.get(key);
+        return postings == null ? new ArrayList<>() : postings.range(from, to);
+    }
+
+    private void appendInOrder(View current, LogEntry log) {
+        int end = current.offset + current.size;
+        int segmentIndex = end >> SEGMENT_SHIFT;
+        LogEntry[][] segments = current.segments;
+        if (segmentIndex == segments.length) {
+            // 尾段已满：封存并开启新段
+            segments = Arrays.copyOf(segments, segments.length + 1);
+            segments[segmentIndex] = new LogEntry[SEGMENT_SIZE];
+        }
+        // 写入快照范围之外的空位，旧快照的读取方不会访问到
+        segments[segmentIndex][end & SEGMENT_MASK] = log;
+        view = new View(segments, current.offset, current.size + 1);
+    }
+
+    private void insertIntoTail(View current, LogEntry log, int tailIndex, int tailStart) {
+        int tailEnd = ((current.offset + current.size - 1) & SEGMENT_MASK) + 1;
+        LogEntry[] tail = current.segments[tailIndex];
+        int position = upperBound(tail, tailStart, tailEnd, log.getTimestamp());
+
+        LogEntry[][] segments = Arrays.copyOf(current.segments, current.segments.length + (tailEnd == SEGMENT_SIZE ? 1 : 0));
+        // 尾段写入时复制：旧快照仍引用原数组
+        LogEntry[] newTail = tail.clone();
+        LogEntry overflow = tailEnd == SEGMENT_SIZE ? newTail[SEGMENT_SIZE - 1] : null;
+        int moveEnd = tailEnd == SEGMENT_SIZE ? SEGMENT_SIZE - 1 : tailEnd;
+        System.arraycopy(newTail, position, newTail, position + 1, moveEnd - position);
+        newTail[position] = log;
+        segments[tailIndex] = newTail;
+        if (overflow != null) {
+            LogEntry[] next = new LogEntry[SEGMENT_SIZE];
+            next[0] = overflow;
+            segments[tailIndex + 1] = next;
+        }
+        view = new View(segments, current.offset, current.size + 1);
+    }
+
+    private void trackId(LogEntry log) {
+        if (log.getId() != null && log.getId() > maxId) {
+            maxId = log.getId();
+        }
+    }
+
+    private static List<LogEntry> copyWithout(View current, Long id) {
+        List<LogEntry> logs = new ArrayList<>(current.size + 1);
+        for (int i = 0; i < current.size; i++) {
+            LogEntry log = current.get(i);
+            if (id == null || !id.equals(log.getId())) {
+                logs.add(log);
+            }
+        }
+        return logs;
+    }
+
+    private static void insertSorted(List<LogEntry> logs, LogEntry log) {
+        int low = 0;
+        int high = logs.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (logs.get(mid).getTimestamp().isAfter(log.getTimestamp())) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        logs.add(low, log);
+    }
+
+    private static View build(List<LogEntry> logs) {
+        if (logs.isEmpty()) {
+            return View.EMPTY;
+        }
+        int segmentCount = (logs.size() + SEGMENT_SIZE - 1) >> SEGMENT_SHIFT;
+        LogEntry[][] segments = new LogEntry[segmentCount][];
+        for (int s = 0; s < segmentCount; s++) {
+            segments[s] = new LogEntry[SEGMENT_SIZE];
+            int from = s << SEGMENT_SHIFT;
+            int to = Math.min(from + SEGMENT_SIZE, logs.size());
+            for (int i = from; i < to; i++) {
+                segments[s][i - from] = logs.get(i);
+            }
+        }
+        return new View(segments, 0, logs.size());
+    }
+
+    // 第一条时间不早于cutoff的位置
+    private static int lowerBound(View current, LocalDateTime cutoff) {
+        int low = 0;
+        int high = current.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (current.get(mid).getTimestamp().isBefore(cutoff)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // 第一条时间晚于timestamp的位置（相同时间的日志保持到达顺序）
+    private static int upperBound(LogEntry[] segment, int from, int to, LocalDateTime timestamp) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (segment[mid].getTimestamp().isAfter(timestamp)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 倒排索引：键 → 按时间有序的日志列表。
+     */
+    private static final class LogIndexes {
+        final Map<String, PostingList> byBadge = new ConcurrentHashMap<>();
+        final Map<String, PostingList> byEmployee = new ConcurrentHashMap<>();
+        final Map<String, PostingList> byResource = new ConcurrentHashMap<>();
+        final Map<AccessDecision, PostingList> byDecision = new ConcurrentHashMap<>();
+
+        static LogIndexes of(List<LogEntry> logs) {
+            LogIndexes indexes = new LogIndexes();
+            for (LogEntry log : logs) {
+                indexes.add(log);
+            }
+            return indexes;
+        }
+
+        void add(LogEntry log) {
+            if (log.getBadge() != null) {
+                post(byBadge, log.getBadge().getBadgeId(), log);
+            }
+            if (log.getEmployee() != null) {
+                post(byEmployee, log.getEmployee().getEmployeeId(), log);
+            }
+            if (log.getResource() != null) {
+                post(byResource, log.getResource().getResourceId(), log);
+            }
+            post(byDecision, log.getDecision(), log);
+        }
+
+        void removeBefore(LocalDateTime cutoff) {
+            trim(byBadge, cutoff);
+            trim(byEmployee, cutoff);
+            trim(byResource, cutoff);
+            trim(byDecision, cutoff);
+        }
+
+        private static <K> void post(Map<K, PostingList> index, K key, LogEntry log) {
+            if (key != null) {
+                index.computeIfAbsent(key, k -> new PostingList()).add(log);
+            }
+        }
+
+        private static <K> void trim(Map<K, PostingList> index, LocalDateTime cutoff) {
+            index.entrySet().removeIf(entry -> entry.getValue().removeBefore(cutoff) == 0);
+        }
+    }
+
+    /**
+     * 不可变快照：segments[0]从offset开始，共size条。
+     */
+    private static final class View {
+        static final View EMPTY = new View(new LogEntry[0][], 0, 0);
+
+        final LogEntry[][] segments;
+        final int offset;
+        final int size;
+
+        View(LogEntry[][] segments, int offset, int size) {
+            this.segments = segments;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        LogEntry get(int index) {
+            int position = index + offset;
+            return segments[position >> SEGMENT_SHIFT][position & SEGMENT_MASK];
+        }
+    }
+
+    private static final class SnapshotList extends AbstractList<LogEntry> implements RandomAccess {
+        private final View view;
+
+        SnapshotList(View view) {
+            this.view = view;
+        }
+
+        @Override
+        public LogEntry get(int index) {
+            if (index < 0 || index >= view.size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + view.size);
+            }
+            return view.get(index);
+        }
+
+        @Override
+        public int size() {
+            return view.size;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package acs.cache;
+
+import acs.domain.Resource;
+import acs.domain.ZoneOffsetTable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 站点时区注册表：按资源所在建筑（Resource.building）确定本地时间。
+ *
+ * 设计原则：
+ * - 建筑到时区的映射来自配置 acs.zone.buildings（格式：建筑=时区,建筑=时区），未配置的建筑使用默认时区
+ * - 默认时区来自 acs.zone.default，未配置时为服务器时区
+ * - 每个时区启动时预计算一次偏移量切换表（ZoneOffsetTable），同一时区的建筑共用一张表
+ * - 日/周计数边界、时间过滤器和徽章日期判断都用资源所在站点的本地时间
+ * - 日志时间统一使用服务器时区（与 ClockService 一致），日志缓存、数据库和CSV中的时间按真实时间有序；
+ *   需要站点本地时间时（如从日志重建计数）用 logTimeToSiteTime 换算
+ */
+@Component
+public class SiteZoneRegistry {
+
+    // 切换表覆盖的年份范围（相对启动时的年份）
+    private static final int YEARS_BEFORE = 20;
+    private static final int YEARS_AFTER = 30;
+
+    private final ZoneOffsetTable defaultTable;
+    private final ZoneOffsetTable logTable;
+    private final Map<String, ZoneOffsetTable> tablesByBuilding;
+
+    @Autowired
+    public SiteZoneRegistry(@Value("${acs.zone.default:}") String defaultZone,
+                            @Value("${acs.zone.buildings:}") String buildingZones) {
+        Map<ZoneId, ZoneOffsetTable> tablesByZone = new HashMap<>();
+        ZoneId defaultZoneId = defaultZone == null || defaultZone.trim().isEmpty()
+                ? ZoneId.systemDefault() : ZoneId.of(defaultZone.trim());
+        this.defaultTable = tablesByZone.computeIfAbsent(defaultZoneId, SiteZoneRegistry::buildTable);
+        this.logTable = tablesByZone.computeIfAbsent(ZoneId.systemDefault(), SiteZoneRegistry::buildTable);
+
+        Map<String, ZoneOffsetTable> byBuilding = new HashMap<>();
+        if (buildingZones != null && !buildingZones.trim().isEmpty()) {
+            for (String mapping : buildingZones.split(",")) {
+                if (mapping.trim().isEmpty()) {
+                    continue;
+                }
+                int separator = mapping.lastIndexOf('=');
+                if (separator <= 0) {
+                    throw new IllegalArgumentException("Invalid building zone mapping: " + mapping);
+                }
+                String building = mapping.substring(0, separator).trim();
+                ZoneId zone = ZoneId.of(mapping.substring(separator + 1).trim());
+                byBuilding.put(building, tablesByZone.computeIfAbsent(zone, SiteZoneRegistry::buildTable));
+            }
+        }
+        this.tablesByBuilding = Collections.unmodifiableMap(byBuilding);
+    }
+
+    /**
+     * 资源所在站点的偏移量表；资源为null或建筑未配置时返回默认表。
+     */
+    public ZoneOffsetTable tableFor(Resource resource) {
+        return tableForBuilding(resource != null ? resource.getBuilding() : null);
+    }
+
+    /**
+     * 建筑所在站点的偏移量表；建筑为null或未配置时返回默认表。
+     */
+    public ZoneOffsetTable tableForBuilding(String building) {
+        if (building == null) {
+            return defaultTable;
+        }
+        return tablesByBuilding.getOrDefault(building, defaultTable);
+    }
+
+    public ZoneOffsetTable defaultTable() {
+        return defaultTable;
+    }
+
+    /**
+     * 日志时间使用的偏移量表（服务器时区）。
+     */
+    public ZoneOffsetTable logTable() {
+        return logTable;
+    }
+
+    /**
+     * 把时间点换算为日志时间（服务器时区的本地时间）。
+     */
+    public LocalDateTime toLogTime(Instant timestamp) {
+        return logTable.toLocalDateTime(timestamp);
+    }
+
+    /**
+     * 把日志时间换算为建筑所在站点的本地时间；站点与日志同一时区时原样返回。
+     */
+    public LocalDateTime logTimeToSiteTime(String building, LocalDateTime logTime) {
+        ZoneOffsetTable site = tableForBuilding(building);
+        if (site == logTable) {
+            return logTime;
+        }
+        return site.toLocalDateTime(logTime.atZone(logTable.getZone()).toInstant());
+    }
+
+    public LocalDateTime toLocalDateTime(Resource resource, Instant timestamp) {
+        return tableFor(resource).toLocalDateTime(timestamp);
+    }
+
+    public LocalDate toLocalDate(Resource resource, Instant timestamp) {
+        return tableFor(resource).toLocalDate(timestamp);
+    }
+
+    public ZoneId zoneFor(Resource resource) {
+        return tableFor(resource).getZone();
+    }
+
+    private static ZoneOffsetTable buildTable(ZoneId zone) {
+        int year = Year.now(zone).getValue();
+        Instant from = LocalDate.of(year - YEARS_BEFORE, 1, 1).atStartOfDay().toInstant(ZoneOffset.UTC);
+        Instant to = LocalDate.of(year + YEARS_AFTER, 1, 1).atStartOfDay().toInstant(ZoneOffset.UTC);
+        return new ZoneOffsetTable(zone, from, to);
+    }
+}
@@ -0,0 +1,76 @@
+package acs.domain;
+
+import java.time.LocalDate;
+
+/**
+ * BadgeUpdateWindow 是徽章代码更新状态随日期变化的预计算形式。
+ *
+ * 设计原则：
+ * - 由徽章的 codeExpirationDate / updateDueDate / needsUpdate 一次算出两个边界日期，之后按日期查询状态只需两次比较
+ * - 代码过期后的第二天起需要更新（已标记需要更新时立即生效），更新截止日期的第二天起逾期
+ * - 未设置更新截止日期时按过期日期加更新窗口天数计算，与更新服务写回的截止日期一致
+ * - 只读取徽章字段、不修改徽章；徽章字段变化后需重新计算
+ */
+public final class BadgeUpdateWindow {
+
+    // 代码过期后允许更新的天数
+    public static final int UPDATE_WINDOW_DAYS = 14;
+
+    private static final BadgeUpdateWindow ALWAYS_OK = new BadgeUpdateWindow(null, null, null);
+
+    // 从该日期起需要更新；null表示不会需要更新
+    private final LocalDate requiredFrom;
+    // 从该日期起逾期；null表示不会逾期
+    private final LocalDate overdueFrom;
+    private final LocalDate updateDueDate;
+
+    private BadgeUpdateWindow(LocalDate requiredFrom, LocalDate overdueFrom, LocalDate updateDueDate) {
+        this.requiredFrom = requiredFrom;
+        this.overdueFrom = overdueFrom;
+        this.updateDueDate = updateDueDate;
+    }
+
+    /**
+     * 根据徽章当前字段计算；非激活或没有代码过期日期的徽章始终为 OK。
+     */
+    public static BadgeUpdateWindow of(Badge badge) {
+        if (badge == null || badge.getStatus() != BadgeStatus.ACTIVE || badge.getCodeExpirationDate() == null) {
+            return ALWAYS_OK;
+        }
+        LocalDate expiry = badge.getCodeExpirationDate();
+        LocalDate due = badge.getUpdateDueDate() != null ? badge.getUpdateDueDate() : expiry.plusDays(UPDATE_WINDOW_DAYS);
+        LocalDate requiredFrom = badge.isNeedsUpdate() ? LocalDate.MIN : expiry.plusDays(1);
+        return new BadgeUpdateWindow(requiredFrom, due.plusDays(1), due);
+    }
+
+    public BadgeUpdateStatus statusOn(LocalDate date) {
+        if (overdueFrom != null && !date.isBefore(overdueFrom)) {
+            return BadgeUpdateStatus.UPDATE_OVERDUE;
+        }
+        if (requiredFrom != null && !date.isBefore(requiredFrom)) {
+            return BadgeUpdateStatus.UPDATE_REQUIRED;
+        }
+        return BadgeUpdateStatus.OK;
+    }
+
+    /**
+     * statusOn(date) 的结果保持不变直到返回的日期（不含）；之后不再变化时返回null。
+     */
+    public LocalDate validUntil(LocalDate date) {
+        LocalDate next = null;
+        if (requiredFrom != null && requiredFrom.isAfter(date)) {
+            next = requiredFrom;
+        }
+        if (overdueFrom != null && overdueFrom.isAfter(date) && (next == null || overdueFrom.isBefore(next))) {
+            next = overdueFrom;
+        }
+        return next;
+    }
+
+    /**
+     * 更新截止日期（未设置时为过期日期加更新窗口天数），不会需要更新时为null。
+     */
+    public LocalDate getUpdateDueDate() {
+        return updateDueDate;
+    }
+}
@@ -0,0 +1,201 @@
+package acs.domain;
+
+import java.time.LocalDateTime;
+
+/**
+ * CompiledTimeFilter 是 TimeFilter 的预编译形式，用于高频匹配。
+ *
+ * 设计原则：
+ * - 由 TimeFilterService 在规则加载或修改后编译一次，挂在 TimeFilter 的瞬态字段上
+ * - 月份为12位掩码（bit0=1月），星期为7位掩码（bit0=星期一）
+ * - 时间区间为按起点排序的当日纳秒数组，端点均包含（与原字符串规则的比较语义一致）
+ * - 日期为31位掩码（bit0=1日），节假日通过 HolidayCalendar 的年度位集判断，均为常数时间
+ * - 匹配过程不分配对象，只做位运算和数组比较
+ */
+public final class CompiledTimeFilter {
+
+    public static final int ALL_MONTHS = (1 << 12) - 1;
+    public static final int ALL_DAYS = (1 << 7) - 1;
+    public static final int ALL_DAYS_OF_MONTH = (int) ((1L << 31) - 1);
+    // 不限制年份
+    public static final int ANY_YEAR = Integer.MIN_VALUE;
+    public static final long NANOS_PER_MINUTE = 60_000_000_000L;
+
+    private final int year;
+    private final int monthMask;
+    private final int dayOfWeekMask;
+    // 包含区间；为null表示不限制时间
+    private final long[] rangeStarts;
+    private final long[] rangeEnds;
+    // 排除区间；长度为0表示不排除
+    private final long[] excludedStarts;
+    private final long[] excludedEnds;
+    private final int dayOfMonthMask;
+    // 仅在节假日生效 / 节假日不生效；为null表示不检查
+    private final HolidayCalendar holidays;
+    private final HolidayCalendar excludedHolidays;
+
+    /**
+     * @param year 年份，ANY_YEAR 表示不限制
+     * @param monthMask 允许的月份（已去除排除的月份）
+     * @param dayOfWeekMask 允许的星期（已去除排除的星期）
+     * @param rangeStarts 包含区间起点（当日纳秒，升序），null表示不限制时间
+     * @param rangeEnds 包含区间终点，与起点一一对应
+     * @param excludedStarts 排除区间起点（当日纳秒，升序）
+     * @param excludedEnds 排除区间终点，与起点一一对应
+     */
+    public CompiledTimeFilter(int year, int monthMask, int dayOfWeekMask,
+                              long[] rangeStarts, long[] rangeEnds,
+                              long[] excludedStarts, long[] excludedEnds) {
+        this(year, monthMask, dayOfWeekMask, rangeStarts, rangeEnds, excludedStarts, excludedEnds,
+                ALL_DAYS_OF_MONTH, null, null);
+    }
+
+    /**
+     * @param dayOfMonthMask 允许的日期（已去除排除的日期）
+     * @param holidays 仅在该日历的节假日生效，null表示不限制
+     * @param excludedHolidays 在该日历的节假日不生效，null表示不排除
+     */
+    public CompiledTimeFilter(int year, int monthMask, int dayOfWeekMask,
+                              long[] rangeStarts, long[] rangeEnds,
+                              long[] excludedStarts, long[] excludedEnds,
+                              int dayOfMonthMask, HolidayCalendar holidays, HolidayCalendar excludedHolidays) {
+        this.year = year;
+        this.monthMask = monthMask;
+        this.dayOfWeekMask = dayOfWeekMask;
+        this.rangeStarts = rangeStarts;
+        this.rangeEnds = rangeEnds;
+        this.excludedStarts = excludedStarts;
+        this.excludedEnds = excludedEnds;
+        this.dayOfMonthMask = dayOfMonthMask;
+        this.holidays = holidays;
+        this.excludedHolidays = excludedHolidays;
+    }
+
+    public boolean matches(LocalDateTime dateTime) {
+        if (year != ANY_YEAR && year != dateTime.getYear()) {
+            return false;
+        }
+        if ((monthMask & (1 << (dateTime.getMonthValue() - 1))) == 0) {
+            return false;
+        }
+        if ((dayOfWeekMask & (1 << (dateTime.getDayOfWeek().getValue() - 1))) == 0) {
+            return false;
+        }
+        if (hasDateConditions() && !matchesDate(dateTime)) {
+            return false;
+        }
+        return matchesTimeOfDay(dateTime.toLocalTime().toNanoOfDay());
+    }
+
+    /**
+     * 只检查日期和节假日条件（不检查年、月、星期和当日时间）。
+     */
+    public boolean matchesDate(LocalDateTime dateTime) {
+        if ((dayOfMonthMask & (1 << (dateTime.getDayOfMonth() - 1))) == 0) {
+            return false;
+        }
+        if (holidays != null && !holidays.isHoliday(dateTime)) {
+            return false;
+        }
+        return excludedHolidays == null || !excludedHolidays.isHoliday(dateTime);
+    }
+
+    /**
+     * 是否有按具体日期判断的条件（日期或节假日）：这类条件无法合并进按星期重复的位图。
+     */
+    public boolean hasDateConditions() {
+        return dayOfMonthMask != ALL_DAYS_OF_MONTH || holidays != null || excludedHolidays != null;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getMonthMask() {
+        return monthMask;
+    }
+
+    public int getDayOfWeekMask() {
+        return dayOfWeekMask;
+    }
+
+    public int getDayOfMonthMask() {
+        return dayOfMonthMask;
+    }
+
+    public HolidayCalendar getHolidays() {
+        return holidays;
+    }
+
+    public HolidayCalendar getExcludedHolidays() {
+        return excludedHolidays;
+    }
+
+    /**
+     * 只检查当日时间（不检查年、月、星期）。
+     */
+    public boolean matchesTimeOfDay(long nanoOfDay) {
+        if (inAnyRange(excludedStarts, excludedEnds, nanoOfDay)) {
+            return false;
+        }
+        return rangeStarts == null || inAnyRange(rangeStarts, rangeEnds, nanoOfDay);
+    }
+
+    /**
+     * 当日时间的匹配结果在nanoOfDay之后第一次可能变化的时刻（区间起点或终点的下一纳秒），
+     * 当日不再变化时返回 Long.MAX_VALUE。
+     */
+    public long nextBoundaryAfter(long nanoOfDay) {
+        long next = Long.MAX_VALUE;
+        next = nextBoundary(rangeStarts, rangeEnds, nanoOfDay, next);
+        next = nextBoundary(excludedStarts, excludedEnds, nanoOfDay, next);
+        return next;
+    }
+
+    private static long nextBoundary(long[] starts, long[] ends, long nanoOfDay, long next) {
+        if (starts == null) {
+            return next;
+        }
+        for (int i = 0; i < starts.length; i++) {
+            if (starts[i] > nanoOfDay && starts[i] < next) {
+                next = starts[i];
+            }
+            // 区间终点包含在内，结果在终点的下一纳秒才变化
+            long afterEnd = ends[i] + 1;
+            if (afterEnd > nanoOfDay && afterEnd < next) {
+                next = afterEnd;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * 所有区间端点是否都落在整分钟上：是则同一分钟内（不含整分时刻）的匹配结果一致，可以按分钟合并。
+     */
+    public boolean isMinuteAligned() {
+        return aligned(rangeStarts) && aligned(rangeEnds) && aligned(excludedStarts) && aligned(excludedEnds);
+    }
+
+    private static boolean aligned(long[] nanos) {
+        if (nanos == null) {
+            return true;
+        }
+        for (long value : nanos) {
+            if (value % NANOS_PER_MINUTE != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 区间按起点升序：起点超过当前时间后不可能再命中
+    private static boolean inAnyRange(long[] starts, long[] ends, long nanoOfDay) {
+        for (int i = 0; i < starts.length && starts[i] <= nanoOfDay; i++) {
+            if (nanoOfDay <= ends[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,68 @@
+package acs.domain;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDate;
+
+/**
+ * Holiday 是节假日日历中的一个日期，同名日历的日期共同组成一个 HolidayCalendar。
+ */
+@Entity
+@Table(name = "holidays",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"calendar_name", "holiday_date"}))
+public class Holiday {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "calendar_name", nullable = false, length = 50)
+    private String calendarName;
+
+    @Column(name = "holiday_date", nullable = false)
+    private LocalDate holidayDate;
+
+    @Column(name = "description", length = 200)
+    private String description;
+
+    public Holiday() {
+    }
+
+    public Holiday(String calendarName, LocalDate holidayDate, String description) {
+        this.calendarName = calendarName;
+        this.holidayDate = holidayDate;
+        this.description = description;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getCalendarName() {
+        return calendarName;
+    }
+
+    public void setCalendarName(String calendarName) {
+        this.calendarName = calendarName;
+    }
+
+    public LocalDate getHolidayDate() {
+        return holidayDate;
+    }
+
+    public void setHolidayDate(LocalDate holidayDate) {
+        this.holidayDate = holidayDate;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+}
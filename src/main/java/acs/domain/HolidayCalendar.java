@@ -0,0 +1,100 @@
+package acs.domain;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HolidayCalendar 是一个命名的节假日日历，供时间规则按日期判断是否为节假日。
+ *
+ * 设计原则：
+ * - 每个年份编译为一个366位的位集（按年内第几天索引），按需构建并缓存
+ * - 查询为一次位读取，与日历中有多少个日期无关
+ * - 日期数据与年度位集作为一个整体快照发布（volatile），reload 后旧缓存整体失效
+ * - 同名日历在注册表中只有一个实例，已编译的时间规则引用它即可看到重新加载后的数据
+ */
+public final class HolidayCalendar {
+
+    public static final int DAYS_PER_LEAP_YEAR = 366;
+
+    private final String name;
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptySet());
+
+    public HolidayCalendar(String name) {
+        this.name = name;
+    }
+
+    public HolidayCalendar(String name, Collection<LocalDate> dates) {
+        this(name);
+        reload(dates);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 替换日历中的全部日期。
+     */
+    public void reload(Collection<LocalDate> dates) {
+        snapshot = new Snapshot(dates != null ? new HashSet<>(dates) : Collections.emptySet());
+    }
+
+    public boolean isHoliday(LocalDate date) {
+        return isHoliday(date.getYear(), date.getDayOfYear());
+    }
+
+    public boolean isHoliday(LocalDateTime dateTime) {
+        return isHoliday(dateTime.getYear(), dateTime.getDayOfYear());
+    }
+
+    /**
+     * @param dayOfYear 年内第几天，从1开始
+     */
+    public boolean isHoliday(int year, int dayOfYear) {
+        long[] bits = snapshot.bitsFor(year);
+        int index = dayOfYear - 1;
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public int size() {
+        return snapshot.dates.size();
+    }
+
+    public Set<LocalDate> getDates() {
+        return Collections.unmodifiableSet(snapshot.dates);
+    }
+
+    private static final class Snapshot {
+        private final Set<LocalDate> dates;
+        private final Map<Integer, long[]> years = new ConcurrentHashMap<>();
+
+        Snapshot(Set<LocalDate> dates) {
+            this.dates = dates;
+        }
+
+        long[] bitsFor(int year) {
+            long[] bits = years.get(year);
+            if (bits == null) {
+                bits = years.computeIfAbsent(year, this::build);
+            }
+            return bits;
+        }
+
+        private long[] build(int year) {
+            long[] bits = new long[(DAYS_PER_LEAP_YEAR + 63) >>> 6];
+            for (LocalDate date : dates) {
+                if (date.getYear() == year) {
+                    int index = date.getDayOfYear() - 1;
+                    bits[index >>> 6] |= 1L << index;
+                }
+            }
+            return bits;
+        }
+    }
+}
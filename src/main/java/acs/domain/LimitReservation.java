@@ -0,0 +1,79 @@
+package acs.domain;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * LimitReservation 表示一次访问在次数限制计数器中预占的名额
+ *
+ * AccessLimitService.reserve(...) 的返回值。
+ *
+ * 设计原则：
+ * - granted=false 表示已达到上限，不持有任何名额
+ * - 持有名额的预占必须且只能结算一次：放行时 commit，后续检查拒绝时 rollback
+ * - 重复结算是安全的（第二次调用被忽略）
+ */
+public class LimitReservation {
+
+    private static final LimitReservation DENIED = new LimitReservation(false, null, null, null);
+
+    private final boolean granted;
+    private final String employeeId;
+    private final String resourceId;
+    private final LocalDateTime timestamp;
+    private final AtomicBoolean settled = new AtomicBoolean(false);
+
+    private LimitReservation(boolean granted, String employeeId, String resourceId, LocalDateTime timestamp) {
+        this.granted = granted;
+        this.employeeId = employeeId;
+        this.resourceId = resourceId;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * 已预占名额的结果
+     */
+    public static LimitReservation held(String employeeId, String resourceId, LocalDateTime timestamp) {
+        return new LimitReservation(true, employeeId, resourceId, timestamp);
+    }
+
+    /**
+     * 已达到上限的结果
+     */
+    public static LimitReservation denied() {
+        return DENIED;
+    }
+
+    public boolean isGranted() {
+        return granted;
+    }
+
+    public String getEmployeeId() {
+        return employeeId;
+    }
+
+    public String getResourceId() {
+        return resourceId;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * 标记为已结算，返回true表示本次调用完成了结算
+     */
+    public boolean settle() {
+        return granted && settled.compareAndSet(false, true);
+    }
+
+    @Override
+    public String toString() {
+        return "LimitReservation{" +
+                "granted=" + granted +
+                ", employeeId='" + employeeId + '\'' +
+                ", resourceId='" + resourceId + '\'' +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
@@ -75,6 +75,10 @@ public class Profile {
     )
     private Set<Badge> badges = new HashSet<>();
 
+    // 合并全部时间过滤器后的时间表（不持久化），由TimeFilterService按需构建
+    @Transient
+    private volatile ProfileSchedule schedule;
+
     // 无参构造器（JPA必需）
     public Profile() {
         this.isActive = true;
@@ -157,6 +161,15 @@ public class Profile {
 
     public void setTimeFilters(Set<TimeFilter> timeFilters) {
         this.timeFilters = timeFilters;
+        this.schedule = null;
+    }
+
+    public ProfileSchedule getSchedule() {
+        return schedule;
+    }
+
+    public void setSchedule(ProfileSchedule schedule) {
+        this.schedule = schedule;
     }
 
     public Set<Group> getGroups() {
@@ -0,0 +1,287 @@
+package acs.domain;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ProfileSchedule 是一个配置文件全部时间过滤器合并后的时间表。
+ *
+ * 设计原则：
+ * - 每个年月对应一张一周分钟位图（7 × 1440 = 10080位），按需构建并缓存
+ * - 查询只需一次位读取，与配置文件包含多少个时间过滤器无关
+ * - 每分钟分两位：整分时刻（秒和纳秒为0）和分钟内其余时刻，以保持区间端点包含的语义
+ * - 区间端点不在整分钟上、或带日期/节假日条件的时间过滤器不进入位图，逐个匹配，结果与位图取或
+ * - 记录构建时每个过滤器的编译结果；集合被替换、增删或其中某个过滤器被修改（编译结果被清空或替换）后失效，
+ *   由 TimeFilterService 重新构建；不属于该配置文件的过滤器（如解析、校验、导入产生的临时对象）被修改不影响
+ */
+public final class ProfileSchedule {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+    // 最多缓存的年月位图数量，超过后清空重建
+    private static final int MAX_CACHED_MONTHS = 24;
+
+    private final Set<TimeFilter> source;
+    private final int sourceSize;
+    // 构建时的过滤器及其编译结果（一一对应），用于判断是否有过滤器被修改
+    private final TimeFilter[] sourceFilters;
+    private final CompiledTimeFilter[] sourceCompiled;
+    // 可合并进位图的过滤器
+    private final CompiledTimeFilter[] filters;
+    // 需逐个匹配的过滤器
+    private final CompiledTimeFilter[] looped;
+    private final Map<Integer, WeekBitmap> weeks = new ConcurrentHashMap<>();
+
+    /**
+     * @param source 构建时配置文件的时间过滤器集合（用于判断是否过期）
+     * @param timeFilters 参与构建的时间过滤器
+     * @param filters 与 timeFilters 一一对应的编译结果
+     */
+    public ProfileSchedule(Set<TimeFilter> source, List<TimeFilter> timeFilters, List<CompiledTimeFilter> filters) {
+        if (timeFilters.size() != filters.size()) {
+            throw new IllegalArgumentException("Each time filter needs exactly one compiled form");
+        }
+        this.source = source;
+        this.sourceSize = source != null ? source.size() : 0;
+        this.sourceFilters = timeFilters.toArray(new TimeFilter[0]);
+        this.sourceCompiled = filters.toArray(new CompiledTimeFilter[0]);
+        List<CompiledTimeFilter> merged = new ArrayList<>();
+        List<CompiledTimeFilter> others = new ArrayList<>();
+        for (CompiledTimeFilter filter : filters) {
+            if (filter.isMinuteAligned() && !filter.hasDateConditions()) {
+                merged.add(filter);
+            } else {
+                others.add(filter);
+            }
+        }
+        this.filters = merged.toArray(new CompiledTimeFilter[0]);
+        this.looped = others.toArray(new CompiledTimeFilter[0]);
+    }
+
+    /**
+     * 时间表是否仍对应给定的时间过滤器集合。
+     */
+    public boolean isCurrentFor(Set<TimeFilter> timeFilters) {
+        if (timeFilters != source || (source != null && source.size() != sourceSize)) {
+            return false;
+        }
+        for (int i = 0; i < sourceFilters.length; i++) {
+            if (sourceFilters[i].getCompiled() != sourceCompiled[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 任意一个时间过滤器允许该时间即返回true。
+     */
+    public boolean allows(LocalDateTime dateTime) {
+        return bitmapAllows(dateTime) || loopAllows(dateTime);
+    }
+
+    /**
+     * 匹配结果及其有效期：结果在返回的 validUntil 之前保持不变。
+     * 位图部分向后扫描位图找到第一个不同的位（不跨越月份边界）；
+     * 逐个匹配部分取各过滤器当天的下一个区间端点（不跨越日期边界）；两者取较早者。
+     */
+    public TimeFilterEvaluation evaluate(LocalDateTime dateTime) {
+        boolean bitmapMatched = bitmapAllows(dateTime);
+        boolean matched = bitmapMatched || loopAllows(dateTime);
+        LocalDateTime validUntil = dateTime.toLocalDate().withDayOfMonth(1).plusMonths(1).atStartOfDay();
+        if (filters.length > 0) {
+            validUntil = bitmapValidUntil(dateTime, bitmapMatched, validUntil);
+        }
+        if (looped.length > 0) {
+            long nanoOfDay = dateTime.toLocalTime().toNanoOfDay();
+            long next = Long.MAX_VALUE;
+            for (CompiledTimeFilter filter : looped) {
+                next = Math.min(next, filter.nextBoundaryAfter(nanoOfDay));
+            }
+            LocalDateTime dayEnd = dateTime.toLocalDate().plusDays(1).atStartOfDay();
+            LocalDateTime candidate = next == Long.MAX_VALUE ? dayEnd : dateTime.plusNanos(next - nanoOfDay);
+            if (candidate.isAfter(dayEnd)) {
+                candidate = dayEnd;
+            }
+            if (candidate.isBefore(validUntil)) {
+                validUntil = candidate;
+            }
+        }
+        return new TimeFilterEvaluation(matched, dateTime, validUntil);
+    }
+
+    private boolean bitmapAllows(LocalDateTime dateTime) {
+        if (filters.length == 0) {
+            return false;
+        }
+        WeekBitmap week = weekFor(dateTime);
+        int minuteOfWeek = (dateTime.getDayOfWeek().getValue() - 1) * MINUTES_PER_DAY
+                + dateTime.getHour() * 60 + dateTime.getMinute();
+        boolean onMinute = dateTime.getSecond() == 0 && dateTime.getNano() == 0;
+        return week.get(minuteOfWeek, onMinute);
+    }
+
+    private boolean loopAllows(LocalDateTime dateTime) {
+        for (CompiledTimeFilter filter : looped) {
+            if (filter.matches(dateTime)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private LocalDateTime bitmapValidUntil(LocalDateTime dateTime, boolean matched, LocalDateTime monthEnd) {
+        WeekBitmap week = weekFor(dateTime);
+        int current = (dateTime.getDayOfWeek().getValue() - 1) * MINUTES_PER_DAY
+                + dateTime.getHour() * 60 + dateTime.getMinute();
+        boolean onMinute = dateTime.getSecond() == 0 && dateTime.getNano() == 0;
+        LocalDateTime minuteStart = dateTime.withSecond(0).withNano(0);
+
+        // 下一个整分时刻从下一分钟开始；当前恰为整分时，本分钟其余时刻也在之后
+        long onAhead = week.minutesUntilChange(week.onMinute, current + 1, matched);
+        long withinAhead = onMinute
+                ? week.minutesUntilChange(week.withinMinute, current, matched)
+                : week.minutesUntilChange(week.withinMinute, current + 1, matched);
+        if (onAhead >= 0) {
+            onAhead += 1;
+        }
+        if (withinAhead >= 0 && !onMinute) {
+            withinAhead += 1;
+        }
+
+        LocalDateTime validUntil = monthEnd;
+        if (onAhead >= 0) {
+            LocalDateTime candidate = minuteStart.plusMinutes(onAhead);
+            if (candidate.isBefore(validUntil)) {
+                validUntil = candidate;
+            }
+        }
+        if (withinAhead >= 0) {
+            // 分钟内其余时刻从整分后的下一纳秒开始
+            LocalDateTime candidate = minuteStart.plusMinutes(withinAhead).plusNanos(1);
+            if (candidate.isBefore(validUntil)) {
+                validUntil = candidate;
+            }
+        }
+        return validUntil;
+    }
+
+    public int getFilterCount() {
+        return filters.length + looped.length;
+    }
+
+    private WeekBitmap weekFor(LocalDateTime dateTime) {
+        int key = dateTime.getYear() * 12 + dateTime.getMonthValue() - 1;
+        WeekBitmap week = weeks.get(key);
+        if (week == null) {
+            if (weeks.size() >= MAX_CACHED_MONTHS) {
+                weeks.clear();
+            }
+            week = weeks.computeIfAbsent(key, k -> build(dateTime.getYear(), dateTime.getMonthValue()));
+        }
+        return week;
+    }
+
+    private WeekBitmap build(int year, int month) {
+        WeekBitmap week = new WeekBitmap();
+        long[] dayOnMinute = new long[words(MINUTES_PER_DAY)];
+        long[] dayWithinMinute = new long[words(MINUTES_PER_DAY)];
+        for (CompiledTimeFilter filter : filters) {
+            if (filter.getYear() != CompiledTimeFilter.ANY_YEAR && filter.getYear() != year) {
+                continue;
+            }
+            if ((filter.getMonthMask() & (1 << (month - 1))) == 0 || filter.getDayOfWeekMask() == 0) {
+                continue;
+            }
+            // 先算出该过滤器一天内的分钟位，再复制到允许的星期
+            Arrays.fill(dayOnMinute, 0L);
+            Arrays.fill(dayWithinMinute, 0L);
+            for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+                long nanoOfDay = minute * CompiledTimeFilter.NANOS_PER_MINUTE;
+                if (filter.matchesTimeOfDay(nanoOfDay)) {
+                    set(dayOnMinute, minute);
+                }
+                // 端点都在整分钟上，分钟内任一非整分时刻的结果都相同，取半分钟处代表
+                if (filter.matchesTimeOfDay(nanoOfDay + CompiledTimeFilter.NANOS_PER_MINUTE / 2)) {
+                    set(dayWithinMinute, minute);
+                }
+            }
+            for (int day = 0; day < 7; day++) {
+                if ((filter.getDayOfWeekMask() & (1 << day)) != 0) {
+                    week.or(day, dayOnMinute, dayWithinMinute);
+                }
+            }
+        }
+        return week;
+    }
+
+    private static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    private static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static boolean get(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static final class WeekBitmap {
+        private final long[] onMinute = new long[words(MINUTES_PER_WEEK)];
+        private final long[] withinMinute = new long[words(MINUTES_PER_WEEK)];
+
+        boolean get(int minuteOfWeek, boolean atMinuteStart) {
+            return ProfileSchedule.get(atMinuteStart ? onMinute : withinMinute, minuteOfWeek);
+        }
+
+        /**
+         * 从一周内第from分钟（可以等于一周分钟数，表示回绕到周一0点）开始，
+         * 找到第一个取值不等于expected的位，返回距from的分钟数；一整周都相同时返回-1。
+         */
+        long minutesUntilChange(long[] bits, int from, boolean expected) {
+            int start = from % MINUTES_PER_WEEK;
+            int index = nextDifferent(bits, start, MINUTES_PER_WEEK, expected);
+            if (index >= 0) {
+                return index - start;
+            }
+            index = nextDifferent(bits, 0, start, expected);
+            return index >= 0 ? index + MINUTES_PER_WEEK - start : -1;
+        }
+
+        // [from, to)内第一个不等于expected的位，没有则返回-1
+        private static int nextDifferent(long[] bits, int from, int to, boolean expected) {
+            long flip = expected ? -1L : 0L;
+            int wordIndex = from >>> 6;
+            long word = (bits[wordIndex] ^ flip) & (-1L << from);
+            while (true) {
+                if (word != 0) {
+                    int index = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+                    return index < to ? index : -1;
+                }
+                wordIndex++;
+                if ((wordIndex << 6) >= to) {
+                    return -1;
+                }
+                word = bits[wordIndex] ^ flip;
+            }
+        }
+
+        void or(int day, long[] dayOnMinute, long[] dayWithinMinute) {
+            int base = day * MINUTES_PER_DAY;
+            for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+                if (ProfileSchedule.get(dayOnMinute, minute)) {
+                    set(onMinute, base + minute);
+                }
+                if (ProfileSchedule.get(dayWithinMinute, minute)) {
+                    set(withinMinute, base + minute);
+                }
+            }
+        }
+    }
+}
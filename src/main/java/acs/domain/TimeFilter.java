@@ -13,7 +13,7 @@ import java.util.Set;
  * - timeFilterId 是时间过滤器的唯一标识符
  * - 支持复杂的年、月、日、星期、时间范围规则
  * - 规则格式示例："2025.July,August.Monday-Friday.8:00-12:00"
- * - 解析后的字段便于快速匹配
+ * - 解析后的字段便于快速匹配；匹配时使用由这些字段编译出的 CompiledTimeFilter
  */
 @Entity
 @Table(name = "time_filters")
@@ -59,6 +59,17 @@ public class TimeFilter {
     @Column(name = "excluded_time_ranges", length = 200)
     private String excludedTimeRanges;
 
+    @Column(name = "excluded_days_of_month", length = 100)
+    private String excludedDaysOfMonth;
+
+    // 仅在该节假日日历中的日期生效
+    @Column(name = "holiday_calendar", length = 50)
+    private String holidayCalendar;
+
+    // 在该节假日日历中的日期不生效
+    @Column(name = "excluded_holiday_calendar", length = 50)
+    private String excludedHolidayCalendar;
+
     @Column(name = "is_recurring")
     private Boolean isRecurring;
 
@@ -68,6 +79,10 @@ public class TimeFilter {
     @ManyToMany(mappedBy = "timeFilters")
     private Set<Profile> profiles = new HashSet<>();
 
+    // 预编译的匹配形式（不持久化）；匹配相关字段被修改时清空，由TimeFilterService重新编译
+    @Transient
+    private volatile CompiledTimeFilter compiled;
+
     // 无参构造器（JPA必需）
     public TimeFilter() {
         this.isRecurring = false;
@@ -112,6 +127,7 @@ public class TimeFilter {
 
     public void setYear(Integer year) {
         this.year = year;
+        invalidateCompiled();
     }
 
     public String getMonths() {
@@ -120,6 +136,7 @@ public class TimeFilter {
 
     public void setMonths(String months) {
         this.months = months;
+        invalidateCompiled();
     }
 
     public String getDaysOfMonth() {
@@ -128,6 +145,7 @@ public class TimeFilter {
 
     public void setDaysOfMonth(String daysOfMonth) {
         this.daysOfMonth = daysOfMonth;
+        invalidateCompiled();
     }
 
     public String getDaysOfWeek() {
@@ -136,6 +154,7 @@ public class TimeFilter {
 
     public void setDaysOfWeek(String daysOfWeek) {
         this.daysOfWeek = daysOfWeek;
+        invalidateCompiled();
     }
 
     public LocalTime getStartTime() {
@@ -144,6 +163,7 @@ public class TimeFilter {
 
     public void setStartTime(LocalTime startTime) {
         this.startTime = startTime;
+        invalidateCompiled();
     }
 
     public LocalTime getEndTime() {
@@ -152,6 +172,7 @@ public class TimeFilter {
 
     public void setEndTime(LocalTime endTime) {
         this.endTime = endTime;
+        invalidateCompiled();
     }
 
     public Boolean getIsRecurring() {
@@ -176,6 +197,7 @@ public class TimeFilter {
 
     public void setTimeRanges(String timeRanges) {
         this.timeRanges = timeRanges;
+        invalidateCompiled();
     }
 
     public String getExcludedMonths() {
@@ -184,6 +206,7 @@ public class TimeFilter {
 
     public void setExcludedMonths(String excludedMonths) {
         this.excludedMonths = excludedMonths;
+        invalidateCompiled();
     }
 
     public String getExcludedDaysOfWeek() {
@@ -192,6 +215,7 @@ public class TimeFilter {
 
     public void setExcludedDaysOfWeek(String excludedDaysOfWeek) {
         this.excludedDaysOfWeek = excludedDaysOfWeek;
+        invalidateCompiled();
     }
 
     public String getExcludedTimeRanges() {
@@ -200,6 +224,47 @@ public class TimeFilter {
 
     public void setExcludedTimeRanges(String excludedTimeRanges) {
         this.excludedTimeRanges = excludedTimeRanges;
+        invalidateCompiled();
+    }
+
+    public String getExcludedDaysOfMonth() {
+        return excludedDaysOfMonth;
+    }
+
+    public void setExcludedDaysOfMonth(String excludedDaysOfMonth) {
+        this.excludedDaysOfMonth = excludedDaysOfMonth;
+        invalidateCompiled();
+    }
+
+    public String getHolidayCalendar() {
+        return holidayCalendar;
+    }
+
+    public void setHolidayCalendar(String holidayCalendar) {
+        this.holidayCalendar = holidayCalendar;
+        invalidateCompiled();
+    }
+
+    public String getExcludedHolidayCalendar() {
+        return excludedHolidayCalendar;
+    }
+
+    public void setExcludedHolidayCalendar(String excludedHolidayCalendar) {
+        this.excludedHolidayCalendar = excludedHolidayCalendar;
+        invalidateCompiled();
+    }
+
+    // 清空编译结果：合并时间表记录了构建时各过滤器的编译结果，据此只让包含本过滤器的时间表失效
+    private void invalidateCompiled() {
+        this.compiled = null;
+    }
+
+    public CompiledTimeFilter getCompiled() {
+        return compiled;
+    }
+
+    public void setCompiled(CompiledTimeFilter compiled) {
+        this.compiled = compiled;
     }
 
     public Set<Profile> getProfiles() {
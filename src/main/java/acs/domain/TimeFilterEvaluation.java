@@ -0,0 +1,51 @@
+package acs.domain;
+
+import java.time.LocalDateTime;
+
+/**
+ * TimeFilterEvaluation 表示一次时间过滤器匹配的结果及其有效期。
+ *
+ * 设计原则：
+ * - matched 在 [evaluatedAt, validUntil) 区间内保持不变，调用方可以缓存到 validUntil 再重新计算
+ * - validUntil 是结果可能发生变化的最早时刻（区间起止、日期或月份边界），不保证一定变化
+ */
+public final class TimeFilterEvaluation {
+
+    private final boolean matched;
+    private final LocalDateTime evaluatedAt;
+    private final LocalDateTime validUntil;
+
+    public TimeFilterEvaluation(boolean matched, LocalDateTime evaluatedAt, LocalDateTime validUntil) {
+        this.matched = matched;
+        this.evaluatedAt = evaluatedAt;
+        this.validUntil = validUntil;
+    }
+
+    public boolean isMatched() {
+        return matched;
+    }
+
+    public LocalDateTime getEvaluatedAt() {
+        return evaluatedAt;
+    }
+
+    public LocalDateTime getValidUntil() {
+        return validUntil;
+    }
+
+    /**
+     * 给定时间的匹配结果是否可以直接使用本结果。
+     */
+    public boolean isValidAt(LocalDateTime dateTime) {
+        return !dateTime.isBefore(evaluatedAt) && dateTime.isBefore(validUntil);
+    }
+
+    @Override
+    public String toString() {
+        return "TimeFilterEvaluation{" +
+                "matched=" + matched +
+                ", evaluatedAt=" + evaluatedAt +
+                ", validUntil=" + validUntil +
+                '}';
+    }
+}
@@ -0,0 +1,77 @@
+package acs.domain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * TimeRuleImportResult 汇总一次批量时间规则导入的结果。
+ *
+ * 设计原则：
+ * - total 为非空、非注释的规则行数
+ * - 每条规则只会计入 invalid、duplicate、existing、saved 之一
+ * - errors 记录无效规则和写库失败规则的行号和原因（两者都计入 invalid）
+ */
+public class TimeRuleImportResult {
+
+    private int total;
+    private int duplicates;
+    private int existing;
+    private int saved;
+    private final List<String> errors = new ArrayList<>();
+
+    public void incrementTotal() {
+        total++;
+    }
+
+    public void incrementDuplicates() {
+        duplicates++;
+    }
+
+    public void addExisting(int count) {
+        existing += count;
+    }
+
+    public void addSaved(int count) {
+        saved += count;
+    }
+
+    public void addError(String error) {
+        errors.add(error);
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getInvalid() {
+        return errors.size();
+    }
+
+    public int getDuplicates() {
+        return duplicates;
+    }
+
+    public int getExisting() {
+        return existing;
+    }
+
+    public int getSaved() {
+        return saved;
+    }
+
+    public List<String> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    @Override
+    public String toString() {
+        return "TimeRuleImportResult{" +
+                "total=" + total +
+                ", invalid=" + errors.size() +
+                ", duplicates=" + duplicates +
+                ", existing=" + existing +
+                ", saved=" + saved +
+                '}';
+    }
+}
@@ -0,0 +1,86 @@
+package acs.domain;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ZoneOffsetTable 是一个时区在给定时间窗口内的偏移量切换表。
+ *
+ * 设计原则：
+ * - 构建时把窗口内的全部切换点（夏令时等）展开为升序的纪元秒数组和对应偏移量
+ * - 换算 Instant → 本地时间只需一次二分查找，不在每次刷卡时调用 ZoneRules
+ * - 固定偏移的时区没有切换点，直接使用唯一的偏移量
+ * - 超出窗口的时间退回 ZoneRules，结果与 ZoneId 换算一致
+ */
+public final class ZoneOffsetTable {
+
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    private final long windowStart;
+    private final long windowEnd;
+    // transitions[i] 为第i个切换点的纪元秒；offsets[i] 为该切换点之前的偏移量，offsets[n] 为最后一个切换点之后的偏移量
+    private final long[] transitions;
+    private final ZoneOffset[] offsets;
+
+    /**
+     * @param zone 时区
+     * @param from 窗口起点（含）
+     * @param to 窗口终点（不含）
+     */
+    public ZoneOffsetTable(ZoneId zone, Instant from, Instant to) {
+        this.zone = zone;
+        this.rules = zone.getRules();
+        this.windowStart = from.getEpochSecond();
+        this.windowEnd = to.getEpochSecond();
+
+        List<ZoneOffsetTransition> found = new ArrayList<>();
+        if (!rules.isFixedOffset()) {
+            ZoneOffsetTransition transition = rules.nextTransition(from);
+            while (transition != null && transition.getInstant().isBefore(to)) {
+                found.add(transition);
+                transition = rules.nextTransition(transition.getInstant());
+            }
+        }
+        this.transitions = new long[found.size()];
+        this.offsets = new ZoneOffset[found.size() + 1];
+        offsets[0] = rules.getOffset(from);
+        for (int i = 0; i < found.size(); i++) {
+            transitions[i] = found.get(i).toEpochSecond();
+            offsets[i + 1] = found.get(i).getOffsetAfter();
+        }
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    public int getTransitionCount() {
+        return transitions.length;
+    }
+
+    public ZoneOffset offsetAt(Instant instant) {
+        long epochSecond = instant.getEpochSecond();
+        if (epochSecond < windowStart || epochSecond >= windowEnd) {
+            return rules.getOffset(instant);
+        }
+        int index = Arrays.binarySearch(transitions, epochSecond);
+        // 恰在切换点上时使用切换后的偏移量
+        return offsets[index >= 0 ? index + 1 : -index - 1];
+    }
+
+    public LocalDateTime toLocalDateTime(Instant instant) {
+        return LocalDateTime.ofEpochSecond(instant.getEpochSecond(), instant.getNano(), offsetAt(instant));
+    }
+
+    public LocalDate toLocalDate(Instant instant) {
+        return LocalDate.ofEpochDay(Math.floorDiv(instant.getEpochSecond() + offsetAt(instant).getTotalSeconds(), 86_400L));
+    }
+}
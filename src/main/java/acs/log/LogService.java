@@ -2,7 +2,18 @@ package acs.log;
 
 import acs.domain.LogEntry;
 
+import java.util.List;
+
 public interface LogService {
 
     void record(LogEntry entry);
+
+    /**
+     * 按顺序记录一批日志（批量访问决策使用），实现可以一次性写入缓存和数据库队列。
+     */
+    default void recordAll(List<LogEntry> entries) {
+        for (LogEntry entry : entries) {
+            record(entry);
+        }
+    }
 }
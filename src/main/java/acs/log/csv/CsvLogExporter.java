@@ -1,21 +1,38 @@
 package acs.log.csv;
 
+import acs.cache.ResourceReaderCache;
 import acs.domain.LogEntry;
-import acs.domain.BadgeReader;
-import acs.repository.BadgeReaderRepository;
+import acs.log.impl.AsyncLogWriter;
+import acs.repository.AccessLogRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Component;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * CSV日志导出器，用于将一组LogEntry导出为单个CSV文件。
  * 适用于日志搜索结果导出。
+ *
+ * 设计原则：
+ * - 逐行格式化并经缓冲写出，不在内存中拼接整个文件
+ * - 从数据库导出时按ID键集分页读取，每页读完即可回收，内存占用与导出总量无关
+ * - 可选gzip压缩输出
  */
 @Component
 public class CsvLogExporter {
@@ -24,26 +41,36 @@ public class CsvLogExporter {
     private static final DateTimeFormatter DAY_OF_WEEK_FORMATTER = DateTimeFormatter.ofPattern("E", Locale.ENGLISH);
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
     
-    private final BadgeReaderRepository badgeReaderRepository;
+    private static final String HEADER = "Year,Month,Day,DayOfWeek,Time,BadgeId,ReaderId,ResourceId,EmployeeId,EmployeeName,Decision";
+    private static final int PAGE_SIZE = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private final ResourceReaderCache readerCache;
+    private final AccessLogRepository accessLogRepository;
+    private final AsyncLogWriter asyncLogWriter;
     
     @Autowired
-    public CsvLogExporter(BadgeReaderRepository badgeReaderRepository) {
-        this.badgeReaderRepository = badgeReaderRepository;
+    public CsvLogExporter(ResourceReaderCache readerCache,
+                          AccessLogRepository accessLogRepository,
+                          AsyncLogWriter asyncLogWriter) {
+        this.readerCache = readerCache;
+        this.accessLogRepository = accessLogRepository;
+        this.asyncLogWriter = asyncLogWriter;
+    }
+    
+    public CsvLogExporter(ResourceReaderCache readerCache) {
+        this(readerCache, null, null);
     }
     
     /**
-     * 根据资源ID查找读卡器ID。
-     * 如果找不到读卡器，返回空字符串；如果找到多个，返回第一个读卡器ID。
+     * 根据资源ID查找读卡器ID（读取共享映射缓存，不访问数据库）。
+     * 如果找不到读卡器，返回空字符串。
      */
     private String findReaderIdByResourceId(String resourceId) {
-        if (badgeReaderRepository == null || resourceId == null || resourceId.isEmpty()) {
-            return "";
-        }
-        List<BadgeReader> readers = badgeReaderRepository.findByResourceId(resourceId);
-        if (readers.isEmpty()) {
+        if (readerCache == null) {
             return "";
         }
-        return readers.get(0).getReaderId();
+        return readerCache.getReaderId(resourceId);
     }
     
     /**
@@ -51,14 +78,75 @@ public class CsvLogExporter {
      * 文件将包含标题行和所有条目。
      */
     public void exportToFile(List<LogEntry> entries, Path outputFile) throws IOException {
-        StringBuilder csvContent = new StringBuilder();
-        // 添加标题行
-        csvContent.append("Year,Month,Day,DayOfWeek,Time,BadgeId,ReaderId,ResourceId,EmployeeId,EmployeeName,Decision\n");
-        for (LogEntry entry : entries) {
-            csvContent.append(formatCsvLine(entry)).append("\n");
+        exportToFile(entries.iterator(), outputFile, false);
+    }
+    
+    /**
+     * 将日志条目逐条流式导出到指定文件，gzip为true时以gzip格式压缩输出。
+     * 返回导出的条目数。
+     */
+    public long exportToFile(Iterator<LogEntry> entries, Path outputFile, boolean gzip) throws IOException {
+        Path parent = outputFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (OutputStream out = Files.newOutputStream(outputFile)) {
+            if (gzip) {
+                try (GZIPOutputStream gzipOut = new GZIPOutputStream(out, BUFFER_SIZE)) {
+                    return export(entries, gzipOut);
+                }
+            }
+            return export(entries, out);
+        }
+    }
+    
+    /**
+     * 将日志条目逐条写入输出流（含标题行），写完后刷新但不关闭输出流。
+     * 返回导出的条目数。
+     */
+    public long export(Iterator<LogEntry> entries, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writer.write(HEADER);
+        writer.write('\n');
+        long count = 0;
+        while (entries.hasNext()) {
+            writer.write(formatCsvLine(entries.next()));
+            writer.write('\n');
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+    
+    /**
+     * 从数据库分页读取全部日志并流式导出。
+     */
+    public long exportAllFromRepository(Path outputFile, boolean gzip) throws IOException {
+        return exportToFile(pagedEntries(afterId ->
+                accessLogRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, PAGE_SIZE))),
+                outputFile, gzip);
+    }
+    
+    /**
+     * 从数据库分页读取指定时间范围内的日志并流式导出。
+     */
+    public long exportRangeFromRepository(LocalDateTime start, LocalDateTime end, Path outputFile, boolean gzip)
+            throws IOException {
+        return exportToFile(pagedEntries(afterId ->
+                accessLogRepository.findByIdGreaterThanAndTimestampBetweenOrderByIdAsc(
+                        afterId, start, end, PageRequest.of(0, PAGE_SIZE))),
+                outputFile, gzip);
+    }
+    
+    private Iterator<LogEntry> pagedEntries(Function<Long, List<LogEntry>> pageLoader) {
+        if (accessLogRepository == null) {
+            throw new IllegalStateException("Access log repository unavailable");
         }
-        Files.createDirectories(outputFile.getParent());
-        Files.writeString(outputFile, csvContent.toString());
+        if (asyncLogWriter != null) {
+            // 先写完尚未落库的日志，保证导出内容完整
+            asyncLogWriter.flush();
+        }
+        return new PagedLogIterator(pageLoader);
     }
     
     /**
@@ -66,7 +154,7 @@ public class CsvLogExporter {
      */
     public String exportToString(List<LogEntry> entries) {
         StringBuilder sb = new StringBuilder();
-        sb.append("Year,Month,Day,DayOfWeek,Time,BadgeId,ReaderId,ResourceId,EmployeeId,EmployeeName,Decision\n");
+        sb.append(HEADER).append("\n");
         for (LogEntry entry : entries) {
             sb.append(formatCsvLine(entry)).append("\n");
         }
@@ -103,4 +191,47 @@ public class CsvLogExporter {
                 year, month, day, dayOfWeek, time,
                 badgeId, readerId, resourceId, employeeId, employeeName, decision);
     }
-}
\ No newline at end of file
+    
+    /**
+     * 按ID键集分页遍历日志：只持有当前页，当前页遍历完后再读取下一页。
+     */
+    private static final class PagedLogIterator implements Iterator<LogEntry> {
+        private final Function<Long, List<LogEntry>> pageLoader;
+        private List<LogEntry> page = Collections.emptyList();
+        private int index;
+        private long lastId = 0L;
+        private boolean exhausted;
+        
+        PagedLogIterator(Function<Long, List<LogEntry>> pageLoader) {
+            this.pageLoader = pageLoader;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            if (index < page.size()) {
+                return true;
+            }
+            if (exhausted) {
+                return false;
+            }
+            page = pageLoader.apply(lastId);
+            index = 0;
+            if (page.size() < PAGE_SIZE) {
+                exhausted = true;
+            }
+            if (page.isEmpty()) {
+                return false;
+            }
+            lastId = page.get(page.size() - 1).getId();
+            return true;
+        }
+        
+        @Override
+        public LogEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.get(index++);
+        }
+    }
+}
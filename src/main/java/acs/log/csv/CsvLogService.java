@@ -6,6 +6,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.context.annotation.Primary;
 import org.springframework.beans.factory.annotation.Qualifier;
 
+import java.util.List;
+
 /**
  * CSV日志服务装饰器，包装原有的LogService实现，在记录日志时同时写入CSV文件。
  * 确保日志既保存到数据库，又按PDF要求的格式输出到CSV文件。
@@ -27,7 +29,7 @@ public class CsvLogService implements LogService {
         // 1. 委托给原始LogService保存到数据库（及缓存）
         delegate.record(entry);
         
-        // 2. 异步写入CSV文件（实际同步，但捕获异常不影响主流程）
+        // 2. 写入CSV文件（入队后由写锁持有线程批量写出，捕获异常不影响主流程）
         try {
             csvLogWriter.write(entry);
         } catch (Exception e) {
@@ -36,4 +38,17 @@ public class CsvLogService implements LogService {
             // 生产环境应使用日志框架
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public void recordAll(List<LogEntry> entries) {
+        delegate.recordAll(entries);
+        try {
+            for (LogEntry entry : entries) {
+                csvLogWriter.write(entry);
+            }
+        } catch (Exception e) {
+            // CSV写入失败不应影响业务逻辑，仅记录错误
+            e.printStackTrace();
+        }
+    }
+}
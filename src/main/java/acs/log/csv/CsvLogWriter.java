@@ -1,19 +1,32 @@
 package acs.log.csv;
 
+import acs.cache.ResourceReaderCache;
 import acs.domain.LogEntry;
-import acs.domain.BadgeReader;
-import acs.repository.BadgeReaderRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * CSV日志写入器，负责按日/月/年目录结构写入CSV格式的日志行。
@@ -21,7 +34,15 @@ import java.util.Locale;
  * CSV格式示例：2025,Dec,24,Wed,14:36:49,BX76Z541,BR59KA87,R7U39PL2,83746028,John:Doe,GRANTED
  * 字段顺序：年,月,日,星期几,时间,徽章ID,读卡器ID,资源ID,员工ID,员工姓名,访问决策
  * 
- * 注意：当前LogEntry未包含读卡器ID，此处通过资源ID查找对应的读卡器ID。
+ * 注意：当前LogEntry未包含读卡器ID，此处通过共享的资源→读卡器映射缓存查找读卡器ID。
+ *
+ * 设计原则：
+ * - 调用方线程只格式化CSV行并放入无锁队列，不持有全局监视器
+ * - 抢到写锁的线程负责把队列中的行写入当天文件（其他线程的行一并写出）
+ * - 最近写入的两天文件（通常是当天和前一天）保持打开并带缓冲，跨零点前后交错到达的行不会反复关闭、重新打开文件；
+ *   需要第三天的文件时关闭最久未写入的那个
+ * - 缓冲字符数超过阈值或距上次刷新超过间隔时刷新到磁盘；后台定时刷新空闲时的残留数据
+ * - 需要立即读取文件内容时调用 flush()，应用关闭时 close() 写完全部数据
  */
 @Component
 public class CsvLogWriter {
@@ -30,12 +51,31 @@ public class CsvLogWriter {
     private static final DateTimeFormatter DAY_OF_WEEK_FORMATTER = DateTimeFormatter.ofPattern("E", Locale.ENGLISH);
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
     
+    // 缓冲字符数达到该值时刷新到磁盘
+    private static final int FLUSH_THRESHOLD_CHARS = 8 * 1024;
+    // 距上次刷新超过该时间时刷新到磁盘
+    private static final long FLUSH_INTERVAL_MS = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // 同时保持打开的日文件数
+    private static final int MAX_OPEN_DAYS = 2;
+
     private final Path baseLogDir;
-    private final BadgeReaderRepository badgeReaderRepository;
+    private final ResourceReaderCache readerCache;
+
+    private final Queue<PendingLine> pending = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // 以下字段只在持有writeLock时访问
+    // 日期 → 打开的文件，按最近写入顺序排列
+    private final Map<LocalDate, BufferedWriter> openWriters = new LinkedHashMap<>(4, 0.75f, true);
+    private int unflushedChars;
+    private long lastFlushNanos = System.nanoTime();
+
+    private ScheduledExecutorService flushScheduler;
     
     @Autowired
-    public CsvLogWriter(BadgeReaderRepository badgeReaderRepository) {
-        this(Paths.get("./logs"), badgeReaderRepository);
+    public CsvLogWriter(ResourceReaderCache readerCache) {
+        this(Paths.get("./logs"), readerCache);
     }
     
     public CsvLogWriter() {
@@ -46,9 +86,9 @@ public class CsvLogWriter {
         this(baseLogDir, null);
     }
     
-    public CsvLogWriter(Path baseLogDir, BadgeReaderRepository badgeReaderRepository) {
+    public CsvLogWriter(Path baseLogDir, ResourceReaderCache readerCache) {
         this.baseLogDir = baseLogDir;
-        this.badgeReaderRepository = badgeReaderRepository;
+        this.readerCache = readerCache;
         try {
             Files.createDirectories(baseLogDir);
         } catch (IOException e) {
@@ -56,24 +96,169 @@ public class CsvLogWriter {
         }
     }
     
+    /**
+     * 启动后台定时刷新，保证访问量低时缓冲数据也能及时落盘。
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (flushScheduler != null) {
+            return;
+        }
+        flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "csv-log-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushScheduler.scheduleWithFixedDelay(this::flushIfDue, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * 将LogEntry写入CSV文件。
-     * 线程安全：使用同步方法确保并发写入时文件不会损坏。
+     * 线程安全：调用方只入队，由抢到写锁的线程按顺序写出，写出后按刷新策略落盘。
      */
-    public synchronized void write(LogEntry entry) {
+    public void write(LogEntry entry) {
         LocalDateTime timestamp = entry.getTimestamp();
-        Path filePath = getFilePath(timestamp);
-        
+        pending.add(new PendingLine(timestamp.toLocalDate(), formatCsvLine(entry, timestamp)));
+        // 持锁线程可能在本条入队前刚结束写出，释放锁后需要重新检查队列
+        while (!pending.isEmpty() && writeLock.tryLock()) {
+            try {
+                drain();
+                if (unflushedChars >= FLUSH_THRESHOLD_CHARS || flushIntervalElapsed()) {
+                    flushWriter();
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 写出队列中所有行并刷新到磁盘。
+     */
+    public void flush() {
+        writeLock.lock();
+        try {
+            drain();
+            flushWriter();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 写完剩余数据并关闭所有打开的日文件，停止后台刷新。
+     */
+    @PreDestroy
+    public void close() {
+        synchronized (this) {
+            if (flushScheduler != null) {
+                flushScheduler.shutdownNow();
+                flushScheduler = null;
+            }
+        }
+        writeLock.lock();
         try {
-            Files.createDirectories(filePath.getParent());
-            String csvLine = formatCsvLine(entry, timestamp);
-            Files.writeString(filePath, csvLine + System.lineSeparator(),
-                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            drain();
+            closeWriters();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void flushIfDue() {
+        if (!writeLock.tryLock()) {
+            return; // 有线程正在写出，由它负责刷新
+        }
+        try {
+            drain();
+            if (unflushedChars > 0 && flushIntervalElapsed()) {
+                flushWriter();
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // 调用方必须持有writeLock
+    private void drain() {
+        PendingLine line;
+        while ((line = pending.poll()) != null) {
+            try {
+                BufferedWriter writer = writerFor(line.day);
+                writer.write(line.text);
+                writer.write(System.lineSeparator());
+                unflushedChars += line.text.length() + System.lineSeparator().length();
+            } catch (IOException e) {
+                e.printStackTrace();
+                // 在生产环境中应使用日志框架记录错误；关闭该日文件，下一行重新打开
+                closeWriter(line.day);
+            }
+        }
+    }
+
+    // 返回该日已打开的文件；未打开时以追加方式打开，超过打开数时关闭最久未写入的文件
+    private BufferedWriter writerFor(LocalDate day) throws IOException {
+        BufferedWriter writer = openWriters.get(day);
+        if (writer != null) {
+            return writer;
+        }
+        if (openWriters.size() >= MAX_OPEN_DAYS) {
+            closeWriter(openWriters.keySet().iterator().next());
+        }
+        Path filePath = getFilePath(day.atStartOfDay());
+        Files.createDirectories(filePath.getParent());
+        writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(filePath,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND), StandardCharsets.UTF_8), BUFFER_SIZE);
+        openWriters.put(day, writer);
+        return writer;
+    }
+
+    private void flushWriter() {
+        if (unflushedChars > 0) {
+            Iterator<Map.Entry<LocalDate, BufferedWriter>> iterator = openWriters.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<LocalDate, BufferedWriter> entry = iterator.next();
+                try {
+                    entry.getValue().flush();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    closeQuietly(entry.getValue());
+                    iterator.remove();
+                }
+            }
+        }
+        unflushedChars = 0;
+        lastFlushNanos = System.nanoTime();
+    }
+
+    // 关闭时写出该文件的缓冲数据
+    private void closeWriter(LocalDate day) {
+        BufferedWriter writer = openWriters.remove(day);
+        if (writer != null) {
+            closeQuietly(writer);
+        }
+    }
+
+    private void closeWriters() {
+        openWriters.values().forEach(CsvLogWriter::closeQuietly);
+        openWriters.clear();
+        unflushedChars = 0;
+        lastFlushNanos = System.nanoTime();
+    }
+
+    private static void closeQuietly(BufferedWriter writer) {
+        try {
+            writer.close();
         } catch (IOException e) {
             e.printStackTrace();
-            // 在生产环境中应使用日志框架记录错误
         }
     }
+
+    private boolean flushIntervalElapsed() {
+        return System.nanoTime() - lastFlushNanos >= TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS);
+    }
     
     /**
      * 根据时间戳确定CSV文件路径。
@@ -91,17 +276,13 @@ public class CsvLogWriter {
     
     /**
      * 根据资源ID查找读卡器ID。
-     * 如果找不到读卡器，返回空字符串；如果找到多个，返回第一个读卡器ID。
+     * 如果找不到读卡器，返回空字符串（读取共享映射缓存，不访问数据库）。
      */
     private String findReaderIdByResourceId(String resourceId) {
-        if (badgeReaderRepository == null || resourceId == null || resourceId.isEmpty()) {
+        if (readerCache == null) {
             return "";
         }
-        List<BadgeReader> readers = badgeReaderRepository.findByResourceId(resourceId);
-        if (readers.isEmpty()) {
-            return "";
-        }
-        return readers.get(0).getReaderId();
+        return readerCache.getReaderId(resourceId);
     }
     
     /**
@@ -145,4 +326,14 @@ public class CsvLogWriter {
     public Path getBaseLogDir() {
         return baseLogDir;
     }
+
+    private static final class PendingLine {
+        final LocalDate day;
+        final String text;
+
+        PendingLine(LocalDate day, String text) {
+            this.day = day;
+            this.text = text;
+        }
+    }
 }
@@ -0,0 +1,299 @@
+package acs.log.impl;
+
+import acs.domain.LogEntry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 访问日志异步批量写入器：访问决策线程只负责入队，由专用写线程用JDBC批量插入数据库。
+ *
+ * 设计原则：
+ * - 有界队列（多生产者、单消费者），队列满时按配置的背压策略处理
+ * - 批量达到 batch-size 条或第一条日志等待超过 flush-interval-ms 时写入
+ * - 批量写入失败时逐条重试，仍失败的日志计入失败数（不影响访问决策）
+ * - 写入后把数据库生成的ID回填到日志对象（与缓存中是同一对象），并通知监听器
+ * - 连接串需开启 rewriteBatchedStatements，驱动才会把一批INSERT合并为一条多值语句
+ * - 应用关闭时写完队列中剩余的日志
+ */
+@Component
+public class AsyncLogWriter {
+
+    /**
+     * 队列满时的处理方式。
+     */
+    public enum OverflowPolicy {
+        // 阻塞调用方直到队列有空位
+        BLOCK,
+        // 由调用方线程直接写入数据库
+        CALLER_RUNS,
+        // 丢弃日志并计数（缓存和CSV中仍有记录）
+        DROP
+    }
+
+    private static final String INSERT_SQL = "INSERT INTO access_logs "
+            + "(timestamp, badge_id, employee_id, resource_id, decision, reason_code) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final PreparedStatementCreator INSERT_STATEMENT =
+            con -> con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<LogEntry> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final OverflowPolicy overflowPolicy;
+
+    private final AtomicLong writtenCount = new AtomicLong(0);
+    private final AtomicLong droppedCount = new AtomicLong(0);
+    private final AtomicLong failedCount = new AtomicLong(0);
+    private final List<Consumer<List<LogEntry>>> persistedListeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public AsyncLogWriter(JdbcTemplate jdbcTemplate,
+                          @Value("${acs.log.async.queue-capacity:10000}") int queueCapacity,
+                          @Value("${acs.log.async.batch-size:200}") int batchSize,
+                          @Value("${acs.log.async.flush-interval-ms:200}") long flushIntervalMs,
+                          @Value("${acs.log.async.overflow-policy:CALLER_RUNS}") OverflowPolicy overflowPolicy) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::runWriter, "access-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = writerThread;
+            writerThread = null;
+        }
+        if (thread != null) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 写线程未启动或未及时退出时，由当前线程写完剩余日志
+        flush();
+    }
+
+    /**
+     * 提交一条日志等待写入。
+     */
+    public void submit(LogEntry entry) {
+        if (queue.offer(entry)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queue.put(entry);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    writeBatch(List.of(entry));
+                }
+                break;
+            case DROP:
+                droppedCount.incrementAndGet();
+                break;
+            case CALLER_RUNS:
+            default:
+                writeBatch(List.of(entry));
+                break;
+        }
+    }
+
+    /**
+     * 按顺序提交一批日志；队列放不下的部分按背压策略处理。
+     */
+    public void submitAll(List<LogEntry> entries) {
+        for (LogEntry entry : entries) {
+            submit(entry);
+        }
+    }
+
+    /**
+     * 由调用方线程立即写入队列中所有待写日志。
+     */
+    public void flush() {
+        List<LogEntry> batch = new ArrayList<>();
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * 注册写库监听器：每批日志写入并回填ID后，在写线程中以已写入的日志调用（监听器应尽快返回）。
+     */
+    public void addPersistedListener(Consumer<List<LogEntry>> listener) {
+        if (listener != null) {
+            persistedListeners.add(listener);
+        }
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    private void runWriter() {
+        List<LogEntry> batch = new ArrayList<>(batchSize);
+        long deadline = 0;
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                long waitMs = batch.isEmpty() ? flushIntervalMs
+                        : Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+                LogEntry entry = queue.poll(waitMs, TimeUnit.MILLISECONDS);
+                if (entry != null) {
+                    if (batch.isEmpty()) {
+                        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                    }
+                    batch.add(entry);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+                boolean full = batch.size() >= batchSize;
+                boolean due = !batch.isEmpty() && (System.nanoTime() >= deadline || !running);
+                if (full || due) {
+                    writeBatch(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (RuntimeException e) {
+                // 写线程不能因单次异常退出
+                e.printStackTrace();
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<LogEntry> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<LogEntry> written = new ArrayList<>(batch.size());
+        try {
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(INSERT_STATEMENT, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    bind(ps, batch.get(i));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return batch.size();
+                }
+            }, keyHolder);
+            List<Map<String, Object>> keys = keyHolder.getKeyList();
+            for (int i = 0; i < batch.size(); i++) {
+                applyKey(batch.get(i), i < keys.size() ? keys.get(i) : null);
+            }
+            written.addAll(batch);
+            writtenCount.addAndGet(batch.size());
+        } catch (RuntimeException batchError) {
+            System.err.println("Batch insert of " + batch.size() + " access logs failed, retrying one by one: "
+                    + batchError.getMessage());
+            for (LogEntry entry : batch) {
+                try {
+                    KeyHolder keyHolder = new GeneratedKeyHolder();
+                    jdbcTemplate.update(con -> {
+                        PreparedStatement ps = INSERT_STATEMENT.createPreparedStatement(con);
+                        bind(ps, entry);
+                        return ps;
+                    }, keyHolder);
+                    applyKey(entry, keyHolder.getKeyList().isEmpty() ? null : keyHolder.getKeyList().get(0));
+                    written.add(entry);
+                    writtenCount.incrementAndGet();
+                } catch (RuntimeException e) {
+                    failedCount.incrementAndGet();
+                    System.err.println("Failed to write access log at " + entry.getTimestamp() + ": " + e.getMessage());
+                }
+            }
+        }
+        notifyPersisted(written);
+    }
+
+    // 回填自增ID；驱动未返回键时保持为null
+    private static void applyKey(LogEntry entry, Map<String, Object> key) {
+        if (key == null) {
+            return;
+        }
+        for (Object value : key.values()) {
+            if (value instanceof Number) {
+                entry.setId(((Number) value).longValue());
+                return;
+            }
+        }
+    }
+
+    private void notifyPersisted(List<LogEntry> written) {
+        if (written.isEmpty()) {
+            return;
+        }
+        for (Consumer<List<LogEntry>> listener : persistedListeners) {
+            try {
+                listener.accept(written);
+            } catch (RuntimeException e) {
+                System.err.println("Access log persisted listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement ps, LogEntry entry) throws SQLException {
+        ps.setTimestamp(1, Timestamp.valueOf(entry.getTimestamp()));
+        ps.setString(2, entry.getBadge() != null ? entry.getBadge().getBadgeId() : null);
+        ps.setString(3, entry.getEmployee() != null ? entry.getEmployee().getEmployeeId() : null);
+        ps.setString(4, entry.getResource() != null ? entry.getResource().getResourceId() : null);
+        ps.setString(5, entry.getDecision() != null ? entry.getDecision().name() : null);
+        ps.setString(6, entry.getReasonCode() != null ? entry.getReasonCode().name() : null);
+    }
+}
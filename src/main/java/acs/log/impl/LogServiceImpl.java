@@ -3,25 +3,38 @@ package acs.log.impl;
 import acs.domain.LogEntry;
 import acs.log.LogService;
 import acs.cache.LocalCacheManager;
-import acs.repository.AccessLogRepository;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 @Component("logServiceImpl")
 public class LogServiceImpl implements LogService {
 
-    private final AccessLogRepository accessLogRepository;
+    private final AsyncLogWriter asyncLogWriter;
     private final LocalCacheManager cacheManager;
 
-    public LogServiceImpl(AccessLogRepository accessLogRepository, LocalCacheManager cacheManager) {
-        this.accessLogRepository = accessLogRepository;
+    public LogServiceImpl(AsyncLogWriter asyncLogWriter, LocalCacheManager cacheManager) {
+        this.asyncLogWriter = asyncLogWriter;
         this.cacheManager = cacheManager;
+        // 写库后回填的ID同步登记到日志缓存
+        asyncLogWriter.addPersistedListener(cacheManager::onLogsPersisted);
     }
 
     @Override
     public void record(LogEntry entry) {
-        // 1. 保存到数据库
-        LogEntry savedEntry = accessLogRepository.save(entry);
-        // 2. 同步到本地缓存（确保缓存与数据库一致）
-        cacheManager.updateLog(savedEntry);
+        // 1. 先写入本地缓存：后续的查询、计数和先决条件检查立即可见
+        cacheManager.appendLog(entry);
+        // 2. 交给异步写入器批量保存到数据库，访问决策不等待数据库写入
+        asyncLogWriter.submit(entry);
+    }
+
+    @Override
+    public void recordAll(List<LogEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        // 整批只获取一次日志缓存的写锁
+        cacheManager.appendLogs(entries);
+        asyncLogWriter.submitAll(entries);
     }
-}
\ No newline at end of file
+}
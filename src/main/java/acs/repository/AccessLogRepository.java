@@ -1,6 +1,8 @@
 package acs.repository;
 
 import acs.domain.LogEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
@@ -24,6 +26,14 @@ public interface AccessLogRepository extends JpaRepository<LogEntry, Long> {
     // 按决策（DENY）和时间范围查询
     List<LogEntry> findByDecisionAndTimestampBetween(String decision, LocalDateTime start, LocalDateTime end);
 
+    // 按ID分页读取（键集分页，供流式导出使用；一并抓取徽章、员工和资源，避免逐条查询）
+    @EntityGraph(attributePaths = {"badge", "employee", "resource"})
+    List<LogEntry> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    // 按ID分页读取指定时间范围内的日志
+    @EntityGraph(attributePaths = {"badge", "employee", "resource"})
+    List<LogEntry> findByIdGreaterThanAndTimestampBetweenOrderByIdAsc(Long afterId, LocalDateTime start, LocalDateTime end, Pageable pageable);
+
     // 删除指定时间之前的日志
     long deleteByTimestampBefore(LocalDateTime timestamp);
 }
\ No newline at end of file
@@ -1,10 +1,15 @@
 package acs.repository;
 
 import acs.domain.Badge;
+import acs.domain.BadgeStatus;
 
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 // 泛型参数：第一个是对应实体类Badge，第二个是Badge主键的类型（需和Badge实体的主键类型一致）
@@ -14,4 +19,16 @@ public interface BadgeRepository extends JpaRepository<Badge, String> {
     Optional<Badge> findById(String badgeId);
     Optional<Badge> findByEmployeeEmployeeId(String employeeId);
 
+    // 需要轮换代码的徽章ID（键集分页：按ID升序取 afterId 之后的一页；只取ID，避免逐个加载关联的员工）
+    @Query("SELECT b.badgeId FROM Badge b " +
+           "WHERE b.status = :status " +
+           "AND (b.needsUpdate = true OR b.codeExpirationDate <= :dueBy) " +
+           "AND b.badgeId > :afterId ORDER BY b.badgeId")
+    List<String> findRotationCandidateIds(BadgeStatus status, LocalDate dueBy, String afterId, Pageable pageable);
+
+    @Query("SELECT COUNT(b) FROM Badge b " +
+           "WHERE b.status = :status " +
+           "AND (b.needsUpdate = true OR b.codeExpirationDate <= :dueBy)")
+    long countRotationCandidates(BadgeStatus status, LocalDate dueBy);
+
 }
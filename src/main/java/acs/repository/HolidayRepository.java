@@ -0,0 +1,11 @@
+package acs.repository;
+
+import acs.domain.Holiday;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface HolidayRepository extends JpaRepository<Holiday, Long> {
+
+    List<Holiday> findByCalendarName(String calendarName);
+}
@@ -5,6 +5,7 @@ import acs.domain.Group;
 import acs.domain.Employee;
 import acs.domain.Badge;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -27,4 +28,17 @@ public interface ProfileRepository extends JpaRepository<Profile, String> {
 
     List<Profile> findByBadgesContaining(Badge badge);
 
+    @Query("SELECT DISTINCT p FROM Profile p LEFT JOIN FETCH p.timeFilters WHERE p.isActive = true")
+    List<Profile> findAllActiveWithTimeFilters();
+
+    // 关联关系投影：每行为 [profileId, groupId/employeeId/badgeId]
+    @Query("SELECT p.profileId, g.groupId FROM Profile p JOIN p.groups g WHERE p.isActive = true")
+    List<Object[]> findActiveGroupAssignments();
+
+    @Query("SELECT p.profileId, e.employeeId FROM Profile p JOIN p.employees e WHERE p.isActive = true")
+    List<Object[]> findActiveEmployeeAssignments();
+
+    @Query("SELECT p.profileId, b.badgeId FROM Profile p JOIN p.badges b WHERE p.isActive = true")
+    List<Object[]> findActiveBadgeAssignments();
+
 }
@@ -3,6 +3,8 @@ package acs.service;
 import acs.domain.AccessRequest;
 import acs.domain.AccessResult;
 
+import java.util.List;
+
 /**
  * AccessControlService 是整个系统的“唯一访问控制入口”
  *
@@ -19,9 +21,22 @@ public interface AccessControlService {
      * 1. 不抛出异常给 UI
      * 2. 所有异常情况转化为 DENY + ReasonCode
      * 3. 每一次调用都会产生一条访问日志
+     * 4. 判定过程不持有数据库事务，只读取内存中的状态；日志写入交给异步写入器
      *
      * @param request 访问请求
      * @return 访问结果
      */
     AccessResult processAccess(AccessRequest request);
+
+    /**
+     * 一次处理一批访问请求（例如读卡器集中器缓存的一批刷卡），结果与请求一一对应、顺序相同
+     *
+     * 与逐条调用 processAccess 的判定结果一致：
+     * 批内较早放行的访问对之后请求的先决条件检查可见，访问次数限制逐条预占。
+     * 每个请求仍产生一条访问日志，整批的日志在全部判定后一次写入。
+     *
+     * @param requests 访问请求，按刷卡先后排列
+     * @return 访问结果，顺序与请求相同
+     */
+    List<AccessResult> processAccessBatch(List<AccessRequest> requests);
 }
@@ -1,6 +1,7 @@
 package acs.service;
 
 import acs.domain.Employee;
+import acs.domain.LimitReservation;
 import acs.domain.Profile;
 import acs.domain.Resource;
 
@@ -12,6 +13,9 @@ public interface AccessLimitService {
 
     void recordAccess(Employee employee, Resource resource, Instant timestamp);
 
+    // 资源限制配置变化后调用，清空按配置文件缓存的限制
+    void refreshLimits();
+
     int getTodayAccessCount(Employee employee);
 
     int getWeekAccessCount(Employee employee);
@@ -25,4 +29,14 @@ public interface AccessLimitService {
     boolean checkAllLimits(Employee employee, Instant timestamp);
 
     boolean checkResourceLimits(Employee employee, Resource resource, Instant timestamp);
+
+    // 原子地检查资源的每日/每周限制并预占一次名额；放行后调用 commit，之后的检查拒绝时调用 rollback
+    LimitReservation reserve(Employee employee, Resource resource, Instant timestamp);
+
+    // 同上，但使用调用方已解析的每日/每周限制（0表示不限制），例如策略快照中的限制
+    LimitReservation reserve(Employee employee, Resource resource, Instant timestamp, int dailyLimit, int weeklyLimit);
+
+    void commit(LimitReservation reservation);
+
+    void rollback(LimitReservation reservation);
 }
@@ -1,7 +1,13 @@
 package acs.service;
 
+import acs.domain.CompiledTimeFilter;
+import acs.domain.Profile;
+import acs.domain.ProfileSchedule;
 import acs.domain.TimeFilter;
+import acs.domain.TimeFilterEvaluation;
+import acs.domain.TimeRuleImportResult;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -12,11 +18,34 @@ public interface TimeFilterService {
     /**
      * 解析时间规则字符串，创建或更新TimeFilter实体。
      * 规则格式示例："2025.July,August.Monday-Friday.8:00-12:00"
+     * 可追加日期/节假日限定："ALL.ALL.Monday-Friday.8:00-17:00.EXCEPT HOLIDAYS CN"、"ALL.ALL.ALL.ALL.DAYS 1-15"
      * @param rawRule 原始规则字符串
      * @return 解析后的TimeFilter实体
      */
     TimeFilter parseTimeRule(String rawRule);
 
+    /**
+     * 只在内存中解析时间规则，不写数据库。
+     * 返回的TimeFilter的ID由规范化规则的SHA-256生成，语义相同的规则ID相同。
+     * @param rawRule 原始规则字符串
+     * @return 解析后的TimeFilter（未保存）
+     */
+    TimeFilter parseTimeRuleInMemory(String rawRule);
+
+    /**
+     * 从文件批量导入时间规则：每行一条规则，忽略空行和#开头的注释。
+     * @param filePath 文件路径
+     * @return 导入结果汇总
+     */
+    TimeRuleImportResult importTimeRules(String filePath);
+
+    /**
+     * 批量导入时间规则：并行解析，按规范化规则去重，跳过已存在的规则，分批插入数据库。
+     * @param rawRules 原始规则列表
+     * @return 导入结果汇总
+     */
+    TimeRuleImportResult importTimeRules(List<String> rawRules);
+
     /**
      * 检查给定时间是否匹配时间过滤器规则。
      * @param timeFilter 时间过滤器
@@ -25,6 +54,14 @@ public interface TimeFilterService {
      */
     boolean matches(TimeFilter timeFilter, LocalDateTime dateTime);
 
+    /**
+     * 将时间过滤器编译为位掩码和有序区间形式，供高频匹配使用。
+     * matches 会在首次使用或规则字段修改后自动编译并缓存在TimeFilter上。
+     * @param timeFilter 时间过滤器
+     * @return 编译结果
+     */
+    CompiledTimeFilter compile(TimeFilter timeFilter);
+
     /**
      * 检查给定时间是否匹配一组时间过滤器（任意一个匹配即通过）。
      * @param timeFilters 时间过滤器列表
@@ -34,7 +71,41 @@ public interface TimeFilterService {
     boolean matchesAny(List<TimeFilter> timeFilters, LocalDateTime dateTime);
 
     /**
-     * 验证时间规则字符串格式是否有效。
+     * 检查给定时间是否匹配配置文件的任意一个时间过滤器。
+     * 配置文件的全部时间过滤器合并为按年月缓存的一周分钟位图，查询与过滤器数量无关。
+     * @param profile 配置文件
+     * @param dateTime 待检查的时间
+     * @return 如果任意一个时间过滤器匹配返回true
+     */
+    boolean matchesProfile(Profile profile, LocalDateTime dateTime);
+
+    /**
+     * 配置文件全部时间过滤器合并后的时间表（缓存在配置文件上，过滤器集合或规则变化后重新构建）。
+     * 返回的时间表不再随配置文件变化，可以放入策略快照。
+     * @param profile 配置文件
+     * @return 合并后的时间表
+     */
+    ProfileSchedule scheduleFor(Profile profile);
+
+    /**
+     * 计算配置文件时间过滤器的匹配结果，以及结果下一次可能变化的时刻。
+     * 调用方可以缓存结果直到 validUntil，而不必每次刷卡都重新匹配。
+     * @param profile 配置文件
+     * @param dateTime 待检查的时间
+     * @return 匹配结果及其有效期
+     */
+    TimeFilterEvaluation evaluate(Profile profile, LocalDateTime dateTime);
+
+    /**
+     * 计算一组时间过滤器（任意一个匹配即通过）的匹配结果及其有效期。
+     * @param timeFilters 时间过滤器集合
+     * @param dateTime 待检查的时间
+     * @return 匹配结果及其有效期
+     */
+    TimeFilterEvaluation evaluate(Collection<TimeFilter> timeFilters, LocalDateTime dateTime);
+
+    /**
+     * 验证时间规则字符串格式是否有效（只在内存中解析，不写数据库）。
      * @param rawRule 原始规则字符串
      * @return 验证结果
      */
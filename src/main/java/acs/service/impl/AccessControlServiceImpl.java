@@ -2,39 +2,35 @@ package acs.service.impl;
 
 import acs.domain.AccessRequest;
 import acs.domain.AccessResult;
-import acs.domain.ResourceDependency;
 import acs.cache.LocalCacheManager;
+import acs.cache.PolicySnapshot;
+import acs.cache.PolicySnapshot.BadgePolicy;
+import acs.cache.PolicySnapshot.DependencyPolicy;
+import acs.cache.PolicySnapshot.EmployeePolicy;
+import acs.cache.PolicySnapshot.LimitPolicy;
+import acs.cache.PolicySnapshot.ProfilePolicy;
+import acs.cache.PolicySnapshot.ResourcePolicy;
+import acs.cache.PolicySnapshotHolder;
+import acs.cache.SiteZoneRegistry;
 import acs.domain.AccessDecision;
-import acs.domain.Badge;
 import acs.domain.BadgeStatus;
 import acs.domain.BadgeUpdateStatus;
-import acs.domain.Employee;
+import acs.domain.LimitReservation;
 import acs.domain.LogEntry;
 import acs.domain.ReasonCode;
-import acs.domain.Resource;
 import acs.domain.ResourceState;
-import acs.domain.Group;
-import acs.domain.Profile;
-import acs.domain.TimeFilter;
 import acs.log.LogService;
 import acs.service.AccessControlService;
-import acs.service.TimeFilterService;
 import acs.service.AccessLimitService;
-import acs.repository.ProfileRepository;
-import acs.repository.ResourceDependencyRepository;
-import acs.repository.AccessLogRepository;
-import acs.simulator.BadgeCodeUpdateService;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.util.Set;
-import java.util.HashSet;
-import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @Service
 public class AccessControlServiceImpl implements AccessControlService {
@@ -42,283 +38,308 @@ public class AccessControlServiceImpl implements AccessControlService {
     private final LogService logService;
     // 在类中注入LocalCacheManager
     private final LocalCacheManager cacheManager;
-    private final ProfileRepository profileRepository;
-    private final TimeFilterService timeFilterService;
     private final AccessLimitService accessLimitService;
-    private final ResourceDependencyRepository resourceDependencyRepository;
-    private final AccessLogRepository accessLogRepository;
-    private final BadgeCodeUpdateService badgeCodeUpdateService;
+    private final SiteZoneRegistry siteZones;
+    // 徽章、员工、资源、权限、配置文件、限制和依赖的不可变快照
+    private final PolicySnapshotHolder policySnapshots;
 
     public AccessControlServiceImpl(
                                 LogService logService,
                                 LocalCacheManager cacheManager,
-                                ProfileRepository profileRepository,
-                                TimeFilterService timeFilterService,
                                 AccessLimitService accessLimitService,
-                                ResourceDependencyRepository resourceDependencyRepository,
-                                AccessLogRepository accessLogRepository,
-                                BadgeCodeUpdateService badgeCodeUpdateService) {
+                                SiteZoneRegistry siteZones,
+                                PolicySnapshotHolder policySnapshots) {
         this.logService = logService;
         this.cacheManager = cacheManager;
-        this.profileRepository = profileRepository;
-        this.timeFilterService = timeFilterService;
         this.accessLimitService = accessLimitService;
-        this.resourceDependencyRepository = resourceDependencyRepository;
-        this.accessLogRepository = accessLogRepository;
-        this.badgeCodeUpdateService = badgeCodeUpdateService;
+        this.siteZones = siteZones;
+        this.policySnapshots = policySnapshots;
     }
 
-    // 修改processAccess方法中的数据访问部分，使用缓存
+    // 访问决策只读取同一个策略快照（一次 volatile 读），不访问数据库
+    // 不开启事务：判定期间不占用连接池中的连接；日志由异步写入器在各自的短批量写入中落库，
+    // 徽章状态等写操作由对应服务在自己的事务中完成
     @Override
-    @Transactional
     public AccessResult processAccess(AccessRequest request) {
+        return decide(policySnapshots.current(), request, new SingleDecision());
+    }
+
+    // 整批使用同一个策略快照；先决访问按最近放行索引检查，并计入本批已放行的请求，日志在整批决策后一次写入
+    @Override
+    public List<AccessResult> processAccessBatch(List<AccessRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            return Collections.emptyList();
+        }
+        PolicySnapshot policy = policySnapshots.current();
+        BatchDecision context = new BatchDecision();
+        List<AccessResult> results = new ArrayList<>(requests.size());
+        try {
+            for (AccessRequest request : requests) {
+                results.add(decide(policy, request != null ? request : new AccessRequest(), context));
+            }
+        } finally {
+            // 中途出现未预期的异常时，已做出的决策仍要留下日志
+            logService.recordAll(context.logs);
+        }
+        return results;
+    }
+
+    private AccessResult decide(PolicySnapshot policy, AccessRequest request, DecisionContext context) {
         // 1. 验证请求参数
         if (request.getBadgeId() == null || request.getBadgeId().trim().isEmpty() ||
                 request.getResourceId() == null || request.getResourceId().trim().isEmpty() ||
                 request.getTimestamp() == null) {
             AccessResult result = new AccessResult(AccessDecision.DENY, ReasonCode.INVALID_REQUEST, "Invalid access request parameters");
-            recordLog(null, null, null, result, request);
+            recordLog(context, null, null, null, result, request);
             return result;
         }
 
+        LimitReservation reservation = null;
         try {
-            // 2. 验证徽章存在性 - 从缓存获取
-            Badge badge = cacheManager.getBadge(request.getBadgeId());
+            // 先取资源以确定站点时区（存在性仍在第5步检查，保持原有的拒绝顺序）
+            // 站点本地时间用于徽章日期和时间过滤器；与日志比较的先决访问窗口使用日志时间
+            ResourcePolicy resource = policy.resource(request.getResourceId());
+            LocalDateTime accessTime = siteZones.tableForBuilding(resource != null ? resource.getBuilding() : null)
+                    .toLocalDateTime(request.getTimestamp());
+            LocalDateTime logTime = siteZones.toLogTime(request.getTimestamp());
+
+            // 2. 验证徽章存在性
+            BadgePolicy badge = policy.badge(request.getBadgeId());
             if (badge == null) {
                 AccessResult result = new AccessResult(AccessDecision.DENY, ReasonCode.BADGE_NOT_FOUND, "Badge not found");
-                recordLog(null, null, null, result, request);
+                recordLog(context, null, null, null, result, request);
                 return result;
             }
 
             // 3. 验证徽章状态
             if (badge.getStatus() != BadgeStatus.ACTIVE) {
                 AccessResult result = new AccessResult(AccessDecision.DENY, ReasonCode.BADGE_INACTIVE, "Badge is inactive (disabled or reported lost)");
-                recordLog(badge, null, null, result, request);
+                recordLog(context, badge, null, null, result, request);
                 return result;
             }
 
             // 3.1 Badge code expiration check
-            LocalDate requestDate = LocalDate.ofInstant(request.getTimestamp(), ZoneId.systemDefault());
+            LocalDate requestDate = accessTime.toLocalDate();
             if (badge.getCodeExpirationDate() != null && requestDate.isAfter(badge.getCodeExpirationDate())) {
 
                 AccessResult result = new AccessResult(AccessDecision.DENY, ReasonCode.BADGE_EXPIRED, "Badge code expired");
-                recordLog(badge, null, null, result, request);
+                recordLog(context, badge, null, null, result, request);
                 return result;
             }
 
             // 3.2 Badge code update status check
-            BadgeUpdateStatus updateStatus = badgeCodeUpdateService.evaluateBadgeUpdateStatus(
-                badge.getBadgeId(), request.getTimestamp());
-            if (updateStatus == null) {
-                updateStatus = BadgeUpdateStatus.OK;
-            }
+            // 状态由快照构建时预计算的更新窗口得出；持久化的需要更新/禁用标记由更新服务在调度中写回
+            BadgeUpdateStatus updateStatus = badge.updateStatusOn(requestDate);
             if (updateStatus == BadgeUpdateStatus.UPDATE_OVERDUE) {
                 AccessResult result = new AccessResult(AccessDecision.DENY, ReasonCode.BADGE_UPDATE_OVERDUE, "Badge update window overdue");
-                recordLog(badge, null, null, result, request);
+                recordLog(context, badge, null, null, result, request);
                 return result;
             }
             if (updateStatus == BadgeUpdateStatus.UPDATE_REQUIRED) {
                 AccessResult result = new AccessResult(AccessDecision.DENY, ReasonCode.BADGE_UPDATE_REQUIRED, "Badge update required");
-                recordLog(badge, null, null, result, request);
+                recordLog(context, badge, null, null, result, request);
                 return result;
             }
 
 
-            // 4. 验证员工存在性 - 从缓存获取
-            Employee employee = badge.getEmployee() != null ? 
-                cacheManager.getEmployee(badge.getEmployee().getEmployeeId()) : null;
+            // 4. 验证员工存在性
+            EmployeePolicy employee = policy.employee(badge.getEmployeeId());
             if (employee == null) {
                 AccessResult result = new AccessResult(AccessDecision.DENY, ReasonCode.EMPLOYEE_NOT_FOUND, "Badge not linked to a valid employee");
-                recordLog(badge, null, null, result, request);
+                recordLog(context, badge, null, null, result, request);
                 return result;
             }
 
-            // 5. 验证资源存在性 - 从缓存获取
-            Resource resource = cacheManager.getResource(request.getResourceId());
+            // 5. 验证资源存在性
             if (resource == null) {
                 AccessResult result = new AccessResult(AccessDecision.DENY, ReasonCode.RESOURCE_NOT_FOUND, "Resource not found");
-                recordLog(badge, employee, null, result, request);
+                recordLog(context, badge, employee, null, result, request);
                 return result;
             }
 
             // 6. 验证权限（员工所属组是否有权限访问该资源）- 仅当资源受控时检查
-            if (resource.getIsControlled() != null && resource.getIsControlled()) {
-                if (employee.getGroups() == null || employee.getGroups().isEmpty()) {
+            if (resource.isControlled()) {
+                if (employee.getGroupIds().isEmpty()) {
                     AccessResult result = new AccessResult(AccessDecision.DENY, ReasonCode.NO_PERMISSION, "Employee has no assigned groups");
-                    recordLog(badge, employee, resource, result, request);
+                    recordLog(context, badge, employee, resource, result, request);
                     return result;
                 }
-                boolean hasPermission = employee.getGroups().stream()
-                        .filter(group -> group.getResources() != null)
-                        .flatMap(group -> group.getResources().stream())
-                        .anyMatch(r -> r.getResourceId().equals(resource.getResourceId()));
-
-                if (!hasPermission) {
+                // 快照中的权限位图查询
+                if (!policy.hasPermission(employee.getEmployeeId(), resource.getResourceId())) {
                     AccessResult result = new AccessResult(AccessDecision.DENY, ReasonCode.NO_PERMISSION, "No permission to access this resource");
-                    recordLog(badge, employee, resource, result, request);
+                    recordLog(context, badge, employee, resource, result, request);
                     return result;
                 }
             }
 
             // 7. 验证资源状态（仅当资源受控时检查）
-            if (resource.getIsControlled() != null && resource.getIsControlled()) {
-                if (resource.getResourceState() == ResourceState.LOCKED) {
+            if (resource.isControlled()) {
+                if (resource.getState() == ResourceState.LOCKED) {
                     AccessResult result = new AccessResult(AccessDecision.DENY, ReasonCode.RESOURCE_LOCKED, "Resource is locked");
-                    recordLog(badge, employee, resource, result, request);
+                    recordLog(context, badge, employee, resource, result, request);
                     return result;
                 }
-                if (resource.getResourceState() == ResourceState.OCCUPIED) {
+                if (resource.getState() == ResourceState.OCCUPIED) {
                     AccessResult result = new AccessResult(AccessDecision.DENY, ReasonCode.RESOURCE_OCCUPIED, "Resource is occupied");
-                    recordLog(badge, employee, resource, result, request);
+                    recordLog(context, badge, employee, resource, result, request);
                     return result;
                 }
-                if (resource.getResourceState() == ResourceState.OFFLINE || resource.getResourceState() == ResourceState.PENDING) {
+                if (resource.getState() == ResourceState.OFFLINE || resource.getState() == ResourceState.PENDING) {
                     AccessResult result = new AccessResult(AccessDecision.DENY, ReasonCode.RESOURCE_LOCKED, "Resource is unavailable");
-                    recordLog(badge, employee, resource, result, request);
+                    recordLog(context, badge, employee, resource, result, request);
                     return result;
                 }
             }
 
             // 8. 时间过滤器验证（仅当资源受控时）
-            if (resource.getIsControlled() != null && resource.getIsControlled()) {
-                // 获取员工所属组关联的配置文件的时间过滤器
-                // 收集所有激活的配置文件，按优先级排序（priorityLevel越小优先级越高）
-                List<Profile> activeProfiles = getActiveProfiles(employee, badge);
-                if (!activeProfiles.isEmpty()) {
-                    Profile highestPriorityProfile = activeProfiles.get(0);
-                    Set<TimeFilter> timeFilters = highestPriorityProfile.getTimeFilters();
-                    // 如果有时间过滤器规则，则检查当前时间是否匹配
-                    if (timeFilters != null && !timeFilters.isEmpty()) {
-                        LocalDateTime accessTime = LocalDateTime.ofInstant(request.getTimestamp(), ZoneId.systemDefault());
-                        if (!timeFilterService.matchesAny(new ArrayList<>(timeFilters), accessTime)) {
-                            AccessResult result = new AccessResult(AccessDecision.DENY, ReasonCode.NO_PERMISSION, "Access not allowed at this time");
-                            recordLog(badge, employee, resource, result, request);
-                            return result;
-                        }
-                    }
-                    // 如果没有时间过滤器，则时间不受限制
-                }
-                // 如果没有激活的配置文件，则跳过时间检查
+            // 生效的配置文件在构建快照时已按优先级排序（priorityLevel越小优先级越高）
+            List<ProfilePolicy> activeProfiles = policy.profilesForBadge(badge.getBadgeId());
+            ProfilePolicy highestPriorityProfile = activeProfiles.isEmpty() ? null : activeProfiles.get(0);
+            // 时间表在构建快照时已编译；没有时间过滤器的配置文件时间不受限制
+            if (resource.isControlled() && highestPriorityProfile != null && !highestPriorityProfile.allowsAt(accessTime)) {
+                AccessResult result = new AccessResult(AccessDecision.DENY, ReasonCode.NO_PERMISSION, "Access not allowed at this time");
+                recordLog(context, badge, employee, resource, result, request);
+                return result;
             }
 
 
 
-            // 9. 资源访问次数限制检查（仅当资源受控时检查）
-            if (resource.getIsControlled() != null && resource.getIsControlled()) {
-                if (!accessLimitService.checkResourceLimits(employee, resource, request.getTimestamp())) {
+            // 9. 资源访问次数限制检查（仅当资源受控时检查）- 原子预占名额，后续拒绝时归还
+            if (resource.isControlled()) {
+                LimitPolicy limit = highestPriorityProfile != null
+                        ? highestPriorityProfile.limitFor(resource.getResourceId())
+                        : LimitPolicy.NONE;
+                reservation = accessLimitService.reserve(employee.getEntity(), resource.getEntity(),
+                        request.getTimestamp(), limit.getDailyLimit(), limit.getWeeklyLimit());
+                if (!reservation.isGranted()) {
                     AccessResult result = new AccessResult(AccessDecision.DENY, ReasonCode.NO_PERMISSION, "Resource access count limit exceeded");
-                    recordLog(badge, employee, resource, result, request);
+                    recordLog(context, badge, employee, resource, result, request);
                     return result;
                 }
             }
 
             // 10. 优先级规则检查（资源依赖关系）- 仅当资源受控时检查
-            if (resource.getIsControlled() != null && resource.getIsControlled()) {
-                if (!checkPriorityRules(employee, resource, request.getTimestamp())) {
+            if (resource.isControlled()) {
+                if (!checkPriorityRules(context, policy, employee, resource, logTime)) {
+                    accessLimitService.rollback(reservation);
                     AccessResult result = new AccessResult(AccessDecision.DENY, ReasonCode.NO_PERMISSION, "Prerequisite access not satisfied");
-                    recordLog(badge, employee, resource, result, request);
+                    recordLog(context, badge, employee, resource, result, request);
                     return result;
                 }
             }
 
             // 11. 所有验证通过，允许访问
             AccessResult result = new AccessResult(AccessDecision.ALLOW, ReasonCode.ALLOW, "Access allowed");
-            recordLog(badge, employee, resource, result, request);
+            recordLog(context, badge, employee, resource, result, request);
+            if (reservation != null) {
+                accessLimitService.commit(reservation);
+            } else {
+                accessLimitService.recordAccess(employee.getEntity(), resource.getEntity(), request.getTimestamp());
+            }
             return result;
 
         } catch (Exception e) {
             // 处理系统异常
             e.printStackTrace();
+            accessLimitService.rollback(reservation);
             AccessResult result = new AccessResult(AccessDecision.DENY, ReasonCode.SYSTEM_ERROR, "Internal system error");
-            recordLog(null, null, null, result, request);
+            recordLog(context, null, null, null, result, request);
             return result;
         }
     }
 
-    // 记录访问日志
-    private void recordLog(Badge badge, Employee employee, Resource resource, AccessResult result, AccessRequest request) {
+    // 记录访问日志（快照中的值对象只在这里换回实体，用于日志的外键关联）
+    private void recordLog(DecisionContext context, BadgePolicy badge, EmployeePolicy employee, ResourcePolicy resource,
+                           AccessResult result, AccessRequest request) {
+        // 日志时间统一使用服务器时区，所有站点的日志按真实时间有序；计数器按站点本地日期分桶时再换算
         LogEntry logEntry = new LogEntry(
-                LocalDateTime.ofInstant(request.getTimestamp(), ZoneId.systemDefault()),
-                badge,
-                employee,
-                resource,
+                request.getTimestamp() != null
+                        ? siteZones.toLogTime(request.getTimestamp())
+                        : LocalDateTime.now(siteZones.logTable().getZone()),
+                badge != null ? badge.getEntity() : null,
+                employee != null ? employee.getEntity() : null,
+                resource != null ? resource.getEntity() : null,
                 result.getDecision(),
                 result.getReasonCode()
         );
-        logService.record(logEntry);
+        context.record(logEntry);
     }
     
-    // 检查优先级规则（资源依赖关系）
-    private boolean checkPriorityRules(Employee employee, Resource resource, Instant timestamp) {
-        // 获取该资源的所有依赖关系
-        List<ResourceDependency> dependencies = resourceDependencyRepository.findByResourceResourceId(resource.getResourceId());
+    // 检查优先级规则（资源依赖关系）：依赖取自快照，先决访问查最近放行时间，不扫描日志
+    private boolean checkPriorityRules(DecisionContext context, PolicySnapshot policy, EmployeePolicy employee,
+                                       ResourcePolicy resource, LocalDateTime logTime) {
+        List<DependencyPolicy> dependencies = policy.dependenciesOf(resource.getResourceId());
         if (dependencies.isEmpty()) {
             return true; // 无依赖关系，允许访问
         }
-        
-        LocalDateTime accessTime = LocalDateTime.ofInstant(timestamp, ZoneId.systemDefault());
-        
-        for (ResourceDependency dependency : dependencies) {
-            Resource requiredResource = dependency.getRequiredResource();
+
+        for (DependencyPolicy dependency : dependencies) {
             Integer timeWindow = dependency.getTimeWindowMinutes();
-            
-            // 查询员工是否在指定时间窗口内访问过必需资源
-            LocalDateTime startTime = timeWindow != null ? 
-                accessTime.minusMinutes(timeWindow) : accessTime.minusYears(100); // 如果无时间限制，检查很长时间范围
-            
-            List<LogEntry> accessLogs = accessLogRepository.findByEmployeeEmployeeIdAndResourceResourceIdAndTimestampBetween(
-                employee.getEmployeeId(), requiredResource.getResourceId(), startTime, accessTime);
-            
-            // 只计算允许的访问
-            boolean hasAccess = accessLogs.stream()
-                .anyMatch(log -> AccessDecision.ALLOW.equals(log.getDecision()));
-                
-            if (!hasAccess) {
+            // 员工是否在指定时间窗口内被允许访问过必需资源（无时间窗口时不限开始时间）
+            LocalDateTime startTime = timeWindow != null ? logTime.minusMinutes(timeWindow) : LocalDateTime.MIN;
+            if (!context.hasAllowedAccess(employee.getEmployeeId(), dependency.getRequiredResourceId(),
+                    startTime, logTime)) {
                 return false; // 缺少必需的先决访问
             }
         }
-        
+
         return true; // 所有依赖关系满足
     }
 
+    // 决策过程中日志的写入方式和先决访问的查询方式
+    private interface DecisionContext {
 
-    private List<Profile> getActiveProfiles(Employee employee, Badge badge) {
-        List<Profile> activeProfiles = new ArrayList<>();
-        if (employee != null && employee.getGroups() != null) {
-            for (Group group : employee.getGroups()) {
-                List<Profile> profiles = profileRepository.findByGroupsContaining(group);
-                for (Profile profile : profiles) {
-                    if (profile.getIsActive() != null && profile.getIsActive() && !activeProfiles.contains(profile)) {
-                        activeProfiles.add(profile);
-                    }
-                }
-            }
+        void record(LogEntry entry);
+
+        // 员工在[start, end]内是否被允许访问过该资源
+        boolean hasAllowedAccess(String employeeId, String resourceId, LocalDateTime start, LocalDateTime end);
+    }
+
+    // 单次决策：日志立即记录，先决访问查日志缓存的最近放行时间
+    private class SingleDecision implements DecisionContext {
+
+        @Override
+        public void record(LogEntry entry) {
+            logService.record(entry);
         }
-        if (employee != null) {
-            List<Profile> profiles = profileRepository.findByEmployeesContaining(employee);
-            for (Profile profile : profiles) {
-                if (profile.getIsActive() != null && profile.getIsActive() && !activeProfiles.contains(profile)) {
-                    activeProfiles.add(profile);
-                }
+
+        @Override
+        public boolean hasAllowedAccess(String employeeId, String resourceId, LocalDateTime start, LocalDateTime end) {
+            return cacheManager.hasAllowedAccess(employeeId, resourceId, start, end);
+        }
+    }
+
+    // 批量决策：日志先暂存，整批结束后一次写入；批内已放行但尚未写入缓存的访问对之后的先决访问检查可见
+    private class BatchDecision implements DecisionContext {
+
+        private final List<LogEntry> logs = new ArrayList<>();
+        // 员工ID → 资源ID → 批内放行时间
+        private final Map<String, Map<String, List<LocalDateTime>>> pendingAllows = new HashMap<>();
+
+        @Override
+        public void record(LogEntry entry) {
+            logs.add(entry);
+            if (entry.getDecision() != AccessDecision.ALLOW || entry.getEmployee() == null
+                    || entry.getResource() == null) {
+                return;
             }
+            pendingAllows.computeIfAbsent(entry.getEmployee().getEmployeeId(), id -> new HashMap<>())
+                    .computeIfAbsent(entry.getResource().getResourceId(), id -> new ArrayList<>())
+                    .add(entry.getTimestamp());
         }
-        if (badge != null) {
-            List<Profile> profiles = profileRepository.findByBadgesContaining(badge);
-            for (Profile profile : profiles) {
-                if (profile.getIsActive() != null && profile.getIsActive() && !activeProfiles.contains(profile)) {
-                    activeProfiles.add(profile);
+
+        @Override
+        public boolean hasAllowedAccess(String employeeId, String resourceId, LocalDateTime start, LocalDateTime end) {
+            Map<String, List<LocalDateTime>> byResource = pendingAllows.get(employeeId);
+            List<LocalDateTime> times = byResource != null ? byResource.get(resourceId) : null;
+            if (times != null) {
+                for (LocalDateTime time : times) {
+                    if (!time.isBefore(start) && !time.isAfter(end)) {
+                        return true;
+                    }
                 }
             }
+            return cacheManager.hasAllowedAccess(employeeId, resourceId, start, end);
         }
-        // sort by priority (lowest number first)
-        activeProfiles.sort((p1, p2) -> {
-            Integer p1Level = p1.getPriorityLevel();
-            Integer p2Level = p2.getPriorityLevel();
-            if (p1Level == null && p2Level == null) return 0;
-            if (p1Level == null) return 1;
-            if (p2Level == null) return -1;
-            return Integer.compare(p1Level, p2Level);
-        });
-        return activeProfiles;
     }
 }
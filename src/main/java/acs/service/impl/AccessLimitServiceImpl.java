@@ -3,80 +3,96 @@ package acs.service.impl;
 import acs.service.AccessLimitService;
 import acs.service.ClockService;
 import acs.domain.Employee;
+import acs.domain.LimitReservation;
 import acs.domain.Profile;
 import acs.domain.ProfileResourceLimit;
 import acs.domain.Resource;
-import acs.domain.LogEntry;
-import acs.domain.AccessDecision;
-import acs.repository.AccessLogRepository;
-import acs.repository.ProfileRepository;
+import acs.cache.AccessCounterStore;
+import acs.cache.EffectiveProfileResolver;
+import acs.cache.PolicySnapshot.LimitPolicy;
+import acs.cache.PolicySnapshotHolder;
+import acs.cache.SiteZoneRegistry;
 import acs.repository.ProfileResourceLimitRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.temporal.WeekFields;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 访问次数限制服务实现
- * 基于数据库日志统计每日/每周访问次数
+ * 每日/每周访问次数由内存计数器（AccessCounterStore）提供，配置文件的资源限制按配置文件缓存
+ * 日/周边界按资源所在站点的本地时间划分（SiteZoneRegistry），不指定资源时使用默认时区
  */
 @Service
 public class AccessLimitServiceImpl implements AccessLimitService {
 
-    private final AccessLogRepository accessLogRepository;
-    private final ProfileRepository profileRepository;
+    private final AccessCounterStore counterStore;
+    private final EffectiveProfileResolver profileResolver;
     private final ProfileResourceLimitRepository profileResourceLimitRepository;
     private final ClockService clockService;
+    private final SiteZoneRegistry siteZones;
+    private final PolicySnapshotHolder policySnapshots;
+
+    // 配置文件ID → 激活的资源限制（限制变化时由 refreshLimits() 清空）
+    private final Map<String, List<ProfileResourceLimit>> limitsByProfile = new ConcurrentHashMap<>();
 
     @Autowired
-    public AccessLimitServiceImpl(AccessLogRepository accessLogRepository,
-                                  ProfileRepository profileRepository,
+    public AccessLimitServiceImpl(AccessCounterStore counterStore,
+                                  EffectiveProfileResolver profileResolver,
                                   ProfileResourceLimitRepository profileResourceLimitRepository,
-                                  ClockService clockService) {
-        this.accessLogRepository = accessLogRepository;
-        this.profileRepository = profileRepository;
+                                  ClockService clockService,
+                                  SiteZoneRegistry siteZones,
+                                  PolicySnapshotHolder policySnapshots) {
+        this.counterStore = counterStore;
+        this.profileResolver = profileResolver;
         this.profileResourceLimitRepository = profileResourceLimitRepository;
         this.clockService = clockService;
+        this.siteZones = siteZones;
+        this.policySnapshots = policySnapshots;
     }
 
 
 
     @Override
     public void recordAccess(Employee employee, Resource resource, Instant timestamp) {
-        // 访问记录已由日志服务记录，此处无需额外操作
-        // 此方法保留用于未来扩展（如缓存计数）
+        if (employee == null || timestamp == null) {
+            return;
+        }
+        counterStore.increment(employee.getEmployeeId(),
+                resource != null ? resource.getResourceId() : null,
+                siteZones.toLocalDateTime(resource, timestamp));
+    }
+
+    @Override
+    public void refreshLimits() {
+        limitsByProfile.clear();
+        // 访问决策使用策略快照中的限制：重新加载，返回时新限制已生效
+        policySnapshots.refreshLimits();
     }
 
     @Override
-    @Transactional(readOnly = true)
     public int getTodayAccessCount(Employee employee) {
         return getTodayAccessCount(employee, clockService.now());
     }
 
 
     @Override
-    @Transactional(readOnly = true)
     public int getWeekAccessCount(Employee employee) {
         return getWeekAccessCount(employee, clockService.now());
     }
 
     @Override
-    @Transactional(readOnly = true)
     public int getTodayAccessCount(Employee employee, Resource resource) {
         return getTodayAccessCount(employee, resource, clockService.now());
     }
 
     @Override
-    @Transactional(readOnly = true)
     public int getWeekAccessCount(Employee employee, Resource resource) {
         return getWeekAccessCount(employee, resource, clockService.now());
     }
@@ -88,17 +104,7 @@ public class AccessLimitServiceImpl implements AccessLimitService {
         if (employee == null || employee.getEmployeeId() == null || timestamp == null) {
             return 0;
         }
-        
-        LocalDateTime accessTime = LocalDateTime.ofInstant(timestamp, ZoneId.systemDefault());
-        LocalDateTime startOfDay = accessTime.toLocalDate().atStartOfDay();
-        LocalDateTime endOfDay = startOfDay.plusDays(1).minusNanos(1);
-        
-        List<LogEntry> logs = accessLogRepository.findByEmployeeEmployeeIdAndTimestampBetween(
-            employee.getEmployeeId(), startOfDay, endOfDay);
-        
-        return (int) logs.stream()
-            .filter(log -> AccessDecision.ALLOW.equals(log.getDecision()))
-            .count();
+        return counterStore.getDailyCount(employee.getEmployeeId(), null, toLocalDate(null, timestamp));
     }
 
     /**
@@ -108,18 +114,7 @@ public class AccessLimitServiceImpl implements AccessLimitService {
         if (employee == null || employee.getEmployeeId() == null || timestamp == null) {
             return 0;
         }
-        
-        LocalDateTime accessTime = LocalDateTime.ofInstant(timestamp, ZoneId.systemDefault());
-        LocalDateTime startOfWeek = accessTime.with(WeekFields.of(Locale.getDefault()).dayOfWeek(), 1)
-            .toLocalDate().atStartOfDay();
-        LocalDateTime endOfWeek = startOfWeek.plusDays(7).minusNanos(1);
-        
-        List<LogEntry> logs = accessLogRepository.findByEmployeeEmployeeIdAndTimestampBetween(
-            employee.getEmployeeId(), startOfWeek, endOfWeek);
-        
-        return (int) logs.stream()
-            .filter(log -> AccessDecision.ALLOW.equals(log.getDecision()))
-            .count();
+        return counterStore.getWeeklyCount(employee.getEmployeeId(), null, toLocalDate(null, timestamp));
     }
 
     /**
@@ -127,29 +122,21 @@ public class AccessLimitServiceImpl implements AccessLimitService {
      * @param employee 员工
      * @return true 如果未超过任何限制，false 如果超过任一限制
      */
-    @Transactional(readOnly = true)
     public boolean checkAllLimits(Employee employee) {
         return checkAllLimits(employee, clockService.now());
     }
 
     @Override
-    @Transactional(readOnly = true)
     public boolean checkAllLimits(Employee employee, Instant timestamp) {
         if (employee == null || timestamp == null) {
             return true;
         }
-        List<Profile> activeProfiles = getActiveProfiles(employee);
-        if (activeProfiles.isEmpty()) {
-            return true;
-        }
-
-        Profile highestPriorityProfile = getHighestPriorityProfile(activeProfiles);
+        Profile highestPriorityProfile = profileResolver.resolveHighestPriority(employee, employee.getBadge());
         if (highestPriorityProfile == null) {
             return true;
         }
 
-        List<ProfileResourceLimit> limits = profileResourceLimitRepository
-                .findByProfileAndIsActiveTrue(highestPriorityProfile);
+        List<ProfileResourceLimit> limits = getActiveLimits(highestPriorityProfile);
         if (limits.isEmpty()) {
             return true;
         }
@@ -187,23 +174,16 @@ public class AccessLimitServiceImpl implements AccessLimitService {
 
 
     @Override
-    @Transactional(readOnly = true)
     public boolean checkResourceLimits(Employee employee, Resource resource, Instant timestamp) {
         if (employee == null || resource == null || timestamp == null) {
             return true;
         }
-        List<Profile> activeProfiles = getActiveProfiles(employee);
-        if (activeProfiles.isEmpty()) {
-            return true;
-        }
-
-        Profile highestPriorityProfile = getHighestPriorityProfile(activeProfiles);
+        Profile highestPriorityProfile = profileResolver.resolveHighestPriority(employee, employee.getBadge());
         if (highestPriorityProfile == null) {
             return true;
         }
 
-        List<ProfileResourceLimit> limits = profileResourceLimitRepository
-                .findByProfileAndIsActiveTrue(highestPriorityProfile);
+        List<ProfileResourceLimit> limits = getActiveLimits(highestPriorityProfile);
         if (limits.isEmpty()) {
             return true;
         }
@@ -243,90 +223,79 @@ public class AccessLimitServiceImpl implements AccessLimitService {
         return true;
     }
 
-    private List<Profile> getActiveProfiles(Employee employee) {
-        List<Profile> activeProfiles = new ArrayList<>();
-        if (employee == null) {
-            return activeProfiles;
+    @Override
+    public LimitReservation reserve(Employee employee, Resource resource, Instant timestamp) {
+        if (employee == null || employee.getEmployeeId() == null || resource == null || timestamp == null) {
+            return LimitReservation.held(null, null, null);
         }
-        if (employee.getGroups() != null) {
-            for (acs.domain.Group group : employee.getGroups()) {
-                List<Profile> profiles = profileRepository.findByGroupsContaining(group);
-                for (Profile profile : profiles) {
-                    if (profile.getIsActive() != null && profile.getIsActive()) {
-                        if (!activeProfiles.contains(profile)) {
-                            activeProfiles.add(profile);
-                        }
-                    }
+        LimitPolicy merged = LimitPolicy.NONE;
+        Profile highestPriorityProfile = profileResolver.resolveHighestPriority(employee, employee.getBadge());
+        if (highestPriorityProfile != null) {
+            for (ProfileResourceLimit limit : getActiveLimits(highestPriorityProfile)) {
+                if (limit == null || limit.getResource() == null
+                        || !resource.getResourceId().equals(limit.getResource().getResourceId())) {
+                    continue;
                 }
+                // 多条限制作用于同一资源时取最严格的
+                merged = merged.tighten(new LimitPolicy(limit.getDailyLimit() != null ? limit.getDailyLimit() : 0,
+                        limit.getWeeklyLimit() != null ? limit.getWeeklyLimit() : 0));
             }
         }
-        List<Profile> employeeProfiles = profileRepository.findByEmployeesContaining(employee);
-        for (Profile profile : employeeProfiles) {
-            if (profile.getIsActive() != null && profile.getIsActive() && !activeProfiles.contains(profile)) {
-                activeProfiles.add(profile);
-            }
+        return reserve(employee, resource, timestamp, merged.getDailyLimit(), merged.getWeeklyLimit());
+    }
+
+    @Override
+    public LimitReservation reserve(Employee employee, Resource resource, Instant timestamp,
+                                    int dailyLimit, int weeklyLimit) {
+        if (employee == null || employee.getEmployeeId() == null || resource == null || timestamp == null) {
+            return LimitReservation.held(null, null, null);
         }
-        if (employee.getBadge() != null) {
-            List<Profile> badgeProfiles = profileRepository.findByBadgesContaining(employee.getBadge());
-            for (Profile profile : badgeProfiles) {
-                if (profile.getIsActive() != null && profile.getIsActive() && !activeProfiles.contains(profile)) {
-                    activeProfiles.add(profile);
-                }
-            }
+        LocalDateTime accessTime = siteZones.toLocalDateTime(resource, timestamp);
+        if (!counterStore.tryAcquire(employee.getEmployeeId(), resource.getResourceId(), accessTime,
+                dailyLimit, weeklyLimit)) {
+            return LimitReservation.denied();
+        }
+        return LimitReservation.held(employee.getEmployeeId(), resource.getResourceId(), accessTime);
+    }
+
+    @Override
+    public void commit(LimitReservation reservation) {
+        // 计数已在预占时递增，提交只需结算
+        if (reservation != null) {
+            reservation.settle();
         }
-        return activeProfiles;
     }
 
-    private Profile getHighestPriorityProfile(List<Profile> profiles) {
-        if (profiles == null || profiles.isEmpty()) {
-            return null;
+    @Override
+    public void rollback(LimitReservation reservation) {
+        if (reservation != null && reservation.settle()) {
+            counterStore.release(reservation.getEmployeeId(), reservation.getResourceId(), reservation.getTimestamp());
         }
-        profiles.sort((p1, p2) -> {
-            Integer p1Level = p1.getPriorityLevel();
-            Integer p2Level = p2.getPriorityLevel();
-            if (p1Level == null && p2Level == null) return 0;
-            if (p1Level == null) return 1;
-            if (p2Level == null) return -1;
-            return Integer.compare(p1Level, p2Level);
-        });
-        return profiles.get(0);
     }
 
     private int getTodayAccessCount(Employee employee, Resource resource, Instant timestamp) {
         if (employee == null || resource == null || timestamp == null) {
             return 0;
         }
-        LocalDateTime accessTime = LocalDateTime.ofInstant(timestamp, ZoneId.systemDefault());
-        LocalDateTime startOfDay = accessTime.toLocalDate().atStartOfDay();
-        LocalDateTime endOfDay = startOfDay.plusDays(1).minusNanos(1);
-
-        List<LogEntry> logs = accessLogRepository.findByEmployeeEmployeeIdAndResourceResourceIdAndTimestampBetween(
-                employee.getEmployeeId(), resource.getResourceId(), startOfDay, endOfDay);
-
-        return (int) logs.stream()
-                .filter(log -> AccessDecision.ALLOW.equals(log.getDecision()))
-                .count();
+        return counterStore.getDailyCount(employee.getEmployeeId(), resource.getResourceId(), toLocalDate(resource, timestamp));
     }
 
     private int getWeekAccessCount(Employee employee, Resource resource, Instant timestamp) {
         if (employee == null || resource == null || timestamp == null) {
             return 0;
         }
-
-        LocalDateTime accessTime = LocalDateTime.ofInstant(timestamp, ZoneId.systemDefault());
-        LocalDateTime startOfWeek = accessTime.with(WeekFields.of(Locale.getDefault()).dayOfWeek(), 1)
-                .toLocalDate().atStartOfDay();
-        LocalDateTime endOfWeek = startOfWeek.plusDays(7).minusNanos(1);
-
-        List<LogEntry> logs = accessLogRepository.findByEmployeeEmployeeIdAndResourceResourceIdAndTimestampBetween(
-                employee.getEmployeeId(), resource.getResourceId(), startOfWeek, endOfWeek);
-
-        return (int) logs.stream()
-                .filter(log -> AccessDecision.ALLOW.equals(log.getDecision()))
-                .count();
+        return counterStore.getWeeklyCount(employee.getEmployeeId(), resource.getResourceId(), toLocalDate(resource, timestamp));
     }
 
-    
+    private List<ProfileResourceLimit> getActiveLimits(Profile profile) {
+        if (profile.getProfileId() == null) {
+            return profileResourceLimitRepository.findByProfileAndIsActiveTrue(profile);
+        }
+        return limitsByProfile.computeIfAbsent(profile.getProfileId(),
+                id -> List.copyOf(profileResourceLimitRepository.findByProfileAndIsActiveTrue(profile)));
+    }
 
-    
+    private LocalDate toLocalDate(Resource resource, Instant timestamp) {
+        return siteZones.toLocalDate(resource, timestamp);
+    }
 }
@@ -93,9 +93,11 @@ public class AdminServiceImpl implements AdminService {
         Employee persistedEmployee = employeeRepository.findById(employeeId)
                 .orElseThrow(() -> new IllegalStateException("Employee not found after save: " + employeeId));
         
-        // 同步缓存
-        cacheManager.updateBadge(persistedBadge);
-        cacheManager.updateEmployee(persistedEmployee);
+        // 同步缓存，两个实体的变化一次发布
+        cacheManager.batchChanges(() -> {
+            cacheManager.updateBadge(persistedBadge);
+            cacheManager.updateEmployee(persistedEmployee);
+        });
     }
 
     @Override
@@ -134,9 +136,11 @@ public class AdminServiceImpl implements AdminService {
         
         employeeRepository.save(employee);
         groupRepository.save(group);
-        // 同步缓存
-        cacheManager.updateEmployee(employee);
-        cacheManager.updateGroup(group);
+        // 同步缓存，两个实体的变化一次发布
+        cacheManager.batchChanges(() -> {
+            cacheManager.updateEmployee(employee);
+            cacheManager.updateGroup(group);
+        });
     }
 
     @Override
@@ -152,9 +156,11 @@ public class AdminServiceImpl implements AdminService {
         
         employeeRepository.save(employee);
         groupRepository.save(group);
-        // 同步缓存
-        cacheManager.updateEmployee(employee);
-        cacheManager.updateGroup(group);
+        // 同步缓存，两个实体的变化一次发布
+        cacheManager.batchChanges(() -> {
+            cacheManager.updateEmployee(employee);
+            cacheManager.updateGroup(group);
+        });
     }
 
     @Override
@@ -209,9 +215,11 @@ public class AdminServiceImpl implements AdminService {
         
         groupRepository.save(group);
         resourceRepository.save(resource);
-        // 同步缓存
-        cacheManager.updateGroup(group);
-        cacheManager.updateResource(resource);
+        // 同步缓存，两个实体的变化一次发布
+        cacheManager.batchChanges(() -> {
+            cacheManager.updateGroup(group);
+            cacheManager.updateResource(resource);
+        });
     }
 
     @Override
@@ -227,9 +235,11 @@ public class AdminServiceImpl implements AdminService {
         
         groupRepository.save(group);
         resourceRepository.save(resource);
-        // 同步缓存
-        cacheManager.updateGroup(group);
-        cacheManager.updateResource(resource);
+        // 同步缓存，两个实体的变化一次发布
+        cacheManager.batchChanges(() -> {
+            cacheManager.updateGroup(group);
+            cacheManager.updateResource(resource);
+        });
     }
 
 
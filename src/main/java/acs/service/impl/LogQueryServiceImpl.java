@@ -10,7 +10,6 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 public class LogQueryServiceImpl implements LogQueryService {
@@ -26,13 +25,8 @@ public class LogQueryServiceImpl implements LogQueryService {
     public List<LogEntry> findByBadge(String badgeId, Instant from, Instant to) {
         LocalDateTime start = (from != null) ? LocalDateTime.ofInstant(from, ZoneId.systemDefault()) : null;
         LocalDateTime end = (to != null) ? LocalDateTime.ofInstant(to, ZoneId.systemDefault()) : null;
-        // 从缓存过滤
-        return cacheManager.getLogs().stream()
-                .filter(log -> log.getBadge() != null && log.getBadge().getBadgeId().equals(badgeId))
-                .filter(log -> log.getTimestamp() != null)
-                .filter(log -> start == null || !log.getTimestamp().isBefore(start))
-                .filter(log -> end == null || !log.getTimestamp().isAfter(end))
-                .collect(Collectors.toList());
+        // 从缓存的倒排列表按时间范围查询
+        return cacheManager.getLogsByBadge(badgeId, start, end);
     }
 
     // 按员工查询日志
@@ -40,12 +34,7 @@ public class LogQueryServiceImpl implements LogQueryService {
     public List<LogEntry> findByEmployee(String employeeId, Instant from, Instant to) {
         LocalDateTime start = (from != null) ? LocalDateTime.ofInstant(from, ZoneId.systemDefault()) : null;
         LocalDateTime end = (to != null) ? LocalDateTime.ofInstant(to, ZoneId.systemDefault()) : null;
-        return cacheManager.getLogs().stream()
-                .filter(log -> log.getEmployee() != null && log.getEmployee().getEmployeeId().equals(employeeId))
-                .filter(log -> log.getTimestamp() != null)
-                .filter(log -> start == null || !log.getTimestamp().isBefore(start))
-                .filter(log -> end == null || !log.getTimestamp().isAfter(end))
-                .collect(Collectors.toList());
+        return cacheManager.getLogsByEmployee(employeeId, start, end);
     }
 
     // 按资源查询日志
@@ -53,12 +42,7 @@ public class LogQueryServiceImpl implements LogQueryService {
     public List<LogEntry> findByResource(String resourceId, Instant from, Instant to) {
         LocalDateTime start = (from != null) ? LocalDateTime.ofInstant(from, ZoneId.systemDefault()) : null;
         LocalDateTime end = (to != null) ? LocalDateTime.ofInstant(to, ZoneId.systemDefault()) : null;
-        return cacheManager.getLogs().stream()
-                .filter(log -> log.getResource() != null && log.getResource().getResourceId().equals(resourceId))
-                .filter(log -> log.getTimestamp() != null)
-                .filter(log -> start == null || !log.getTimestamp().isBefore(start))
-                .filter(log -> end == null || !log.getTimestamp().isAfter(end))
-                .collect(Collectors.toList());
+        return cacheManager.getLogsByResource(resourceId, start, end);
     }
 
     // 查询被拒绝的日志
@@ -66,12 +50,7 @@ public class LogQueryServiceImpl implements LogQueryService {
     public List<LogEntry> findDenied(Instant from, Instant to) {
         LocalDateTime start = (from != null) ? LocalDateTime.ofInstant(from, ZoneId.systemDefault()) : null;
         LocalDateTime end = (to != null) ? LocalDateTime.ofInstant(to, ZoneId.systemDefault()) : null;
-        return cacheManager.getLogs().stream()
-                .filter(log -> log.getDecision() != null && log.getDecision() == AccessDecision.DENY)
-                .filter(log -> log.getTimestamp() != null)
-                .filter(log -> start == null || !log.getTimestamp().isBefore(start))
-                .filter(log -> end == null || !log.getTimestamp().isAfter(end))
-                .collect(Collectors.toList());
+        return cacheManager.getLogsByDecision(AccessDecision.DENY, start, end);
     }
 
     // 查询所有日志
@@ -3,6 +3,7 @@ package acs.service.impl;
 import acs.service.ProfileFileService;
 import acs.domain.Profile;
 import acs.domain.TimeFilter;
+import acs.cache.EffectiveProfileResolver;
 import acs.repository.ProfileRepository;
 import acs.repository.TimeFilterRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -23,13 +24,16 @@ public class ProfileFileServiceImpl implements ProfileFileService {
 
     private final ProfileRepository profileRepository;
     private final TimeFilterRepository timeFilterRepository;
+    private final EffectiveProfileResolver profileResolver;
     private final ObjectMapper objectMapper;
 
     @Autowired
     public ProfileFileServiceImpl(ProfileRepository profileRepository,
-                                  TimeFilterRepository timeFilterRepository) {
+                                  TimeFilterRepository timeFilterRepository,
+                                  EffectiveProfileResolver profileResolver) {
         this.profileRepository = profileRepository;
         this.timeFilterRepository = timeFilterRepository;
+        this.profileResolver = profileResolver;
         this.objectMapper = new ObjectMapper();
     }
 
@@ -43,6 +47,7 @@ public class ProfileFileServiceImpl implements ProfileFileService {
             for (Profile profile : profiles) {
                 profileRepository.save(profile);
             }
+            profileResolver.refresh();
             return profiles;
         } catch (IOException e) {
             throw new RuntimeException("Failed to load JSON profile file: " + filePath, e);
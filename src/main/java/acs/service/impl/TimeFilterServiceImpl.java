@@ -1,11 +1,28 @@
 package acs.service.impl;
 
+import acs.cache.HolidayCalendarCache;
 import acs.service.TimeFilterService;
+import acs.domain.CompiledTimeFilter;
+import acs.domain.HolidayCalendar;
+import acs.domain.Profile;
+import acs.domain.ProfileSchedule;
 import acs.domain.TimeFilter;
+import acs.domain.TimeFilterEvaluation;
+import acs.domain.TimeRuleImportResult;
 import acs.repository.TimeFilterRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.Month;
@@ -13,25 +30,79 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 @Service
 public class TimeFilterServiceImpl implements TimeFilterService {
 
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("H:mm");
+
+    private static final int IMPORT_BATCH_SIZE = 500;
+    private static final String INSERT_SQL = "INSERT INTO time_filters "
+        + "(time_filter_id, filter_name, raw_rule, year, months, days_of_month, days_of_week, start_time, end_time, "
+        + "time_ranges, excluded_months, excluded_days_of_week, excluded_time_ranges, excluded_days_of_month, "
+        + "holiday_calendar, excluded_holiday_calendar, is_recurring, description) "
+        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // 与 time_filters 表的列长度一致
+    private static final int FILTER_NAME_LENGTH = 100;
+    private static final int RAW_RULE_LENGTH = 500;
+    private static final int TIME_RANGES_LENGTH = 200;
+    private static final int DAYS_OF_MONTH_LENGTH = 100;
+    private static final int CALENDAR_NAME_LENGTH = 50;
+    // 节假日日历名称：字母、数字、下划线和连字符
+    private static final Pattern CALENDAR_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
     private final TimeFilterRepository timeFilterRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final HolidayCalendarCache holidayCalendarCache;
+
+    // 规范化ID → 已存储规则的ID。旧版本按原始规则字符串的哈希生成ID（"TF_" + hashCode），
+    // 与规范化ID不同，因此按已存储规则的规范化形式去重，而不是只比较主键
+    private volatile Map<String, String> storedIdsByNormalizedId;
 
     @Autowired
-    public TimeFilterServiceImpl(TimeFilterRepository timeFilterRepository) {
+    public TimeFilterServiceImpl(TimeFilterRepository timeFilterRepository, JdbcTemplate jdbcTemplate,
+                                 HolidayCalendarCache holidayCalendarCache) {
         this.timeFilterRepository = timeFilterRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.holidayCalendarCache = holidayCalendarCache;
     }
 
     @Override
     public TimeFilter parseTimeRule(String rawRule) {
+        TimeFilter timeFilter = parseTimeRuleInMemory(rawRule);
+        // 语义相同的规则已存储（包括旧版本ID的规则）时返回已存储的规则，不重复插入
+        String storedId = storedIds(false).get(timeFilter.getTimeFilterId());
+        if (storedId != null) {
+            Optional<TimeFilter> stored = timeFilterRepository.findById(storedId);
+            if (stored.isPresent()) {
+                return stored.get();
+            }
+        }
+        // 保存到仓库
+        timeFilterRepository.save(timeFilter);
+        storedIds(false).put(timeFilter.getTimeFilterId(), timeFilter.getTimeFilterId());
+        return timeFilter;
+    }
+
+    @Override
+    public TimeFilter parseTimeRuleInMemory(String rawRule) {
+        if (rawRule == null) {
+            throw new IllegalArgumentException("Time rule is empty");
+        }
         TimeFilter timeFilter = new TimeFilter();
         timeFilter.setRawRule(rawRule);
 
@@ -39,9 +110,14 @@ public class TimeFilterServiceImpl implements TimeFilterService {
         // 支持PDF示例：2025.July,August.Monday-Friday.8:00-12:00,14:00-17:00
         // 支持EXCEPT逻辑：2026.EXCEPT June,July,August.EXCEPT Sunday.ALL
         // 支持组合逻辑：ALL.ALL.Monday-Friday.EXCEPT 12:00-14:00
+        // 可选的日期/节假日限定（追加在第4部分之后）：
+        //   ALL.ALL.ALL.8:00-17:00.DAYS 1-15        每月1日至15日
+        //   ALL.ALL.ALL.ALL.EXCEPT DAYS 31          每月31日除外
+        //   ALL.ALL.Monday-Friday.8:00-17:00.EXCEPT HOLIDAYS CN   节假日除外
+        //   ALL.ALL.ALL.9:00-12:00.HOLIDAYS CN      仅节假日
         String[] parts = rawRule.split("\\.");
-        if (parts.length != 4) {
-            throw new IllegalArgumentException("Invalid time rule format, expected 4 parts: " + rawRule);
+        if (parts.length < 4) {
+            throw new IllegalArgumentException("Invalid time rule format, expected at least 4 parts: " + rawRule);
         }
 
         // 1. 年
@@ -61,12 +137,10 @@ public class TimeFilterServiceImpl implements TimeFilterService {
         String includedMonths = monthIncludedExcluded[0];
         String excludedMonths = monthIncludedExcluded[1];
         if (includedMonths != null) {
-            Set<String> monthSet = parseMonthList(includedMonths);
-            timeFilter.setMonths(String.join(",", monthSet));
+            timeFilter.setMonths(monthsToString(parseMonthList(includedMonths)));
         }
         if (excludedMonths != null) {
-            Set<String> excludedSet = parseMonthList(excludedMonths);
-            timeFilter.setExcludedMonths(String.join(",", excludedSet));
+            timeFilter.setExcludedMonths(monthsToString(parseMonthList(excludedMonths)));
         }
 
         // 3. 星期
@@ -75,12 +149,10 @@ public class TimeFilterServiceImpl implements TimeFilterService {
         String includedDays = dayIncludedExcluded[0];
         String excludedDays = dayIncludedExcluded[1];
         if (includedDays != null) {
-            Set<Integer> daySet = parseDayOfWeekList(includedDays);
-            timeFilter.setDaysOfWeek(daySet.stream().map(String::valueOf).collect(Collectors.joining(",")));
+            timeFilter.setDaysOfWeek(daysToString(parseDayOfWeekList(includedDays)));
         }
         if (excludedDays != null) {
-            Set<Integer> excludedSet = parseDayOfWeekList(excludedDays);
-            timeFilter.setExcludedDaysOfWeek(excludedSet.stream().map(String::valueOf).collect(Collectors.joining(",")));
+            timeFilter.setExcludedDaysOfWeek(daysToString(parseDayOfWeekList(excludedDays)));
         }
 
         // 4. 时间范围
@@ -106,90 +178,406 @@ public class TimeFilterServiceImpl implements TimeFilterService {
             }
         }
 
-        // 生成一个ID（基于原始规则的哈希）
-        String filterId = "TF_" + Math.abs(rawRule.hashCode());
-        timeFilter.setTimeFilterId(filterId);
-        timeFilter.setFilterName("Rule: " + rawRule);
+        // 5. 日期/节假日限定
+        for (int i = 4; i < parts.length; i++) {
+            parseDateQualifier(timeFilter, parts[i].trim());
+        }
 
-        // 保存到仓库（可选）
-        timeFilterRepository.save(timeFilter);
+        // 生成ID：基于规范化规则的SHA-256，语义相同的规则（大小写、顺序、缩写不同）得到相同ID
+        timeFilter.setTimeFilterId(timeFilterIdOf(normalizedRule(timeFilter)));
+        timeFilter.setFilterName(filterNameOf(rawRule));
+        checkColumnLengths(timeFilter);
+
+        timeFilter.setCompiled(compile(timeFilter));
         return timeFilter;
     }
 
     @Override
-    public boolean matches(TimeFilter timeFilter, LocalDateTime dateTime) {
-        // 检查年份
-        if (timeFilter.getYear() != null && timeFilter.getYear() != dateTime.getYear()) {
-            return false;
+    public TimeRuleImportResult importTimeRules(String filePath) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Paths.get(filePath), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read time rule file: " + filePath, e);
         }
+        return importTimeRules(lines);
+    }
 
-        // 检查月份
-        String currentMonth = dateTime.getMonth().name();
-        if (timeFilter.getMonths() != null && !timeFilter.getMonths().isEmpty()) {
-            // 包含列表：必须在此列表中
-            Set<String> includedMonths = parseMonthList(timeFilter.getMonths());
-            if (!includedMonths.contains(currentMonth)) {
-                return false;
+    @Override
+    public TimeRuleImportResult importTimeRules(List<String> rawRules) {
+        TimeRuleImportResult result = new TimeRuleImportResult();
+
+        // 1. 并行解析（纯内存，不访问数据库），保留行号用于报告错误
+        List<ParsedRule> parsed = IntStream.range(0, rawRules.size())
+            .parallel()
+            .mapToObj(i -> parseLine(i + 1, rawRules.get(i)))
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+
+        // 2. 按规范化规则去重（同一规则保留第一次出现）
+        Map<String, ParsedRule> unique = new LinkedHashMap<>();
+        for (ParsedRule rule : parsed) {
+            result.incrementTotal();
+            if (rule.error != null) {
+                result.addError("Line " + rule.lineNumber + ": " + rule.error);
+            } else if (unique.putIfAbsent(rule.filter.getTimeFilterId(), rule) != null) {
+                result.incrementDuplicates();
             }
         }
-        if (timeFilter.getExcludedMonths() != null && !timeFilter.getExcludedMonths().isEmpty()) {
-            // 排除列表：不能在此列表中
-            Set<String> excludedMonths = parseMonthList(timeFilter.getExcludedMonths());
-            if (excludedMonths.contains(currentMonth)) {
-                return false;
+
+        // 3. 与已存储的规则按规范化形式比对（每次导入重新加载一次），分批插入新规则
+        Map<String, String> stored = storedIds(true);
+        List<ParsedRule> rules = new ArrayList<>(unique.values());
+        for (int from = 0; from < rules.size(); from += IMPORT_BATCH_SIZE) {
+            List<ParsedRule> batch = rules.subList(from, Math.min(from + IMPORT_BATCH_SIZE, rules.size()));
+            List<ParsedRule> toInsert = batch.stream()
+                .filter(rule -> !stored.containsKey(rule.filter.getTimeFilterId()))
+                .collect(Collectors.toList());
+            result.addExisting(batch.size() - toInsert.size());
+            if (!toInsert.isEmpty()) {
+                insertBatch(toInsert, result);
             }
         }
+        return result;
+    }
 
-        // 检查星期
-        int currentDay = dateTime.getDayOfWeek().getValue(); // 1=Monday, 7=Sunday
-
-        if (timeFilter.getDaysOfWeek() != null && !timeFilter.getDaysOfWeek().isEmpty()) {
-            Set<Integer> includedDays = parseDayOfWeekList(timeFilter.getDaysOfWeek());
-            if (!includedDays.contains(currentDay)) {
-                return false;
+    // 批量插入；整批失败时逐条重试，失败的规则按行号记入错误，不影响其他规则和后续批次
+    private void insertBatch(List<ParsedRule> rules, TimeRuleImportResult result) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rules, rules.size(), (ps, rule) -> bind(ps, rule.filter));
+            result.addSaved(rules.size());
+            rules.forEach(this::rememberStored);
+        } catch (RuntimeException batchError) {
+            System.err.println("Batch insert of " + rules.size() + " time rules failed, retrying one by one: "
+                + batchError.getMessage());
+            for (ParsedRule rule : rules) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, rule.filter));
+                    result.addSaved(1);
+                    rememberStored(rule);
+                } catch (RuntimeException e) {
+                    result.addError("Line " + rule.lineNumber + ": failed to save rule: " + e.getMessage());
+                }
             }
         }
-        if (timeFilter.getExcludedDaysOfWeek() != null && !timeFilter.getExcludedDaysOfWeek().isEmpty()) {
-            Set<Integer> excludedDays = parseDayOfWeekList(timeFilter.getExcludedDaysOfWeek());
-            if (excludedDays.contains(currentDay)) {
-                return false;
+    }
+
+    private void rememberStored(ParsedRule rule) {
+        storedIds(false).put(rule.filter.getTimeFilterId(), rule.filter.getTimeFilterId());
+    }
+
+    /**
+     * 已存储规则的规范化ID索引；首次使用或 reload 为true时从数据库加载全部规则，
+     * 由已存储的字段计算规范化ID（不重新解析原始规则），同一规范化形式保留第一条。
+     */
+    private synchronized Map<String, String> storedIds(boolean reload) {
+        Map<String, String> ids = storedIdsByNormalizedId;
+        if (ids == null || reload) {
+            ids = new ConcurrentHashMap<>();
+            for (TimeFilter filter : timeFilterRepository.findAll()) {
+                if (filter.getTimeFilterId() != null) {
+                    ids.putIfAbsent(timeFilterIdOf(normalizedRule(filter)), filter.getTimeFilterId());
+                }
             }
+            storedIdsByNormalizedId = ids;
         }
+        return ids;
+    }
 
-        // 检查时间范围
-        LocalTime currentTime = dateTime.toLocalTime();
-        // 首先检查排除时间区间
-        if (timeFilter.getExcludedTimeRanges() != null && !timeFilter.getExcludedTimeRanges().isEmpty()) {
-            List<LocalTime[]> excludedRanges = parseTimeRanges(timeFilter.getExcludedTimeRanges());
-            for (LocalTime[] range : excludedRanges) {
-                if (currentTime.compareTo(range[0]) >= 0 && currentTime.compareTo(range[1]) <= 0) {
-                    // 当前时间在排除区间内
-                    return false;
+    // 名称仅用于显示，超过列长度时截断
+    private static String filterNameOf(String rawRule) {
+        String name = "Rule: " + rawRule;
+        return name.length() <= FILTER_NAME_LENGTH ? name : name.substring(0, FILTER_NAME_LENGTH - 3) + "...";
+    }
+
+    // 规则本身及由规则展开的字段不能截断，超过列长度时视为无效规则
+    private static void checkColumnLengths(TimeFilter filter) {
+        checkLength("Time rule", filter.getRawRule(), RAW_RULE_LENGTH);
+        checkLength("Time ranges", filter.getTimeRanges(), TIME_RANGES_LENGTH);
+        checkLength("Excluded time ranges", filter.getExcludedTimeRanges(), TIME_RANGES_LENGTH);
+        checkLength("Days of month", filter.getDaysOfMonth(), DAYS_OF_MONTH_LENGTH);
+        checkLength("Excluded days of month", filter.getExcludedDaysOfMonth(), DAYS_OF_MONTH_LENGTH);
+        checkLength("Holiday calendar", filter.getHolidayCalendar(), CALENDAR_NAME_LENGTH);
+        checkLength("Excluded holiday calendar", filter.getExcludedHolidayCalendar(), CALENDAR_NAME_LENGTH);
+    }
+
+    private static void checkLength(String field, String value, int maxLength) {
+        if (value != null && value.length() > maxLength) {
+            throw new IllegalArgumentException(field + " is too long (" + value.length()
+                + " characters, at most " + maxLength + " allowed)");
+        }
+    }
+
+    private ParsedRule parseLine(int lineNumber, String line) {
+        String rawRule = line == null ? "" : line.trim();
+        if (rawRule.isEmpty() || rawRule.startsWith("#")) {
+            return null; // 跳过空行和注释
+        }
+        try {
+            return new ParsedRule(lineNumber, parseTimeRuleInMemory(rawRule), null);
+        } catch (RuntimeException e) {
+            return new ParsedRule(lineNumber, null, e.getMessage());
+        }
+    }
+
+    private static void bind(PreparedStatement ps, TimeFilter filter) throws SQLException {
+        ps.setString(1, filter.getTimeFilterId());
+        ps.setString(2, filter.getFilterName());
+        ps.setString(3, filter.getRawRule());
+        ps.setObject(4, filter.getYear());
+        ps.setString(5, filter.getMonths());
+        ps.setString(6, filter.getDaysOfMonth());
+        ps.setString(7, filter.getDaysOfWeek());
+        ps.setObject(8, filter.getStartTime() != null ? Time.valueOf(filter.getStartTime()) : null);
+        ps.setObject(9, filter.getEndTime() != null ? Time.valueOf(filter.getEndTime()) : null);
+        ps.setString(10, filter.getTimeRanges());
+        ps.setString(11, filter.getExcludedMonths());
+        ps.setString(12, filter.getExcludedDaysOfWeek());
+        ps.setString(13, filter.getExcludedTimeRanges());
+        ps.setString(14, filter.getExcludedDaysOfMonth());
+        ps.setString(15, filter.getHolidayCalendar());
+        ps.setString(16, filter.getExcludedHolidayCalendar());
+        ps.setObject(17, filter.getIsRecurring());
+        ps.setString(18, filter.getDescription());
+    }
+
+    /**
+     * 规范化规则：由解析后的字段组成，月份、星期、时间区间均排序，
+     * 因此写法不同但语义相同的规则得到相同结果。
+     */
+    private String normalizedRule(TimeFilter filter) {
+        return "Y=" + (filter.getYear() != null ? filter.getYear() : "*")
+            + "|M=" + nullToEmpty(filter.getMonths())
+            + "|XM=" + nullToEmpty(filter.getExcludedMonths())
+            + "|D=" + nullToEmpty(filter.getDaysOfWeek())
+            + "|XD=" + nullToEmpty(filter.getExcludedDaysOfWeek())
+            + "|T=" + sortedRanges(filter.getTimeRanges())
+            + "|XT=" + sortedRanges(filter.getExcludedTimeRanges())
+            + "|DM=" + nullToEmpty(filter.getDaysOfMonth())
+            + "|XDM=" + nullToEmpty(filter.getExcludedDaysOfMonth())
+            + "|H=" + nullToEmpty(filter.getHolidayCalendar())
+            + "|XH=" + nullToEmpty(filter.getExcludedHolidayCalendar());
+    }
+
+    private String sortedRanges(String ranges) {
+        if (ranges == null || ranges.isEmpty()) {
+            return "";
+        }
+        return Arrays.stream(ranges.split(",")).map(String::trim).sorted().collect(Collectors.joining(","));
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String timeFilterIdOf(String normalizedRule) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalizedRule.getBytes(StandardCharsets.UTF_8));
+            // 取前128位，加前缀后共35个字符，不超过 time_filter_id 列长度
+            return "TF_" + HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private String monthsToString(Set<String> monthNames) {
+        return monthNames.stream()
+            .map(Month::valueOf)
+            .sorted()
+            .map(Month::name)
+            .collect(Collectors.joining(","));
+    }
+
+    private String daysToString(Set<Integer> days) {
+        return days.stream().sorted().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    @Override
+    public boolean matches(TimeFilter timeFilter, LocalDateTime dateTime) {
+        CompiledTimeFilter compiled = timeFilter.getCompiled();
+        if (compiled == null) {
+            // 首次使用或规则字段被修改：编译一次后挂在实体上复用
+            compiled = compile(timeFilter);
+            timeFilter.setCompiled(compiled);
+        }
+        return compiled.matches(dateTime);
+    }
+
+    @Override
+    public boolean matchesProfile(Profile profile, LocalDateTime dateTime) {
+        return scheduleFor(profile).allows(dateTime);
+    }
+
+    @Override
+    public TimeFilterEvaluation evaluate(Profile profile, LocalDateTime dateTime) {
+        return scheduleFor(profile).evaluate(dateTime);
+    }
+
+    @Override
+    public TimeFilterEvaluation evaluate(Collection<TimeFilter> timeFilters, LocalDateTime dateTime) {
+        // 临时合并时间表（不缓存），适用于界面等低频调用；高频调用应使用配置文件版本
+        return buildSchedule(timeFilters).evaluate(dateTime);
+    }
+
+    @Override
+    public ProfileSchedule scheduleFor(Profile profile) {
+        Set<TimeFilter> timeFilters = profile.getTimeFilters();
+        ProfileSchedule schedule = profile.getSchedule();
+        if (schedule == null || !schedule.isCurrentFor(timeFilters)) {
+            // 时间表记录构建时读取的编译结果：构建期间规则被修改时，下次检查会发现编译结果不一致并重建
+            schedule = buildSchedule(timeFilters);
+            profile.setSchedule(schedule);
+        }
+        return schedule;
+    }
+
+    private ProfileSchedule buildSchedule(Collection<TimeFilter> timeFilters) {
+        List<TimeFilter> sourceFilters = new ArrayList<>();
+        List<CompiledTimeFilter> compiledFilters = new ArrayList<>();
+        if (timeFilters != null) {
+            for (TimeFilter timeFilter : timeFilters) {
+                CompiledTimeFilter compiled = timeFilter.getCompiled();
+                if (compiled == null) {
+                    compiled = compile(timeFilter);
+                    timeFilter.setCompiled(compiled);
                 }
+                sourceFilters.add(timeFilter);
+                compiledFilters.add(compiled);
             }
         }
-        // 检查包含的时间区间（多区间）
+        Set<TimeFilter> source = timeFilters instanceof Set ? (Set<TimeFilter>) timeFilters : null;
+        return new ProfileSchedule(source, sourceFilters, compiledFilters);
+    }
+
+    @Override
+    public CompiledTimeFilter compile(TimeFilter timeFilter) {
+        int year = timeFilter.getYear() != null ? timeFilter.getYear() : CompiledTimeFilter.ANY_YEAR;
+
+        // 月份：包含列表为空表示全部月份，再去除排除列表
+        int monthMask = CompiledTimeFilter.ALL_MONTHS;
+        if (timeFilter.getMonths() != null && !timeFilter.getMonths().isEmpty()) {
+            monthMask = monthMask(parseMonthList(timeFilter.getMonths()));
+        }
+        if (timeFilter.getExcludedMonths() != null && !timeFilter.getExcludedMonths().isEmpty()) {
+            monthMask &= ~monthMask(parseMonthList(timeFilter.getExcludedMonths()));
+        }
+
+        // 星期：1=Monday, 7=Sunday
+        int dayMask = CompiledTimeFilter.ALL_DAYS;
+        if (timeFilter.getDaysOfWeek() != null && !timeFilter.getDaysOfWeek().isEmpty()) {
+            dayMask = dayOfWeekMask(parseDayOfWeekList(timeFilter.getDaysOfWeek()));
+        }
+        if (timeFilter.getExcludedDaysOfWeek() != null && !timeFilter.getExcludedDaysOfWeek().isEmpty()) {
+            dayMask &= ~dayOfWeekMask(parseDayOfWeekList(timeFilter.getExcludedDaysOfWeek()));
+        }
+
+        // 排除时间区间
+        List<LocalTime[]> excludedRanges = new ArrayList<>();
+        if (timeFilter.getExcludedTimeRanges() != null && !timeFilter.getExcludedTimeRanges().isEmpty()) {
+            excludedRanges = parseTimeRanges(timeFilter.getExcludedTimeRanges());
+        }
+        // 包含的时间区间（多区间）；未设置时使用旧的startTime/endTime字段，都没有则不限制时间
+        List<LocalTime[]> includedRanges = null;
         if (timeFilter.getTimeRanges() != null && !timeFilter.getTimeRanges().isEmpty()) {
-            List<LocalTime[]> includedRanges = parseTimeRanges(timeFilter.getTimeRanges());
-            boolean inAnyRange = false;
-            for (LocalTime[] range : includedRanges) {
-                if (currentTime.compareTo(range[0]) >= 0 && currentTime.compareTo(range[1]) <= 0) {
-                    inAnyRange = true;
-                    break;
-                }
+            includedRanges = parseTimeRanges(timeFilter.getTimeRanges());
+        } else if (timeFilter.getStartTime() != null && timeFilter.getEndTime() != null) {
+            includedRanges = new ArrayList<>();
+            includedRanges.add(new LocalTime[]{timeFilter.getStartTime(), timeFilter.getEndTime()});
+        }
+
+        // 日期：包含列表为空表示每天，再去除排除列表
+        int dayOfMonthMask = CompiledTimeFilter.ALL_DAYS_OF_MONTH;
+        if (timeFilter.getDaysOfMonth() != null && !timeFilter.getDaysOfMonth().isEmpty()) {
+            dayOfMonthMask = dayOfMonthMask(parseDaysOfMonth(timeFilter.getDaysOfMonth()));
+        }
+        if (timeFilter.getExcludedDaysOfMonth() != null && !timeFilter.getExcludedDaysOfMonth().isEmpty()) {
+            dayOfMonthMask &= ~dayOfMonthMask(parseDaysOfMonth(timeFilter.getExcludedDaysOfMonth()));
+        }
+
+        // 节假日：引用注册表中的日历实例，日历重新加载后无需重新编译
+        HolidayCalendar holidays = holidayCalendar(timeFilter.getHolidayCalendar());
+        HolidayCalendar excludedHolidays = holidayCalendar(timeFilter.getExcludedHolidayCalendar());
+
+        long[][] excluded = toNanoRanges(excludedRanges);
+        long[][] included = includedRanges != null ? toNanoRanges(includedRanges) : new long[][]{null, null};
+        return new CompiledTimeFilter(year, monthMask, dayMask, included[0], included[1], excluded[0], excluded[1],
+            dayOfMonthMask, holidays, excludedHolidays);
+    }
+
+    private HolidayCalendar holidayCalendar(String calendarName) {
+        if (calendarName == null || calendarName.isEmpty()) {
+            return null;
+        }
+        if (holidayCalendarCache == null) {
+            throw new IllegalStateException("Holiday calendars are not available: " + calendarName);
+        }
+        return holidayCalendarCache.getCalendar(calendarName);
+    }
+
+    /**
+     * 解析日期/节假日限定：[EXCEPT ]DAYS 1-15,20 或 [EXCEPT ]HOLIDAYS 日历名。
+     */
+    private void parseDateQualifier(TimeFilter timeFilter, String qualifier) {
+        boolean except = isExceptKeyword(qualifier);
+        String body = except ? qualifier.substring(7).trim() : qualifier;
+        String upper = body.toUpperCase();
+        if (upper.startsWith("DAYS ")) {
+            String days = daysToString(parseDaysOfMonth(body.substring(5).trim()));
+            if (except) {
+                requireUnset(timeFilter.getExcludedDaysOfMonth(), qualifier);
+                timeFilter.setExcludedDaysOfMonth(days);
+            } else {
+                requireUnset(timeFilter.getDaysOfMonth(), qualifier);
+                timeFilter.setDaysOfMonth(days);
             }
-            if (!inAnyRange) {
-                return false;
+        } else if (upper.startsWith("HOLIDAYS ")) {
+            String calendarName = body.substring(9).trim();
+            if (!CALENDAR_NAME.matcher(calendarName).matches()) {
+                throw new IllegalArgumentException("Invalid holiday calendar name: " + calendarName);
             }
-        } else if (timeFilter.getStartTime() != null && timeFilter.getEndTime() != null) {
-            // 向后兼容：使用旧的startTime/endTime字段
-            if (currentTime.isBefore(timeFilter.getStartTime()) || currentTime.isAfter(timeFilter.getEndTime())) {
-                return false;
+            calendarName = calendarName.toUpperCase();
+            if (except) {
+                requireUnset(timeFilter.getExcludedHolidayCalendar(), qualifier);
+                timeFilter.setExcludedHolidayCalendar(calendarName);
+            } else {
+                requireUnset(timeFilter.getHolidayCalendar(), qualifier);
+                timeFilter.setHolidayCalendar(calendarName);
             }
+        } else {
+            throw new IllegalArgumentException("Invalid date qualifier: " + qualifier);
         }
-        // 如果没有设置时间区间，则表示时间不受限制
+    }
 
-        return true;
+    private void requireUnset(String current, String qualifier) {
+        if (current != null) {
+            throw new IllegalArgumentException("Duplicate date qualifier: " + qualifier);
+        }
+    }
+
+    private Set<Integer> parseDaysOfMonth(String daysStr) {
+        Set<Integer> days;
+        try {
+            days = parseNumberRange(daysStr);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid day of month: " + daysStr);
+        }
+        if (days.isEmpty()) {
+            throw new IllegalArgumentException("Invalid day of month: " + daysStr);
+        }
+        for (int day : days) {
+            if (day < 1 || day > 31) {
+                throw new IllegalArgumentException("Invalid day of month: " + day);
+            }
+        }
+        return days;
+    }
+
+    private int dayOfMonthMask(Set<Integer> days) {
+        int mask = 0;
+        for (int day : days) {
+            mask |= 1 << (day - 1);
+        }
+        return mask;
     }
 
     @Override
@@ -205,7 +593,8 @@ public class TimeFilterServiceImpl implements TimeFilterService {
     @Override
     public boolean validateTimeRule(String rawRule) {
         try {
-            parseTimeRule(rawRule);
+            // 只在内存中解析，不写数据库
+            parseTimeRuleInMemory(rawRule);
             return true;
         } catch (Exception e) {
             return false;
@@ -397,13 +786,42 @@ public class TimeFilterServiceImpl implements TimeFilterService {
             if (times.length != 2) {
                 throw new IllegalArgumentException("Invalid time range: " + rangeStr);
             }
-            LocalTime start = LocalTime.parse(times[0].trim(), DateTimeFormatter.ofPattern("H:mm"));
-            LocalTime end = LocalTime.parse(times[1].trim(), DateTimeFormatter.ofPattern("H:mm"));
+            LocalTime start = LocalTime.parse(times[0].trim(), TIME_FORMATTER);
+            LocalTime end = LocalTime.parse(times[1].trim(), TIME_FORMATTER);
             ranges.add(new LocalTime[]{start, end});
         }
         return ranges;
     }
 
+    private int monthMask(Set<String> monthNames) {
+        int mask = 0;
+        for (String name : monthNames) {
+            mask |= 1 << (Month.valueOf(name).getValue() - 1);
+        }
+        return mask;
+    }
+
+    private int dayOfWeekMask(Set<Integer> days) {
+        int mask = 0;
+        for (int day : days) {
+            mask |= 1 << (day - 1);
+        }
+        return mask;
+    }
+
+    // 转换为按起点升序的 [起点数组, 终点数组]（当日纳秒）
+    private long[][] toNanoRanges(List<LocalTime[]> ranges) {
+        List<LocalTime[]> sorted = new ArrayList<>(ranges);
+        sorted.sort((a, b) -> a[0].compareTo(b[0]));
+        long[] starts = new long[sorted.size()];
+        long[] ends = new long[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            starts[i] = sorted.get(i)[0].toNanoOfDay();
+            ends[i] = sorted.get(i)[1].toNanoOfDay();
+        }
+        return new long[][]{starts, ends};
+    }
+
     private String timeRangesToString(List<LocalTime[]> ranges) {
         if (ranges == null || ranges.isEmpty()) {
             return null;
@@ -414,4 +832,16 @@ public class TimeFilterServiceImpl implements TimeFilterService {
         }
         return String.join(",", parts);
     }
+
+    private static final class ParsedRule {
+        final int lineNumber;
+        final TimeFilter filter;
+        final String error;
+
+        ParsedRule(int lineNumber, TimeFilter filter, String error) {
+            this.lineNumber = lineNumber;
+            this.filter = filter;
+            this.error = error;
+        }
+    }
 }
@@ -0,0 +1,275 @@
+package acs.simulator;
+
+import acs.cache.LocalCacheManager;
+import acs.domain.Badge;
+import acs.domain.BadgeStatus;
+import acs.repository.BadgeRepository;
+import acs.service.ClockService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * 徽章代码批量轮换任务：一次为所有到期的徽章生成新代码（如每年的全园区换证）。
+ *
+ * 设计原则：
+ * - 按徽章ID键集分页读取候选ID（已轮换的徽章不再满足条件，不能用偏移分页）；徽章实体从缓存读取
+ * - 每页并行生成新代码，每个工作线程使用自己的随机数生成器（ThreadLocalRandom）
+ * - 新代码与内存中的已用代码集合比对，重复时重新生成，保证不与任何现有代码冲突
+ * - 用JDBC批量UPDATE写库，写库成功后才修改缓存中的徽章；批量失败时逐条重试
+ * - 每页完成后输出进度、吞吐量和预计剩余时间
+ */
+@Component
+public class BadgeCodeRotationJob {
+
+    private static final String UPDATE_SQL = "UPDATE badges SET badge_code = ?, last_updated = ?, last_code_update = ?, "
+            + "code_expiration_date = ?, needs_update = ?, update_due_date = ? WHERE badge_id = ?";
+
+    private final BadgeRepository badgeRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final LocalCacheManager cacheManager;
+    private final ClockService clockService;
+    private final int pageSize;
+    private final int batchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile RotationReport lastReport;
+
+    public BadgeCodeRotationJob(BadgeRepository badgeRepository,
+                                JdbcTemplate jdbcTemplate,
+                                LocalCacheManager cacheManager,
+                                ClockService clockService,
+                                @Value("${acs.badge.rotation.page-size:2000}") int pageSize,
+                                @Value("${acs.badge.rotation.batch-size:500}") int batchSize) {
+        this.badgeRepository = badgeRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.cacheManager = cacheManager;
+        this.clockService = clockService;
+        this.pageSize = pageSize;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 为所有激活且需要更新或代码在 dueBy 及之前过期的徽章轮换代码，新代码有效期一年。
+     * @param dueBy 代码过期日期的上限（含）
+     * @return 本次轮换的统计
+     */
+    public RotationReport rotateDueBadges(LocalDate dueBy) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Badge code rotation is already running");
+        }
+        try {
+            return runRotation(dueBy);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 最近一次（或正在进行的）轮换的统计，没有时返回null。
+     */
+    public RotationReport getLastReport() {
+        return lastReport;
+    }
+
+    private RotationReport runRotation(LocalDate dueBy) {
+        long total = badgeRepository.countRotationCandidates(BadgeStatus.ACTIVE, dueBy);
+        long startNanos = System.nanoTime();
+        Instant now = clockService.now();
+        LocalDate newExpiry = clockService.localNow().toLocalDate().plusYears(1);
+
+        // 已用代码（包括即将被替换的旧代码），新代码不得与其中任何一个相同
+        Set<String> usedCodes = ConcurrentHashMap.newKeySet();
+        cacheManager.getAllBadges().forEach(badge -> {
+            if (badge.getBadgeCode() != null) {
+                usedCodes.add(badge.getBadgeCode());
+            }
+        });
+
+        long rotated = 0;
+        long failed = 0;
+        String afterId = "";
+        RotationReport report = new RotationReport(total, 0, 0, 0);
+        lastReport = report;
+        while (true) {
+            List<String> ids = badgeRepository.findRotationCandidateIds(
+                    BadgeStatus.ACTIVE, dueBy, afterId, PageRequest.of(0, pageSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            afterId = ids.get(ids.size() - 1);
+
+            List<Rotation> page = ids.parallelStream()
+                    .map(this::resolveBadge)
+                    .filter(Objects::nonNull)
+                    .map(badge -> new Rotation(badge, nextUniqueCode(usedCodes)))
+                    .collect(Collectors.toList());
+            failed += ids.size() - page.size();
+
+            List<Badge> written = writeBatches(page, now, newExpiry);
+            failed += page.size() - written.size();
+            rotated += written.size();
+            cacheManager.applyPersistedBadges(written);
+
+            report = new RotationReport(total, rotated, failed, elapsedMillis(startNanos));
+            lastReport = report;
+            System.out.println("[Badge Rotation] " + report);
+        }
+        return report;
+    }
+
+    // 缓存中的徽章实例（与访问决策使用的同一对象）；不在缓存中时从数据库读取
+    private Badge resolveBadge(String badgeId) {
+        Badge badge = cacheManager.getBadge(badgeId);
+        return badge != null ? badge : badgeRepository.findById(badgeId).orElse(null);
+    }
+
+    private static String nextUniqueCode(Set<String> usedCodes) {
+        ThreadLocalRandom rng = ThreadLocalRandom.current();
+        String code;
+        do {
+            code = BadgeCodeUpdateServiceImpl.randomBadgeCode(rng);
+        } while (!usedCodes.add(code));
+        return code;
+    }
+
+    // 分批写库，返回已写入并已更新字段的徽章
+    private List<Badge> writeBatches(List<Rotation> rotations, Instant now, LocalDate newExpiry) {
+        List<Badge> written = new ArrayList<>(rotations.size());
+        for (int from = 0; from < rotations.size(); from += batchSize) {
+            List<Rotation> batch = rotations.subList(from, Math.min(from + batchSize, rotations.size()));
+            try {
+                int[][] counts = jdbcTemplate.batchUpdate(UPDATE_SQL, batch, batch.size(),
+                        (ps, rotation) -> bind(ps, rotation, now, newExpiry));
+                int[] rowCounts = counts != null && counts.length > 0 ? counts[0] : new int[0];
+                for (int i = 0; i < batch.size(); i++) {
+                    int count = i < rowCounts.length ? rowCounts[i] : Statement.SUCCESS_NO_INFO;
+                    if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                        written.add(batch.get(i).apply(now, newExpiry));
+                    }
+                }
+            } catch (RuntimeException batchError) {
+                System.err.println("Batch rotation of " + batch.size() + " badges failed, retrying one by one: "
+                        + batchError.getMessage());
+                for (Rotation rotation : batch) {
+                    try {
+                        if (jdbcTemplate.update(UPDATE_SQL, ps -> bind(ps, rotation, now, newExpiry)) > 0) {
+                            written.add(rotation.apply(now, newExpiry));
+                        }
+                    } catch (RuntimeException e) {
+                        System.err.println("Failed to rotate code of badge " + rotation.badge.getBadgeId() + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+        return written;
+    }
+
+    private static void bind(PreparedStatement ps, Rotation rotation, Instant now, LocalDate newExpiry) throws SQLException {
+        ps.setString(1, rotation.code);
+        ps.setTimestamp(2, Timestamp.from(now));
+        ps.setTimestamp(3, Timestamp.from(now));
+        ps.setDate(4, Date.valueOf(newExpiry));
+        ps.setBoolean(5, false);
+        ps.setNull(6, Types.DATE);
+        ps.setString(7, rotation.badge.getBadgeId());
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static final class Rotation {
+        private final Badge badge;
+        private final String code;
+
+        private Rotation(Badge badge, String code) {
+            this.badge = badge;
+            this.code = code;
+        }
+
+        // 与 updateBadgeCode 相同的字段变化：新代码、有效期一年、清除更新标记和截止日期
+        private Badge apply(Instant now, LocalDate newExpiry) {
+            badge.setBadgeCode(code);
+            badge.setLastUpdated(now);
+            badge.setLastCodeUpdate(now);
+            badge.setCodeExpirationDate(newExpiry);
+            badge.setNeedsUpdate(false);
+            badge.setUpdateDueDate(null);
+            return badge;
+        }
+    }
+
+    /**
+     * 轮换进度与结果统计。
+     */
+    public static final class RotationReport {
+        private final long total;
+        private final long rotated;
+        private final long failed;
+        private final long elapsedMillis;
+
+        public RotationReport(long total, long rotated, long failed, long elapsedMillis) {
+            this.total = total;
+            this.rotated = rotated;
+            this.failed = failed;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getRotated() {
+            return rotated;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        // 每秒轮换的徽章数
+        public double getThroughput() {
+            return elapsedMillis == 0 ? 0.0 : rotated * 1000.0 / elapsedMillis;
+        }
+
+        // 按当前吞吐量估算的剩余时间（毫秒），无法估算时返回-1
+        public long getEtaMillis() {
+            long remaining = Math.max(0, total - rotated - failed);
+            if (remaining == 0) {
+                return 0;
+            }
+            double throughput = getThroughput();
+            return throughput == 0.0 ? -1 : (long) (remaining * 1000.0 / throughput);
+        }
+
+        @Override
+        public String toString() {
+            long eta = getEtaMillis();
+            return String.format("rotated=%d/%d, failed=%d, elapsed=%d ms, throughput=%.1f badges/s, eta=%s",
+                    rotated, total, failed, elapsedMillis, getThroughput(), eta < 0 ? "unknown" : eta + " ms");
+        }
+    }
+}
@@ -4,6 +4,7 @@ import acs.domain.Badge;
 import acs.domain.BadgeUpdateStatus;
 
 import java.time.Instant;
+import java.time.LocalDate;
 import java.util.List;
 
 /**
@@ -21,12 +22,22 @@ public interface BadgeCodeUpdateService {
 
     /**
      * Get badge update status for access decision.
+     * Read-only: evaluated from the cached badge, never touches the database or saves the badge;
+     * persisted flags are written back by {@link #checkBadgeNeedsUpdate(String)}.
      * @param badgeId badge id
      * @param timestamp reference time
      * @return update status
      */
     BadgeUpdateStatus evaluateBadgeUpdateStatus(String badgeId, Instant timestamp);
 
+    /**
+     * Get badge update status for access decision at a site-local date.
+     * @param badgeId badge id
+     * @param date reference date in the local time of the accessed site
+     * @return update status
+     */
+    BadgeUpdateStatus evaluateBadgeUpdateStatus(String badgeId, LocalDate date);
+
     /**
      * 为徽章生成新的徽章代码
      * @param badgeId 徽章ID
@@ -47,6 +58,13 @@ public interface BadgeCodeUpdateService {
      */
     List<String> checkAllBadgesForUpdate();
 
+    /**
+     * 只检查更新状态在今天或之前发生变化的徽章（开始提醒、需要更新、逾期），
+     * 由缓存中的到期索引选出，不全量扫描也不逐个查询数据库
+     * @return 其中需要更新的徽章ID列表
+     */
+    List<String> checkDueBadgesForUpdate();
+
     /**
      * 模拟徽章更新通知（如发送邮件或显示提示）
      * @param badgeId 徽章ID
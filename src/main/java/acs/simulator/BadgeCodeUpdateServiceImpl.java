@@ -2,21 +2,24 @@ package acs.simulator;
 
 import acs.domain.Badge;
 import acs.domain.BadgeUpdateStatus;
+import acs.domain.BadgeUpdateWindow;
 import acs.repository.BadgeRepository;
 import acs.service.ClockService;
+import acs.cache.BadgeExpiryIndex;
 import acs.cache.LocalCacheManager;
+import acs.cache.SiteZoneRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.time.LocalDate;
-import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -30,7 +33,7 @@ public class BadgeCodeUpdateServiceImpl implements BadgeCodeUpdateService {
     private final BadgeRepository badgeRepository;
     private final ClockService clockService;
     private final LocalCacheManager cacheManager;
-    private final Random random = new Random();
+    private final SiteZoneRegistry siteZones;
     
     // Update statistics
     private final AtomicInteger totalChecks = new AtomicInteger(0);
@@ -39,15 +42,18 @@ public class BadgeCodeUpdateServiceImpl implements BadgeCodeUpdateService {
     private final ConcurrentHashMap<String, Integer> updateAttempts = new ConcurrentHashMap<>();
     
     // Configuration parameters
-    private static final int DAYS_BEFORE_EXPIRY_TO_NOTIFY = 30; // Start notifying 30 days before expiry
-    private static final int UPDATE_WINDOW_DAYS = 14; // Update window in days
+    private static final int DAYS_BEFORE_EXPIRY_TO_NOTIFY = BadgeExpiryIndex.DAYS_BEFORE_EXPIRY_TO_NOTIFY; // Start notifying 30 days before expiry
+    private static final int UPDATE_WINDOW_DAYS = BadgeUpdateWindow.UPDATE_WINDOW_DAYS; // Update window in days
     private static final int BADGE_CODE_LENGTH = 9; // New badge code length (matches existing format e.g., ABC123XYZ)
+    private static final String BADGE_CODE_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
     
     @Autowired
-    public BadgeCodeUpdateServiceImpl(BadgeRepository badgeRepository, ClockService clockService, LocalCacheManager cacheManager) {
+    public BadgeCodeUpdateServiceImpl(BadgeRepository badgeRepository, ClockService clockService, LocalCacheManager cacheManager,
+                                      SiteZoneRegistry siteZones) {
         this.badgeRepository = badgeRepository;
         this.clockService = clockService;
         this.cacheManager = cacheManager;
+        this.siteZones = siteZones;
     }
 
     @Override
@@ -65,23 +71,34 @@ public class BadgeCodeUpdateServiceImpl implements BadgeCodeUpdateService {
         if (timestamp == null) {
             return BadgeUpdateStatus.OK;
         }
-        LocalDate today = LocalDate.ofInstant(timestamp, ZoneId.systemDefault());
-        return badgeRepository.findById(badgeId)
-                .map(badge -> evaluateBadgeUpdateStatusInternal(badge, today, false))
-                .orElse(BadgeUpdateStatus.OK);
+        // No resource context: use the default site zone
+        return evaluateBadgeUpdateStatus(badgeId, siteZones.defaultTable().toLocalDate(timestamp));
+    }
+
+    @Override
+    public BadgeUpdateStatus evaluateBadgeUpdateStatus(String badgeId, LocalDate today) {
+        if (today == null) {
+            return BadgeUpdateStatus.OK;
+        }
+        // Read-only: cached badge only, no repository lookup and no writes
+        return BadgeUpdateWindow.of(cacheManager.getBadge(badgeId)).statusOn(today);
     }
 
     @Override
     public String generateNewBadgeCode(String badgeId) {
-        // Generate a random badge code matching existing format (9 uppercase alphanumeric chars)
-        StringBuilder code = new StringBuilder();
-        String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
-        
+        return randomBadgeCode(ThreadLocalRandom.current());
+    }
+
+    /**
+     * Generate a random badge code matching existing format (9 uppercase alphanumeric chars).
+     * Callers on worker threads pass their own per-thread generator so no RNG state is shared.
+     */
+    static String randomBadgeCode(Random rng) {
+        char[] code = new char[BADGE_CODE_LENGTH];
         for (int i = 0; i < BADGE_CODE_LENGTH; i++) {
-            code.append(chars.charAt(random.nextInt(chars.length())));
+            code[i] = BADGE_CODE_CHARS.charAt(rng.nextInt(BADGE_CODE_CHARS.length()));
         }
-        
-        return code.toString();
+        return new String(code);
     }
 
     @Override
@@ -124,15 +141,36 @@ public class BadgeCodeUpdateServiceImpl implements BadgeCodeUpdateService {
     public List<String> checkAllBadgesForUpdate() {
         List<String> badgesNeedingUpdate = new ArrayList<>();
         
-        badgeRepository.findAll().forEach(badge -> {
+        // Badges flagged or disabled during the scan are published to access decisions once, at the end
+        cacheManager.batchChanges(() -> badgeRepository.findAll().forEach(badge -> {
             if (checkBadgeNeedsUpdate(badge.getBadgeId())) {
                 badgesNeedingUpdate.add(badge.getBadgeId());
             }
-        });
+        }));
         
         return badgesNeedingUpdate;
     }
 
+    @Override
+    public List<String> checkDueBadgesForUpdate() {
+        LocalDate today = getCurrentLocalDate();
+        List<String> badgesNeedingUpdate = new ArrayList<>();
+
+        // On a mass-expiry day every flagged or disabled badge is published to access decisions once, at the end
+        cacheManager.batchChanges(() -> {
+            for (Badge badge : cacheManager.pollBadgesDueForUpdateCheck(today)) {
+                totalChecks.incrementAndGet();
+                if (evaluateBadgeUpdateStatusInternal(badge, today, true) == BadgeUpdateStatus.UPDATE_REQUIRED) {
+                    badgesNeedingUpdate.add(badge.getBadgeId());
+                }
+            }
+        });
+        // Old codes kept for recognition after rotation stop being recognized once their window has passed
+        cacheManager.removeExpiredBadgeCodeGrace(today);
+
+        return badgesNeedingUpdate;
+    }
+
     @Override
     public void simulateUpdateNotification(String badgeId, int daysUntilExpiry) {
         // Simulate sending a notification (email, SMS, or UI in real systems)
@@ -163,33 +201,36 @@ public class BadgeCodeUpdateServiceImpl implements BadgeCodeUpdateService {
             return BadgeUpdateStatus.OK;
         }
 
-        if (badge.getStatus() != acs.domain.BadgeStatus.ACTIVE) {
-            return BadgeUpdateStatus.OK;
+        // Same precomputed window the access decision reads from the policy snapshot
+        BadgeUpdateStatus status = BadgeUpdateWindow.of(badge).statusOn(today);
+        LocalDate codeExpiryDate = badge.getCodeExpirationDate();
+        if (codeExpiryDate == null) {
+            return status;
         }
-
-         LocalDate codeExpiryDate = badge.getCodeExpirationDate();
-         if (codeExpiryDate == null) {
-             return BadgeUpdateStatus.OK;
-         }
-
         long daysUntilCodeExpiry = ChronoUnit.DAYS.between(today, codeExpiryDate);
-        LocalDate updateDue = badge.getUpdateDueDate();
 
-        if (updateDue != null && today.isAfter(updateDue)) {
+        if (status == BadgeUpdateStatus.UPDATE_OVERDUE) {
             badge.setStatus(acs.domain.BadgeStatus.DISABLED);
             cacheManager.updateBadge(badge);
             if (notify) {
                 simulateUpdateNotification(badge.getBadgeId(), (int) daysUntilCodeExpiry);
             }
-            return BadgeUpdateStatus.UPDATE_OVERDUE;
+            return status;
         }
 
         if (today.isAfter(codeExpiryDate)) {
+            // Persist the flag and due date; skip the save when they are already in place
+            LocalDate updateDue = badge.getUpdateDueDate();
+            LocalDate windowDue = codeExpiryDate.plusDays(UPDATE_WINDOW_DAYS);
+            boolean changed = !badge.isNeedsUpdate();
             badge.setNeedsUpdate(true);
-            if (updateDue == null || updateDue.isBefore(codeExpiryDate.plusDays(UPDATE_WINDOW_DAYS))) {
-                badge.setUpdateDueDate(codeExpiryDate.plusDays(UPDATE_WINDOW_DAYS));
+            if (updateDue == null || updateDue.isBefore(windowDue)) {
+                badge.setUpdateDueDate(windowDue);
+                changed = true;
+            }
+            if (changed) {
+                cacheManager.updateBadge(badge);
             }
-            cacheManager.updateBadge(badge);
             if (notify) {
                 simulateUpdateNotification(badge.getBadgeId(), (int) daysUntilCodeExpiry);
             }
@@ -202,11 +243,7 @@ public class BadgeCodeUpdateServiceImpl implements BadgeCodeUpdateService {
             }
         }
 
-        if (badge.isNeedsUpdate()) {
-            return BadgeUpdateStatus.UPDATE_REQUIRED;
-        }
-
-        return BadgeUpdateStatus.OK;
+        return status;
     }
 
     /**
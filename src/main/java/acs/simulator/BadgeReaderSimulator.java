@@ -30,6 +30,17 @@ public interface BadgeReaderSimulator {
      */
     AccessResult simulateBadgeSwipe(String readerId, String badgeId, String eventId) throws InterruptedException;
 
+    /**
+     * 模拟读卡器读到一个徽章代码（如持卡人手中尚未更换的旧卡）：只按代码索引解析徽章，
+     * 已被轮换替换的旧代码和未知代码直接拒绝，不发送访问请求
+     * @param readerId 读卡器ID
+     * @param badgeCode 读卡器读到的徽章代码
+     * @param eventId 事件ID（可为null）
+     * @return 访问结果
+     * @throws InterruptedException 如果模拟过程中线程被中断
+     */
+    AccessResult simulateCodeSwipe(String readerId, String badgeCode, String eventId) throws InterruptedException;
+
     /**
      * 模拟读卡器读取徽章代码（包含读取延迟）
      * @param readerId 读卡器ID
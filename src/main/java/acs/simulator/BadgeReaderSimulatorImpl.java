@@ -1,15 +1,16 @@
 package acs.simulator;
 
+import acs.cache.BadgeCodeIndex;
+import acs.cache.LocalCacheManager;
+import acs.cache.ResourceReaderCache;
 import acs.domain.*;
 import acs.repository.BadgeReaderRepository;
-import acs.repository.BadgeRepository;
 import acs.service.AccessControlService;
 import acs.service.ClockService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
-import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -27,13 +28,16 @@ public class BadgeReaderSimulatorImpl implements BadgeReaderSimulator {
     private final RouterSystem routerSystem;
     private final ResourceController resourceController;
     private final BadgeReaderRepository badgeReaderRepository;
-    private final BadgeRepository badgeRepository;
     private final ClockService clockService;
+    private final ResourceReaderCache readerCache;
+    private final LocalCacheManager cacheManager;
+    private final SimulationDelays delays;
     
-    // 模拟延迟配置（毫秒）
-    private static final long BADGE_READ_DELAY_MS = 200;      // 读卡延迟200ms
-    private static final long NETWORK_DELAY_MS = 50;         // 网络延迟50ms
-    private static final long PROCESSING_DELAY_MS = 100;     // 处理延迟100ms
+    // 模拟延迟配置（毫秒；离散事件模拟按同样的延迟调度事件）
+    static final long BADGE_READ_DELAY_MS = 200;      // 读卡延迟200ms
+    static final long NETWORK_DELAY_MS = 50;         // 网络延迟50ms
+    static final long PROCESSING_DELAY_MS = 100;     // 处理延迟100ms
+    static final long AUTO_LOCK_DELAY_MS = 5000;     // 开门后自动锁定延迟5秒
     
     // 读卡器统计信息
     private final ConcurrentHashMap<String, ReaderStats> readerStats = new ConcurrentHashMap<>();
@@ -46,14 +50,18 @@ public class BadgeReaderSimulatorImpl implements BadgeReaderSimulator {
                                     RouterSystem routerSystem,
                                     ResourceController resourceController,
                                     BadgeReaderRepository badgeReaderRepository,
-                                    BadgeRepository badgeRepository,
-                                    ClockService clockService) {
+                                    ClockService clockService,
+                                    ResourceReaderCache readerCache,
+                                    LocalCacheManager cacheManager,
+                                    SimulationDelays delays) {
         this.accessControlService = accessControlService;
         this.routerSystem = routerSystem;
         this.resourceController = resourceController;
         this.badgeReaderRepository = badgeReaderRepository;
-        this.badgeRepository = badgeRepository;
         this.clockService = clockService;
+        this.readerCache = readerCache;
+        this.cacheManager = cacheManager;
+        this.delays = delays;
     }
 
     @Override
@@ -63,6 +71,18 @@ public class BadgeReaderSimulatorImpl implements BadgeReaderSimulator {
     
     @Override
     public AccessResult simulateBadgeSwipe(String readerId, String badgeId, String eventId) throws InterruptedException {
+        return swipe(readerId, badgeId, null, eventId);
+    }
+
+    @Override
+    public AccessResult simulateCodeSwipe(String readerId, String badgeCode, String eventId) throws InterruptedException {
+        return swipe(readerId, null, badgeCode, eventId);
+    }
+
+    // cardBadgeId 不为null时从卡上读取代码；否则使用读卡器读到的 presentedCode
+    private AccessResult swipe(String readerId, String cardBadgeId, String presentedCode, String eventId)
+            throws InterruptedException {
+        String badgeId = cardBadgeId;
         long startTime = System.currentTimeMillis();
         ReaderStats stats = readerStats.computeIfAbsent(readerId, id -> new ReaderStats());
         stats.incrementTotalSwipes();
@@ -78,7 +98,13 @@ public class BadgeReaderSimulatorImpl implements BadgeReaderSimulator {
         String chainId = chain.getChainId();
         
         // 1. 模拟读卡器读取徽章代码
-        String badgeCode = readBadgeCode(readerId, badgeId);
+        String badgeCode;
+        if (cardBadgeId != null) {
+            badgeCode = readBadgeCode(readerId, cardBadgeId);
+        } else {
+            delays.pause(BADGE_READ_DELAY_MS);
+            badgeCode = presentedCode;
+        }
         if (badgeCode == null) {
             stats.incrementFailedReads();
             tracker.addStep(chainId, ExecutionChainTracker.StepType.BADGE_READ_COMPLETE,
@@ -87,9 +113,22 @@ public class BadgeReaderSimulatorImpl implements BadgeReaderSimulator {
         }
         tracker.addStep(chainId, ExecutionChainTracker.StepType.BADGE_READ_COMPLETE,
                 actualEventId, readerId, badgeId, resourceId, null, "Badge code: " + badgeCode);
+
+        // 按读取到的代码解析徽章（缓存中一次哈希查找）；已轮换的旧代码和未知代码直接拒绝
+        BadgeCodeIndex.Resolution resolution = cacheManager.resolveBadgeCode(badgeCode);
+        if (resolution == null || resolution.getStatus() != BadgeCodeIndex.CodeStatus.CURRENT) {
+            stats.incrementFailedReads();
+            String message = resolution != null && resolution.getStatus() == BadgeCodeIndex.CodeStatus.SUPERSEDED
+                    ? "Badge code has been replaced, please use the updated badge"
+                    : "Unknown badge code";
+            tracker.addStep(chainId, ExecutionChainTracker.StepType.CHAIN_COMPLETE,
+                    actualEventId, readerId, badgeId, resourceId, null, message);
+            return createErrorResult(message);
+        }
+        badgeId = resolution.getBadgeId();
         
         // 2. 模拟网络延迟（发送请求）
-        Thread.sleep(NETWORK_DELAY_MS);
+        delays.pause(NETWORK_DELAY_MS);
         tracker.addStep(chainId, ExecutionChainTracker.StepType.REQUEST_TO_ROUTER,
                 actualEventId, readerId, badgeId, resourceId, null, "Request sent to router");
         
@@ -105,7 +144,7 @@ public class BadgeReaderSimulatorImpl implements BadgeReaderSimulator {
         AccessRequest request = new AccessRequest(badgeId, resourceId, clockService.now());
         
         // 5. 模拟处理延迟
-        Thread.sleep(PROCESSING_DELAY_MS);
+        delays.pause(PROCESSING_DELAY_MS);
         
         // 6. 调用访问控制服务（通过路由系统）
         tracker.addStep(chainId, ExecutionChainTracker.StepType.ROUTER_FORWARD_REQUEST,
@@ -158,18 +197,17 @@ public class BadgeReaderSimulatorImpl implements BadgeReaderSimulator {
     @Override
     public String readBadgeCode(String readerId, String badgeId) throws InterruptedException {
         // 模拟读卡延迟
-        Thread.sleep(BADGE_READ_DELAY_MS);
+        delays.pause(BADGE_READ_DELAY_MS);
         
-        // 从数据库查询徽章
-        Optional<Badge> badgeOpt = badgeRepository.findById(badgeId);
-        if (badgeOpt.isEmpty()) {
+        // 卡上的代码取自缓存中的徽章（不查询数据库）；是否为当前代码由刷卡时的代码索引判断
+        Badge badge = cacheManager.getBadge(badgeId);
+        if (badge == null) {
             String status = "Badge not found: " + badgeId;
             System.out.println(status);
             lastReadStatus.set(status);
             return null;
         }
         
-        Badge badge = badgeOpt.get();
         String badgeCode = badge.getBadgeCode();
         StringBuilder statusBuilder = new StringBuilder();
         
@@ -212,6 +250,7 @@ public class BadgeReaderSimulatorImpl implements BadgeReaderSimulator {
             reader.setStatus(status);
             reader.setLastSeen(clockService.now());
             badgeReaderRepository.save(reader);
+            readerCache.put(reader);
         });
     }
 
@@ -245,10 +284,14 @@ public class BadgeReaderSimulatorImpl implements BadgeReaderSimulator {
     }
     
     private void scheduleAutoLock(String resourceId) {
+        if (delays.isVirtualTime()) {
+            // 离散事件模式下由事件队列在虚拟时间上调度自动锁定
+            return;
+        }
         new Thread(() -> {
             try {
                 // 模拟门保持解锁状态5秒后自动锁定
-                Thread.sleep(5000);
+                Thread.sleep(AUTO_LOCK_DELAY_MS);
                 resourceController.lockResource(resourceId);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
@@ -11,6 +11,7 @@ import java.time.format.DateTimeFormatter;
 /**
  * 徽章更新调度任务，定期检查徽章更新状态并发送通知。
  * 模拟自动更新周期和更新窗口监控。
+ * 每次只处理缓存到期索引中状态已发生变化的徽章，不再全量扫描徽章表。
  */
 @Component
 public class BadgeUpdateScheduler {
@@ -34,7 +35,7 @@ public class BadgeUpdateScheduler {
         System.out.println("[" + clockService.localNow().format(formatter) + "] Starting daily badge update check...");
         
         long startTime = System.currentTimeMillis();
-        var badgesNeedingUpdate = badgeCodeUpdateService.checkAllBadgesForUpdate();
+        var badgesNeedingUpdate = badgeCodeUpdateService.checkDueBadgesForUpdate();
         long endTime = System.currentTimeMillis();
         
         System.out.println("[" + clockService.localNow().format(formatter) + "] Daily badge update check completed, elapsed " + (endTime - startTime) + " ms");
@@ -55,9 +56,8 @@ public class BadgeUpdateScheduler {
     public void hourlyUpdateNotificationCheck() {
         System.out.println("[" + clockService.localNow().format(formatter) + "] Hourly badge update notification check...");
         
-        // 这里可以添加更精细的通知逻辑
-        // 目前依赖checkAllBadgesForUpdate中的通知机制
-        badgeCodeUpdateService.checkAllBadgesForUpdate();
+        // 进入提醒期、需要更新或逾期的徽章在状态变化当天发送通知
+        badgeCodeUpdateService.checkDueBadgesForUpdate();
     }
 
     /**
@@ -67,7 +67,7 @@ public class BadgeUpdateScheduler {
     public void monitorUpdateWindow() {
         System.out.println("[" + clockService.localNow().format(formatter) + "] Checking update window expiry...");
         
-        // 依赖checkAllBadgesForUpdate中的过期禁用逻辑
-        badgeCodeUpdateService.checkAllBadgesForUpdate();
+        // 逾期禁用由checkDueBadgesForUpdate在逾期日处理
+        badgeCodeUpdateService.checkDueBadgesForUpdate();
     }
 }
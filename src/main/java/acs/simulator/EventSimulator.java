@@ -1,5 +1,6 @@
 package acs.simulator;
 
+import java.time.Instant;
 import java.util.Map;
 
 /**
@@ -15,6 +16,16 @@ public interface EventSimulator {
      */
     void startSimulation(int numEvents, int concurrencyLevel);
 
+    /**
+     * 以离散事件模式运行模拟（在调用线程中同步执行）：按虚拟时间推进模拟时钟，
+     * 各种延迟作为事件调度而不真实等待，访问决策仍由真实服务完成。结束后恢复原来的时钟设置。
+     * @param numEvents 要生成的事件总数
+     * @param concurrencyLevel 并发级别（同时刷卡的工作者数量）
+     * @param startTime 虚拟时间起点
+     * @return 性能指标（包含虚拟耗时和真实耗时）
+     */
+    Map<String, Object> runDiscreteEventSimulation(int numEvents, int concurrencyLevel, Instant startTime);
+
     /**
      * 停止事件模拟
      */
@@ -1,5 +1,6 @@
 package acs.simulator;
 
+import acs.domain.AccessDecision;
 import acs.domain.AccessResult;
 import acs.domain.BadgeReader;
 import acs.repository.BadgeReaderRepository;
@@ -10,6 +11,8 @@ import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -18,6 +21,8 @@ import java.util.concurrent.atomic.AtomicLong;
 /**
  * 事件模拟器实现，负责生成并发访问事件、模拟时间加速和收集性能指标。
  * 支持300徽章/400读卡器的并发访问场景模拟。
+ * 除实时模式（线程 + Thread.sleep）外，还支持离散事件模式：单线程按虚拟时间执行事件队列，
+ * 读卡、网络、处理、开门和自动锁定等延迟都作为事件调度，访问决策仍调用真实的 AccessControlService。
  */
 @Service
 public class EventSimulatorImpl implements EventSimulator {
@@ -25,6 +30,8 @@ public class EventSimulatorImpl implements EventSimulator {
     private final BadgeReaderSimulator badgeReaderSimulator;
     private final BadgeReaderRepository badgeReaderRepository;
     private final ClockService clockService;
+    private final ResourceController resourceController;
+    private final SimulationDelays delays;
     
     // 模拟状态
     private SimulationStatus status = SimulationStatus.IDLE;
@@ -56,11 +63,15 @@ public class EventSimulatorImpl implements EventSimulator {
     @Autowired
     public EventSimulatorImpl(BadgeReaderSimulator badgeReaderSimulator,
                               BadgeReaderRepository badgeReaderRepository,
-                              ClockService clockService) {
+                              ClockService clockService,
+                              ResourceController resourceController,
+                              SimulationDelays delays) {
         this.badgeReaderSimulator = badgeReaderSimulator;
         this.badgeReaderRepository = badgeReaderRepository;
         this.objectMapper = new ObjectMapper();
         this.clockService = clockService;
+        this.resourceController = resourceController;
+        this.delays = delays;
         this.completionLatch = new CountDownLatch(0); // 初始化为0
     }
 
@@ -113,6 +124,70 @@ public class EventSimulatorImpl implements EventSimulator {
         startMonitoringThread();
     }
 
+    @Override
+    public Map<String, Object> runDiscreteEventSimulation(int numEvents, int concurrencyLevel, Instant startTime) {
+        if (status == SimulationStatus.RUNNING) {
+            throw new IllegalStateException("Simulator is already running");
+        }
+        List<String> readerIds = getAvailableReaderIds();
+        if (readerIds.isEmpty()) {
+            throw new IllegalStateException("No available readers for simulation");
+        }
+
+        setSimulationStatus(SimulationStatus.RUNNING);
+        resetSimulationStats();
+        pathAssignments.clear();
+
+        SimulationScenarioConfig scenarioConfig = loadScenarioConfig();
+        boolean scenarioEnabled = isScenarioEnabled(scenarioConfig);
+        Integer scenarioStepDelayMs = scenarioConfig != null ? scenarioConfig.getStepDelayMs() : null;
+        long stepDelayMs = scenarioEnabled && scenarioStepDelayMs != null && scenarioStepDelayMs > 0
+                ? scenarioStepDelayMs : DEFAULT_EVENT_DELAY_MS;
+
+        VirtualTimeEventQueue events = new VirtualTimeEventQueue(clockService, startTime);
+        // 以起始时间为随机种子：相同的起始时间和参数得到相同的事件序列
+        DiscreteEventRun run = new DiscreteEventRun(events, new Random(startTime.toEpochMilli()),
+                readerIds, generateSimulatedBadgeIds(), scenarioEnabled, scenarioConfig, stepDelayMs);
+
+        Instant previousSimulatedTime = clockService.getSimulatedTime();
+        long wallStart = System.nanoTime();
+        delays.setVirtualTime(true);
+        try {
+            int workers = Math.max(1, concurrencyLevel);
+            int eventsPerWorker = numEvents / workers;
+            int remainingEvents = numEvents % workers;
+            for (int worker = 0; worker < workers; worker++) {
+                int eventsForWorker = eventsPerWorker + (worker < remainingEvents ? 1 : 0);
+                if (eventsForWorker > 0) {
+                    int workerId = worker;
+                    events.schedule(startTime, () -> run.startSwipe(workerId, 0, eventsForWorker));
+                }
+            }
+            while (status == SimulationStatus.RUNNING && events.runNext()) {
+                // 事件在 runNext 中执行
+            }
+        } finally {
+            delays.setVirtualTime(false);
+            if (previousSimulatedTime != null) {
+                clockService.setSimulatedTime(previousSimulatedTime);
+            } else {
+                clockService.resetToRealTime();
+            }
+        }
+        if (status == SimulationStatus.RUNNING) {
+            setSimulationStatus(SimulationStatus.STOPPED);
+        }
+
+        Map<String, Object> metrics = getPerformanceMetrics();
+        metrics.put("simulationMode", "DISCRETE_EVENT");
+        metrics.put("virtualStartTime", startTime.toString());
+        metrics.put("virtualElapsedMs", Duration.between(startTime, events.now()).toMillis());
+        metrics.put("wallClockElapsedMs", (System.nanoTime() - wallStart) / 1_000_000);
+        metrics.put("processedSimulationEvents", events.getProcessedCount());
+        System.out.println("Discrete-event simulation completed: " + metrics);
+        return metrics;
+    }
+
     @Override
     public void stopSimulation() {
         if (status != SimulationStatus.RUNNING && status != SimulationStatus.PAUSED) {
@@ -316,6 +391,22 @@ public class EventSimulatorImpl implements EventSimulator {
         return fallbackReaderIds.get(random.nextInt(fallbackReaderIds.size()));
     }
 
+    // 按场景路径（启用时）或随机选择本次刷卡的读卡器
+    private String pickReaderId(String badgeId, Random random, List<String> readerIds,
+                                boolean scenarioEnabled, SimulationScenarioConfig scenarioConfig,
+                                Map<String, List<String>> resourceReaderMap) {
+        String resourceId = scenarioEnabled
+                ? getScenarioResourceId(badgeId, random, scenarioConfig)
+                : null;
+        String readerId = scenarioEnabled
+                ? selectReaderId(resourceId, resourceReaderMap, readerIds, random)
+                : readerIds.get(random.nextInt(readerIds.size()));
+        if (readerId == null) {
+            readerId = readerIds.get(random.nextInt(readerIds.size()));
+        }
+        return readerId;
+    }
+
     private static class PathAssignment {
         private final SimulationPath path;
         private final AtomicInteger index = new AtomicInteger(0);
@@ -375,15 +466,8 @@ public class EventSimulatorImpl implements EventSimulator {
                     }
 
                     String badgeId = badgeIds.get(random.nextInt(badgeIds.size()));
-                    String resourceId = scenarioEnabled
-                            ? getScenarioResourceId(badgeId, random, scenarioConfig)
-                            : null;
-                    String readerId = scenarioEnabled
-                            ? selectReaderId(resourceId, resourceReaderMap, readerIds, random)
-                            : readerIds.get(random.nextInt(readerIds.size()));
-                    if (readerId == null) {
-                        readerId = readerIds.get(random.nextInt(readerIds.size()));
-                    }
+                    String readerId = pickReaderId(badgeId, random, readerIds,
+                            scenarioEnabled, scenarioConfig, resourceReaderMap);
                     String eventId = "EVENT_" + clockService.now().toEpochMilli() + "_" + i;
 
                     final String finalReaderId = readerId;
@@ -423,7 +507,7 @@ public class EventSimulatorImpl implements EventSimulator {
                             baseDelayMs = scenarioStepDelayMs;
                         }
                         int delay = (int) (baseDelayMs / timeAccelerationFactor);
-                        Thread.sleep(Math.max(1, delay));
+                        delays.pause(Math.max(1, delay));
                     }
                 }
             } catch (InterruptedException e) {
@@ -433,4 +517,107 @@ public class EventSimulatorImpl implements EventSimulator {
             }
         }
     }
+
+    /**
+     * 一次离散事件模拟的状态。每个工作者（相当于实时模式的一个线程）按顺序刷卡：
+     * 开始刷卡 → 读卡+网络延迟后发出请求（请求时间即此时的虚拟时间）→ 处理、路由和开门延迟后完成 →
+     * 间隔步长后开始下一次刷卡；放行的资源在自动锁定延迟后锁定。
+     */
+    private class DiscreteEventRun {
+        private final VirtualTimeEventQueue events;
+        private final Random random;
+        private final List<String> readerIds;
+        private final List<String> badgeIds;
+        private final boolean scenarioEnabled;
+        private final SimulationScenarioConfig scenarioConfig;
+        private final long stepDelayMs;
+        private final Map<String, List<String>> resourceReaderMap = new HashMap<>();
+        private final Map<String, String> readerResourceMap = new HashMap<>();
+
+        private DiscreteEventRun(VirtualTimeEventQueue events, Random random,
+                                 List<String> readerIds, List<String> badgeIds,
+                                 boolean scenarioEnabled, SimulationScenarioConfig scenarioConfig,
+                                 long stepDelayMs) {
+            this.events = events;
+            this.random = random;
+            this.readerIds = readerIds;
+            this.badgeIds = badgeIds;
+            this.scenarioEnabled = scenarioEnabled;
+            this.scenarioConfig = scenarioConfig;
+            this.stepDelayMs = stepDelayMs;
+            for (BadgeReader reader : badgeReaderRepository.findAll()) {
+                if (reader.getResourceId() == null) {
+                    continue;
+                }
+                resourceReaderMap.computeIfAbsent(reader.getResourceId(), key -> new ArrayList<>())
+                        .add(reader.getReaderId());
+                readerResourceMap.put(reader.getReaderId(), reader.getResourceId());
+            }
+        }
+
+        private void startSwipe(int worker, int index, int eventsForWorker) {
+            String badgeId = badgeIds.get(random.nextInt(badgeIds.size()));
+            String readerId = pickReaderId(badgeId, random, readerIds,
+                    scenarioEnabled, scenarioConfig, resourceReaderMap);
+            Instant startedAt = events.now();
+            String eventId = "EVENT_" + startedAt.toEpochMilli() + "_" + worker + "_" + index;
+
+            listeners.forEach(l -> l.onSimulationEventStarted(eventId, readerId, badgeId));
+            totalEvents.incrementAndGet();
+
+            events.scheduleAfter(BadgeReaderSimulatorImpl.BADGE_READ_DELAY_MS + BadgeReaderSimulatorImpl.NETWORK_DELAY_MS,
+                    () -> sendRequest(worker, index, eventsForWorker, eventId, readerId, badgeId, startedAt));
+        }
+
+        private void sendRequest(int worker, int index, int eventsForWorker,
+                                 String eventId, String readerId, String badgeId, Instant startedAt) {
+            AccessResult result;
+            try {
+                result = badgeReaderSimulator.simulateBadgeSwipe(readerId, badgeId, eventId);
+            } catch (Exception e) {
+                failedEvents.incrementAndGet();
+                listeners.forEach(l -> l.onSimulationError(eventId, e.getMessage()));
+                scheduleNextSwipe(worker, index, eventsForWorker);
+                return;
+            }
+            boolean granted = result.getDecision() == AccessDecision.ALLOW;
+            long responseDelayMs = BadgeReaderSimulatorImpl.PROCESSING_DELAY_MS
+                    + RouterSystemImpl.NETWORK_DELAY_MS + random.nextInt(RouterSystemImpl.NETWORK_JITTER_MS)
+                    + (granted ? ResourceControllerImpl.DEFAULT_UNLOCK_DELAY_MS : 0);
+            events.scheduleAfter(responseDelayMs,
+                    () -> completeSwipe(worker, index, eventsForWorker, eventId, readerId, result, startedAt));
+        }
+
+        private void completeSwipe(int worker, int index, int eventsForWorker,
+                                   String eventId, String readerId, AccessResult result, Instant startedAt) {
+            long processingTime = Duration.between(startedAt, events.now()).toMillis();
+            completedEvents.incrementAndGet();
+            totalProcessingTime.addAndGet(processingTime);
+            if (result.getDecision() == AccessDecision.ALLOW) {
+                grantedAccess.incrementAndGet();
+                String resourceId = readerResourceMap.get(readerId);
+                if (resourceId != null) {
+                    events.scheduleAfter(BadgeReaderSimulatorImpl.AUTO_LOCK_DELAY_MS, () -> lock(resourceId));
+                }
+            } else {
+                deniedAccess.incrementAndGet();
+            }
+            listeners.forEach(l -> l.onSimulationEventCompleted(eventId, result, processingTime));
+            scheduleNextSwipe(worker, index, eventsForWorker);
+        }
+
+        private void scheduleNextSwipe(int worker, int index, int eventsForWorker) {
+            if (index + 1 < eventsForWorker) {
+                events.scheduleAfter(stepDelayMs, () -> startSwipe(worker, index + 1, eventsForWorker));
+            }
+        }
+
+        private void lock(String resourceId) {
+            try {
+                resourceController.lockResource(resourceId);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 }
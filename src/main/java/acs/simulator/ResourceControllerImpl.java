@@ -17,17 +17,19 @@ import java.util.concurrent.ConcurrentHashMap;
 public class ResourceControllerImpl implements ResourceController {
 
     private final ResourceRepository resourceRepository;
+    private final SimulationDelays delays;
     
     // 模拟每个资源的当前状态（可能比数据库状态更实时）
     private final Map<String, ResourceState> simulatedStates = new ConcurrentHashMap<>();
     
     // 操作延迟配置（毫秒）
-    private static final long DEFAULT_UNLOCK_DELAY_MS = 1000; // 开门延迟1秒
-    private static final long DEFAULT_LOCK_DELAY_MS = 500;    // 关门延迟0.5秒
+    static final long DEFAULT_UNLOCK_DELAY_MS = 1000; // 开门延迟1秒
+    static final long DEFAULT_LOCK_DELAY_MS = 500;    // 关门延迟0.5秒
     
     @Autowired
-    public ResourceControllerImpl(ResourceRepository resourceRepository) {
+    public ResourceControllerImpl(ResourceRepository resourceRepository, SimulationDelays delays) {
         this.resourceRepository = resourceRepository;
+        this.delays = delays;
     }
 
     @Override
@@ -55,8 +57,8 @@ public class ResourceControllerImpl implements ResourceController {
     public void simulateOperationDelay(String resourceId, String operation) throws InterruptedException {
         long delay = "LOCK".equals(operation) ? DEFAULT_LOCK_DELAY_MS : DEFAULT_UNLOCK_DELAY_MS;
         
-        // 模拟操作延迟
-        Thread.sleep(delay);
+        // 模拟操作延迟（离散事件模式下由事件队列调度，不实际等待）
+        delays.pause(delay);
         
         // 可以在这里添加日志记录，但为了性能，模拟器中可能不记录
     }
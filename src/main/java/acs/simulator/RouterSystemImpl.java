@@ -8,6 +8,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -18,6 +19,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class RouterSystemImpl implements RouterSystem {
 
     private final AccessControlService accessControlService;
+    private final SimulationDelays delays;
     
     // 服务节点管理
     private final List<String> nodeIds = new ArrayList<>();
@@ -32,12 +34,14 @@ public class RouterSystemImpl implements RouterSystem {
     private final LoadBalanceStats loadBalanceStats = new LoadBalanceStats();
     
     // 配置参数
-    private static final int NETWORK_DELAY_MS = 10; // 基础网络延迟10ms
+    static final int NETWORK_DELAY_MS = 10; // 基础网络延迟10ms
+    static final int NETWORK_JITTER_MS = 20; // 网络延迟随机抖动上限（不含）
     private static final int MAX_RETRY_ATTEMPTS = 3; // 最大重试次数
     
     @Autowired
-    public RouterSystemImpl(AccessControlService accessControlService) {
+    public RouterSystemImpl(AccessControlService accessControlService, SimulationDelays delays) {
         this.accessControlService = accessControlService;
+        this.delays = delays;
         
         // 初始化模拟节点（在实际系统中可能从配置读取）
         initializeNodes();
@@ -213,8 +217,8 @@ public class RouterSystemImpl implements RouterSystem {
     @Override
     public void simulateNetworkDelay(String sourceNode, String targetNode) throws InterruptedException {
         // 基础网络延迟 + 随机抖动
-        int delay = NETWORK_DELAY_MS + new Random().nextInt(20);
-        Thread.sleep(delay);
+        int delay = NETWORK_DELAY_MS + ThreadLocalRandom.current().nextInt(NETWORK_JITTER_MS);
+        delays.pause(delay);
     }
 
     @Override
@@ -0,0 +1,37 @@
+package acs.simulator;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * 模拟器中读卡、网络、处理和开关门等延迟的统一入口。
+ *
+ * 设计原则：
+ * - 实时模式下用 Thread.sleep 等待，与原有行为一致
+ * - 离散事件模式下立即返回：延迟由 VirtualTimeEventQueue 按虚拟时间调度为事件，不占用真实时间
+ * - 模式由 EventSimulatorImpl 在离散事件模拟开始和结束时切换
+ */
+@Component
+public class SimulationDelays {
+
+    private volatile boolean virtualTime;
+
+    /**
+     * 模拟一段延迟；离散事件模式下不等待。
+     */
+    public void pause(long millis) throws InterruptedException {
+        if (!virtualTime && millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    /**
+     * 是否处于离散事件（虚拟时间）模式。
+     */
+    public boolean isVirtualTime() {
+        return virtualTime;
+    }
+
+    void setVirtualTime(boolean virtualTime) {
+        this.virtualTime = virtualTime;
+    }
+}
@@ -0,0 +1,97 @@
+package acs.simulator;
+
+import acs.service.ClockService;
+
+import java.time.Instant;
+import java.util.PriorityQueue;
+
+/**
+ * 离散事件模拟的事件队列：按虚拟时间排序，依次取出事件并把 ClockService 的模拟时间推进到事件时间。
+ *
+ * 设计原则：
+ * - 单线程执行，事件之间没有真实等待；同一时刻的事件按调度顺序执行
+ * - 执行事件前调用 setSimulatedTime，被调用的真实服务看到的"当前时间"即事件时间
+ * - 事件只能调度到当前虚拟时间或之后，虚拟时间不会倒退
+ */
+public class VirtualTimeEventQueue {
+
+    private final ClockService clockService;
+    private final PriorityQueue<ScheduledEvent> queue = new PriorityQueue<>();
+    private Instant now;
+    private long sequence;
+    private long processedCount;
+
+    public VirtualTimeEventQueue(ClockService clockService, Instant startTime) {
+        this.clockService = clockService;
+        this.now = startTime;
+    }
+
+    /**
+     * 在指定虚拟时间调度事件。
+     */
+    public void schedule(Instant time, Runnable action) {
+        if (time.isBefore(now)) {
+            throw new IllegalArgumentException("Cannot schedule event in the past: " + time + " < " + now);
+        }
+        queue.add(new ScheduledEvent(time, sequence++, action));
+    }
+
+    /**
+     * 在当前虚拟时间之后 delayMs 毫秒调度事件。
+     */
+    public void scheduleAfter(long delayMs, Runnable action) {
+        schedule(now.plusMillis(Math.max(0, delayMs)), action);
+    }
+
+    /**
+     * 执行下一个事件；队列为空时返回false。
+     */
+    public boolean runNext() {
+        ScheduledEvent event = queue.poll();
+        if (event == null) {
+            return false;
+        }
+        now = event.time;
+        clockService.setSimulatedTime(now);
+        processedCount++;
+        event.action.run();
+        return true;
+    }
+
+    /**
+     * 当前虚拟时间（最近一次执行的事件时间）。
+     */
+    public Instant now() {
+        return now;
+    }
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
+    private static final class ScheduledEvent implements Comparable<ScheduledEvent> {
+        private final Instant time;
+        private final long sequence;
+        private final Runnable action;
+
+        private ScheduledEvent(Instant time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(ScheduledEvent other) {
+            int byTime = time.compareTo(other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+}
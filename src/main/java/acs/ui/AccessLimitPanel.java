@@ -225,6 +225,7 @@ public class AccessLimitPanel extends JPanel {
         limit.setIsActive(activeCheckBox.isSelected());
 
         profileResourceLimitRepository.save(limit);
+        refreshLimitCache();
         refreshResourceLimitTable();
     }
 
@@ -238,6 +239,7 @@ public class AccessLimitPanel extends JPanel {
                 .orElseThrow(() -> new IllegalArgumentException("Resource limit not found: " + id));
         limit.setIsActive(false);
         profileResourceLimitRepository.save(limit);
+        refreshLimitCache();
         refreshResourceLimitTable();
     }
 
@@ -248,9 +250,16 @@ public class AccessLimitPanel extends JPanel {
             return;
         }
         profileResourceLimitRepository.deleteById(id);
+        refreshLimitCache();
         refreshResourceLimitTable();
     }
 
+    private void refreshLimitCache() {
+        if (accessLimitService != null) {
+            accessLimitService.refreshLimits();
+        }
+    }
+
     private void populateResourceLimitFields() {
         int row = resourceLimitTable.getSelectedRow();
         if (row < 0) {
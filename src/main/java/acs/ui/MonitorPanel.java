@@ -412,8 +412,6 @@ public class MonitorPanel extends JPanel {
         }
 
         try {
-            List<acs.domain.LogEntry> logs = logQueryService.findAll();
-
             JFileChooser fileChooser = new JFileChooser();
             fileChooser.setSelectedFile(new java.io.File("access_logs_" +
                 LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".csv"));
@@ -421,8 +419,10 @@ public class MonitorPanel extends JPanel {
             if (result == JFileChooser.APPROVE_OPTION) {
                 java.io.File file = fileChooser.getSelectedFile();
                 java.nio.file.Path path = file.toPath();
-                csvLogExporter.exportToFile(logs, path);
-                UiTheme.setStatusText(logArea, "CSV exported: " + path.toString());
+                // 从数据库分页流式导出；文件名以.gz结尾时压缩输出
+                boolean gzip = path.getFileName().toString().toLowerCase().endsWith(".gz");
+                long count = csvLogExporter.exportAllFromRepository(path, gzip);
+                UiTheme.setStatusText(logArea, "CSV exported: " + path.toString() + " (" + count + " entries)");
             }
         } catch (Exception ex) {
             UiTheme.setStatusText(logArea, "Export failed: " + ex.getMessage());
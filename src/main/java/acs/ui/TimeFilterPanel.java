@@ -4,9 +4,12 @@ import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
 import acs.service.TimeFilterService;
 import acs.domain.TimeFilter;
+import acs.domain.TimeFilterEvaluation;
+import acs.domain.TimeRuleImportResult;
 import acs.repository.TimeFilterRepository;
 
 public class TimeFilterPanel extends JPanel {
@@ -68,6 +71,8 @@ public class TimeFilterPanel extends JPanel {
         parseButton.addActionListener(e -> parseTimeRule());
         JButton validateButton = UiTheme.secondaryButton("Validate Rule");
         validateButton.addActionListener(e -> validateTimeRule());
+        JButton importButton = UiTheme.secondaryButton("Import File");
+        importButton.addActionListener(e -> importTimeRules());
         JButton refreshButton = UiTheme.secondaryButton("Refresh List");
         refreshButton.addActionListener(e -> refreshFilterTable());
         JButton clearButton = UiTheme.secondaryButton("Clear");
@@ -75,6 +80,7 @@ public class TimeFilterPanel extends JPanel {
 
         buttonPanel.add(parseButton);
         buttonPanel.add(validateButton);
+        buttonPanel.add(importButton);
         buttonPanel.add(refreshButton);
         buttonPanel.add(clearButton);
         controlPanel.add(Box.createVerticalStrut(8));
@@ -156,6 +162,35 @@ public class TimeFilterPanel extends JPanel {
         }
     }
 
+    private void importTimeRules() {
+        JFileChooser fileChooser = new JFileChooser();
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        try {
+            String path = fileChooser.getSelectedFile().getAbsolutePath();
+            TimeRuleImportResult result = timeFilterService.importTimeRules(path);
+
+            StringBuilder sb = new StringBuilder();
+            sb.append("Import Result\n");
+            sb.append("File: ").append(path).append("\n");
+            sb.append("Rules: ").append(result.getTotal()).append("\n");
+            sb.append("Saved: ").append(result.getSaved()).append("\n");
+            sb.append("Already Existing: ").append(result.getExisting()).append("\n");
+            sb.append("Duplicates: ").append(result.getDuplicates()).append("\n");
+            sb.append("Invalid: ").append(result.getInvalid()).append("\n");
+            for (String error : result.getErrors()) {
+                sb.append("  ").append(error).append("\n");
+            }
+
+            UiTheme.setStatusText(resultArea, sb.toString());
+            refreshFilterTable();
+        } catch (Exception ex) {
+            UiTheme.setStatusText(resultArea, "Import failed: " + ex.getMessage());
+        }
+    }
+
     private void validateTimeRule() {
         String rawRule = ruleField.getText().trim();
 
@@ -187,14 +222,17 @@ public class TimeFilterPanel extends JPanel {
 
         try {
             LocalDateTime testTime = LocalDateTime.parse(timeStr);
-            TimeFilter timeFilter = timeFilterService.parseTimeRule(rawRule);
-            boolean matches = timeFilterService.matches(timeFilter, testTime);
+            // 测试匹配只在内存中解析，不保存规则
+            TimeFilter timeFilter = timeFilterService.parseTimeRuleInMemory(rawRule);
+            TimeFilterEvaluation evaluation = timeFilterService.evaluate(Collections.singletonList(timeFilter), testTime);
+            boolean matches = evaluation.isMatched();
 
             StringBuilder sb = new StringBuilder();
             sb.append("Match Result\n");
             sb.append("Rule: ").append(rawRule).append("\n");
             sb.append("Test Time: ").append(testTime).append("\n");
-            sb.append("Matches: ").append(matches ? "Match" : "No Match").append("\n\n");
+            sb.append("Matches: ").append(matches ? "Match" : "No Match").append("\n");
+            sb.append("Result Valid Until: ").append(evaluation.getValidUntil()).append("\n\n");
 
             sb.append("Parsed Rule:\n");
             sb.append("Rule ID: ").append(timeFilter.getTimeFilterId()).append("\n");
@@ -235,8 +273,13 @@ public class TimeFilterPanel extends JPanel {
         sb.append("   2025.January,February.Monday-Friday.*\n\n");
         sb.append("6. Split time on weekdays\n");
         sb.append("   *.*.Monday-Friday.8:00-12:00,13:00-17:00\n\n");
+        sb.append("7. Weekdays except holidays in calendar CN\n");
+        sb.append("   *.*.Monday-Friday.8:00-17:00.EXCEPT HOLIDAYS CN\n\n");
+        sb.append("8. First half of every month\n");
+        sb.append("   *.*.*.*.DAYS 1-15\n\n");
         sb.append("Rule Format:\n");
         sb.append("   [Year].[Month].[Day/Weekday].[Time Range]\n");
+        sb.append("   optional: .[EXCEPT] DAYS 1-15 / .[EXCEPT] HOLIDAYS <calendar>\n");
         sb.append("   * means any\n");
         sb.append("   Month/Day/Weekday can be comma-separated\n");
         sb.append("   Time ranges can be comma-separated\n");
@@ -136,10 +136,22 @@ CREATE TABLE IF NOT EXISTS time_filters (
     excluded_months VARCHAR(100),
     excluded_days_of_week VARCHAR(50),
     excluded_time_ranges VARCHAR(200),
+    excluded_days_of_month VARCHAR(100),
+    holiday_calendar VARCHAR(50),
+    excluded_holiday_calendar VARCHAR(50),
     is_recurring BOOLEAN DEFAULT FALSE,
     description VARCHAR(500)
 );
 
+-- 新增表：holidays（节假日日历，同名日历的日期组成一个日历）
+CREATE TABLE IF NOT EXISTS holidays (
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    calendar_name VARCHAR(50) NOT NULL,
+    holiday_date DATE NOT NULL,
+    description VARCHAR(200),
+    UNIQUE KEY uk_holiday_calendar_date (calendar_name, holiday_date)
+);
+
 -- 12. 新增关联表：profile_time_filters（配置文件-时间过滤器多对多）
 CREATE TABLE IF NOT EXISTS profile_time_filters (
     profile_id VARCHAR(50) NOT NULL,
@@ -0,0 +1,202 @@
+package acs.cache;
+
+import acs.domain.AccessDecision;
+import acs.domain.Employee;
+import acs.domain.LogEntry;
+import acs.domain.ReasonCode;
+import acs.domain.Resource;
+import acs.service.ClockService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * AccessCounterStore单元测试：验证按周加载、递增与日/周统计。
+ */
+@ExtendWith(MockitoExtension.class)
+class AccessCounterStoreTest {
+
+    @Mock
+    private LocalCacheManager cacheManager;
+
+    @Mock
+    private ClockService clockService;
+
+    private AccessCounterStore store;
+    private final LocalDateTime now = LocalDateTime.of(2024, 5, 15, 10, 0);
+
+    @BeforeEach
+    void setUp() {
+        List<LogEntry> logs = new ArrayList<>();
+        logs.add(allowLog("EMP001", "RES-GYM", now.minusHours(1)));
+        logs.add(allowLog("EMP001", "RES-GYM", now.minusDays(1)));
+        logs.add(allowLog("EMP001", "RES-CANTEEN", now.minusHours(2)));
+
+        when(clockService.localNow()).thenReturn(now);
+        when(cacheManager.getLogsByDecision(eq(AccessDecision.ALLOW), any(), any()))
+                .thenReturn(logs)
+                .thenReturn(Collections.emptyList());
+
+        store = new AccessCounterStore(cacheManager, clockService, new SiteZoneRegistry("", ""));
+        store.init();
+    }
+
+    @Test
+    void init_shouldLoadCurrentWeekFromLogs() {
+        LocalDate today = now.toLocalDate();
+
+        assertEquals(2, store.getWeeklyCount("EMP001", "RES-GYM", today));
+        assertEquals(1, store.getDailyCount("EMP001", "RES-GYM", today));
+        assertEquals(2, store.getDailyCount("EMP001", null, today));
+        assertEquals(3, store.getWeeklyCount("EMP001", null, today));
+        assertEquals(0, store.getDailyCount("EMP002", "RES-GYM", today));
+    }
+
+    @Test
+    void increment_shouldUpdateDailyAndWeeklyCounters() {
+        store.increment("EMP001", "RES-GYM", now);
+
+        assertEquals(2, store.getDailyCount("EMP001", "RES-GYM", now.toLocalDate()));
+        assertEquals(3, store.getWeeklyCount("EMP001", "RES-GYM", now.toLocalDate()));
+        verify(cacheManager, times(1)).getLogsByDecision(any(), any(), any());
+    }
+
+    @Test
+    void getCount_forOtherWeek_shouldLoadThatWeekOnce() {
+        LocalDate nextMonth = now.toLocalDate().plusWeeks(4);
+
+        assertEquals(0, store.getWeeklyCount("EMP001", "RES-GYM", nextMonth));
+        assertEquals(0, store.getDailyCount("EMP001", "RES-GYM", nextMonth));
+
+        verify(cacheManager, times(2)).getLogsByDecision(any(), any(), any());
+        assertEquals(2, store.getLoadedWeekCount());
+    }
+
+    @Test
+    void tryAcquire_weekOlderThanRetainedWindow_shouldKeepThatWeekLoaded() {
+        // 当前周之后再加载7周，保留窗口已满；再在更早的一周预占两次（每日上限1）
+        for (int i = 1; i < 8; i++) {
+            store.getWeeklyCount("EMP001", "RES-GYM", now.toLocalDate().plusWeeks(i));
+        }
+        assertEquals(8, store.getLoadedWeekCount());
+        LocalDateTime longAgo = now.minusWeeks(20);
+
+        assertTrue(store.tryAcquire("EMP002", "RES-GYM", longAgo, 1, 0));
+        assertFalse(store.tryAcquire("EMP002", "RES-GYM", longAgo, 1, 0));
+
+        assertEquals(1, store.getDailyCount("EMP002", "RES-GYM", longAgo.toLocalDate()));
+        assertEquals(8, store.getLoadedWeekCount());
+        // 旧的那一周只加载一次；当前周保留，计数不变
+        verify(cacheManager, times(9)).getLogsByDecision(any(), any(), any());
+        assertEquals(2, store.getWeeklyCount("EMP001", "RES-GYM", now.toLocalDate()));
+    }
+
+    @Test
+    void tryAcquire_concurrentSwipes_shouldNotExceedDailyLimit() throws Exception {
+        // EMP002今天尚未访问，每日上限1：并发预占只能成功一次
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger granted = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                start.await();
+                if (store.tryAcquire("EMP002", "RES-GYM", now, 1, 0)) {
+                    granted.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(1, granted.get());
+        assertEquals(1, store.getDailyCount("EMP002", "RES-GYM", now.toLocalDate()));
+    }
+
+    @Test
+    void tryAcquire_concurrentSwipesAcrossDays_shouldFillWeeklyLimitExactly() throws Exception {
+        // EMP002每日上限2、每周上限3：今天和明天的并发预占合计恰好成功3次，且每天不超过2次
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger granted = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            LocalDateTime swipeTime = i % 2 == 0 ? now : now.plusDays(1);
+            executor.submit(() -> {
+                start.await();
+                if (store.tryAcquire("EMP002", "RES-GYM", swipeTime, 2, 3)) {
+                    granted.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(3, granted.get());
+        assertEquals(3, store.getWeeklyCount("EMP002", "RES-GYM", now.toLocalDate()));
+        assertTrue(store.getDailyCount("EMP002", "RES-GYM", now.toLocalDate()) <= 2);
+        assertTrue(store.getDailyCount("EMP002", "RES-GYM", now.toLocalDate().plusDays(1)) <= 2);
+    }
+
+    @Test
+    void release_shouldReturnReservedSlot() {
+        // 每周上限3，EMP001本周已访问2次：第一次预占成功，第二次失败
+        assertTrue(store.tryAcquire("EMP001", "RES-GYM", now, 0, 3));
+        assertFalse(store.tryAcquire("EMP001", "RES-GYM", now, 0, 3));
+
+        store.release("EMP001", "RES-GYM", now);
+        assertEquals(2, store.getWeeklyCount("EMP001", "RES-GYM", now.toLocalDate()));
+        assertEquals(3, store.getWeeklyCount("EMP001", null, now.toLocalDate()));
+        assertTrue(store.tryAcquire("EMP001", "RES-GYM", now, 0, 3));
+    }
+
+    @Test
+    void loadWeek_shouldBucketLogsBySiteLocalDate() {
+        // 日志时间为服务器时区；东京站点的日志按东京本地日期计入
+        SiteZoneRegistry zones = new SiteZoneRegistry("", "Tokyo Office=Asia/Tokyo");
+        Instant swipe = Instant.parse("2024-05-15T20:00:00Z");
+        LogEntry tokyoLog = allowLog("EMP009", "RES-TYO", LocalDateTime.ofInstant(swipe, ZoneId.systemDefault()));
+        tokyoLog.getResource().setBuilding("Tokyo Office");
+        when(cacheManager.getLogsByDecision(eq(AccessDecision.ALLOW), any(), any())).thenReturn(List.of(tokyoLog));
+
+        AccessCounterStore siteStore = new AccessCounterStore(cacheManager, clockService, zones);
+        siteStore.init();
+
+        LocalDate tokyoDate = LocalDate.ofInstant(swipe, ZoneId.of("Asia/Tokyo"));
+        assertEquals(LocalDate.of(2024, 5, 16), tokyoDate);
+        assertEquals(1, siteStore.getDailyCount("EMP009", "RES-TYO", tokyoDate));
+        assertEquals(0, siteStore.getDailyCount("EMP009", "RES-TYO", tokyoDate.minusDays(1)));
+    }
+
+    private static LogEntry allowLog(String employeeId, String resourceId, LocalDateTime timestamp) {
+        Employee employee = new Employee();
+        employee.setEmployeeId(employeeId);
+        Resource resource = new Resource();
+        resource.setResourceId(resourceId);
+        return new LogEntry(timestamp, null, employee, resource, AccessDecision.ALLOW, ReasonCode.ALLOW);
+    }
+}
@@ -0,0 +1,94 @@
+package acs.cache;
+
+import acs.domain.Badge;
+import acs.domain.BadgeStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BadgeCodeIndex单元测试：验证当前代码解析、轮换后旧代码的宽限表与清理。
+ */
+class BadgeCodeIndexTest {
+
+    private BadgeCodeIndex index;
+    private Badge badge;
+
+    @BeforeEach
+    void setUp() {
+        index = new BadgeCodeIndex();
+        badge = new Badge("B-1", BadgeStatus.ACTIVE);
+        badge.setBadgeCode("OLDCODE01");
+        badge.setCodeExpirationDate(LocalDate.of(2025, 6, 30));
+        index.reset(List.of(badge));
+    }
+
+    @Test
+    void resolve_rotatedCode_shouldBeSupersededUntilGraceEnds() {
+        assertEquals(BadgeCodeIndex.CodeStatus.CURRENT, index.resolve("OLDCODE01").getStatus());
+
+        // 原地修改同一个缓存实例后重新登记（批量轮换的写法）
+        badge.setBadgeCode("NEWCODE01");
+        badge.setCodeExpirationDate(LocalDate.of(2026, 6, 30));
+        index.update(badge);
+
+        BadgeCodeIndex.Resolution current = index.resolve("NEWCODE01");
+        assertEquals(BadgeCodeIndex.CodeStatus.CURRENT, current.getStatus());
+        assertEquals("B-1", current.getBadgeId());
+        BadgeCodeIndex.Resolution old = index.resolve("OLDCODE01");
+        assertEquals(BadgeCodeIndex.CodeStatus.SUPERSEDED, old.getStatus());
+        assertEquals("B-1", old.getBadgeId());
+
+        // 旧代码保留到旧代码的更新截止日期（过期+14天）
+        assertEquals(0, index.removeExpiredGrace(LocalDate.of(2025, 7, 14)));
+        assertEquals(1, index.removeExpiredGrace(LocalDate.of(2025, 7, 15)));
+        assertEquals(BadgeCodeIndex.CodeStatus.UNKNOWN, index.resolve("OLDCODE01").getStatus());
+        assertNull(index.resolve("OLDCODE01").getBadgeId());
+    }
+
+    @Test
+    void resolve_shouldNotWaitForWriterMonitor() throws InterruptedException {
+        BadgeCodeIndex.Resolution[] resolved = new BadgeCodeIndex.Resolution[1];
+        Thread reader = new Thread(() -> resolved[0] = index.resolve("OLDCODE01"));
+        // 写操作持有监视器期间，读卡器线程的解析不被阻塞
+        synchronized (index) {
+            reader.start();
+            reader.join(2000);
+            assertFalse(reader.isAlive());
+        }
+        assertEquals(BadgeCodeIndex.CodeStatus.CURRENT, resolved[0].getStatus());
+    }
+
+    @Test
+    void reset_shouldReplaceCodesWithoutDroppingUnchangedOnes() {
+        Badge other = new Badge("B-2", BadgeStatus.ACTIVE);
+        other.setBadgeCode("OTHER0001");
+        index.reset(List.of(badge, other));
+
+        assertEquals(2, index.size());
+        assertEquals("B-1", index.resolve("OLDCODE01").getBadgeId());
+        assertEquals("B-2", index.resolve("OTHER0001").getBadgeId());
+
+        index.reset(List.of(other));
+        assertEquals(BadgeCodeIndex.CodeStatus.UNKNOWN, index.resolve("OLDCODE01").getStatus());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void remove_shouldDropCurrentAndSupersededCodes() {
+        Badge rotated = new Badge("B-1", BadgeStatus.ACTIVE);
+        rotated.setBadgeCode("NEWCODE01");
+        index.update(rotated);
+
+        index.remove("B-1");
+
+        assertEquals(BadgeCodeIndex.CodeStatus.UNKNOWN, index.resolve("NEWCODE01").getStatus());
+        assertEquals(BadgeCodeIndex.CodeStatus.UNKNOWN, index.resolve("OLDCODE01").getStatus());
+        assertEquals(0, index.size());
+        assertEquals(0, index.supersededSize());
+    }
+}
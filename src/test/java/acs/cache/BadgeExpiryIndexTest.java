@@ -0,0 +1,87 @@
+package acs.cache;
+
+import acs.domain.Badge;
+import acs.domain.BadgeStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BadgeExpiryIndex单元测试：验证状态变化日期的登记、到期取出和重新登记。
+ */
+class BadgeExpiryIndexTest {
+
+    private BadgeExpiryIndex index;
+    private final LocalDate expiry = LocalDate.of(2025, 6, 30);
+
+    @BeforeEach
+    void setUp() {
+        index = new BadgeExpiryIndex();
+    }
+
+    @Test
+    void pollDue_shouldWalkThroughNotifyRequiredAndOverdueDates() {
+        Badge badge = badge("B-1", expiry);
+        index.schedule(badge);
+        index.pollDue(LocalDate.of(2025, 1, 1));
+        index.schedule(badge);
+
+        // 提醒日：过期前30天
+        assertEquals(LocalDate.of(2025, 5, 31), index.nextDueDate());
+        assertTrue(index.pollDue(LocalDate.of(2025, 5, 30)).isEmpty());
+        assertEquals(List.of("B-1"), index.pollDue(LocalDate.of(2025, 5, 31)));
+        index.schedule(badge);
+
+        // 需要更新日：过期后一天；逾期日：更新截止（过期+14天）后一天
+        assertEquals(LocalDate.of(2025, 7, 1), index.nextDueDate());
+        assertEquals(List.of("B-1"), index.pollDue(LocalDate.of(2025, 7, 1)));
+        index.schedule(badge);
+        assertEquals(LocalDate.of(2025, 7, 15), index.nextDueDate());
+
+        // 逾期禁用后不再登记
+        badge.setStatus(BadgeStatus.DISABLED);
+        index.schedule(badge);
+        assertNull(index.nextDueDate());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void schedule_shouldReplaceEarlierDateWhenBadgeChanges() {
+        Badge badge = badge("B-1", expiry);
+        index.schedule(badge);
+        index.pollDue(LocalDate.of(2025, 1, 1));
+        index.schedule(badge);
+
+        // 代码更新后过期日期延后，原来的登记作废
+        badge.setCodeExpirationDate(expiry.plusYears(1));
+        index.schedule(badge);
+
+        assertTrue(index.pollDue(LocalDate.of(2025, 12, 31)).isEmpty());
+        assertEquals(LocalDate.of(2026, 5, 31), index.nextDueDate());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void reset_shouldQueuePastTransitionsUntilFirstPoll() {
+        Badge overdue = badge("B-OLD", LocalDate.of(2024, 1, 1));
+        Badge farAway = badge("B-NEW", LocalDate.of(2030, 1, 1));
+        index.reset(List.of(overdue, farAway));
+
+        // 启动后第一次检查补处理已经发生的变化
+        assertEquals(List.of("B-OLD"), index.pollDue(LocalDate.of(2025, 1, 1)));
+
+        index.remove("B-NEW");
+        assertEquals(0, index.size());
+        assertNull(index.nextDueDate());
+    }
+
+    private Badge badge(String badgeId, LocalDate codeExpirationDate) {
+        Badge badge = new Badge(badgeId, BadgeStatus.ACTIVE);
+        badge.setCodeExpirationDate(codeExpirationDate);
+        return badge;
+    }
+}
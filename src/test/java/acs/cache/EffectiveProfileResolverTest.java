@@ -0,0 +1,114 @@
+package acs.cache;
+
+import acs.domain.Badge;
+import acs.domain.BadgeStatus;
+import acs.domain.Employee;
+import acs.domain.Group;
+import acs.domain.Profile;
+import acs.repository.ProfileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * EffectiveProfileResolver单元测试：验证优先级排序、去重与缓存失效。
+ */
+@ExtendWith(MockitoExtension.class)
+class EffectiveProfileResolverTest {
+
+    @Mock
+    private ProfileRepository profileRepository;
+
+    private EffectiveProfileResolver resolver;
+    private Profile staffProfile;
+    private Profile vipProfile;
+    private Employee alice;
+    private Badge badge;
+
+    @BeforeEach
+    void setUp() {
+        staffProfile = profile("P-STAFF", 5);
+        vipProfile = profile("P-VIP", 1);
+
+        alice = new Employee("E-ALICE", "Alice");
+        alice.setGroups(new HashSet<>(Set.of(new Group("G-STAFF", "Staff"))));
+        badge = new Badge("B-ALICE", BadgeStatus.ACTIVE);
+
+        when(profileRepository.findAllActiveWithTimeFilters()).thenReturn(List.of(staffProfile, vipProfile));
+        when(profileRepository.findActiveGroupAssignments())
+                .thenReturn(List.<Object[]>of(new Object[]{"P-STAFF", "G-STAFF"}));
+        when(profileRepository.findActiveEmployeeAssignments())
+                .thenReturn(List.<Object[]>of(new Object[]{"P-STAFF", "E-ALICE"}));
+        when(profileRepository.findActiveBadgeAssignments())
+                .thenReturn(List.<Object[]>of(new Object[]{"P-VIP", "B-ALICE"}));
+
+        resolver = new EffectiveProfileResolver(profileRepository);
+        resolver.init();
+    }
+
+    @Test
+    void resolve_shouldDeduplicateAndOrderByPriority() {
+        List<Profile> profiles = resolver.resolve(alice, badge);
+
+        assertEquals(List.of(vipProfile, staffProfile), profiles);
+        assertSame(vipProfile, resolver.resolveHighestPriority(alice, badge));
+    }
+
+    @Test
+    void resolve_shouldReuseResultUntilRefresh() {
+        List<Profile> first = resolver.resolve(alice, badge);
+        assertSame(first, resolver.resolve(alice, badge));
+
+        when(profileRepository.findActiveBadgeAssignments()).thenReturn(Collections.emptyList());
+        resolver.refresh();
+
+        assertEquals(List.of(staffProfile), resolver.resolve(alice, badge));
+    }
+
+    @Test
+    void invalidateEmployee_shouldPickUpMembershipChange() {
+        assertEquals(List.of(staffProfile), resolver.resolve(alice, null));
+
+        alice.setGroups(new HashSet<>());
+        when(profileRepository.findActiveEmployeeAssignments()).thenReturn(Collections.emptyList());
+        resolver.refresh();
+        resolver.invalidateEmployee("E-ALICE");
+
+        assertTrue(resolver.resolve(alice, null).isEmpty());
+    }
+
+    @Test
+    void invalidateEmployee_duringResolve_shouldNotLeaveStaleEntry() {
+        // 解析过程中（读取组之后）员工被失效：本次返回旧结果，但写回的条目不能再被使用
+        Employee racing = spy(alice);
+        doAnswer(invocation -> {
+            Set<Group> groups = alice.getGroups();
+            resolver.invalidateEmployee("E-ALICE");
+            return groups;
+        }).doCallRealMethod().when(racing).getGroups();
+        when(profileRepository.findActiveEmployeeAssignments()).thenReturn(Collections.emptyList());
+        resolver.refresh();
+
+        assertEquals(List.of(staffProfile), resolver.resolve(racing, null));
+
+        racing.setGroups(new HashSet<>());
+        assertTrue(resolver.resolve(racing, null).isEmpty());
+    }
+
+    private static Profile profile(String id, int priority) {
+        Profile profile = new Profile(id, id, "test");
+        profile.setIsActive(true);
+        profile.setPriorityLevel(priority);
+        return profile;
+    }
+}
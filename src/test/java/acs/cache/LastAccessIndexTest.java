@@ -0,0 +1,74 @@
+package acs.cache;
+
+import acs.domain.AccessDecision;
+import acs.domain.Employee;
+import acs.domain.LogEntry;
+import acs.domain.ReasonCode;
+import acs.domain.Resource;
+import acs.domain.ResourceState;
+import acs.domain.ResourceType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LastAccessIndex单元测试：验证最近放行时间的维护、重建与过期裁剪。
+ */
+class LastAccessIndexTest {
+
+    private LastAccessIndex index;
+    private Employee alice;
+    private Resource gate;
+    private Resource serverRoom;
+    private final LocalDateTime base = LocalDateTime.of(2025, 3, 3, 8, 0);
+
+    @BeforeEach
+    void setUp() {
+        index = new LastAccessIndex();
+        alice = new Employee("E-ALICE", "Alice");
+        gate = new Resource("R-GATE", "Gate", ResourceType.DOOR, ResourceState.AVAILABLE);
+        serverRoom = new Resource("R-SERVER", "Server Room", ResourceType.DOOR, ResourceState.AVAILABLE);
+    }
+
+    @Test
+    void record_shouldKeepLatestAllowOnly() {
+        index.record(log(base.plusMinutes(5), gate, AccessDecision.ALLOW));
+        index.record(log(base, gate, AccessDecision.ALLOW));
+        index.record(log(base.plusMinutes(10), gate, AccessDecision.DENY));
+
+        assertEquals(base.plusMinutes(5), index.lastAllowed("E-ALICE", "R-GATE"));
+        assertNull(index.lastAllowed("E-ALICE", "R-SERVER"));
+        assertNull(index.lastAllowed("E-BOB", "R-GATE"));
+    }
+
+    @Test
+    void reset_shouldRebuildFromLogs() {
+        index.record(log(base, serverRoom, AccessDecision.ALLOW));
+
+        index.reset(List.of(log(base.plusHours(1), gate, AccessDecision.ALLOW)));
+
+        assertNull(index.lastAllowed("E-ALICE", "R-SERVER"));
+        assertEquals(base.plusHours(1), index.lastAllowed("E-ALICE", "R-GATE"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void removeBefore_shouldDropExpiredEntries() {
+        index.record(log(base, gate, AccessDecision.ALLOW));
+        index.record(log(base.plusDays(8), serverRoom, AccessDecision.ALLOW));
+
+        index.removeBefore(base.plusDays(1));
+
+        assertNull(index.lastAllowed("E-ALICE", "R-GATE"));
+        assertEquals(base.plusDays(8), index.lastAllowed("E-ALICE", "R-SERVER"));
+    }
+
+    private LogEntry log(LocalDateTime timestamp, Resource resource, AccessDecision decision) {
+        return new LogEntry(timestamp, null, alice, resource, decision,
+                decision == AccessDecision.ALLOW ? ReasonCode.ALLOW : ReasonCode.NO_PERMISSION);
+    }
+}
@@ -0,0 +1,92 @@
+package acs.cache;
+
+import acs.domain.Employee;
+import acs.domain.Group;
+import acs.domain.Resource;
+import acs.domain.ResourceState;
+import acs.domain.ResourceType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PermissionIndex单元测试：验证位图重建与增量更新。
+ */
+class PermissionIndexTest {
+
+    private PermissionIndex index;
+    private Resource lobby;
+    private Resource serverRoom;
+    private Group staff;
+    private Group admin;
+    private Employee alice;
+
+    @BeforeEach
+    void setUp() {
+        index = new PermissionIndex();
+        lobby = new Resource("R-LOBBY", "Lobby", ResourceType.DOOR, ResourceState.AVAILABLE);
+        serverRoom = new Resource("R-SERVER", "Server Room", ResourceType.DOOR, ResourceState.AVAILABLE);
+
+        staff = new Group("G-STAFF", "Staff");
+        staff.setResources(new HashSet<>(Set.of(lobby)));
+        admin = new Group("G-ADMIN", "Admin");
+        admin.setResources(new HashSet<>(Set.of(lobby, serverRoom)));
+
+        alice = new Employee("E-ALICE", "Alice");
+        alice.setGroups(new HashSet<>(Set.of(staff)));
+
+        index.rebuild(List.of(alice), List.of(staff, admin));
+    }
+
+    @Test
+    void rebuild_shouldGrantResourcesOfMemberGroups() {
+        assertTrue(index.hasPermission("E-ALICE", "R-LOBBY"));
+        assertFalse(index.hasPermission("E-ALICE", "R-SERVER"));
+        assertFalse(index.hasPermission("E-UNKNOWN", "R-LOBBY"));
+        assertFalse(index.hasPermission("E-ALICE", "R-UNKNOWN"));
+    }
+
+    @Test
+    void updateEmployee_joiningGroup_shouldGrantItsResources() {
+        alice.getGroups().add(admin);
+        index.updateEmployee(alice);
+
+        assertTrue(index.hasPermission("E-ALICE", "R-SERVER"));
+    }
+
+    @Test
+    void updateEmployee_leavingGroup_shouldRevokeItsResources() {
+        alice.getGroups().remove(staff);
+        index.updateEmployee(alice);
+
+        assertFalse(index.hasPermission("E-ALICE", "R-LOBBY"));
+    }
+
+    @Test
+    void updateGroup_grantingResource_shouldPropagateToMembers() {
+        staff.getResources().add(serverRoom);
+        index.updateGroup(staff);
+
+        assertTrue(index.hasPermission("E-ALICE", "R-SERVER"));
+    }
+
+    @Test
+    void removeGroup_shouldRevokeResourcesFromMembers() {
+        index.removeGroup("G-STAFF");
+
+        assertFalse(index.hasPermission("E-ALICE", "R-LOBBY"));
+    }
+
+    @Test
+    void removeEmployee_shouldDropPermissions() {
+        index.removeEmployee("E-ALICE");
+
+        assertFalse(index.hasPermission("E-ALICE", "R-LOBBY"));
+        assertEquals(0, index.getEmployeeCount());
+    }
+}
@@ -0,0 +1,236 @@
+package acs.cache;
+
+import acs.domain.Badge;
+import acs.domain.BadgeStatus;
+import acs.domain.Employee;
+import acs.domain.Group;
+import acs.domain.CompiledTimeFilter;
+import acs.domain.Profile;
+import acs.domain.ProfileResourceLimit;
+import acs.domain.ProfileSchedule;
+import acs.domain.Resource;
+import acs.domain.ResourceDependency;
+import acs.domain.ResourceState;
+import acs.domain.ResourceType;
+import acs.domain.TimeFilter;
+import acs.repository.ProfileResourceLimitRepository;
+import acs.repository.ResourceDependencyRepository;
+import acs.service.TimeFilterService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * PolicySnapshotHolder单元测试：验证快照内容、最严格限制的合并、整体替换、同步发布以及限制和依赖的重新加载。
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PolicySnapshotHolderTest {
+
+    @Mock
+    private LocalCacheManager cacheManager;
+
+    @Mock
+    private EffectiveProfileResolver profileResolver;
+
+    @Mock
+    private ProfileResourceLimitRepository profileResourceLimitRepository;
+
+    @Mock
+    private ResourceDependencyRepository resourceDependencyRepository;
+
+    @Mock
+    private TimeFilterService timeFilterService;
+
+    private PolicySnapshotHolder holder;
+    private Resource lab;
+    private Resource lobby;
+    private Employee alice;
+    private Badge badge;
+    private Profile staffProfile;
+
+    @BeforeEach
+    void setUp() {
+        lab = new Resource("RES-LAB", "Lab", ResourceType.DOOR, ResourceState.AVAILABLE);
+        lobby = new Resource("RES-LOBBY", "Lobby", ResourceType.DOOR, ResourceState.AVAILABLE);
+        alice = new Employee("EMP-A", "Alice");
+        alice.setGroups(Collections.singleton(new Group("G-STAFF", "Staff")));
+        badge = new Badge("B-A", BadgeStatus.ACTIVE);
+        badge.setEmployee(alice);
+        staffProfile = new Profile("P-STAFF", "Staff", "");
+        staffProfile.setPriorityLevel(1);
+
+        when(cacheManager.getAllResources()).thenReturn(List.of(lab, lobby));
+        when(cacheManager.getAllEmployees()).thenReturn(List.of(alice));
+        when(cacheManager.getAllBadges()).thenReturn(List.of(badge));
+        when(cacheManager.getEmployee("EMP-A")).thenReturn(alice);
+        doAnswer(invocation -> {
+            PolicySnapshot.Builder builder = invocation.getArgument(0);
+            builder.permission("EMP-A", "RES-LAB");
+            return null;
+        }).when(cacheManager).exportPermissions(any());
+        when(profileResolver.resolve(alice, badge)).thenReturn(List.of(staffProfile));
+        when(profileResourceLimitRepository.findAll()).thenReturn(List.of(
+                limit(5, 20, true), limit(3, 0, true), limit(1, 1, false)));
+        when(resourceDependencyRepository.findAll()).thenReturn(List.of(
+                new ResourceDependency(lab, lobby, 30, "Lobby first")));
+
+        holder = new PolicySnapshotHolder(cacheManager, profileResolver,
+                profileResourceLimitRepository, resourceDependencyRepository, timeFilterService);
+        holder.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        holder.shutdown();
+    }
+
+    @Test
+    void rebuildNow_shouldCaptureDecisionStateAndTightestLimits() {
+        PolicySnapshot snapshot = holder.rebuildNow();
+
+        assertSame(snapshot, holder.current());
+        assertEquals("EMP-A", snapshot.badge("B-A").getEmployeeId());
+        assertEquals(Collections.singleton("G-STAFF"), snapshot.employee("EMP-A").getGroupIds());
+        assertTrue(snapshot.hasPermission("EMP-A", "RES-LAB"));
+        assertFalse(snapshot.hasPermission("EMP-A", "RES-LOBBY"));
+
+        PolicySnapshot.ProfilePolicy profile = snapshot.profilesForBadge("B-A").get(0);
+        assertEquals("P-STAFF", profile.getProfileId());
+        // 两条激活的限制合并为最严格的（日3次、周20次），停用的限制被忽略
+        assertEquals(3, profile.limitFor("RES-LAB").getDailyLimit());
+        assertEquals(20, profile.limitFor("RES-LAB").getWeeklyLimit());
+        assertSame(PolicySnapshot.LimitPolicy.NONE, profile.limitFor("RES-LOBBY"));
+
+        assertEquals("RES-LOBBY", snapshot.dependenciesOf("RES-LAB").get(0).getRequiredResourceId());
+        assertTrue(snapshot.dependenciesOf("RES-LOBBY").isEmpty());
+    }
+
+    @Test
+    void rebuildNow_shouldPublishNewEpochWithoutChangingOldSnapshot() {
+        PolicySnapshot first = holder.rebuildNow();
+
+        badge.setStatus(BadgeStatus.DISABLED);
+        lab.setResourceState(ResourceState.LOCKED);
+        PolicySnapshot second = holder.rebuildNow();
+
+        assertTrue(second.getEpoch() > first.getEpoch());
+        assertEquals(BadgeStatus.ACTIVE, first.badge("B-A").getStatus());
+        assertEquals(ResourceState.AVAILABLE, first.resource("RES-LAB").getState());
+        assertEquals(BadgeStatus.DISABLED, second.badge("B-A").getStatus());
+        assertEquals(ResourceState.LOCKED, second.resource("RES-LAB").getState());
+        assertSame(second, holder.current());
+    }
+
+    @Test
+    void cacheChange_shouldPublishNewSnapshotBeforeListenerReturns() {
+        ArgumentCaptor<Runnable> listener = ArgumentCaptor.forClass(Runnable.class);
+        verify(cacheManager).addChangeListener(listener.capture());
+
+        // 徽章挂失、资源锁定：更新方法调用监听器，监听器返回时决策已读取到新状态
+        badge.setStatus(BadgeStatus.LOST);
+        lab.setResourceState(ResourceState.LOCKED);
+        listener.getValue().run();
+
+        assertEquals(BadgeStatus.LOST, holder.current().badge("B-A").getStatus());
+        assertEquals(ResourceState.LOCKED, holder.current().resource("RES-LAB").getState());
+    }
+
+    @Test
+    void cacheChange_shouldRebuildOnBuilderThreadAndWaitForPublish() {
+        ArgumentCaptor<Runnable> listener = ArgumentCaptor.forClass(Runnable.class);
+        verify(cacheManager).addChangeListener(listener.capture());
+        List<String> builderThreads = new CopyOnWriteArrayList<>();
+        when(cacheManager.getAllBadges()).thenAnswer(invocation -> {
+            builderThreads.add(Thread.currentThread().getName());
+            return List.of(badge);
+        });
+
+        badge.setStatus(BadgeStatus.DISABLED);
+        listener.getValue().run();
+
+        assertEquals(List.of("policy-snapshot-builder"), builderThreads);
+        assertEquals(BadgeStatus.DISABLED, holder.current().badge("B-A").getStatus());
+    }
+
+    @Test
+    void rebuildAndWait_afterShutdown_shouldRebuildOnCallingThread() {
+        holder.shutdown();
+        badge.setStatus(BadgeStatus.LOST);
+
+        holder.rebuildAndWait();
+
+        assertEquals(BadgeStatus.LOST, holder.current().badge("B-A").getStatus());
+    }
+
+    @Test
+    void rebuildNow_shouldNotQueryLimitsOrDependencies() {
+        holder.rebuildNow();
+        holder.rebuildAndWait();
+
+        // 只在初始化时各查询一次
+        verify(profileResourceLimitRepository, times(1)).findAll();
+        verify(resourceDependencyRepository, times(1)).findAll();
+    }
+
+    @Test
+    void refreshDependencies_shouldRebuildOnlyWhenTableChanged() {
+        long epoch = holder.current().getEpoch();
+
+        holder.refreshDependencies();
+        assertEquals(epoch, holder.current().getEpoch());
+
+        // 数据库中直接修改依赖关系：重新加载后生效
+        when(resourceDependencyRepository.findAll()).thenReturn(List.of(
+                new ResourceDependency(lobby, lab, null, "Lab first")));
+        holder.reloadPolicyTables();
+
+        assertTrue(holder.current().getEpoch() > epoch);
+        assertTrue(holder.current().dependenciesOf("RES-LAB").isEmpty());
+        assertEquals("RES-LAB", holder.current().dependenciesOf("RES-LOBBY").get(0).getRequiredResourceId());
+    }
+
+    @Test
+    void rebuildNow_shouldCaptureCompiledScheduleInsteadOfProfileEntity() {
+        TimeFilter timeFilter = new TimeFilter();
+        staffProfile.setTimeFilters(Collections.singleton(timeFilter));
+        CompiledTimeFilter mornings = new CompiledTimeFilter(CompiledTimeFilter.ANY_YEAR, CompiledTimeFilter.ALL_MONTHS,
+                CompiledTimeFilter.ALL_DAYS, new long[]{8 * 3600_000_000_000L}, new long[]{12 * 3600_000_000_000L},
+                new long[0], new long[0]);
+        when(timeFilterService.scheduleFor(staffProfile)).thenReturn(
+                new ProfileSchedule(staffProfile.getTimeFilters(), List.of(timeFilter), List.of(mornings)));
+
+        PolicySnapshot.ProfilePolicy profile = holder.rebuildNow().profilesForBadge("B-A").get(0);
+        // 快照构建后修改配置文件实体不影响已发布的快照
+        staffProfile.setTimeFilters(Collections.emptySet());
+
+        assertTrue(profile.isTimeRestricted());
+        assertTrue(profile.allowsAt(LocalDateTime.of(2024, 5, 1, 9, 0)));
+        assertFalse(profile.allowsAt(LocalDateTime.of(2024, 5, 1, 13, 0)));
+    }
+
+    private ProfileResourceLimit limit(int daily, int weekly, boolean active) {
+        ProfileResourceLimit limit = new ProfileResourceLimit();
+        limit.setProfile(staffProfile);
+        limit.setResource(lab);
+        limit.setDailyLimit(daily);
+        limit.setWeeklyLimit(weekly);
+        limit.setIsActive(active);
+        return limit;
+    }
+}
@@ -0,0 +1,89 @@
+package acs.cache;
+
+import acs.domain.BadgeReader;
+import acs.repository.BadgeReaderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ResourceReaderCache单元测试：验证启动加载、增量更新与删除。
+ */
+@ExtendWith(MockitoExtension.class)
+class ResourceReaderCacheTest {
+
+    @Mock
+    private BadgeReaderRepository badgeReaderRepository;
+
+    private ResourceReaderCache cache;
+
+    @BeforeEach
+    void setUp() {
+        when(badgeReaderRepository.findAll()).thenReturn(List.of(
+                new BadgeReader("READER001", "Main Door", "Lobby", "ONLINE", "RES001"),
+                new BadgeReader("READER002", "Lab Door", "Floor 2", "ONLINE", "RES002")));
+        cache = new ResourceReaderCache(badgeReaderRepository);
+        cache.init();
+    }
+
+    @Test
+    void getReaderId_shouldServeLoadedMappingWithoutQueries() {
+        for (int i = 0; i < 100; i++) {
+            assertEquals("READER001", cache.getReaderId("RES001"));
+        }
+        assertEquals("", cache.getReaderId("RES999"));
+        assertEquals("", cache.getReaderId(null));
+
+        verify(badgeReaderRepository, times(1)).findAll();
+        verify(badgeReaderRepository, never()).findByResourceId(any());
+    }
+
+    @Test
+    void put_readerMovedToOtherResource_shouldReplaceOldMapping() {
+        cache.put(new BadgeReader("READER002", "Lab Door", "Floor 3", "ONLINE", "RES003"));
+
+        assertEquals("", cache.getReaderId("RES002"));
+        assertEquals("READER002", cache.getReaderId("RES003"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void put_statusHeartbeatsFromSecondReader_shouldKeepLowestReaderId() {
+        cache.put(new BadgeReader("READER009", "Side Door", "Lobby", "ONLINE", "RES001"));
+        cache.put(new BadgeReader("READER009", "Side Door", "Lobby", "OFFLINE", "RES001"));
+        cache.put(new BadgeReader("READER001", "Main Door", "Lobby", "ONLINE", "RES001"));
+        assertEquals("READER001", cache.getReaderId("RES001"));
+
+        // 较小ID的读卡器移走后由剩下的读卡器接替
+        cache.put(new BadgeReader("READER001", "Main Door", "Lobby", "ONLINE", "RES004"));
+        assertEquals("READER009", cache.getReaderId("RES001"));
+        assertEquals("READER001", cache.getReaderId("RES004"));
+    }
+
+    @Test
+    void refresh_shouldPickLowestReaderIdRegardlessOfOrder() {
+        when(badgeReaderRepository.findAll()).thenReturn(List.of(
+                new BadgeReader("READER007", "Back Door", "Lobby", "ONLINE", "RES001"),
+                new BadgeReader("READER001", "Main Door", "Lobby", "ONLINE", "RES001")));
+        cache.refresh();
+
+        assertEquals("READER001", cache.getReaderId("RES001"));
+        cache.remove("READER001");
+        assertEquals("READER007", cache.getReaderId("RES001"));
+    }
+
+    @Test
+    void remove_shouldDropMapping() {
+        cache.remove("READER001");
+
+        assertEquals("", cache.getReaderId("RES001"));
+        assertEquals("READER002", cache.getReaderId("RES002"));
+    }
+}
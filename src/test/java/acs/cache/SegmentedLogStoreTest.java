@@ -0,0 +1,215 @@
+package acs.cache;
+
+import acs.domain.AccessDecision;
+import acs.domain.Badge;
+import acs.domain.BadgeStatus;
+import acs.domain.LogEntry;
+import acs.domain.ReasonCode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SegmentedLogStore单元测试：验证跨段追加、乱序插入、截断与快照隔离。
+ */
+class SegmentedLogStoreTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 5, 1, 8, 0);
+
+    private SegmentedLogStore store;
+    private long nextId;
+
+    @BeforeEach
+    void setUp() {
+        store = new SegmentedLogStore();
+        nextId = 1;
+    }
+
+    @Test
+    void append_inOrderAcrossSegments_shouldKeepOrder() {
+        int count = SegmentedLogStore.SEGMENT_SIZE * 2 + 5;
+        for (int i = 0; i < count; i++) {
+            store.append(log(i));
+        }
+
+        assertEquals(count, store.size());
+        assertSorted(store.snapshot());
+        assertEquals(BASE.plusSeconds(count - 1), store.snapshot().get(count - 1).getTimestamp());
+    }
+
+    @Test
+    void append_lateEntry_shouldBeInsertedInTimeOrder() {
+        for (int i = 0; i < 10; i++) {
+            store.append(log(i * 10));
+        }
+        // 尾段内的迟到日志
+        store.append(log(55));
+        // 比所有日志都早的迟到日志
+        store.append(log(-5));
+
+        List<LogEntry> logs = store.snapshot();
+        assertEquals(12, logs.size());
+        assertSorted(logs);
+        assertEquals(BASE.minusSeconds(5), logs.get(0).getTimestamp());
+        assertEquals(BASE.plusSeconds(55), logs.get(7).getTimestamp());
+    }
+
+    @Test
+    void append_lateEntryIntoFullTail_shouldSpillIntoNewSegment() {
+        for (int i = 0; i < SegmentedLogStore.SEGMENT_SIZE; i++) {
+            store.append(log(i * 2));
+        }
+        store.append(log(3));
+
+        List<LogEntry> logs = store.snapshot();
+        assertEquals(SegmentedLogStore.SEGMENT_SIZE + 1, logs.size());
+        assertSorted(logs);
+    }
+
+    @Test
+    void append_existingId_shouldReplaceEntry() {
+        LogEntry first = log(0);
+        assertFalse(store.append(first));
+        assertFalse(store.append(log(10)));
+
+        LogEntry updated = new LogEntry(BASE.plusSeconds(20), null, null, null, AccessDecision.DENY, ReasonCode.NO_PERMISSION);
+        updated.setId(first.getId());
+        assertTrue(store.append(updated));
+
+        List<LogEntry> logs = store.snapshot();
+        assertEquals(2, logs.size());
+        assertSame(updated, logs.get(1));
+    }
+
+    @Test
+    void append_knownButRemovedId_shouldNotReportReplacement() {
+        LogEntry first = log(0);
+        store.append(first);
+        store.append(log(10));
+        store.remove(first.getId());
+
+        LogEntry again = new LogEntry(BASE.plusSeconds(5), null, null, null, AccessDecision.ALLOW, ReasonCode.ALLOW);
+        again.setId(first.getId());
+
+        assertFalse(store.append(again));
+        assertEquals(2, store.size());
+        assertSorted(store.snapshot());
+    }
+
+    @Test
+    void removeBefore_shouldTruncatePrefixAndAllowFurtherAppends() {
+        int count = SegmentedLogStore.SEGMENT_SIZE + 10;
+        for (int i = 0; i < count; i++) {
+            store.append(log(i));
+        }
+        List<LogEntry> before = store.snapshot();
+
+        assertEquals(20, store.countBefore(BASE.plusSeconds(20)));
+        assertEquals(20, store.removeBefore(BASE.plusSeconds(20)));
+        store.append(log(count));
+
+        List<LogEntry> logs = store.snapshot();
+        assertEquals(count - 20 + 1, logs.size());
+        assertEquals(BASE.plusSeconds(20), logs.get(0).getTimestamp());
+        assertSorted(logs);
+        // 旧快照不受影响
+        assertEquals(count, before.size());
+        assertEquals(BASE, before.get(0).getTimestamp());
+    }
+
+    @Test
+    void trackIds_shouldLetLaterPersistedEntriesBeReplacedAndRemoved() {
+        // 异步写库的日志先以null ID进入缓存，写库后回填ID
+        LogEntry pending = log(0);
+        pending.setId(null);
+        store.append(pending);
+        store.append(log(10));
+        pending.setId(500L);
+        store.trackIds(List.of(pending));
+
+        LogEntry replacement = log(20);
+        replacement.setId(500L);
+        store.append(replacement);
+        assertEquals(2, store.size());
+        assertSame(replacement, store.snapshot().get(1));
+
+        assertTrue(store.remove(500L));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void remove_shouldDropEntryById() {
+        LogEntry target = log(5);
+        store.append(log(0));
+        store.append(target);
+        store.append(log(10));
+
+        assertTrue(store.remove(target.getId()));
+        assertFalse(store.remove(target.getId()));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void findByBadge_shouldUseTimeRangeAndFollowTruncation() {
+        Badge badge = new Badge("B001", BadgeStatus.ACTIVE);
+        for (int i = 0; i < 10; i++) {
+            LogEntry entry = log(i * 60);
+            entry.setBadge(i % 2 == 0 ? badge : null);
+            store.append(entry);
+        }
+
+        // 徽章B001在第0、2、4、6、8分钟有记录
+        assertEquals(3, store.findByBadge("B001", BASE.plusMinutes(2), BASE.plusMinutes(6)).size());
+        assertEquals(5, store.findByBadge("B001", null, null).size());
+        assertEquals(10, store.findByDecision(AccessDecision.ALLOW, null, null).size());
+
+        store.removeBefore(BASE.plusMinutes(5));
+        assertEquals(2, store.findByBadge("B001", null, null).size());
+        assertTrue(store.findByBadge("B999", null, null).isEmpty());
+        assertTrue(store.findByDecision(AccessDecision.DENY, null, null).isEmpty());
+    }
+
+    @Test
+    void findByDecision_lateEntriesAcrossChunks_shouldStayOrderedAfterTruncation() {
+        int count = PostingList.CHUNK_SIZE * 3;
+        for (int i = 0; i < count; i++) {
+            store.append(log(i * 2));
+        }
+        // 重排缓冲区范围内的少量乱序（落在尾块）和跨块的迟到日志
+        store.append(log(count * 2 - 7));
+        store.append(log(PostingList.CHUNK_SIZE * 2 + 1));
+        store.append(log(PostingList.CHUNK_SIZE - 1));
+
+        List<LogEntry> allows = store.findByDecision(AccessDecision.ALLOW, null, null);
+        assertEquals(count + 3, allows.size());
+        assertSorted(allows);
+        assertEquals(store.snapshot(), allows);
+
+        store.removeBefore(BASE.plusSeconds(PostingList.CHUNK_SIZE + 1));
+        List<LogEntry> remaining = store.findByDecision(AccessDecision.ALLOW, null, null);
+        assertEquals(store.size(), remaining.size());
+        assertSorted(remaining);
+        store.append(log(count * 2));
+        assertEquals(store.size(), store.findByDecision(AccessDecision.ALLOW, BASE, null).size());
+    }
+
+    private LogEntry log(long secondsAfterBase) {
+        LogEntry entry = new LogEntry(BASE.plusSeconds(secondsAfterBase), null, null, null,
+                AccessDecision.ALLOW, ReasonCode.ALLOW);
+        entry.setId(nextId++);
+        return entry;
+    }
+
+    private static void assertSorted(List<LogEntry> logs) {
+        List<LogEntry> copy = new ArrayList<>(logs);
+        for (int i = 1; i < copy.size(); i++) {
+            assertFalse(copy.get(i).getTimestamp().isBefore(copy.get(i - 1).getTimestamp()),
+                    "logs out of order at index " + i);
+        }
+    }
+}
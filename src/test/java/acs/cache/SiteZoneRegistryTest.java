@@ -0,0 +1,58 @@
+package acs.cache;
+
+import acs.domain.Resource;
+import acs.domain.ResourceState;
+import acs.domain.ResourceType;
+import acs.domain.ZoneOffsetTable;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SiteZoneRegistry单元测试：验证建筑到时区的映射和偏移量切换表与ZoneId换算一致。
+ */
+class SiteZoneRegistryTest {
+
+    @Test
+    void tableFor_shouldMapBuildingsAndFallBackToDefault() {
+        SiteZoneRegistry registry = new SiteZoneRegistry("UTC", "London HQ=Europe/London, Tokyo Office = Asia/Tokyo");
+        Instant instant = Instant.parse("2025-07-01T23:30:00Z");
+
+        assertEquals(LocalDateTime.of(2025, 7, 2, 0, 30), registry.toLocalDateTime(resource("London HQ"), instant));
+        assertEquals(LocalDate.of(2025, 7, 2), registry.toLocalDate(resource("Tokyo Office"), instant));
+        assertEquals(LocalDateTime.of(2025, 7, 1, 23, 30), registry.toLocalDateTime(resource("Unknown"), instant));
+        assertEquals(ZoneId.of("UTC"), registry.zoneFor(null));
+        assertSame(registry.tableFor(resource("London HQ")), registry.tableFor(resource("London HQ")));
+    }
+
+    @Test
+    void zoneOffsetTable_shouldAgreeWithZoneRulesAcrossTransitions() {
+        ZoneId london = ZoneId.of("Europe/London");
+        Instant from = Instant.parse("2024-01-01T00:00:00Z");
+        Instant to = Instant.parse("2026-01-01T00:00:00Z");
+        ZoneOffsetTable table = new ZoneOffsetTable(london, from, to);
+
+        assertEquals(4, table.getTransitionCount());
+        // 逐15分钟检查窗口内外（覆盖夏令时切换点）
+        for (Instant instant = from.minus(2, ChronoUnit.DAYS); instant.isBefore(to.plus(2, ChronoUnit.DAYS));
+             instant = instant.plus(15, ChronoUnit.MINUTES)) {
+            assertEquals(LocalDateTime.ofInstant(instant, london), table.toLocalDateTime(instant), "at " + instant);
+            assertEquals(LocalDate.ofInstant(instant, london), table.toLocalDate(instant), "at " + instant);
+        }
+        // 恰在切换点上使用切换后的偏移量
+        Instant springForward = Instant.parse("2025-03-30T01:00:00Z");
+        assertEquals(LocalDateTime.of(2025, 3, 30, 2, 0), table.toLocalDateTime(springForward));
+    }
+
+    private static Resource resource(String building) {
+        Resource resource = new Resource("RES_" + building.hashCode(), building, ResourceType.DOOR, ResourceState.AVAILABLE);
+        resource.setBuilding(building);
+        return resource;
+    }
+}
@@ -0,0 +1,82 @@
+package acs.log.csv;
+
+import acs.domain.*;
+import acs.repository.AccessLogRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Pageable;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * CsvLogExporter单元测试：验证流式导出、分页读取与gzip输出。
+ */
+class CsvLogExporterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void exportToFile_list_shouldWriteHeaderAndLines() throws Exception {
+        CsvLogExporter exporter = new CsvLogExporter(null);
+        Path output = tempDir.resolve("out").resolve("logs.csv");
+
+        exporter.exportToFile(List.of(log(1, LocalDateTime.of(2025, 12, 24, 14, 36, 49))), output);
+
+        List<String> lines = Files.readAllLines(output);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("Year,Month,Day"));
+        assertEquals("2025,Dec,24,Wed,14:36:49,,,,,,ALLOW", lines.get(1));
+    }
+
+    @Test
+    void exportAllFromRepository_shouldPageByIdAndWriteGzip() throws Exception {
+        AccessLogRepository repository = mock(AccessLogRepository.class);
+        LocalDateTime base = LocalDateTime.of(2025, 12, 24, 8, 0);
+        List<LogEntry> all = new ArrayList<>();
+        for (int i = 1; i <= 2500; i++) {
+            all.add(log(i, base.plusSeconds(i)));
+        }
+        // 模拟键集分页：返回ID大于afterId的前pageSize条
+        when(repository.findByIdGreaterThanOrderByIdAsc(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            Pageable pageable = invocation.getArgument(1);
+            return all.stream()
+                    .filter(entry -> entry.getId() > afterId)
+                    .limit(pageable.getPageSize())
+                    .collect(Collectors.toList());
+        });
+        CsvLogExporter exporter = new CsvLogExporter(null, repository, null);
+        Path output = tempDir.resolve("logs.csv.gz");
+
+        long count = exporter.exportAllFromRepository(output, true);
+
+        assertEquals(2500, count);
+        verify(repository, times(3)).findByIdGreaterThanOrderByIdAsc(anyLong(), any(Pageable.class));
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(output)), StandardCharsets.UTF_8))) {
+            List<String> lines = reader.lines().collect(Collectors.toList());
+            assertEquals(2501, lines.size());
+            assertEquals("2025,Dec,24,Wed,08:00:01,,,,,,ALLOW", lines.get(1));
+        }
+    }
+
+    private static LogEntry log(long id, LocalDateTime timestamp) {
+        LogEntry entry = new LogEntry(timestamp, null, null, null, AccessDecision.ALLOW, ReasonCode.ALLOW);
+        entry.setId(id);
+        return entry;
+    }
+}
@@ -7,6 +7,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -29,6 +33,7 @@ class CsvLogWriterTest {
         // 使用临时目录
         CsvLogWriter writer = new CsvLogWriter(tempDir);
         writer.write(entry);
+        writer.flush();
         
         // 验证文件路径
         Path expectedFile = tempDir.resolve("2025").resolve("Dec").resolve("24.csv");
@@ -53,6 +58,7 @@ class CsvLogWriterTest {
         
         CsvLogWriter writer = new CsvLogWriter(tempDir);
         writer.write(entry);
+        writer.flush();
         
         Path expectedFile = tempDir.resolve("2026").resolve("Jan").resolve("1.csv");
         assertTrue(Files.exists(expectedFile));
@@ -62,4 +68,72 @@ class CsvLogWriterTest {
         // 空字段应为空字符串
         assertTrue(csvLine.startsWith("2026,Jan,1,Thu,10:00:00,,,,"));
     }
-}
\ No newline at end of file
+    
+    @Test
+    void write_acrossMidnight_shouldRotateToNextDayFile() throws Exception {
+        LocalDateTime lateNight = LocalDateTime.of(2025, 12, 31, 23, 59, 59);
+        CsvLogWriter writer = new CsvLogWriter(tempDir);
+        writer.write(new LogEntry(lateNight, null, null, null, AccessDecision.ALLOW, ReasonCode.ALLOW));
+        writer.write(new LogEntry(lateNight.plusSeconds(1), null, null, null, AccessDecision.ALLOW, ReasonCode.ALLOW));
+        writer.write(new LogEntry(lateNight.plusSeconds(2), null, null, null, AccessDecision.DENY, ReasonCode.NO_PERMISSION));
+        writer.close();
+        
+        List<String> oldDay = Files.readAllLines(tempDir.resolve("2025").resolve("Dec").resolve("31.csv"));
+        List<String> newDay = Files.readAllLines(tempDir.resolve("2026").resolve("Jan").resolve("1.csv"));
+        assertEquals(1, oldDay.size());
+        assertEquals(2, newDay.size());
+        assertTrue(newDay.get(1).endsWith(",DENY"));
+    }
+    
+    @Test
+    void write_interleavedDays_shouldAppendEachLineToItsDayFile() throws Exception {
+        // 跨零点前后交错到达的行；第三天的文件会关闭最久未写入的文件，之后再写该日时追加而不是覆盖
+        LocalDateTime lateNight = LocalDateTime.of(2025, 12, 31, 23, 59, 58);
+        CsvLogWriter writer = new CsvLogWriter(tempDir);
+        writer.write(new LogEntry(lateNight, null, null, null, AccessDecision.ALLOW, ReasonCode.ALLOW));
+        writer.write(new LogEntry(lateNight.plusSeconds(3), null, null, null, AccessDecision.ALLOW, ReasonCode.ALLOW));
+        writer.write(new LogEntry(lateNight.plusSeconds(1), null, null, null, AccessDecision.DENY, ReasonCode.NO_PERMISSION));
+        writer.write(new LogEntry(lateNight.plusDays(1).plusSeconds(3), null, null, null, AccessDecision.ALLOW, ReasonCode.ALLOW));
+        writer.write(new LogEntry(lateNight.plusSeconds(4), null, null, null, AccessDecision.DENY, ReasonCode.NO_PERMISSION));
+        writer.write(new LogEntry(lateNight, null, null, null, AccessDecision.ALLOW, ReasonCode.ALLOW));
+        writer.close();
+
+        List<String> dec31 = Files.readAllLines(tempDir.resolve("2025").resolve("Dec").resolve("31.csv"));
+        List<String> jan1 = Files.readAllLines(tempDir.resolve("2026").resolve("Jan").resolve("1.csv"));
+        List<String> jan2 = Files.readAllLines(tempDir.resolve("2026").resolve("Jan").resolve("2.csv"));
+        assertEquals(3, dec31.size());
+        assertTrue(dec31.get(0).contains(",23:59:58,"));
+        assertTrue(dec31.get(1).endsWith(",DENY"));
+        assertTrue(dec31.get(2).contains(",23:59:58,"));
+        assertEquals(2, jan1.size());
+        assertTrue(jan1.get(1).endsWith(",DENY"));
+        assertEquals(1, jan2.size());
+    }
+
+    @Test
+    void write_concurrentProducers_shouldWriteEveryLineIntact() throws Exception {
+        LocalDateTime timestamp = LocalDateTime.of(2025, 12, 24, 9, 0, 0);
+        CsvLogWriter writer = new CsvLogWriter(tempDir);
+        int threads = 8;
+        int perThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    writer.write(new LogEntry(timestamp, null, null, null, AccessDecision.ALLOW, ReasonCode.ALLOW));
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        writer.flush();
+        
+        List<String> lines = Files.readAllLines(tempDir.resolve("2025").resolve("Dec").resolve("24.csv"));
+        assertEquals(threads * perThread, lines.size());
+        assertTrue(lines.stream().allMatch(line -> line.equals("2025,Dec,24,Wed,09:00:00,,,,,,ALLOW")));
+    }
+}
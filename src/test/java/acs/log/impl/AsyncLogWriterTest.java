@@ -0,0 +1,127 @@
+package acs.log.impl;
+
+import acs.domain.AccessDecision;
+import acs.domain.LogEntry;
+import acs.domain.ReasonCode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * AsyncLogWriter单元测试：写线程不启动，通过flush验证批量写入、逐条重试与背压策略。
+ */
+@ExtendWith(MockitoExtension.class)
+class AsyncLogWriterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void flush_shouldWritePendingLogsInBatches() {
+        AsyncLogWriter writer = new AsyncLogWriter(jdbcTemplate, 100, 2, 200, AsyncLogWriter.OverflowPolicy.CALLER_RUNS);
+        for (int i = 0; i < 5; i++) {
+            writer.submit(log());
+        }
+        assertEquals(5, writer.getPendingCount());
+
+        writer.flush();
+
+        // 5条日志按每批2条写入3次
+        verify(jdbcTemplate, times(3)).batchUpdate(any(PreparedStatementCreator.class),
+                any(BatchPreparedStatementSetter.class), any(KeyHolder.class));
+        assertEquals(0, writer.getPendingCount());
+        assertEquals(5, writer.getWrittenCount());
+    }
+
+    @Test
+    void flush_batchFailure_shouldRetryOneByOne() {
+        AsyncLogWriter writer = new AsyncLogWriter(jdbcTemplate, 100, 10, 200, AsyncLogWriter.OverflowPolicy.CALLER_RUNS);
+        when(jdbcTemplate.batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class),
+                any(KeyHolder.class)))
+                .thenThrow(new DataIntegrityViolationException("bad row"));
+        when(jdbcTemplate.update(any(PreparedStatementCreator.class), any(KeyHolder.class)))
+                .thenReturn(1)
+                .thenThrow(new DataIntegrityViolationException("bad row"))
+                .thenReturn(1);
+        writer.submit(log());
+        writer.submit(log());
+        writer.submit(log());
+
+        writer.flush();
+
+        assertEquals(2, writer.getWrittenCount());
+        assertEquals(1, writer.getFailedCount());
+    }
+
+    @Test
+    void submit_queueFull_dropPolicy_shouldCountDroppedLogs() {
+        AsyncLogWriter writer = new AsyncLogWriter(jdbcTemplate, 1, 10, 200, AsyncLogWriter.OverflowPolicy.DROP);
+        writer.submit(log());
+        writer.submit(log());
+
+        assertEquals(1, writer.getPendingCount());
+        assertEquals(1, writer.getDroppedCount());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void submit_queueFull_callerRunsPolicy_shouldWriteImmediately() {
+        AsyncLogWriter writer = new AsyncLogWriter(jdbcTemplate, 1, 10, 200, AsyncLogWriter.OverflowPolicy.CALLER_RUNS);
+        writer.submit(log());
+        writer.submit(log());
+
+        assertEquals(1, writer.getPendingCount());
+        assertEquals(1, writer.getWrittenCount());
+        verify(jdbcTemplate).batchUpdate(any(PreparedStatementCreator.class),
+                argThat((BatchPreparedStatementSetter setter) -> setter.getBatchSize() == 1), any(KeyHolder.class));
+    }
+
+    @Test
+    void flush_shouldApplyGeneratedKeysAndNotifyListeners() {
+        AsyncLogWriter writer = new AsyncLogWriter(jdbcTemplate, 100, 10, 200, AsyncLogWriter.OverflowPolicy.CALLER_RUNS);
+        AtomicLong nextKey = new AtomicLong(100);
+        when(jdbcTemplate.batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class),
+                any(KeyHolder.class)))
+                .thenAnswer(invocation -> {
+                    BatchPreparedStatementSetter setter = invocation.getArgument(1);
+                    KeyHolder keyHolder = invocation.getArgument(2);
+                    for (int i = 0; i < setter.getBatchSize(); i++) {
+                        keyHolder.getKeyList().add(Map.of("GENERATED_KEY", nextKey.getAndIncrement()));
+                    }
+                    return new int[setter.getBatchSize()];
+                });
+        List<LogEntry> persisted = new ArrayList<>();
+        writer.addPersistedListener(persisted::addAll);
+        LogEntry first = log();
+        LogEntry second = log();
+        writer.submit(first);
+        writer.submit(second);
+
+        writer.flush();
+
+        assertEquals(100L, first.getId());
+        assertEquals(101L, second.getId());
+        assertEquals(List.of(first, second), persisted);
+    }
+
+    private static LogEntry log() {
+        return new LogEntry(LocalDateTime.of(2024, 5, 1, 8, 0), null, null, null,
+                AccessDecision.ALLOW, ReasonCode.ALLOW);
+    }
+}
@@ -1,32 +1,36 @@
 package acs.service.impl;
 
 import acs.cache.LocalCacheManager;
+import acs.cache.PolicySnapshot;
+import acs.cache.PolicySnapshotHolder;
+import acs.cache.SiteZoneRegistry;
 import acs.domain.*;
 import acs.log.LogService;
-import acs.repository.ProfileRepository;
-import acs.repository.ResourceDependencyRepository;
-import acs.repository.AccessLogRepository;
-import acs.service.TimeFilterService;
 import acs.service.AccessLimitService;
-import acs.simulator.BadgeCodeUpdateService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.lang.reflect.Method;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -39,23 +43,17 @@ public class AccessControlServiceImplTest {
     @Mock
     private LocalCacheManager cacheManager;
 
-    @Mock
-    private ProfileRepository profileRepository;
-
-    @Mock
-    private TimeFilterService timeFilterService;
-
     @Mock
     private AccessLimitService accessLimitService;
 
-    @Mock
-    private ResourceDependencyRepository resourceDependencyRepository;
+    @Spy
+    private SiteZoneRegistry siteZones = new SiteZoneRegistry("UTC", "Tokyo Office=Asia/Tokyo");
 
     @Mock
-    private AccessLogRepository accessLogRepository;
+    private PolicySnapshotHolder policySnapshots;
 
-    @Mock
-    private BadgeCodeUpdateService badgeCodeUpdateService;
+    // 每个测试向构建器登记徽章、员工、资源等，决策时构建快照
+    private PolicySnapshot.Builder policy;
 
     @InjectMocks
     private AccessControlServiceImpl accessControlService;
@@ -71,11 +69,25 @@ public class AccessControlServiceImplTest {
         return request;
     }
 
+    // 任何时间都允许的时间表
+    private static ProfileSchedule alwaysSchedule(TimeFilter timeFilter) {
+        CompiledTimeFilter anyTime = new CompiledTimeFilter(CompiledTimeFilter.ANY_YEAR, CompiledTimeFilter.ALL_MONTHS,
+                CompiledTimeFilter.ALL_DAYS, null, null, new long[0], new long[0]);
+        return new ProfileSchedule(null, List.of(timeFilter), List.of(anyTime));
+    }
+
+    // 任何时间都不允许的时间表
+    private static ProfileSchedule neverSchedule() {
+        return new ProfileSchedule(null, List.of(), List.of());
+    }
+
     @BeforeEach
     void setUpDefaults() {
         when(accessLimitService.checkResourceLimits(any(), any(), any())).thenReturn(true);
-        when(profileRepository.findByEmployeesContaining(any())).thenReturn(Collections.emptyList());
-        when(profileRepository.findByBadgesContaining(any())).thenReturn(Collections.emptyList());
+        when(accessLimitService.reserve(any(), any(), any(), anyInt(), anyInt()))
+                .thenReturn(LimitReservation.held("EMP001", "RES001", LocalDateTime.now()));
+        policy = PolicySnapshot.builder(1);
+        when(policySnapshots.current()).thenAnswer(invocation -> policy.build());
     }
 
     @Test
@@ -95,7 +107,7 @@ public class AccessControlServiceImplTest {
     @Test
     void processAccess_badgeNotFound_shouldDeny() {
         AccessRequest request = createAccessRequest("BADGEMP001", "RES001");
-        when(cacheManager.getBadge("BADGEMP001")).thenReturn(null); // 徽章不存在
+        // 快照中没有该徽章
 
         AccessResult result = accessControlService.processAccess(request);
 
@@ -106,7 +118,7 @@ public class AccessControlServiceImplTest {
     @Test
     void processAccess_badgeInactive_shouldDeny() {
         Badge badge = new Badge("BADGEMP001", BadgeStatus.DISABLED); // 徽章未激活
-        when(cacheManager.getBadge("BADGEMP001")).thenReturn(badge);
+        policy.badge(badge);
 
         AccessRequest request = createAccessRequest("BADGEMP001", "RES001");
         AccessResult result = accessControlService.processAccess(request);
@@ -119,7 +131,7 @@ public class AccessControlServiceImplTest {
     void processAccess_badgeExpired_shouldDeny() {
         Badge badge = new Badge("BADGEXP001", BadgeStatus.ACTIVE);
         badge.setCodeExpirationDate(LocalDate.of(2024, 4, 30));
-        when(cacheManager.getBadge("BADGEXP001")).thenReturn(badge);
+        policy.badge(badge);
 
         AccessRequest request = createAccessRequest("BADGEXP001", "RES001");
         AccessResult result = accessControlService.processAccess(request);
@@ -132,9 +144,8 @@ public class AccessControlServiceImplTest {
     void processAccess_badgeUpdateRequired_shouldDeny() {
         Badge badge = new Badge("BADGEUPD001", BadgeStatus.ACTIVE);
         badge.setCodeExpirationDate(LocalDate.of(2024, 12, 31));
-        when(cacheManager.getBadge("BADGEUPD001")).thenReturn(badge);
-        when(badgeCodeUpdateService.evaluateBadgeUpdateStatus(eq("BADGEUPD001"), any(Instant.class)))
-                .thenReturn(BadgeUpdateStatus.UPDATE_REQUIRED);
+        badge.setNeedsUpdate(true);
+        policy.badge(badge);
 
         AccessRequest request = createAccessRequest("BADGEUPD001", "RES001");
         AccessResult result = accessControlService.processAccess(request);
@@ -147,9 +158,9 @@ public class AccessControlServiceImplTest {
     void processAccess_badgeUpdateOverdue_shouldDeny() {
         Badge badge = new Badge("BADGEUPD002", BadgeStatus.ACTIVE);
         badge.setCodeExpirationDate(LocalDate.of(2024, 12, 31));
-        when(cacheManager.getBadge("BADGEUPD002")).thenReturn(badge);
-        when(badgeCodeUpdateService.evaluateBadgeUpdateStatus(eq("BADGEUPD002"), any(Instant.class)))
-                .thenReturn(BadgeUpdateStatus.UPDATE_OVERDUE);
+        badge.setNeedsUpdate(true);
+        badge.setUpdateDueDate(LocalDate.of(2024, 4, 20));
+        policy.badge(badge);
 
         AccessRequest request = createAccessRequest("BADGEUPD002", "RES001");
         AccessResult result = accessControlService.processAccess(request);
@@ -163,8 +174,7 @@ public class AccessControlServiceImplTest {
     void processAccess_employeeNotFound_shouldDeny() {
         Badge badge = new Badge("BADGEMP001", BadgeStatus.ACTIVE);
         badge.setEmployee(new Employee("EMP001", "Test")); // 员工ID存在但缓存中无数据
-        when(cacheManager.getBadge("BADGEMP001")).thenReturn(badge);
-        when(cacheManager.getEmployee("EMP001")).thenReturn(null);
+        policy.badge(badge);
 
         AccessRequest request = createAccessRequest("BADGEMP001", "RES001");
         AccessResult result = accessControlService.processAccess(request);
@@ -180,9 +190,9 @@ public class AccessControlServiceImplTest {
         Badge badge = new Badge("BADGEMP001", BadgeStatus.ACTIVE);
         badge.setEmployee(employee);
 
-        when(cacheManager.getBadge("BADGEMP001")).thenReturn(badge);
-        when(cacheManager.getEmployee("EMP001")).thenReturn(employee);
-        when(cacheManager.getResource("RES001")).thenReturn(null); // 资源不存在
+        policy.badge(badge);
+        policy.employee(employee);
+        // 快照中没有资源RES001
 
         AccessRequest request = createAccessRequest("BADGEMP001", "RES001");
         AccessResult result = accessControlService.processAccess(request);
@@ -200,15 +210,37 @@ public class AccessControlServiceImplTest {
         Badge badge = new Badge("BADGEMP001", BadgeStatus.ACTIVE);
         badge.setEmployee(employee);
 
-        when(cacheManager.getBadge("BADGEMP001")).thenReturn(badge);
-        when(cacheManager.getEmployee("EMP001")).thenReturn(employee);
-        when(cacheManager.getResource("RES001")).thenReturn(resource);
+        policy.badge(badge);
+        policy.employee(employee);
+        policy.resource(resource);
+
+        AccessRequest request = createAccessRequest("BADGEMP001", "RES001");
+        AccessResult result = accessControlService.processAccess(request);
+
+        assertEquals(AccessDecision.DENY, result.getDecision());
+        assertEquals(ReasonCode.NO_PERMISSION, result.getReasonCode());
+    }
+
+    @Test
+    void processAccess_groupWithoutResource_shouldDeny() {
+        // 准备测试数据（员工有组，但权限索引中该组未授权此资源）
+        Resource resource = new Resource("RES001", "Door", ResourceType.DOOR, ResourceState.AVAILABLE);
+        Group group = new Group("GROUP001", "Visitor");
+        Employee employee = new Employee("EMP001", "Test");
+        employee.setGroups(Collections.singleton(group));
+        Badge badge = new Badge("BADGEMP001", BadgeStatus.ACTIVE);
+        badge.setEmployee(employee);
+
+        policy.badge(badge);
+        policy.employee(employee);
+        policy.resource(resource);
 
         AccessRequest request = createAccessRequest("BADGEMP001", "RES001");
         AccessResult result = accessControlService.processAccess(request);
 
         assertEquals(AccessDecision.DENY, result.getDecision());
         assertEquals(ReasonCode.NO_PERMISSION, result.getReasonCode());
+        assertEquals("No permission to access this resource", result.getMessage());
     }
 
     @Test
@@ -222,9 +254,10 @@ public class AccessControlServiceImplTest {
         Badge badge = new Badge("BADGEMP001", BadgeStatus.ACTIVE);
         badge.setEmployee(employee);
 
-        when(cacheManager.getBadge("BADGEMP001")).thenReturn(badge);
-        when(cacheManager.getEmployee("EMP001")).thenReturn(employee);
-        when(cacheManager.getResource("RES001")).thenReturn(resource);
+        policy.badge(badge);
+        policy.employee(employee);
+        policy.resource(resource);
+        policy.permission("EMP001", "RES001");
 
         AccessRequest request = createAccessRequest("BADGEMP001", "RES001");
         AccessResult result = accessControlService.processAccess(request);
@@ -244,15 +277,13 @@ public class AccessControlServiceImplTest {
         Badge badge = new Badge("BADGEMP001", BadgeStatus.ACTIVE);
         badge.setEmployee(employee);
 
-        when(cacheManager.getBadge("BADGEMP001")).thenReturn(badge);
-        when(cacheManager.getEmployee("EMP001")).thenReturn(employee);
-        when(cacheManager.getResource("RES001")).thenReturn(resource);
+        policy.badge(badge);
+        policy.employee(employee);
+        policy.resource(resource);
         // 模拟时间过滤器检查（资源未受控或没有时间过滤器）
         resource.setIsControlled(false); // 确保不检查时间过滤器
         // 模拟访问限制检查通过
         when(accessLimitService.checkAllLimits(eq(employee), any(Instant.class))).thenReturn(true);
-        // 模拟资源依赖关系检查通过（无依赖）
-        when(resourceDependencyRepository.findByResourceResourceId("RES001")).thenReturn(Collections.emptyList());
 
         AccessRequest request = createAccessRequest("BADGEMP001", "RES001");
         AccessResult result = accessControlService.processAccess(request);
@@ -266,6 +297,33 @@ public class AccessControlServiceImplTest {
         LogEntry recordedLog = logCaptor.getValue();
         assertEquals(AccessDecision.ALLOW, recordedLog.getDecision());
         assertEquals(badge, recordedLog.getBadge());
+        // 验证访问计数已递增
+        verify(accessLimitService).recordAccess(employee, resource, testInstant);
+    }
+
+    @Test
+    void processAccess_resourceInOtherSite_shouldUseSiteLocalTime() {
+        Resource resource = new Resource("RES_TYO", "Tokyo Door", ResourceType.DOOR, ResourceState.AVAILABLE);
+        resource.setBuilding("Tokyo Office");
+        resource.setIsControlled(false);
+        Employee employee = new Employee("EMP001", "Test");
+        Badge badge = new Badge("BADGEMP001", BadgeStatus.ACTIVE);
+        badge.setEmployee(employee);
+        // 2024-05-01T20:00Z 在东京已是5月2日：5月1日到期的徽章应被拒绝；日志时间仍使用服务器时区
+        badge.setCodeExpirationDate(LocalDate.of(2024, 5, 1));
+        policy.badge(badge);
+        policy.employee(employee);
+        policy.resource(resource);
+
+        AccessRequest request = createAccessRequest("BADGEMP001", "RES_TYO");
+        request.setTimestamp(Instant.parse("2024-05-01T20:00:00Z"));
+        AccessResult result = accessControlService.processAccess(request);
+
+        assertEquals(ReasonCode.BADGE_EXPIRED, result.getReasonCode());
+        ArgumentCaptor<LogEntry> logCaptor = ArgumentCaptor.forClass(LogEntry.class);
+        verify(logService).record(logCaptor.capture());
+        assertEquals(LocalDateTime.ofInstant(Instant.parse("2024-05-01T20:00:00Z"), ZoneId.systemDefault()),
+                logCaptor.getValue().getTimestamp());
     }
 
     @Test
@@ -281,9 +339,10 @@ public class AccessControlServiceImplTest {
         badge.setEmployee(employee);
 
         // 模拟缓存
-        when(cacheManager.getBadge("BADGEMP001")).thenReturn(badge);
-        when(cacheManager.getEmployee("EMP001")).thenReturn(employee);
-        when(cacheManager.getResource("RES001")).thenReturn(resource);
+        policy.badge(badge);
+        policy.employee(employee);
+        policy.resource(resource);
+        policy.permission("EMP001", "RES001");
 
         // 模拟配置文件：激活的配置文件关联到组，并包含时间过滤器
         Profile profile = new Profile("PROF001", "Test Profile", "Test");
@@ -298,16 +357,14 @@ public class AccessControlServiceImplTest {
         profile.setTimeFilters(Collections.singleton(timeFilter));
         profile.setGroups(Collections.singleton(group));
 
-        // 模拟profileRepository返回此配置文件
-        when(profileRepository.findByGroupsContaining(group)).thenReturn(Collections.singletonList(profile));
+        // 快照中该徽章生效此配置文件
+        policy.profiles("BADGEMP001", Collections.singletonList(profile));
 
-        // 模拟时间过滤器服务：不匹配当前时间（测试时间是2024-05-01T12:00:00Z）
-        when(timeFilterService.matchesAny(anyList(), any())).thenReturn(false);
+        // 快照中编译的时间表不匹配当前时间（测试时间是2024-05-01T12:00:00Z）
+        policy.schedule("PROF001", neverSchedule());
 
         // 模拟访问限制检查通过
         when(accessLimitService.checkAllLimits(eq(employee), any(Instant.class))).thenReturn(true);
-        // 模拟资源依赖关系检查通过
-        when(resourceDependencyRepository.findByResourceResourceId("RES001")).thenReturn(Collections.emptyList());
 
         AccessRequest request = createAccessRequest("BADGEMP001", "RES001");
         AccessResult result = accessControlService.processAccess(request);
@@ -331,9 +388,10 @@ public class AccessControlServiceImplTest {
         Badge badge = new Badge("BADGEMP001", BadgeStatus.ACTIVE);
         badge.setEmployee(employee);
 
-        when(cacheManager.getBadge("BADGEMP001")).thenReturn(badge);
-        when(cacheManager.getEmployee("EMP001")).thenReturn(employee);
-        when(cacheManager.getResource("RES001")).thenReturn(resource);
+        policy.badge(badge);
+        policy.employee(employee);
+        policy.resource(resource);
+        policy.permission("EMP001", "RES001");
 
         Profile profile = new Profile("PROF001", "Test Profile", "Test");
         profile.setIsActive(true);
@@ -342,21 +400,128 @@ public class AccessControlServiceImplTest {
         profile.setTimeFilters(Collections.singleton(timeFilter));
         profile.setGroups(Collections.singleton(group));
 
-        when(profileRepository.findByGroupsContaining(group)).thenReturn(Collections.singletonList(profile));
-        // 模拟时间过滤器服务：匹配当前时间
-        when(timeFilterService.matchesAny(anyList(), any())).thenReturn(true);
+        policy.profiles("BADGEMP001", Collections.singletonList(profile));
+        // 快照中编译的时间表匹配当前时间
+        policy.schedule("PROF001", alwaysSchedule(timeFilter));
 
         when(accessLimitService.checkAllLimits(eq(employee), any(Instant.class))).thenReturn(true);
-        when(resourceDependencyRepository.findByResourceResourceId("RES001")).thenReturn(Collections.emptyList());
 
         AccessRequest request = createAccessRequest("BADGEMP001", "RES001");
         AccessResult result = accessControlService.processAccess(request);
 
         assertEquals(AccessDecision.ALLOW, result.getDecision());
         assertEquals(ReasonCode.ALLOW, result.getReasonCode());
+        // 受控资源放行时提交预占的名额，而不是再次计数
+        verify(accessLimitService).commit(any(LimitReservation.class));
+        verify(accessLimitService, never()).recordAccess(any(), any(), any());
         verify(logService).record(any(LogEntry.class));
     }
 
+    @Test
+    void processAccess_limitReached_shouldDenyWithoutCommit() {
+        Resource resource = new Resource("RES001", "Gym", ResourceType.DOOR, ResourceState.AVAILABLE);
+        resource.setIsControlled(true);
+        Group group = new Group("GROUP001", "Staff");
+        group.setResources(Collections.singleton(resource));
+        Employee employee = new Employee("EMP001", "Test");
+        employee.setGroups(Collections.singleton(group));
+        Badge badge = new Badge("BADGEMP001", BadgeStatus.ACTIVE);
+        badge.setEmployee(employee);
+
+        policy.badge(badge);
+        policy.employee(employee);
+        policy.resource(resource);
+        policy.permission("EMP001", "RES001");
+        // 模拟名额已用完
+        when(accessLimitService.reserve(eq(employee), eq(resource), any(), anyInt(), anyInt())).thenReturn(LimitReservation.denied());
+
+        AccessResult result = accessControlService.processAccess(createAccessRequest("BADGEMP001", "RES001"));
+
+        assertEquals(AccessDecision.DENY, result.getDecision());
+        assertTrue(result.getMessage().contains("limit exceeded"));
+        verify(accessLimitService, never()).commit(any());
+        verify(accessLimitService, never()).recordAccess(any(), any(), any());
+    }
+
+    @Test
+    void processAccess_profileLimit_shouldReserveWithSnapshotLimits() {
+        Resource resource = new Resource("RES001", "Gym", ResourceType.DOOR, ResourceState.AVAILABLE);
+        resource.setIsControlled(true);
+        Group group = new Group("GROUP001", "Staff");
+        Employee employee = new Employee("EMP001", "Test");
+        employee.setGroups(Collections.singleton(group));
+        Badge badge = new Badge("BADGEMP001", BadgeStatus.ACTIVE);
+        badge.setEmployee(employee);
+        Profile profile = new Profile("PROF001", "Test Profile", "Test");
+        profile.setPriorityLevel(1);
+
+        policy.badge(badge);
+        policy.employee(employee);
+        policy.resource(resource);
+        policy.permission("EMP001", "RES001");
+        policy.profiles("BADGEMP001", Collections.singletonList(profile));
+        policy.limit("PROF001", "RES001", 2, 10);
+
+        AccessResult result = accessControlService.processAccess(createAccessRequest("BADGEMP001", "RES001"));
+
+        assertEquals(AccessDecision.ALLOW, result.getDecision());
+        // 限制取自快照，预占时不再按员工重新解析配置文件
+        verify(accessLimitService).reserve(employee, resource, testInstant, 2, 10);
+        verify(accessLimitService, never()).reserve(any(), any(), any());
+    }
+
+    @Test
+    void processAccess_prerequisiteMissing_shouldRollbackReservation() {
+        Resource resource = new Resource("RES001", "Lab", ResourceType.DOOR, ResourceState.AVAILABLE);
+        resource.setIsControlled(true);
+        Resource lobby = new Resource("RES000", "Lobby", ResourceType.DOOR, ResourceState.AVAILABLE);
+        Group group = new Group("GROUP001", "Staff");
+        group.setResources(Collections.singleton(resource));
+        Employee employee = new Employee("EMP001", "Test");
+        employee.setGroups(Collections.singleton(group));
+        Badge badge = new Badge("BADGEMP001", BadgeStatus.ACTIVE);
+        badge.setEmployee(employee);
+
+        policy.badge(badge);
+        policy.employee(employee);
+        policy.resource(resource);
+        policy.permission("EMP001", "RES001");
+        LimitReservation reservation = LimitReservation.held("EMP001", "RES001", LocalDateTime.now());
+        when(accessLimitService.reserve(eq(employee), eq(resource), any(), anyInt(), anyInt())).thenReturn(reservation);
+        // 依赖大厅的先决访问，但没有对应的访问记录
+        policy.dependency(resource.getResourceId(), lobby.getResourceId(), 30);
+        when(cacheManager.hasAllowedAccess(eq("EMP001"), eq("RES000"), any(), any())).thenReturn(false);
+
+        AccessResult result = accessControlService.processAccess(createAccessRequest("BADGEMP001", "RES001"));
+
+        assertEquals(AccessDecision.DENY, result.getDecision());
+        verify(accessLimitService).rollback(reservation);
+        verify(accessLimitService, never()).commit(any());
+    }
+
+    @Test
+    void processAccess_prerequisiteWithinWindow_shouldAllow() {
+        Resource resource = new Resource("RES001", "Server Room", ResourceType.DOOR, ResourceState.AVAILABLE);
+        resource.setIsControlled(true);
+        Employee employee = new Employee("EMP001", "Test");
+        employee.setGroups(Collections.singleton(new Group("GROUP001", "Ops")));
+        Badge badge = new Badge("BADGEMP001", BadgeStatus.ACTIVE);
+        badge.setEmployee(employee);
+        policy.badge(badge);
+        policy.employee(employee);
+        policy.resource(resource);
+        policy.permission("EMP001", "RES001");
+        policy.dependency("RES001", "RES000", 30);
+        // 30分钟窗口：测试时间为12:00（UTC），应查询[11:30, 12:00]内的放行
+        when(cacheManager.hasAllowedAccess("EMP001", "RES000",
+                LocalDateTime.of(2024, 5, 1, 11, 30), LocalDateTime.of(2024, 5, 1, 12, 0))).thenReturn(true);
+
+        AccessResult result = accessControlService.processAccess(createAccessRequest("BADGEMP001", "RES001"));
+
+        assertEquals(AccessDecision.ALLOW, result.getDecision());
+        verify(cacheManager, never()).getLogsByEmployee(any(), any(), any());
+    }
+
     @Test
     void processAccess_resourceNotControlled_shouldIgnoreTimeFilter() {
         // 准备测试数据：资源不受时间控制，即使有时间过滤器也应允许访问
@@ -369,9 +534,9 @@ public class AccessControlServiceImplTest {
         Badge badge = new Badge("BADGEMP001", BadgeStatus.ACTIVE);
         badge.setEmployee(employee);
 
-        when(cacheManager.getBadge("BADGEMP001")).thenReturn(badge);
-        when(cacheManager.getEmployee("EMP001")).thenReturn(employee);
-        when(cacheManager.getResource("RES001")).thenReturn(resource);
+        policy.badge(badge);
+        policy.employee(employee);
+        policy.resource(resource);
 
         // 即使存在配置文件和时间过滤器，资源不受控时应跳过时间检查
         Profile profile = new Profile("PROF001", "Test Profile", "Test");
@@ -381,21 +546,94 @@ public class AccessControlServiceImplTest {
         profile.setTimeFilters(Collections.singleton(timeFilter));
         profile.setGroups(Collections.singleton(group));
 
-        when(profileRepository.findByGroupsContaining(group)).thenReturn(Collections.singletonList(profile));
-        // 时间过滤器服务不应被调用，因为资源不受控
-        // 但我们仍然模拟它，如果被调用则返回false（确保测试失败如果被调用）
-        when(timeFilterService.matchesAny(anyList(), any())).thenReturn(false);
+        policy.profiles("BADGEMP001", Collections.singletonList(profile));
+        // 时间表任何时间都不允许；资源不受控时不应检查（检查了就会拒绝）
+        policy.schedule("PROF001", neverSchedule());
 
         when(accessLimitService.checkAllLimits(eq(employee), any(Instant.class))).thenReturn(true);
-        when(resourceDependencyRepository.findByResourceResourceId("RES001")).thenReturn(Collections.emptyList());
 
         AccessRequest request = createAccessRequest("BADGEMP001", "RES001");
         AccessResult result = accessControlService.processAccess(request);
 
         assertEquals(AccessDecision.ALLOW, result.getDecision());
         assertEquals(ReasonCode.ALLOW, result.getReasonCode());
-        // 验证时间过滤器服务未被调用（因为资源不受控）
-        verify(timeFilterService, never()).matchesAny(anyList(), any());
         verify(logService).record(any(LogEntry.class));
     }
+
+    @Test
+    void processAccessBatch_shouldReturnResultsInOrderAndRecordLogsOnce() {
+        Resource resource = new Resource("RES001", "Door", ResourceType.DOOR, ResourceState.AVAILABLE);
+        resource.setIsControlled(false);
+        Employee employee = new Employee("EMP001", "Test");
+        Badge badge = new Badge("BADGEMP001", BadgeStatus.ACTIVE);
+        badge.setEmployee(employee);
+        policy.badge(badge);
+        policy.employee(employee);
+        policy.resource(resource);
+
+        List<AccessResult> results = accessControlService.processAccessBatch(Arrays.asList(
+                createAccessRequest("BADGEMP001", "RES001"),
+                createAccessRequest("UNKNOWN", "RES001"),
+                createAccessRequest("BADGEMP001", "RES001")));
+
+        assertEquals(3, results.size());
+        assertEquals(AccessDecision.ALLOW, results.get(0).getDecision());
+        assertEquals(ReasonCode.BADGE_NOT_FOUND, results.get(1).getReasonCode());
+        assertEquals(AccessDecision.ALLOW, results.get(2).getDecision());
+        // 整批日志一次写入，顺序与请求相同
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<LogEntry>> logsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(logService).recordAll(logsCaptor.capture());
+        verify(logService, never()).record(any());
+        assertEquals(3, logsCaptor.getValue().size());
+        assertEquals(ReasonCode.BADGE_NOT_FOUND, logsCaptor.getValue().get(1).getReasonCode());
+        verify(policySnapshots, times(1)).current();
+    }
+
+    @Test
+    void processAccessBatch_prerequisiteGrantedEarlierInBatch_shouldAllow() {
+        Resource lobby = new Resource("RES000", "Lobby", ResourceType.DOOR, ResourceState.AVAILABLE);
+        lobby.setIsControlled(false);
+        Resource lab = new Resource("RES001", "Lab", ResourceType.DOOR, ResourceState.AVAILABLE);
+        lab.setIsControlled(true);
+        Group group = new Group("GROUP001", "Staff");
+        Employee employee = new Employee("EMP001", "Test");
+        employee.setGroups(Collections.singleton(group));
+        Badge badge = new Badge("BADGEMP001", BadgeStatus.ACTIVE);
+        badge.setEmployee(employee);
+        policy.badge(badge);
+        policy.employee(employee);
+        policy.resource(lobby);
+        policy.resource(lab);
+        policy.permission("EMP001", "RES001");
+        policy.dependency("RES001", "RES000", 30);
+        when(cacheManager.hasAllowedAccess(eq("EMP001"), eq("RES000"), any(), any())).thenReturn(false);
+
+        AccessRequest enterLab = createAccessRequest("BADGEMP001", "RES001");
+        AccessRequest enterLobby = createAccessRequest("BADGEMP001", "RES000");
+        AccessRequest enterLabAgain = createAccessRequest("BADGEMP001", "RES001");
+        enterLabAgain.setTimestamp(testInstant.plusSeconds(60));
+        List<AccessResult> results = accessControlService.processAccessBatch(
+                Arrays.asList(enterLab, enterLobby, enterLabAgain));
+
+        // 第一次进实验室时尚未经过大厅；批内放行的大厅记录尚未写入日志缓存，但对之后的请求可见
+        assertEquals(AccessDecision.DENY, results.get(0).getDecision());
+        assertEquals(AccessDecision.ALLOW, results.get(1).getDecision());
+        assertEquals(AccessDecision.ALLOW, results.get(2).getDecision());
+        // 先决访问只查最近放行时间，不按时间范围读取日志
+        verify(cacheManager, never()).getLogsByEmployee(any(), any(), any());
+    }
+
+    @Test
+    void processAccess_shouldNotHoldTransaction() throws Exception {
+        // 判定只读取内存状态，事务会在整个判定期间占用一个数据库连接
+        for (String name : new String[]{"processAccess", "processAccessBatch"}) {
+            for (Method method : AccessControlServiceImpl.class.getMethods()) {
+                if (method.getName().equals(name)) {
+                    assertNull(method.getAnnotation(Transactional.class), name);
+                }
+            }
+        }
+        assertNull(AccessControlServiceImpl.class.getAnnotation(Transactional.class));
+    }
 }
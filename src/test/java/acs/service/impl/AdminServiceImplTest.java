@@ -7,6 +7,7 @@ import acs.repository.EmployeeRepository;
 import acs.repository.GroupRepository;
 import acs.repository.ProfileRepository;
 import acs.repository.ResourceRepository;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -43,6 +44,14 @@ public class AdminServiceImplTest {
     @InjectMocks
     private AdminServiceImpl adminService;
 
+    @BeforeEach
+    void runBatchedCacheChanges() {
+        lenient().doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(cacheManager).batchChanges(any());
+    }
+
     @Test
     void registerEmployee_success() {
         String employeeId = "E001";
@@ -126,6 +135,8 @@ public class AdminServiceImplTest {
         verify(groupRepository).save(group);
         verify(cacheManager).updateEmployee(employee);
         verify(cacheManager).updateGroup(group);
+        // 员工和组的变化一次发布
+        verify(cacheManager).batchChanges(any());
     }
 
     @Test
@@ -1,5 +1,6 @@
 package acs.service.impl;
 
+import acs.cache.EffectiveProfileResolver;
 import acs.cache.LocalCacheManager;
 import acs.domain.LogEntry;
 import acs.domain.Badge;
@@ -8,9 +9,14 @@ import acs.domain.Resource;
 import acs.domain.ResourceState;
 import acs.domain.ResourceType;
 import acs.domain.AccessDecision;
+import acs.repository.AccessLogRepository;
+import acs.repository.BadgeRepository;
+import acs.repository.EmployeeRepository;
+import acs.repository.GroupRepository;
+import acs.repository.ResourceRepository;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -22,21 +28,43 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class LogQueryServiceImplTest {
 
+    // 使用真实的LocalCacheManager（仓库为mock），验证日志倒排索引的查询结果
     @Mock
-    private LocalCacheManager cacheManager;
+    private BadgeRepository badgeRepository;
+    @Mock
+    private EmployeeRepository employeeRepository;
+    @Mock
+    private GroupRepository groupRepository;
+    @Mock
+    private ResourceRepository resourceRepository;
+    @Mock
+    private AccessLogRepository accessLogRepository;
+    @Mock
+    private EffectiveProfileResolver profileResolver;
 
-    @InjectMocks
+    private LocalCacheManager cacheManager;
     private LogQueryServiceImpl logQueryService;
 
     private final ZoneId zoneId = ZoneId.systemDefault();
     private final Instant baseInstant = Instant.parse("2024-05-01T12:00:00Z");
     private final LocalDateTime baseTime = LocalDateTime.ofInstant(baseInstant, zoneId);
 
+    @BeforeEach
+    void setUp() {
+        cacheManager = new LocalCacheManager(badgeRepository, employeeRepository, groupRepository,
+                resourceRepository, accessLogRepository, profileResolver);
+        logQueryService = new LogQueryServiceImpl(cacheManager);
+    }
+
+    // 将日志写入缓存
+    private void givenCachedLogs(List<LogEntry> logs) {
+        logs.forEach(cacheManager::updateLog);
+    }
+
     // 构建测试用日志条目
     private LogEntry createLogEntry(String badgeId, String employeeId, String resourceId, 
                                    AccessDecision decision, LocalDateTime timestamp) {
@@ -56,7 +84,7 @@ public class LogQueryServiceImplTest {
         LogEntry log4 = createLogEntry("BADGEMP001", "EMP001", "RES003", AccessDecision.ALLOW, baseTime.minus(1, ChronoUnit.HOURS)); // 时间范围外
 
         List<LogEntry> allLogs = Arrays.asList(log1, log2, log3, log4);
-        when(cacheManager.getLogs()).thenReturn(allLogs);
+        givenCachedLogs(allLogs);
 
         // 执行测试
         Instant from = baseInstant;
@@ -78,7 +106,7 @@ public class LogQueryServiceImplTest {
         LogEntry log3 = createLogEntry("BADGEMP001", "EMP002", "RES001", AccessDecision.ALLOW, baseTime); // 不同员工
 
         List<LogEntry> allLogs = Arrays.asList(log1, log2, log3);
-        when(cacheManager.getLogs()).thenReturn(allLogs);
+        givenCachedLogs(allLogs);
 
         // 执行测试
         Instant from = baseInstant;
@@ -98,7 +126,7 @@ public class LogQueryServiceImplTest {
         LogEntry log3 = createLogEntry("BADGEMP001", "EMP001", "RES002", AccessDecision.ALLOW, baseTime); // 不同资源
 
         List<LogEntry> allLogs = Arrays.asList(log1, log2, log3);
-        when(cacheManager.getLogs()).thenReturn(allLogs);
+        givenCachedLogs(allLogs);
 
         // 执行测试
         Instant from = baseInstant;
@@ -118,7 +146,7 @@ public class LogQueryServiceImplTest {
         LogEntry log3 = createLogEntry("BADGEMP001", "EMP001", "RES003", AccessDecision.ALLOW, baseTime); // 允许访问
 
         List<LogEntry> allLogs = Arrays.asList(log1, log2, log3);
-        when(cacheManager.getLogs()).thenReturn(allLogs);
+        givenCachedLogs(allLogs);
 
         // 执行测试
         Instant from = baseInstant;
@@ -1,6 +1,13 @@
 package acs.service.impl;
 
+import acs.cache.HolidayCalendarCache;
+import acs.domain.CompiledTimeFilter;
+import acs.domain.HolidayCalendar;
+import acs.domain.Profile;
+import acs.domain.ProfileSchedule;
 import acs.domain.TimeFilter;
+import acs.domain.TimeFilterEvaluation;
+import acs.domain.TimeRuleImportResult;
 import acs.repository.TimeFilterRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,14 +17,25 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.quality.Strictness;
 import org.mockito.junit.jupiter.MockitoSettings;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementSetter;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.Month;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
 
 /**
  * 测试时间过滤器服务实现，验证PDF示例规则。
@@ -29,13 +47,24 @@ class TimeFilterServiceImplTest {
     @Mock
     private TimeFilterRepository timeFilterRepository;
 
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private HolidayCalendarCache holidayCalendarCache;
+
     @InjectMocks
     private TimeFilterServiceImpl timeFilterService;
 
+    private final Map<String, HolidayCalendar> calendars = new HashMap<>();
+
     @BeforeEach
     void setUp() {
         // 模拟保存操作
         when(timeFilterRepository.save(any(TimeFilter.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        // 同名日历返回同一实例，与注册表行为一致
+        when(holidayCalendarCache.getCalendar(anyString())).thenAnswer(invocation ->
+                calendars.computeIfAbsent(invocation.getArgument(0), HolidayCalendar::new));
     }
 
     @Test
@@ -238,6 +267,321 @@ class TimeFilterServiceImplTest {
         assertFalse(timeFilterService.matches(filter, notMatching3));
     }
 
+    @Test
+    void compile_shouldProduceMonthAndWeekdayMasks() {
+        TimeFilter filter = timeFilterService.parseTimeRule("2026.EXCEPT June,July,August.Monday-Friday.ALL");
+        CompiledTimeFilter compiled = filter.getCompiled();
+
+        assertNotNull(compiled);
+        assertEquals(2026, compiled.getYear());
+        // 排除6、7、8月（bit5-bit7）
+        assertEquals(CompiledTimeFilter.ALL_MONTHS & ~(0b111 << 5), compiled.getMonthMask());
+        // 星期一至星期五（bit0-bit4）
+        assertEquals(0b11111, compiled.getDayOfWeekMask());
+    }
+
+    @Test
+    void matches_rangeEnd_shouldBeInclusiveToTheMinute() {
+        TimeFilter filter = timeFilterService.parseTimeRule("ALL.ALL.ALL.14:00-17:00,8:00-12:00");
+
+        assertTrue(timeFilterService.matches(filter, LocalDateTime.of(2025, Month.MAY, 5, 12, 0)));
+        assertFalse(timeFilterService.matches(filter, LocalDateTime.of(2025, Month.MAY, 5, 12, 0, 1)));
+        assertTrue(timeFilterService.matches(filter, LocalDateTime.of(2025, Month.MAY, 5, 14, 0)));
+        assertFalse(timeFilterService.matches(filter, LocalDateTime.of(2025, Month.MAY, 5, 7, 59)));
+    }
+
+    @Test
+    void matches_afterFieldChange_shouldRecompile() {
+        TimeFilter filter = timeFilterService.parseTimeRule("ALL.ALL.Monday-Friday.ALL");
+        LocalDateTime saturday = LocalDateTime.of(2025, Month.MAY, 10, 10, 0);
+        assertFalse(timeFilterService.matches(filter, saturday));
+
+        filter.setDaysOfWeek("6,7");
+        assertNull(filter.getCompiled());
+        assertTrue(timeFilterService.matches(filter, saturday));
+        assertNotNull(filter.getCompiled());
+    }
+
+    @Test
+    void matches_legacyStartEndTime_shouldBeUsedWithoutTimeRanges() {
+        TimeFilter filter = new TimeFilter("TF_LEGACY", "Legacy", null);
+        filter.setStartTime(java.time.LocalTime.of(9, 0));
+        filter.setEndTime(java.time.LocalTime.of(17, 0));
+
+        assertTrue(timeFilterService.matches(filter, LocalDateTime.of(2025, Month.MAY, 5, 9, 0)));
+        assertFalse(timeFilterService.matches(filter, LocalDateTime.of(2025, Month.MAY, 5, 17, 30)));
+    }
+
+    @Test
+    void matchesProfile_shouldAgreeWithMatchesAnyAcrossTheWeek() {
+        List<TimeFilter> filters = List.of(
+                timeFilterService.parseTimeRule("ALL.ALL.Monday-Friday.8:00-12:00,14:00-17:00"),
+                timeFilterService.parseTimeRule("ALL.EXCEPT July,August.Saturday.EXCEPT 0:00-9:59"),
+                timeFilterService.parseTimeRule("2025.May.Sunday.22:00-23:30"));
+        Profile profile = new Profile("PROFILE_SHIFTS", "Shifts", "Contractor shifts");
+        profile.setTimeFilters(new HashSet<>(filters));
+
+        // 2025-05-05是星期一，逐30秒检查一周（覆盖整分时刻和区间端点）
+        LocalDateTime start = LocalDateTime.of(2025, Month.MAY, 5, 0, 0);
+        for (int step = 0; step < 7 * 24 * 120; step++) {
+            LocalDateTime time = start.plusSeconds(step * 30L);
+            assertEquals(timeFilterService.matchesAny(filters, time), timeFilterService.matchesProfile(profile, time),
+                    "mismatch at " + time);
+        }
+        assertNotNull(profile.getSchedule());
+        assertEquals(3, profile.getSchedule().getFilterCount());
+    }
+
+    @Test
+    void matchesProfile_afterRuleChange_shouldRebuildSchedule() {
+        TimeFilter filter = timeFilterService.parseTimeRule("ALL.ALL.Monday-Friday.8:00-12:00");
+        Profile profile = new Profile("PROFILE_DAY", "Day", "Day shift");
+        profile.setTimeFilters(new HashSet<>(List.of(filter)));
+        LocalDateTime afternoon = LocalDateTime.of(2025, Month.MAY, 5, 15, 0);
+        assertFalse(timeFilterService.matchesProfile(profile, afternoon));
+        ProfileSchedule first = profile.getSchedule();
+
+        filter.setTimeRanges("13:00-18:00");
+        assertTrue(timeFilterService.matchesProfile(profile, afternoon));
+        assertNotSame(first, profile.getSchedule());
+
+        // 直接修改集合也会触发重建
+        profile.getTimeFilters().add(timeFilterService.parseTimeRule("ALL.ALL.Saturday.ALL"));
+        assertTrue(timeFilterService.matchesProfile(profile, LocalDateTime.of(2025, Month.MAY, 10, 3, 0)));
+    }
+
+    @Test
+    void matchesProfile_unrelatedFilterChange_shouldKeepSchedule() {
+        TimeFilter filter = timeFilterService.parseTimeRule("ALL.ALL.Monday-Friday.8:00-12:00");
+        Profile profile = new Profile("PROFILE_DAY", "Day", "Day shift");
+        profile.setTimeFilters(new HashSet<>(List.of(filter)));
+        LocalDateTime morning = LocalDateTime.of(2025, Month.MAY, 5, 9, 0);
+        assertTrue(timeFilterService.matchesProfile(profile, morning));
+        ProfileSchedule first = profile.getSchedule();
+
+        // 解析、校验产生的临时过滤器被修改不会让其他配置文件的时间表失效
+        TimeFilter transientFilter = timeFilterService.parseTimeRule("ALL.ALL.Saturday.ALL");
+        transientFilter.setTimeRanges("10:00-11:00");
+        timeFilterService.validateTimeRule("ALL.ALL.Sunday.9:00-10:00");
+
+        assertTrue(timeFilterService.matchesProfile(profile, morning));
+        assertSame(first, profile.getSchedule());
+    }
+
+    @Test
+    void evaluate_shouldReturnNextTransition() {
+        Profile profile = new Profile("PROFILE_SHIFTS", "Shifts", "Office hours");
+        profile.setTimeFilters(new HashSet<>(List.of(
+                timeFilterService.parseTimeRule("ALL.ALL.Monday-Friday.8:00-12:00,14:00-17:00"))));
+
+        // 星期一10:15在区间内：结果保持到12:00（含）之后的下一纳秒
+        TimeFilterEvaluation inside = timeFilterService.evaluate(profile, LocalDateTime.of(2025, Month.MAY, 5, 10, 15));
+        assertTrue(inside.isMatched());
+        assertEquals(LocalDateTime.of(2025, Month.MAY, 5, 12, 0).plusNanos(1), inside.getValidUntil());
+
+        // 午休时不匹配，14:00开始匹配
+        TimeFilterEvaluation lunch = timeFilterService.evaluate(profile, LocalDateTime.of(2025, Month.MAY, 5, 12, 30));
+        assertFalse(lunch.isMatched());
+        assertEquals(LocalDateTime.of(2025, Month.MAY, 5, 14, 0), lunch.getValidUntil());
+
+        // 星期五下班后到下周一8:00都不匹配
+        TimeFilterEvaluation weekend = timeFilterService.evaluate(profile, LocalDateTime.of(2025, Month.MAY, 9, 18, 0));
+        assertFalse(weekend.isMatched());
+        assertEquals(LocalDateTime.of(2025, Month.MAY, 12, 8, 0), weekend.getValidUntil());
+        assertTrue(weekend.isValidAt(LocalDateTime.of(2025, Month.MAY, 11, 23, 0)));
+    }
+
+    @Test
+    void evaluate_constantResult_shouldBeValidUntilMonthEnd() {
+        TimeFilter filter = timeFilterService.parseTimeRule("ALL.ALL.ALL.ALL");
+
+        TimeFilterEvaluation evaluation = timeFilterService.evaluate(List.of(filter), LocalDateTime.of(2025, Month.MAY, 20, 9, 30));
+
+        assertTrue(evaluation.isMatched());
+        assertEquals(LocalDateTime.of(2025, Month.JUNE, 1, 0, 0), evaluation.getValidUntil());
+    }
+
+    @Test
+    void evaluate_validUntil_shouldBeFirstInstantWithDifferentResult() {
+        List<TimeFilter> filters = List.of(
+                timeFilterService.parseTimeRule("ALL.ALL.Monday-Friday.8:00-12:00,14:00-17:00"),
+                timeFilterService.parseTimeRule("ALL.ALL.Saturday.EXCEPT 0:00-9:59"));
+        LocalDateTime time = LocalDateTime.of(2025, Month.MAY, 5, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2025, Month.MAY, 12, 0, 0);
+        while (time.isBefore(end)) {
+            TimeFilterEvaluation evaluation = timeFilterService.evaluate(filters, time);
+            LocalDateTime until = evaluation.getValidUntil();
+            assertTrue(until.isAfter(time));
+            assertEquals(evaluation.isMatched(), timeFilterService.matchesAny(filters, until.minusNanos(1)));
+            assertNotEquals(evaluation.isMatched(), timeFilterService.matchesAny(filters, until), "at " + until);
+            time = until;
+        }
+    }
+
+    @Test
+    void parseTimeRule_daysOfMonthQualifiers_shouldParseAndMatch() {
+        TimeFilter filter = timeFilterService.parseTimeRule("ALL.ALL.ALL.8:00-17:00.DAYS 15,1-10.EXCEPT DAYS 5");
+
+        assertEquals("1,2,3,4,5,6,7,8,9,10,15", filter.getDaysOfMonth());
+        assertEquals("5", filter.getExcludedDaysOfMonth());
+        assertTrue(timeFilterService.matches(filter, LocalDateTime.of(2025, Month.MAY, 1, 9, 0)));
+        assertTrue(timeFilterService.matches(filter, LocalDateTime.of(2025, Month.MAY, 15, 9, 0)));
+        assertFalse(timeFilterService.matches(filter, LocalDateTime.of(2025, Month.MAY, 5, 9, 0)));
+        assertFalse(timeFilterService.matches(filter, LocalDateTime.of(2025, Month.MAY, 11, 9, 0)));
+        assertFalse(timeFilterService.matches(filter, LocalDateTime.of(2025, Month.MAY, 1, 18, 0)));
+    }
+
+    @Test
+    void matches_holidayCalendars_shouldUseYearlyBitsetAndSeeReloads() {
+        HolidayCalendar calendar = new HolidayCalendar("CN", List.of(
+                LocalDate.of(2025, 10, 1), LocalDate.of(2025, 10, 2), LocalDate.of(2024, 12, 31)));
+        calendars.put("CN", calendar);
+        TimeFilter workdays = timeFilterService.parseTimeRule("ALL.ALL.Monday-Friday.8:00-17:00.EXCEPT HOLIDAYS cn");
+        TimeFilter holidayDuty = timeFilterService.parseTimeRule("ALL.ALL.ALL.9:00-12:00.HOLIDAYS CN");
+
+        assertEquals("CN", workdays.getExcludedHolidayCalendar());
+        // 2025-10-01是星期三，节假日
+        assertFalse(timeFilterService.matches(workdays, LocalDateTime.of(2025, Month.OCTOBER, 1, 10, 0)));
+        assertTrue(timeFilterService.matches(holidayDuty, LocalDateTime.of(2025, Month.OCTOBER, 1, 10, 0)));
+        assertTrue(timeFilterService.matches(workdays, LocalDateTime.of(2025, Month.OCTOBER, 3, 10, 0)));
+        assertFalse(timeFilterService.matches(holidayDuty, LocalDateTime.of(2025, Month.OCTOBER, 3, 10, 0)));
+        // 闰年最后一天（第366天）
+        assertTrue(calendar.isHoliday(LocalDate.of(2024, 12, 31)));
+        assertFalse(calendar.isHoliday(LocalDate.of(2025, 12, 31)));
+
+        // 日历重新加载后，已编译的规则直接看到新日期
+        calendar.reload(List.of(LocalDate.of(2025, 10, 3)));
+        assertTrue(timeFilterService.matches(workdays, LocalDateTime.of(2025, Month.OCTOBER, 1, 10, 0)));
+        assertFalse(timeFilterService.matches(workdays, LocalDateTime.of(2025, Month.OCTOBER, 3, 10, 0)));
+    }
+
+    @Test
+    void matchesProfile_withCalendarFilters_shouldAgreeWithMatchesAny() {
+        calendars.put("CN", new HolidayCalendar("CN", List.of(LocalDate.of(2025, 5, 1), LocalDate.of(2025, 5, 2))));
+        List<TimeFilter> filters = List.of(
+                timeFilterService.parseTimeRule("ALL.ALL.Monday-Friday.8:00-17:00.EXCEPT HOLIDAYS CN"),
+                timeFilterService.parseTimeRule("ALL.ALL.ALL.10:00-11:00.HOLIDAYS CN"),
+                timeFilterService.parseTimeRule("ALL.ALL.Saturday.9:00-12:00"),
+                timeFilterService.parseTimeRule("ALL.ALL.ALL.20:00-21:00.DAYS 3"));
+        Profile profile = new Profile("PROFILE_CAL", "Calendar", "Holiday-aware shifts");
+        profile.setTimeFilters(new HashSet<>(filters));
+
+        LocalDateTime time = LocalDateTime.of(2025, Month.APRIL, 30, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2025, Month.MAY, 6, 0, 0);
+        while (time.isBefore(end)) {
+            assertEquals(timeFilterService.matchesAny(filters, time), timeFilterService.matchesProfile(profile, time),
+                    "mismatch at " + time);
+            TimeFilterEvaluation evaluation = timeFilterService.evaluate(profile, time);
+            LocalDateTime until = evaluation.getValidUntil();
+            assertTrue(until.isAfter(time));
+            // 带日期条件时有效期不跨越当天
+            assertFalse(until.isAfter(time.toLocalDate().plusDays(1).atStartOfDay()));
+            assertEquals(evaluation.isMatched(), timeFilterService.matchesAny(filters, until.minusNanos(1)), "at " + until);
+            time = time.plusMinutes(20);
+        }
+        assertEquals(4, profile.getSchedule().getFilterCount());
+    }
+
+    @Test
+    void validateTimeRule_shouldNotWriteToRepository() {
+        assertTrue(timeFilterService.validateTimeRule("ALL.ALL.Monday-Friday.8:00-12:00"));
+        verify(timeFilterRepository, never()).save(any());
+    }
+
+    @Test
+    void parseTimeRuleInMemory_equivalentRules_shouldShareId() {
+        TimeFilter first = timeFilterService.parseTimeRuleInMemory("2025.July,August.Mon-Fri.8:00-12:00,14:00-17:00");
+        TimeFilter second = timeFilterService.parseTimeRuleInMemory("2025.Aug,JULY.Monday-Friday.14:00-17:00,08:00-12:00");
+        TimeFilter other = timeFilterService.parseTimeRuleInMemory("2025.July,August.Mon-Fri.8:00-12:00");
+
+        assertEquals(first.getTimeFilterId(), second.getTimeFilterId());
+        assertNotEquals(first.getTimeFilterId(), other.getTimeFilterId());
+        assertTrue(first.getTimeFilterId().length() <= 50);
+        assertEquals("JULY,AUGUST", first.getMonths());
+        verify(timeFilterRepository, never()).save(any());
+    }
+
+    @Test
+    void importTimeRules_shouldDedupeSkipExistingAndInsertInBatch() {
+        String existingRule = "ALL.ALL.Saturday.ALL";
+        // 旧版本存储的规则：ID由原始规则字符串的哈希生成，与规范化ID不同
+        TimeFilter existing = timeFilterService.parseTimeRuleInMemory(existingRule);
+        existing.setTimeFilterId("TF_" + Math.abs(existingRule.hashCode()));
+        when(timeFilterRepository.findAll()).thenReturn(List.of(existing));
+
+        TimeRuleImportResult result = timeFilterService.importTimeRules(List.of(
+                "# nightly policy sync",
+                "ALL.ALL.Monday-Friday.8:00-12:00",
+                "ALL.ALL.Mon-Fri.08:00-12:00",
+                "",
+                "all.all.Sat.ALL",
+                "2026.EXCEPT June.ALL.ALL",
+                "not a rule"));
+
+        assertEquals(5, result.getTotal());
+        assertEquals(1, result.getDuplicates());
+        assertEquals(1, result.getExisting());
+        assertEquals(1, result.getInvalid());
+        assertEquals(2, result.getSaved());
+        assertTrue(result.getErrors().get(0).startsWith("Line 7:"));
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyCollection(), eq(2), any(ParameterizedPreparedStatementSetter.class));
+        verify(timeFilterRepository, times(1)).findAll();
+        verify(timeFilterRepository, never()).save(any());
+    }
+
+    @Test
+    void parseTimeRule_ruleStoredUnderLegacyId_shouldReturnStoredRule() {
+        String rule = "ALL.ALL.Monday-Friday.8:00-12:00";
+        TimeFilter existing = timeFilterService.parseTimeRuleInMemory(rule);
+        String legacyId = "TF_" + Math.abs(rule.hashCode());
+        existing.setTimeFilterId(legacyId);
+        when(timeFilterRepository.findAll()).thenReturn(List.of(existing));
+        when(timeFilterRepository.findById(legacyId)).thenReturn(Optional.of(existing));
+
+        TimeFilter parsed = timeFilterService.parseTimeRule("ALL.ALL.Mon-Fri.08:00-12:00");
+        TimeFilter again = timeFilterService.parseTimeRule(rule);
+
+        assertSame(existing, parsed);
+        assertSame(existing, again);
+        verify(timeFilterRepository, never()).save(any());
+        verify(timeFilterRepository, times(1)).findAll();
+    }
+
+    @Test
+    void importTimeRules_batchFailure_shouldRetryRowsAndReportFailedLines() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataIntegrityViolationException("bad row"));
+        when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class)))
+                .thenReturn(1)
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        TimeRuleImportResult result = timeFilterService.importTimeRules(List.of(
+                "ALL.ALL.Monday-Friday.8:00-12:00",
+                "ALL.ALL.Saturday.ALL"));
+
+        assertEquals(2, result.getTotal());
+        assertEquals(1, result.getSaved());
+        assertEquals(1, result.getInvalid());
+        assertTrue(result.getErrors().get(0).startsWith("Line 2:"));
+    }
+
+    @Test
+    void parseTimeRuleInMemory_longRule_shouldTruncateNameAndRejectOversizedFields() {
+        String manyRanges = String.join(",", Collections.nCopies(10, "8:00-9:00"));
+        String longRule = "ALL.ALL.Monday,Tuesday,Wednesday,Thursday,Friday,Saturday,Sunday." + manyRanges;
+        TimeFilter filter = timeFilterService.parseTimeRuleInMemory(longRule);
+        assertEquals(100, filter.getFilterName().length());
+        assertTrue(filter.getFilterName().endsWith("..."));
+
+        List<String> ranges = new ArrayList<>();
+        for (int hour = 0; hour < 23; hour++) {
+            ranges.add(hour + ":00-" + hour + ":30");
+            ranges.add(hour + ":31-" + hour + ":59");
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> timeFilterService.parseTimeRuleInMemory("ALL.ALL.ALL." + String.join(",", ranges)));
+    }
+
     @Test
     void validateTimeRule_validRules_shouldReturnTrue() {
         assertTrue(timeFilterService.validateTimeRule("2025.July,August.Monday-Friday.8:00-12:00,14:00-17:00"));
@@ -246,6 +590,7 @@ class TimeFilterServiceImplTest {
         assertTrue(timeFilterService.validateTimeRule("2026.January,March,May.Monday,Wednesday,Friday.16:00-18:00"));
         assertTrue(timeFilterService.validateTimeRule("*.*.*.*"));
         assertTrue(timeFilterService.validateTimeRule("ALL.ALL.ALL.ALL"));
+        assertTrue(timeFilterService.validateTimeRule("ALL.ALL.ALL.ALL.DAYS 1-15.EXCEPT HOLIDAYS CN"));
     }
 
     @Test
@@ -254,5 +599,8 @@ class TimeFilterServiceImplTest {
         assertFalse(timeFilterService.validateTimeRule("2025.July,August.Monday-Friday"));
         assertFalse(timeFilterService.validateTimeRule("2025.July,August.Monday-Friday.8:00-12:00,14:00"));
         assertFalse(timeFilterService.validateTimeRule("2025.July,August.Monday-Friday.8:00-12:00-14:00"));
+        assertFalse(timeFilterService.validateTimeRule("ALL.ALL.ALL.ALL.DAYS 0-3"));
+        assertFalse(timeFilterService.validateTimeRule("ALL.ALL.ALL.ALL.WEEKS 1"));
+        assertFalse(timeFilterService.validateTimeRule("ALL.ALL.ALL.ALL.DAYS 1.DAYS 2"));
     }
 }
\ No newline at end of file
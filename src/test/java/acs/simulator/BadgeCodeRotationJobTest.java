@@ -0,0 +1,138 @@
+package acs.simulator;
+
+import acs.cache.LocalCacheManager;
+import acs.domain.Badge;
+import acs.domain.BadgeStatus;
+import acs.repository.BadgeRepository;
+import acs.service.ClockService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 徽章代码批量轮换任务单元测试：验证键集分页、代码唯一性、批量写库和进度统计。
+ */
+@ExtendWith(MockitoExtension.class)
+class BadgeCodeRotationJobTest {
+
+    @Mock
+    private BadgeRepository badgeRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private LocalCacheManager cacheManager;
+
+    @Mock
+    private ClockService clockService;
+
+    private final LocalDate dueBy = LocalDate.of(2025, 12, 31);
+    private Badge b1;
+    private Badge b2;
+    private Badge b3;
+    private BadgeCodeRotationJob job;
+
+    @BeforeEach
+    void setUp() {
+        b1 = badge("B1", "OLDCODE01");
+        b2 = badge("B2", "OLDCODE02");
+        b3 = badge("B3", "OLDCODE03");
+        when(clockService.now()).thenReturn(Instant.parse("2025-06-01T00:00:00Z"));
+        when(clockService.localNow()).thenReturn(LocalDateTime.of(2025, 6, 1, 8, 0));
+        when(cacheManager.getAllBadges()).thenReturn(List.of(b1, b2, b3));
+        when(cacheManager.getBadge("B1")).thenReturn(b1);
+        when(cacheManager.getBadge("B2")).thenReturn(b2);
+        when(cacheManager.getBadge("B3")).thenReturn(b3);
+        when(badgeRepository.countRotationCandidates(BadgeStatus.ACTIVE, dueBy)).thenReturn(3L);
+        // 每页2条：B1,B2 → B3 → 空
+        when(badgeRepository.findRotationCandidateIds(eq(BadgeStatus.ACTIVE), eq(dueBy), anyString(), any(Pageable.class)))
+                .thenAnswer(inv -> {
+                    String afterId = inv.getArgument(2);
+                    if (afterId.isEmpty()) {
+                        return List.of("B1", "B2");
+                    }
+                    return afterId.equals("B2") ? List.of("B3") : List.of();
+                });
+        job = new BadgeCodeRotationJob(badgeRepository, jdbcTemplate, cacheManager, clockService, 2, 500);
+    }
+
+    @Test
+    void rotateDueBadges_shouldWriteEachPageInOneBatchAndUpdateCache() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(inv -> new int[][]{((Collection<?>) inv.getArgument(1)).stream().mapToInt(r -> 1).toArray()});
+
+        BadgeCodeRotationJob.RotationReport report = job.rotateDueBadges(dueBy);
+
+        assertThat(report.getTotal()).isEqualTo(3);
+        assertThat(report.getRotated()).isEqualTo(3);
+        assertThat(report.getFailed()).isZero();
+        assertThat(report.getEtaMillis()).isZero();
+        assertThat(job.getLastReport()).isSameAs(report);
+        // 两页各一次批量写入，不逐个保存
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        verify(cacheManager, never()).updateBadge(any());
+        verify(cacheManager, times(2)).applyPersistedBadges(anyCollection());
+
+        Set<String> codes = new HashSet<>();
+        for (Badge badge : List.of(b1, b2, b3)) {
+            assertThat(badge.getBadgeCode()).matches("[A-Z0-9]{9}").doesNotStartWith("OLDCODE");
+            assertThat(badge.getCodeExpirationDate()).isEqualTo(LocalDate.of(2026, 6, 1));
+            assertThat(badge.isNeedsUpdate()).isFalse();
+            assertThat(badge.getUpdateDueDate()).isNull();
+            codes.add(badge.getBadgeCode());
+        }
+        assertThat(codes).hasSize(3);
+    }
+
+    @Test
+    void rotateDueBadges_batchFailure_shouldRetryOneByOneAndKeepFailedBadgeUnchanged() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataIntegrityViolationException("bad row"));
+        when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class)))
+                .thenReturn(1)
+                .thenThrow(new DataIntegrityViolationException("bad row"))
+                .thenReturn(1);
+
+        BadgeCodeRotationJob.RotationReport report = job.rotateDueBadges(dueBy);
+
+        assertThat(report.getRotated()).isEqualTo(2);
+        assertThat(report.getFailed()).isEqualTo(1);
+        // 写库失败的徽章不修改缓存中的字段
+        long unchanged = List.of(b1, b2, b3).stream().filter(b -> b.getBadgeCode().startsWith("OLDCODE")).count();
+        assertThat(unchanged).isEqualTo(1);
+
+        ArgumentCaptor<Collection<Badge>> applied = ArgumentCaptor.forClass(Collection.class);
+        verify(cacheManager, times(2)).applyPersistedBadges(applied.capture());
+        assertThat(applied.getAllValues().stream().mapToInt(Collection::size).sum()).isEqualTo(2);
+    }
+
+    private Badge badge(String badgeId, String code) {
+        Badge badge = new Badge(badgeId, BadgeStatus.ACTIVE);
+        badge.setBadgeCode(code);
+        badge.setCodeExpirationDate(LocalDate.of(2025, 7, 1));
+        badge.setNeedsUpdate(true);
+        badge.setUpdateDueDate(LocalDate.of(2025, 7, 15));
+        return badge;
+    }
+}
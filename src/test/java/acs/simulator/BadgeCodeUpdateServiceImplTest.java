@@ -2,9 +2,12 @@ package acs.simulator;
 
 import acs.domain.Badge;
 import acs.domain.BadgeStatus;
+import acs.domain.BadgeUpdateStatus;
+import acs.domain.BadgeUpdateWindow;
 import acs.repository.BadgeRepository;
 import acs.service.ClockService;
 import acs.cache.LocalCacheManager;
+import acs.cache.SiteZoneRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,6 +15,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.Instant;
@@ -38,6 +42,9 @@ public class BadgeCodeUpdateServiceImplTest {
     @Mock
     private LocalCacheManager cacheManager;
 
+    @Spy
+    private SiteZoneRegistry siteZones = new SiteZoneRegistry("", "");
+
     @InjectMocks
     private BadgeCodeUpdateServiceImpl badgeCodeUpdateService;
 
@@ -50,6 +57,10 @@ public class BadgeCodeUpdateServiceImplTest {
 
     @BeforeEach
     void setUp() {
+        lenient().doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(cacheManager).batchChanges(any());
         // 重置统计信息
         badgeCodeUpdateService.resetStats();
 
@@ -206,6 +217,22 @@ public class BadgeCodeUpdateServiceImplTest {
         assertThat(badgesNeedingUpdate).doesNotContain("BADGE_ACTIVE", "BADGE_DISABLED");
     }
 
+    @Test
+    void checkDueBadgesForUpdate_shouldOnlyProcessBadgesFromExpiryIndex() {
+        // 给定：到期索引只选出已过期的徽章
+        when(cacheManager.pollBadgesDueForUpdateCheck(LocalDate.now())).thenReturn(java.util.List.of(expiredBadge));
+        doNothing().when(cacheManager).updateBadge(any(Badge.class));
+
+        // 当：调度检查
+        var badgesNeedingUpdate = badgeCodeUpdateService.checkDueBadgesForUpdate();
+
+        // 则：只处理到期的徽章，不全量扫描也不逐个查询数据库
+        assertThat(badgesNeedingUpdate).containsExactly("BADGE_EXPIRED");
+        assertThat(expiredBadge.isNeedsUpdate()).isTrue();
+        verify(cacheManager).updateBadge(expiredBadge);
+        verifyNoInteractions(badgeRepository);
+    }
+
     @Test
     void getUpdateStats_afterOperations_shouldReturnValidStats() {
         // 给定：执行一些操作
@@ -223,4 +250,36 @@ public class BadgeCodeUpdateServiceImplTest {
         assertThat(stats).contains("updates triggered=0"); // 未触发更新
         assertThat(stats).contains("notifications sent=2"); // 两次检查都发送了通知
     }
-}
\ No newline at end of file
+
+    @Test
+    void evaluateBadgeUpdateStatus_shouldReadCachedBadgeWithoutWrites() {
+        // 给定：缓存中已过期但尚未标记的徽章
+        when(cacheManager.getBadge("BADGE_EXPIRED")).thenReturn(expiredBadge);
+
+        // 当：访问决策查询更新状态
+        BadgeUpdateStatus status = badgeCodeUpdateService.evaluateBadgeUpdateStatus("BADGE_EXPIRED", LocalDate.now());
+
+        // 则：只读缓存，不查数据库也不保存
+        assertThat(status).isEqualTo(BadgeUpdateStatus.UPDATE_REQUIRED);
+        assertThat(expiredBadge.isNeedsUpdate()).isFalse();
+        verifyNoInteractions(badgeRepository);
+        verify(cacheManager, never()).updateBadge(any());
+    }
+
+    @Test
+    void badgeUpdateWindow_shouldChangeStatusOnlyAtBoundaries() {
+        Badge badge = new Badge("BADGE_WINDOW", BadgeStatus.ACTIVE);
+        badge.setCodeExpirationDate(LocalDate.of(2024, 5, 10));
+        BadgeUpdateWindow window = BadgeUpdateWindow.of(badge);
+
+        assertThat(window.statusOn(LocalDate.of(2024, 5, 1))).isEqualTo(BadgeUpdateStatus.OK);
+        assertThat(window.validUntil(LocalDate.of(2024, 5, 1))).isEqualTo(LocalDate.of(2024, 5, 11));
+        assertThat(window.statusOn(LocalDate.of(2024, 5, 11))).isEqualTo(BadgeUpdateStatus.UPDATE_REQUIRED);
+        assertThat(window.validUntil(LocalDate.of(2024, 5, 11))).isEqualTo(LocalDate.of(2024, 5, 25));
+        assertThat(window.statusOn(LocalDate.of(2024, 5, 25))).isEqualTo(BadgeUpdateStatus.UPDATE_OVERDUE);
+        assertThat(window.validUntil(LocalDate.of(2024, 5, 25))).isNull();
+
+        // 非激活徽章始终为OK
+        assertThat(BadgeUpdateWindow.of(disabledBadge).statusOn(LocalDate.of(2030, 1, 1))).isEqualTo(BadgeUpdateStatus.OK);
+    }
+}
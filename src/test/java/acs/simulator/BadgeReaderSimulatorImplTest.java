@@ -1,8 +1,10 @@
 package acs.simulator;
 
+import acs.cache.BadgeCodeIndex;
+import acs.cache.LocalCacheManager;
+import acs.cache.ResourceReaderCache;
 import acs.domain.*;
 import acs.repository.BadgeReaderRepository;
-import acs.repository.BadgeRepository;
 import acs.service.AccessControlService;
 import acs.service.ClockService;
 import org.junit.jupiter.api.BeforeEach;
@@ -36,10 +38,16 @@ public class BadgeReaderSimulatorImplTest {
     private BadgeReaderRepository badgeReaderRepository;
 
     @Mock
-    private BadgeRepository badgeRepository;
+    private ClockService clockService;
 
     @Mock
-    private ClockService clockService;
+    private ResourceReaderCache readerCache;
+
+    @Mock
+    private LocalCacheManager cacheManager;
+
+    @Mock
+    private SimulationDelays delays;
 
     @InjectMocks
     private BadgeReaderSimulatorImpl badgeReaderSimulator;
@@ -62,7 +70,8 @@ public class BadgeReaderSimulatorImplTest {
         badge.setBadgeCode("ABC123XYZ");
         AccessResult expectedResult = new AccessResult(AccessDecision.ALLOW, ReasonCode.ALLOW, "Access granted");
 
-        when(badgeRepository.findById(badgeId)).thenReturn(Optional.of(badge));
+        when(cacheManager.getBadge(badgeId)).thenReturn(badge);
+        when(cacheManager.resolveBadgeCode("ABC123XYZ")).thenReturn(currentCode(badge));
         when(badgeReaderRepository.findByReaderId(readerId)).thenReturn(Optional.of(badgeReader));
         when(clockService.now()).thenReturn(now);
         when(routerSystem.routeRequest(any(AccessRequest.class), anyString(), anyString(), anyString(), anyString(), anyString()))
@@ -86,7 +95,8 @@ public class BadgeReaderSimulatorImplTest {
 
         Badge badge = new Badge(badgeId, BadgeStatus.ACTIVE);
         badge.setBadgeCode("ABC123XYZ");
-        when(badgeRepository.findById(badgeId)).thenReturn(Optional.of(badge));
+        when(cacheManager.getBadge(badgeId)).thenReturn(badge);
+        when(cacheManager.resolveBadgeCode("ABC123XYZ")).thenReturn(currentCode(badge));
         when(badgeReaderRepository.findByReaderId(readerId)).thenReturn(Optional.empty());
 
         AccessResult actualResult = badgeReaderSimulator.simulateBadgeSwipe(readerId, badgeId);
@@ -112,7 +122,8 @@ public class BadgeReaderSimulatorImplTest {
         badge.setBadgeCode("ABC123XYZ");
         AccessResult expectedResult = new AccessResult(AccessDecision.DENY, ReasonCode.NO_PERMISSION, "Access denied");
 
-        when(badgeRepository.findById(badgeId)).thenReturn(Optional.of(badge));
+        when(cacheManager.getBadge(badgeId)).thenReturn(badge);
+        when(cacheManager.resolveBadgeCode("ABC123XYZ")).thenReturn(currentCode(badge));
         when(badgeReaderRepository.findByReaderId(readerId)).thenReturn(Optional.of(badgeReader));
         when(clockService.now()).thenReturn(now);
         when(routerSystem.routeRequest(any(AccessRequest.class), anyString(), anyString(), anyString(), anyString(), anyString()))
@@ -127,13 +138,52 @@ public class BadgeReaderSimulatorImplTest {
         verify(resourceController, never()).unlockResource(anyString());
     }
 
+    @Test
+    public void simulateBadgeSwipe_rotatedCode_shouldRejectWithoutRouting() throws InterruptedException {
+        String readerId = "READER001";
+        String badgeId = "BADGE001";
+        BadgeReader badgeReader = new BadgeReader(readerId, "Test Reader", "Location", "ONLINE", "RES001");
+        Badge badge = new Badge(badgeId, BadgeStatus.ACTIVE);
+        badge.setBadgeCode("OLD123XYZ");
+        badge.setCodeExpirationDate(java.time.LocalDate.of(2026, 1, 31));
+
+        // 读卡器读到的是已被轮换替换的旧代码
+        BadgeCodeIndex codeIndex = new BadgeCodeIndex();
+        codeIndex.update(badge);
+        Badge rotated = new Badge(badgeId, BadgeStatus.ACTIVE);
+        rotated.setBadgeCode("NEW123XYZ");
+        codeIndex.update(rotated);
+
+        when(cacheManager.resolveBadgeCode("OLD123XYZ")).thenReturn(codeIndex.resolve("OLD123XYZ"));
+        lenient().when(badgeReaderRepository.findByReaderId(readerId)).thenReturn(Optional.of(badgeReader));
+
+        AccessResult actualResult = badgeReaderSimulator.simulateCodeSwipe(readerId, "OLD123XYZ", null);
+
+        assertEquals(AccessDecision.DENY, actualResult.getDecision());
+        assertEquals("Badge code has been replaced, please use the updated badge", actualResult.getMessage());
+        verify(routerSystem, never()).routeRequest(any(), any(), any(), any(), any(), any());
+        verify(resourceController, never()).unlockResource(anyString());
+        verify(cacheManager, never()).getBadge(anyString());
+    }
+
+    @Test
+    public void simulateCodeSwipe_unknownCode_shouldRejectWithoutRouting() throws InterruptedException {
+        when(cacheManager.resolveBadgeCode("NOSUCHCODE")).thenReturn(new BadgeCodeIndex().resolve("NOSUCHCODE"));
+
+        AccessResult actualResult = badgeReaderSimulator.simulateCodeSwipe("READER001", "NOSUCHCODE", null);
+
+        assertEquals(AccessDecision.DENY, actualResult.getDecision());
+        assertEquals("Unknown badge code", actualResult.getMessage());
+        verify(routerSystem, never()).routeRequest(any(), any(), any(), any(), any(), any());
+    }
+
     @Test
     public void readBadgeCode_validInput_shouldReturnCode() throws InterruptedException {
         String readerId = "READER001";
         String badgeId = "BADGE001";
         Badge badge = new Badge(badgeId, BadgeStatus.ACTIVE);
         badge.setBadgeCode("ABC123XYZ");
-        when(badgeRepository.findById(badgeId)).thenReturn(Optional.of(badge));
+        when(cacheManager.getBadge(badgeId)).thenReturn(badge);
 
         String badgeCode = badgeReaderSimulator.readBadgeCode(readerId, badgeId);
 
@@ -156,6 +206,13 @@ public class BadgeReaderSimulatorImplTest {
 
         verify(badgeReaderRepository, times(1)).findByReaderId(readerId);
         verify(badgeReaderRepository, times(1)).save(badgeReader);
+        verify(readerCache).put(badgeReader);
         assertEquals(newStatus, badgeReader.getStatus());
     }
+
+    private BadgeCodeIndex.Resolution currentCode(Badge badge) {
+        BadgeCodeIndex codeIndex = new BadgeCodeIndex();
+        codeIndex.update(badge);
+        return codeIndex.resolve(badge.getBadgeCode());
+    }
 }
@@ -0,0 +1,103 @@
+package acs.simulator;
+
+import acs.domain.AccessDecision;
+import acs.domain.AccessResult;
+import acs.domain.BadgeReader;
+import acs.domain.ReasonCode;
+import acs.repository.BadgeReaderRepository;
+import acs.service.impl.ClockServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 事件模拟器离散事件模式单元测试：验证虚拟时间推进、延迟调度和时钟恢复，不依赖真实等待。
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class EventSimulatorImplTest {
+
+    @Mock
+    private BadgeReaderSimulator badgeReaderSimulator;
+
+    @Mock
+    private BadgeReaderRepository badgeReaderRepository;
+
+    @Mock
+    private ResourceController resourceController;
+
+    private final ClockServiceImpl clockService = new ClockServiceImpl();
+    private final SimulationDelays delays = new SimulationDelays();
+    private final Instant start = Instant.parse("2025-03-03T08:00:00Z");
+    private EventSimulatorImpl simulator;
+
+    @BeforeEach
+    void setUp() {
+        BadgeReader reader = new BadgeReader("READER001", "Main Gate", "Lobby", "ONLINE", "RES001");
+        when(badgeReaderRepository.findByStatus("ONLINE")).thenReturn(List.of(reader));
+        when(badgeReaderRepository.findAll()).thenReturn(List.of(reader));
+        simulator = new EventSimulatorImpl(badgeReaderSimulator, badgeReaderRepository, clockService,
+                resourceController, delays);
+    }
+
+    @Test
+    void runDiscreteEventSimulation_shouldAdvanceVirtualClockWithoutSleeping() throws Exception {
+        List<Instant> requestTimes = new ArrayList<>();
+        List<Boolean> virtualDuringSwipe = new ArrayList<>();
+        when(badgeReaderSimulator.simulateBadgeSwipe(anyString(), anyString(), anyString())).thenAnswer(inv -> {
+            requestTimes.add(clockService.now());
+            virtualDuringSwipe.add(delays.isVirtualTime());
+            return new AccessResult(AccessDecision.ALLOW, ReasonCode.ALLOW, "Access granted");
+        });
+
+        // 2个工作者各刷卡3次；场景配置的步长为800ms
+        Map<String, Object> metrics = simulator.runDiscreteEventSimulation(6, 2, start);
+
+        assertEquals(6, metrics.get("completedEvents"));
+        assertEquals(6, metrics.get("grantedAccess"));
+        assertEquals("DISCRETE_EVENT", metrics.get("simulationMode"));
+        assertEquals(SimulationStatus.STOPPED, simulator.getSimulationStatus());
+
+        // 请求时间 = 开始 + 读卡200ms + 网络50ms；下一次刷卡 = 上次完成 + 步长
+        assertEquals(6, requestTimes.size());
+        assertEquals(start.plusMillis(250), requestTimes.get(0));
+        assertEquals(start.plusMillis(250), requestTimes.get(1));
+        assertTrue(requestTimes.get(2).isAfter(start.plusMillis(250 + 100 + 10 + 1000 + 800 - 1)));
+        assertTrue(virtualDuringSwipe.stream().allMatch(Boolean::booleanValue));
+
+        // 放行后在虚拟时间上调度自动锁定；结束后时钟和延迟模式恢复
+        verify(resourceController, times(6)).lockResource("RES001");
+        assertTrue((Long) metrics.get("virtualElapsedMs") >= 5000);
+        assertFalse(clockService.isSimulated());
+        assertFalse(delays.isVirtualTime());
+    }
+
+    @Test
+    void runDiscreteEventSimulation_swipeFailure_shouldContinueWithNextSwipe() throws Exception {
+        when(badgeReaderSimulator.simulateBadgeSwipe(anyString(), anyString(), anyString()))
+                .thenThrow(new IllegalStateException("reader offline"))
+                .thenReturn(new AccessResult(AccessDecision.DENY, ReasonCode.NO_PERMISSION, "Access denied"));
+        clockService.setSimulatedTime(Instant.parse("2030-01-01T00:00:00Z"));
+
+        Map<String, Object> metrics = simulator.runDiscreteEventSimulation(3, 1, start);
+
+        assertEquals(1, metrics.get("failedEvents"));
+        assertEquals(2, metrics.get("deniedAccess"));
+        verify(resourceController, never()).lockResource(anyString());
+        // 运行前设置的模拟时间被恢复
+        assertEquals(Instant.parse("2030-01-01T00:00:00Z"), clockService.getSimulatedTime());
+    }
+}
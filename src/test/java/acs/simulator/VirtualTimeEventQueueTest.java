@@ -0,0 +1,55 @@
+package acs.simulator;
+
+import acs.service.impl.ClockServiceImpl;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * VirtualTimeEventQueue单元测试：验证按虚拟时间排序执行并推进模拟时钟。
+ */
+class VirtualTimeEventQueueTest {
+
+    private final Instant start = Instant.parse("2025-03-03T08:00:00Z");
+
+    @Test
+    void runNext_shouldExecuteInTimeOrderAndAdvanceClock() {
+        ClockServiceImpl clock = new ClockServiceImpl();
+        VirtualTimeEventQueue events = new VirtualTimeEventQueue(clock, start);
+        List<String> executed = new ArrayList<>();
+
+        events.scheduleAfter(300, () -> executed.add("C@" + clock.now()));
+        events.scheduleAfter(100, () -> {
+            executed.add("A@" + clock.now());
+            // 事件中调度的新事件相对当前虚拟时间
+            events.scheduleAfter(50, () -> executed.add("B@" + clock.now()));
+        });
+        events.scheduleAfter(300, () -> executed.add("D@" + clock.now()));
+
+        while (events.runNext()) {
+            // 依次执行
+        }
+
+        assertEquals(List.of(
+                "A@2025-03-03T08:00:00.100Z",
+                "B@2025-03-03T08:00:00.150Z",
+                "C@2025-03-03T08:00:00.300Z",
+                "D@2025-03-03T08:00:00.300Z"), executed);
+        assertEquals(start.plusMillis(300), events.now());
+        assertEquals(4, events.getProcessedCount());
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void schedule_inThePast_shouldBeRejected() {
+        VirtualTimeEventQueue events = new VirtualTimeEventQueue(new ClockServiceImpl(), start);
+        events.scheduleAfter(1000, () -> { });
+        events.runNext();
+
+        assertThrows(IllegalArgumentException.class, () -> events.schedule(start, () -> { }));
+    }
+}